@@ -1,13 +1,33 @@
 package earlywarn.definiciones;
 
 import earlywarn.main.modelo.criterio.Criterio;
+import earlywarn.mh.vnsrs.Movimiento;
 
-import java.util.Collection;
+import java.util.List;
 
 /**
  * Interfaz que permite calcular el fitness de una solución dados diferentes criterios con un cierto valor para cada
  * uno
  */
 public interface ICálculoFitness {
-	double calcularFitness(Collection<Criterio> criterios);
+	/**
+	 * Calcula el fitness de la solución actual a partir del valor porcentual de cada criterio
+	 * @param criterios Criterios a tener en cuenta
+	 * @param porcentajes Valor porcentual actual de cada criterio, según su posición en la lista de criterios
+	 * @return Fitness de la solución actual
+	 */
+	double calcularFitness(List<Criterio> criterios, double[] porcentajes);
+
+	/**
+	 * Calcula el fitness que tendría la solución tras aplicar un movimiento, sin modificar el estado de los criterios
+	 * @param criterios Criterios a tener en cuenta
+	 * @param movimiento Movimiento a evaluar
+	 * @param porcentajes Array en el que se almacenará el valor porcentual de cada criterio tras aplicar el
+	 *                    movimiento, según su posición en la lista de criterios, para que pueda reutilizarse al
+	 *                    comprobar las restricciones. Los valores que no se hayan calculado se fijan a NaN. Puede ser
+	 *                    null si no se necesitan.
+	 * @return Fitness de la solución resultante de aplicar el movimiento
+	 * @see Criterio#evaluarMovimiento(Movimiento)
+	 */
+	double evaluarMovimiento(List<Criterio> criterios, Movimiento movimiento, double[] porcentajes);
 }
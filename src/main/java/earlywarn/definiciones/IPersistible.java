@@ -0,0 +1,27 @@
+package earlywarn.definiciones;
+
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+
+/**
+ * Interfaz implementada por las clases cuyo estado interno puede almacenarse en un checkpoint y restaurarse más tarde
+ * para continuar una ejecución en el punto en el que se quedó
+ */
+public interface IPersistible {
+	/**
+	 * Escribe el estado actual de la instancia
+	 * @param salida Flujo en el que se escribirá el estado
+	 * @throws IOException Si se produce un error al escribir
+	 */
+	void escribirEstado(ObjectOutput salida) throws IOException;
+
+	/**
+	 * Restaura el estado de la instancia a partir de los datos escritos previamente con
+	 * {@link #escribirEstado(ObjectOutput)}. La instancia debe haberse creado con la misma configuración que la que
+	 * escribió el estado.
+	 * @param entrada Flujo del que se leerá el estado
+	 * @throws IOException Si se produce un error al leer o si los datos no corresponden a esta instancia
+	 */
+	void leerEstado(ObjectInput entrada) throws IOException;
+}
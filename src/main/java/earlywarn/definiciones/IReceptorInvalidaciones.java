@@ -0,0 +1,17 @@
+package earlywarn.definiciones;
+
+import earlywarn.main.invalidación.Invalidación;
+
+/**
+ * Interfaz implementada por las cachés que necesitan saber cuándo se modifican los datos de la BD en los que se
+ * basan sus valores
+ */
+@FunctionalInterface
+public interface IReceptorInvalidaciones {
+	/**
+	 * Notifica una modificación de los datos de la BD. Se llama después de que se confirme la transacción que la
+	 * realiza, desde el hilo de la misma, por lo que debe terminar rápidamente.
+	 * @param invalidación Datos afectados por la modificación
+	 */
+	void invalidar(Invalidación invalidación);
+}
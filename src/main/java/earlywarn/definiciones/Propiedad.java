@@ -39,7 +39,21 @@ public enum Propiedad {
 	ETL_PAÍS_PROVINCIA_ESTADO,
 	// True si todos los países tienen una relación directa con Reportes y no solo sus Estados, Provincias o Regiones
 	ETL_REPORTE_PAÍS,
+	// True si se han creado los nodos Line con los valores agregados de cada línea y día
+	ETL_AGREGADOS_LÍNEAS,
 
 	// True si se ha creado un índice sobre el código IATA de los aeropuertos
-	ETL_INDEXAR_IATA_AEROPUERTOS
+	ETL_INDEXAR_IATA_AEROPUERTOS,
+	// True si se ha creado un índice sobre la fecha de salida de los vuelos
+	ETL_INDEXAR_FECHA_VUELOS,
+	// True si se ha creado una restricción de unicidad (o un índice) sobre el identificador de los países
+	ETL_RESTRINGIR_ID_PAÍSES,
+	// True si se ha creado una restricción de unicidad (o un índice) sobre el identificador de las provincias o estados
+	ETL_RESTRINGIR_ID_PROVINCIAS_ESTADOS,
+	// True si se ha creado un índice compuesto sobre el año y el mes de los datos de ratio de turistas
+	ETL_INDEXAR_RATIO_TURISTAS,
+	// True si se ha creado un índice compuesto sobre el año y el mes de los datos de gasto turístico
+	ETL_INDEXAR_GASTO_TURÍSTICO,
+	// True si se han creado los índices sobre los nodos Line
+	ETL_INDEXAR_AGREGADOS_LÍNEAS
 }
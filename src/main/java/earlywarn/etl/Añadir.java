@@ -456,4 +456,77 @@ public class Añadir {
 				"de ejecutarla.");
 		}
 	}
+
+	/**
+	 * Crea un nodo Line por cada línea (par de aeropuertos origen-destino) y día en el que circula al menos un vuelo
+	 * por la misma. Cada nodo almacena los valores agregados de todos los vuelos de la línea en ese día: número de
+	 * pasajeros, número de vuelos, ingresos por turismo, riesgo importado y pasajeros por aerolínea (como dos listas
+	 * paralelas, ya que Neo4J no permite almacenar mapas como propiedad). También almacena los países de los
+	 * aeropuertos de origen y de destino.
+	 * Las consultas que calculan valores de líneas o de países en un rango de fechas pueden obtenerlos sumando estos
+	 * nodos en lugar de recorrer todos los vuelos.
+	 * Si ya existían nodos Line, se eliminan antes de volver a crearlos. Esta operación debe volver a ejecutarse si
+	 * se modifican los datos de los vuelos.
+	 * Requiere que se haya ejecutado la operación ETL que calcula el número de pasajeros por vuelo, la operación ETL
+	 * que calcula los ingresos por turismo de cada vuelo, la operación ETL que convierte las fechas de vuelos a tipo
+	 * date y la operación ETL que añade las relaciones faltantes entre aeropuerto y país.
+	 * Fija la propiedad {@link Propiedad#ETL_AGREGADOS_LÍNEAS} a true en la BD.
+	 * @throws ETLOperationRequiredException Si no se ha ejecutado alguna de las siguientes operaciones ETL:
+	 * {@link Añadir#calcularNúmeroPasajeros()}, {@link Añadir#añadirIngresosVuelo(Boolean, Boolean)},
+	 * {@link Modificar#convertirFechasVuelos()} o {@link Añadir#añadirConexionesAeropuertoPaís()}.
+	 */
+	@Procedure(mode = Mode.WRITE)
+	public void añadirAgregadosLíneas() {
+		Propiedades p = new Propiedades(db);
+		if (p.getBool(Propiedad.ETL_PASAJEROS) && p.getBool(Propiedad.ETL_INGRESOS_VUELO) &&
+		p.getBool(Propiedad.ETL_CONVERTIR_FECHAS_VUELOS) && p.getBool(Propiedad.ETL_AEROPUERTO_PAÍS)) {
+			try (Transaction tx = db.beginTx()) {
+				tx.execute("MATCH (l:Line) DETACH DELETE l");
+
+				/*
+				 * Primero se agrupa por línea, día y aerolínea y después solo por línea y día, para poder construir
+				 * las listas de pasajeros por aerolínea.
+				 */
+				tx.execute(
+					"MATCH (a1:Airport)-[]-(:AirportOperationDay)-[]->(f:FLIGHT)-[]->" +
+					"(:AirportOperationDay)-[]-(a2:Airport) " +
+					"WITH a1.iata AS origen, a2.iata AS destino, f.dateOfDeparture AS día, " +
+					"coalesce(f.operator, \"" + Consultas.AEROLÍNEA_DESCONOCIDA + "\") AS aerolínea, " +
+					"sum(f.passengers) AS pasajeros, count(f) AS vuelos, sum(f.incomeFromTurism) AS ingresos, " +
+					"sum(f.flightIfinal) AS riesgo " +
+					"WITH origen, destino, día, sum(pasajeros) AS pasajeros, sum(vuelos) AS vuelos, " +
+					"sum(ingresos) AS ingresos, sum(riesgo) AS riesgo, collect(aerolínea) AS aerolíneas, " +
+					"collect(pasajeros) AS pasajerosAerolíneas " +
+					"CREATE (:Line {origin: origen, dest: destino, day: día, passengers: pasajeros, flights: vuelos, " +
+					"incomeFromTurism: ingresos, risk: riesgo, operators: aerolíneas, " +
+					"operatorPassengers: pasajerosAerolíneas})");
+
+				// Añadir el país de cada uno de los dos aeropuertos
+				tx.execute(
+					"MATCH (l:Line) " +
+					"CALL { " +
+						"WITH l " +
+						"MATCH (:Airport {iata: l.origin})-[]-(c:Country) " +
+						"RETURN c.countryId AS país LIMIT 1 " +
+					"} " +
+					"SET l.originCountry = país");
+				tx.execute(
+					"MATCH (l:Line) " +
+					"CALL { " +
+						"WITH l " +
+						"MATCH (:Airport {iata: l.dest})-[]-(c:Country) " +
+						"RETURN c.countryId AS país LIMIT 1 " +
+					"} " +
+					"SET l.destCountry = país");
+
+				tx.commit();
+				new Propiedades(db).setBool(Propiedad.ETL_AGREGADOS_LÍNEAS, true);
+			}
+		} else {
+			throw new ETLOperationRequiredException("Esta operación requiere que se haya ejecutado la operación ETL " +
+				"que calcula los pasajeros de cada vuelo, la operación ETL que calcula los ingresos por turismo de " +
+				"cada vuelo, la operación ETL que convierte las fechas de vuelos a tipo date y la operación ETL que " +
+				"añade conexiones faltantes entre aeropuertos y países antes de ejecutarla.");
+		}
+	}
 }
@@ -1,6 +1,7 @@
 package earlywarn.etl;
 
 import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.logging.Log;
 import org.neo4j.procedure.Context;
 import org.neo4j.procedure.Mode;
 import org.neo4j.procedure.Name;
@@ -12,6 +13,8 @@ import org.neo4j.procedure.Procedure;
 public class Main {
 	@Context
 	public GraphDatabaseService db;
+	@Context
+	public Log log;
 
 	/**
 	 * Ejecuta todas las operaciones ETL.
@@ -34,6 +37,13 @@ public class Main {
 						@Name("rutaFicheroGasto") String rutaFicheroGasto,
 						@Name("mismaFechaTurismo") Boolean mismaFechaTurismo,
 						@Name("aproximarFaltantesTurismo") Boolean aproximarFaltantesTurismo) {
+		/*
+		 * Los índices se crean antes que nada, ya que también aceleran las búsquedas que realizan las propias
+		 * operaciones ETL
+		 */
+		Índices índices = new Índices(db, log);
+		índices.crearEsquema();
+
 		Modificar modificar = new Modificar(db);
 		modificar.convertirRelacionesAOD();
 		modificar.borrarVuelosSinSIR();
@@ -48,10 +58,8 @@ public class Main {
 		añadir.añadirGastoTurístico(rutaFicheroGasto);
 		añadir.añadirTuristasVuelo(mismaFechaTurismo, aproximarFaltantesTurismo);
 		añadir.añadirIngresosVuelo(mismaFechaTurismo, aproximarFaltantesTurismo);
+		añadir.añadirAgregadosLíneas();
 
 		modificar.convertirFechasReportes();
-
-		Índices índices = new Índices(db);
-		índices.indexarIataAeropuertos();
 	}
 }
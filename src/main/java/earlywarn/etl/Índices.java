@@ -2,33 +2,89 @@ package earlywarn.etl;
 
 import earlywarn.definiciones.Propiedad;
 import earlywarn.main.Propiedades;
+import org.neo4j.graphdb.ExecutionPlanDescription;
 import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Result;
 import org.neo4j.graphdb.Transaction;
+import org.neo4j.logging.Log;
 import org.neo4j.procedure.Context;
 import org.neo4j.procedure.Mode;
 import org.neo4j.procedure.Procedure;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
 /**
  * Almacena las modificaiones que se realizan en la BD antes de empezar a trabajar con ella relacionadas con la
- * creación de índices.
+ * creación de índices y restricciones de unicidad.
  * Estas operaciones ETL no son estrictamente necesarias para el funcionamiento del programa, pero el rendimiento
  * del mismo sin ellas será mucho peor.
  */
 public class Índices {
+	// Operadores del plan de ejecución que indican que se está recorriendo una etiqueta completa
+	private static final String[] OPERADORES_ESCANEO = {"NodeByLabelScan", "AllNodesScan"};
+
+	/*
+	 * Consultas representativas de las búsquedas más frecuentes del programa. Cada una de ellas debería poder
+	 * resolverse usando alguno de los índices o restricciones creados por esta clase.
+	 * Formato: {Descripción de la consulta, consulta}
+	 */
+	private static final String[][] CONSULTAS_FRECUENTES = {
+		{"FLIGHT.dateOfDeparture",
+			"MATCH (f:FLIGHT) WHERE date('2020-01-01') <= f.dateOfDeparture <= date('2020-01-31') " +
+			"RETURN sum(f.passengers)"},
+		{"Airport.iata",
+			"MATCH (a:Airport) WHERE a.iata = 'MAD' RETURN a"},
+		{"Country.countryId",
+			"MATCH (c:Country) WHERE c.countryId = 'ES' RETURN c"},
+		{"ProvinceState.provinceStateId",
+			"MATCH (ps:ProvinceState) WHERE ps.provinceStateId = 'Madrid, Spain' RETURN ps"},
+		{"TuristRatio(year, month)",
+			"MATCH (tr:TuristRatio) WHERE tr.year = 2020 AND tr.month = 1 RETURN tr"},
+		{"TuristExpense(year, month)",
+			"MATCH (te:TuristExpense) WHERE te.year = 2020 AND te.month = 1 RETURN te"},
+		{"Line(origin, dest)",
+			"MATCH (l:Line) WHERE l.origin = 'MAD' AND l.dest = 'BCN' " +
+			"AND date('2020-01-01') <= l.day <= date('2020-01-31') RETURN sum(l.passengers)"},
+		{"Line.destCountry",
+			"MATCH (l:Line) WHERE l.destCountry = 'ES' " +
+			"AND date('2020-01-01') <= l.day <= date('2020-01-31') RETURN sum(l.passengers)"}
+	};
+
 	@Context
 	public GraphDatabaseService db;
+	@Context
+	public Log log;
 
 	/**
 	 * Requerido por Neo4J
-	 * @deprecated Este constructor no debe utilizarse. Usar {@link Índices#Índices(GraphDatabaseService)} en su lugar.
+	 * @deprecated Este constructor no debe utilizarse. Usar {@link Índices#Índices(GraphDatabaseService, Log)} en su
+	 * lugar.
 	 */
 	@Deprecated
 	public Índices() {
 
 	}
 	// Requerido para poder llamar a procedimientos desde otra clase
-	public Índices(GraphDatabaseService db) {
+	public Índices(GraphDatabaseService db, Log log) {
 		this.db = db;
+		this.log = log;
+	}
+
+	/**
+	 * Crea todos los índices y restricciones de unicidad usados por el programa.
+	 * Fija a true en la BD todas las propiedades correspondientes a cada uno de ellos.
+	 */
+	@Procedure(mode = Mode.SCHEMA)
+	public void crearEsquema() {
+		indexarIataAeropuertos();
+		indexarFechaVuelos();
+		restringirIdPaíses();
+		restringirIdProvinciasEstados();
+		indexarRatioTuristas();
+		indexarGastoTurístico();
+		indexarAgregadosLíneas();
 	}
 
 	/**
@@ -44,4 +100,166 @@ public class Índices {
 			new Propiedades(db).setBool(Propiedad.ETL_INDEXAR_IATA_AEROPUERTOS, true);
 		}
 	}
+
+	/**
+	 * Crea un índice sobre el campo FLIGHT.dateOfDeparture. Todas las consultas que trabajan con un rango de
+	 * fechas filtran los vuelos por este campo, por lo que el índice permite resolver dichos rangos sin tener que
+	 * recorrer todos los vuelos.
+	 * Fija la propiedad {@link Propiedad#ETL_INDEXAR_FECHA_VUELOS} a true en la BD.
+	 */
+	@Procedure(mode = Mode.SCHEMA)
+	public void indexarFechaVuelos() {
+		try (Transaction tx = db.beginTx()) {
+			tx.execute("CREATE INDEX flightDateOfDeparture IF NOT EXISTS FOR (n:FLIGHT) ON (n.dateOfDeparture)");
+			tx.commit();
+			new Propiedades(db).setBool(Propiedad.ETL_INDEXAR_FECHA_VUELOS, true);
+		}
+	}
+
+	/**
+	 * Crea una restricción de unicidad sobre el campo Country.countryId. La restricción lleva asociado un índice,
+	 * que permite resolver rápidamente las búsquedas de países por identificador (incluidas las que realizan los
+	 * MERGE de la carga de datos de turismo).
+	 * Si ya existen países con el mismo identificador y la restricción no puede crearse, se crea un índice normal
+	 * en su lugar.
+	 * Fija la propiedad {@link Propiedad#ETL_RESTRINGIR_ID_PAÍSES} a true en la BD.
+	 */
+	@Procedure(mode = Mode.SCHEMA)
+	public void restringirIdPaíses() {
+		crearRestricciónUnicidad("countryId", "Country", "countryId");
+		new Propiedades(db).setBool(Propiedad.ETL_RESTRINGIR_ID_PAÍSES, true);
+	}
+
+	/**
+	 * Crea una restricción de unicidad sobre el campo ProvinceState.provinceStateId. Al igual que en el caso de los
+	 * países, si ya existen regiones con el mismo identificador se crea un índice normal en su lugar.
+	 * Fija la propiedad {@link Propiedad#ETL_RESTRINGIR_ID_PROVINCIAS_ESTADOS} a true en la BD.
+	 */
+	@Procedure(mode = Mode.SCHEMA)
+	public void restringirIdProvinciasEstados() {
+		crearRestricciónUnicidad("provinceStateId", "ProvinceState", "provinceStateId");
+		new Propiedades(db).setBool(Propiedad.ETL_RESTRINGIR_ID_PROVINCIAS_ESTADOS, true);
+	}
+
+	/**
+	 * Crea un índice compuesto sobre los campos TuristRatio.year y TuristRatio.month. No puede ser una restricción
+	 * de unicidad, ya que cada país o región tiene su propio nodo para cada año y mes.
+	 * Fija la propiedad {@link Propiedad#ETL_INDEXAR_RATIO_TURISTAS} a true en la BD.
+	 */
+	@Procedure(mode = Mode.SCHEMA)
+	public void indexarRatioTuristas() {
+		try (Transaction tx = db.beginTx()) {
+			tx.execute("CREATE INDEX turistRatioYearMonth IF NOT EXISTS FOR (n:TuristRatio) ON (n.year, n.month)");
+			tx.commit();
+			new Propiedades(db).setBool(Propiedad.ETL_INDEXAR_RATIO_TURISTAS, true);
+		}
+	}
+
+	/**
+	 * Crea un índice compuesto sobre los campos TuristExpense.year y TuristExpense.month. Por el mismo motivo que en
+	 * {@link #indexarRatioTuristas()}, no puede ser una restricción de unicidad.
+	 * Fija la propiedad {@link Propiedad#ETL_INDEXAR_GASTO_TURÍSTICO} a true en la BD.
+	 */
+	@Procedure(mode = Mode.SCHEMA)
+	public void indexarGastoTurístico() {
+		try (Transaction tx = db.beginTx()) {
+			tx.execute("CREATE INDEX turistExpenseYearMonth IF NOT EXISTS FOR (n:TuristExpense) ON (n.year, n.month)");
+			tx.commit();
+			new Propiedades(db).setBool(Propiedad.ETL_INDEXAR_GASTO_TURÍSTICO, true);
+		}
+	}
+
+	/**
+	 * Crea los índices usados por las consultas sobre los nodos Line (ver {@link Añadir#añadirAgregadosLíneas()}):
+	 * uno compuesto sobre el aeropuerto de origen y de destino, para las consultas de una línea concreta, y otro
+	 * sobre el país de destino, para las consultas que trabajan con todas las líneas que llegan a un país.
+	 * Fija la propiedad {@link Propiedad#ETL_INDEXAR_AGREGADOS_LÍNEAS} a true en la BD.
+	 */
+	@Procedure(mode = Mode.SCHEMA)
+	public void indexarAgregadosLíneas() {
+		try (Transaction tx = db.beginTx()) {
+			tx.execute("CREATE INDEX lineOriginDest IF NOT EXISTS FOR (n:Line) ON (n.origin, n.dest)");
+			tx.execute("CREATE INDEX lineDestCountry IF NOT EXISTS FOR (n:Line) ON (n.destCountry)");
+			tx.commit();
+			new Propiedades(db).setBool(Propiedad.ETL_INDEXAR_AGREGADOS_LÍNEAS, true);
+		}
+	}
+
+	/**
+	 * Comprueba cuáles de las consultas más frecuentes del programa se resolverían usando un índice y cuáles
+	 * tendrían que recorrer todos los nodos de una etiqueta. Las consultas no llegan a ejecutarse, solo se obtiene
+	 * su plan de ejecución.
+	 * @return Una fila por cada consulta comprobada
+	 */
+	@Procedure
+	public Stream<ResultadoVerificación> verificarEsquema() {
+		List<ResultadoVerificación> resultado = new ArrayList<>();
+		try (Transaction tx = db.beginTx()) {
+			for (String[] consulta : CONSULTAS_FRECUENTES) {
+				try (Result res = tx.execute("EXPLAIN " + consulta[1])) {
+					List<String> escaneos = new ArrayList<>();
+					buscarEscaneos(res.getExecutionPlanDescription(), escaneos);
+					resultado.add(new ResultadoVerificación(consulta[0], escaneos));
+				}
+			}
+		}
+		return resultado.stream();
+	}
+
+	/**
+	 * Crea una restricción de unicidad sobre el campo indicado. Si no es posible crearla porque ya existen nodos
+	 * con valores repetidos, crea un índice sobre el mismo campo.
+	 * @param nombre Nombre de la restricción o índice
+	 * @param etiqueta Etiqueta de los nodos sobre los que se crea
+	 * @param campo Campo sobre el que se crea
+	 */
+	private void crearRestricciónUnicidad(String nombre, String etiqueta, String campo) {
+		try (Transaction tx = db.beginTx()) {
+			tx.execute("CREATE CONSTRAINT " + nombre + " IF NOT EXISTS " +
+				"FOR (n:" + etiqueta + ") REQUIRE n." + campo + " IS UNIQUE");
+			tx.commit();
+		} catch (RuntimeException e) {
+			log.warn("No se ha podido crear la restricción de unicidad sobre " + etiqueta + "." + campo + ". Se " +
+				"creará un índice en su lugar.\n" + e);
+			try (Transaction tx = db.beginTx()) {
+				tx.execute("CREATE INDEX " + nombre + " IF NOT EXISTS FOR (n:" + etiqueta + ") ON (n." + campo + ")");
+				tx.commit();
+			}
+		}
+	}
+
+	/**
+	 * Recorre un plan de ejecución y añade a la lista indicada los operadores que recorren todos los nodos de una
+	 * etiqueta (o de la BD).
+	 * @param plan Plan a recorrer
+	 * @param escaneos Lista en la que se insertarán los operadores encontrados, junto a sus identificadores
+	 */
+	private void buscarEscaneos(ExecutionPlanDescription plan, List<String> escaneos) {
+		for (String operador : OPERADORES_ESCANEO) {
+			if (plan.getName().startsWith(operador)) {
+				escaneos.add(plan.getName() + " " + plan.getIdentifiers());
+			}
+		}
+		for (ExecutionPlanDescription hijo : plan.getChildren()) {
+			buscarEscaneos(hijo, escaneos);
+		}
+	}
+
+	/**
+	 * Fila devuelta por {@link #verificarEsquema()}
+	 */
+	public static class ResultadoVerificación {
+		// Campo o campos por los que filtra la consulta
+		public final String consulta;
+		// True si la consulta puede resolverse sin recorrer todos los nodos de una etiqueta
+		public final boolean usaÍndice;
+		// Operadores de escaneo presentes en el plan de la consulta
+		public final List<String> escaneos;
+
+		public ResultadoVerificación(String consulta, List<String> escaneos) {
+			this.consulta = consulta;
+			this.escaneos = escaneos;
+			usaÍndice = escaneos.isEmpty();
+		}
+	}
 }
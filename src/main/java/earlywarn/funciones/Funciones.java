@@ -5,12 +5,17 @@ import java.util.List;
 import earlywarn.definiciones.SentidoVuelo;
 import earlywarn.main.Consultas;
 import earlywarn.definiciones.Propiedad;
+import earlywarn.main.modelo.datoid.CachéLíneas;
 import earlywarn.main.modelo.datoid.Línea;
 import earlywarn.main.Propiedades;
+import earlywarn.main.Utils;
 import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Transaction;
 import org.neo4j.procedure.*;
 import java.time.LocalDate;
 import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Stream;
 
 /**
  * Contiene las funciones y procedimientos ejecutables desde Neo4J
@@ -18,6 +23,8 @@ import java.util.Map;
 public class Funciones {
 	@Context
 	public GraphDatabaseService db;
+	@Context
+	public Transaction tx;
 
 	// -- Consultas --
 
@@ -108,7 +115,7 @@ public class Funciones {
 	@Description("Devuelve los pasajeros que circulan por la línea indicada en el periodo indicado")
 	public Long getPasajerosLínea(@Name("idLínea") String idLínea, @Name("díaInicio") LocalDate díaInicio,
 								  @Name("díaFin") LocalDate díaFin) {
-		Línea línea = new Línea(idLínea, díaInicio, díaFin, db);
+		Línea línea = CachéLíneas.get(idLínea, díaInicio, díaFin, db);
 		return línea.getPasajeros();
 	}
 
@@ -116,7 +123,7 @@ public class Funciones {
 	@Description("Devuelve los ingresos turísticos totales de la línea indicada en el periodo indicado")
 	public Double getIngresosTurísticosLínea(@Name("idLínea") String idLínea, @Name("díaInicio") LocalDate díaInicio,
 										   @Name("díaFin") LocalDate díaFin) {
-		Línea línea = new Línea(idLínea, díaInicio, díaFin, db);
+		Línea línea = CachéLíneas.get(idLínea, díaInicio, díaFin, db);
 		return línea.getIngresosTurísticos();
 	}
 
@@ -124,7 +131,7 @@ public class Funciones {
 	@Description("Devuelve el número de vuelos que circulan por la línea indicada en el periodo indicado")
 	public Long getNumVuelosLínea(@Name("idLínea") String idLínea, @Name("díaInicio") LocalDate díaInicio,
 								  @Name("díaFin") LocalDate díaFin) {
-		Línea línea = new Línea(idLínea, díaInicio, díaFin, db);
+		Línea línea = CachéLíneas.get(idLínea, díaInicio, díaFin, db);
 		return línea.getNumVuelos();
 	}
 
@@ -132,7 +139,7 @@ public class Funciones {
 	@Description("Devuelve el riesgo importado total de la línea indicada en el periodo indicado")
 	public Double getRiesgoImportadoLínea(@Name("idLínea") String idLínea, @Name("díaInicio") LocalDate díaInicio,
 										@Name("díaFin") LocalDate díaFin) {
-		Línea línea = new Línea(idLínea, díaInicio, díaFin, db);
+		Línea línea = CachéLíneas.get(idLínea, díaInicio, díaFin, db);
 		return línea.getRiesgoImportado();
 	}
 
@@ -141,10 +148,48 @@ public class Funciones {
 	public Map<String, Long> getPasajerosPorAerolíneaLínea(@Name("idLínea") String idLínea,
 														   @Name("díaInicio") LocalDate díaInicio,
 														   @Name("díaFin") LocalDate díaFin) {
-		Línea línea = new Línea(idLínea, díaInicio, díaFin, db);
+		Línea línea = CachéLíneas.get(idLínea, díaInicio, díaFin, db);
 		return línea.getPasajerosPorAerolínea();
 	}
 
+	@Procedure
+	@Description("Devuelve los pasajeros, vuelos, ingresos turísticos, riesgo importado y pasajeros por aerolínea de " +
+		"cada una de las líneas indicadas en el periodo indicado, usando una única consulta. Las líneas sin vuelos " +
+		"en el periodo se devuelven con todos sus valores a 0.")
+	public Stream<EstadísticasLínea> estadísticasLíneas(@Name("idsLíneas") List<String> idsLíneas,
+														 @Name("díaInicio") LocalDate díaInicio,
+														 @Name("díaFin") LocalDate díaFin) {
+		Consultas consultas = new Consultas(db);
+		return consultas.getEstadísticasLíneas(tx, idsLíneas, "", díaInicio, díaFin).stream()
+			.map(EstadísticasLínea::new);
+	}
+
+	@Procedure
+	@Description("Devuelve los pasajeros, vuelos, ingresos turísticos, riesgo importado y pasajeros por aerolínea de " +
+		"todas las líneas que llegan al país indicado en el periodo indicado, usando una única consulta. Si el país " +
+		"se deja en blanco o es null, se devuelven todas las líneas.")
+	public Stream<EstadísticasLínea> estadísticasLíneasPaís(@Name("idPaís") String idPaís,
+															 @Name("díaInicio") LocalDate díaInicio,
+															 @Name("díaFin") LocalDate díaFin) {
+		Consultas consultas = new Consultas(db);
+		return consultas.getEstadísticasLíneas(tx, null, idPaís == null ? "" : idPaís, díaInicio, díaFin).stream()
+			.map(EstadísticasLínea::new);
+	}
+
+	@Procedure
+	@Description("Devuelve el número de líneas almacenadas en la caché de líneas y el número de consultas de líneas " +
+		"respondidas con y sin la caché")
+	public Stream<EstadoCachéLíneas> cachéLíneas() {
+		return Stream.of(new EstadoCachéLíneas(CachéLíneas.getNumLíneas(), CachéLíneas.getAciertos(),
+			CachéLíneas.getFallos()));
+	}
+
+	@Procedure
+	@Description("Descarta todas las líneas almacenadas en la caché de líneas")
+	public void invalidarCachéLíneas() {
+		CachéLíneas.invalidar();
+	}
+
 	// -- Propiedades --
 
 	@UserFunction
@@ -164,4 +209,59 @@ public class Funciones {
 	public void propSetBool(@Name("nombreProp") String nombreProp, @Name("valor") boolean valor) {
 		new Propiedades(db).setBool(Propiedad.valueOf(nombreProp), valor);
 	}
+
+	/**
+	 * Valores de una línea devueltos por los procedimientos que consultan varias líneas a la vez
+	 */
+	public static class EstadísticasLínea {
+		public final String línea;
+		public final long pasajeros;
+		public final long vuelos;
+		public final double ingresosTurísticos;
+		public final double riesgoImportado;
+		// Pasajeros de cada aerolínea, sin incluir aerolíneas desconocidas ni aerolíneas sin pasajeros
+		public final Map<String, Object> pasajerosPorAerolínea;
+
+		/**
+		 * Crea una instancia a partir de una fila del resultado de {@link Consultas#getEstadísticasLíneas}
+		 * @param fila Fila del resultado
+		 */
+		public EstadísticasLínea(Map<String, Object> fila) {
+			línea = (String) fila.get("línea");
+			pasajeros = ((Number) fila.get("pasajeros")).longValue();
+			vuelos = ((Number) fila.get("vuelos")).longValue();
+			ingresosTurísticos = Utils.resultadoADouble(fila.get("ingresos"));
+			riesgoImportado = Utils.resultadoADouble(fila.get("riesgo"));
+
+			Map<String, Long> aerolíneas = new TreeMap<>();
+			for (Object par : (List<?>) fila.get("aerolíneas")) {
+				List<?> valores = (List<?>) par;
+				String aerolínea = (String) valores.get(0);
+				if (aerolínea != null && !aerolínea.equals(Consultas.AEROLÍNEA_DESCONOCIDA)) {
+					aerolíneas.merge(aerolínea, ((Number) valores.get(1)).longValue(), Long::sum);
+				}
+			}
+			pasajerosPorAerolínea = new TreeMap<>();
+			for (Map.Entry<String, Long> entrada : aerolíneas.entrySet()) {
+				if (entrada.getValue() > 0) {
+					pasajerosPorAerolínea.put(entrada.getKey(), entrada.getValue());
+				}
+			}
+		}
+	}
+
+	/**
+	 * Estado de la caché de líneas
+	 */
+	public static class EstadoCachéLíneas {
+		public final long líneas;
+		public final long aciertos;
+		public final long fallos;
+
+		public EstadoCachéLíneas(long líneas, long aciertos, long fallos) {
+			this.líneas = líneas;
+			this.aciertos = aciertos;
+			this.fallos = fallos;
+		}
+	}
 }
@@ -1,7 +1,11 @@
 package earlywarn.main;
 
 import earlywarn.definiciones.*;
+import earlywarn.etl.Añadir;
 import earlywarn.etl.Modificar;
+import earlywarn.main.modelo.CuboLíneas;
+import earlywarn.main.modelo.datoid.Línea;
+import earlywarn.main.métricas.Métricas;
 import org.neo4j.graphdb.GraphDatabaseService;
 import org.neo4j.graphdb.Result;
 import org.neo4j.graphdb.Transaction;
@@ -9,12 +13,17 @@ import org.neo4j.graphdb.Transaction;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
 
 /**
- * Clase usada para realizar consultas sencillas a la base de datos
+ * Clase usada para realizar consultas sencillas a la base de datos.
+ * Las consultas que trabajan con los vuelos que llegan a un país usan los nodos Line si se ha ejecutado la operación
+ * ETL {@link Añadir#añadirAgregadosLíneas()}.
+ * Si se especifica un cubo de líneas, las consultas cuyo rango de fechas esté contenido en él se responden usando el
+ * cubo, sin acceder a la BD.
  */
 public class Consultas {
 	// Aerolínea que tienen asignada los vuelos de la BD para los que no se conoce quién opera el vuelo
@@ -25,6 +34,8 @@ public class Consultas {
 	 * Debe ser obtenida usando la anotación @Context en un procedimiento o función
 	 */
 	private final GraphDatabaseService db;
+	// Cubo con los datos de las líneas. Null si todas las consultas deben realizarse sobre la BD.
+	private final CuboLíneas cubo;
 
 	// Primer año del que se tienen datos de turismo. Null si aún no se ha consultado la BD para obtener el valor.
 	private Integer primerAñoDatosTurismo;
@@ -36,7 +47,12 @@ public class Consultas {
 	private Integer últimoAñoDatosGastoTurístico;
 
 	public Consultas(GraphDatabaseService db) {
+		this(db, null);
+	}
+
+	public Consultas(GraphDatabaseService db, CuboLíneas cubo) {
 		this.db = db;
+		this.cubo = cubo;
 		primerAñoDatosTurismo = null;
 		últimoAñoDatosTurismo = null;
 		primerAñoDatosGastoTurístico = null;
@@ -60,6 +76,7 @@ public class Consultas {
 
 		if (new Propiedades(db).getBool(Propiedad.ETL_RELACIONES_AOD)) {
 			try (Transaction tx = db.beginTx()) {
+				Métricas.contarConsultaBD();
 				try (Result res = tx.execute(
 					"MATCH (a:Airport)-[o:OPERATES_ON]->(:AirportOperationDay)" +
 					sentido.operadorAODVuelo("") + "(f:FLIGHT) " +
@@ -85,6 +102,7 @@ public class Consultas {
 	public int getPrimerAñoDatosTurismo() {
 		if (primerAñoDatosTurismo == null) {
 			try (Transaction tx = db.beginTx()) {
+				Métricas.contarConsultaBD();
 				try (Result res = tx.execute("MATCH (tr:TuristRatio) RETURN min(tr.year)")) {
 					Map<String, Object> row = res.next();
 					primerAñoDatosTurismo = Math.toIntExact((Long) row.get(res.columns().get(0)));
@@ -103,6 +121,7 @@ public class Consultas {
 	public int getÚltimoAñoDatosTurismo() {
 		if (últimoAñoDatosTurismo == null) {
 			try (Transaction tx = db.beginTx()) {
+				Métricas.contarConsultaBD();
 				try (Result res = tx.execute("MATCH (tr:TuristRatio) RETURN max(tr.year)")) {
 					Map<String, Object> row = res.next();
 					últimoAñoDatosTurismo = Math.toIntExact((Long) row.get(res.columns().get(0)));
@@ -121,6 +140,7 @@ public class Consultas {
 	public int getPrimerAñoDatosGastoTurístico() {
 		if (primerAñoDatosGastoTurístico == null) {
 			try (Transaction tx = db.beginTx()) {
+				Métricas.contarConsultaBD();
 				try (Result res = tx.execute("MATCH (te:TuristExpense) RETURN min(te.year)")) {
 					Map<String, Object> row = res.next();
 					primerAñoDatosGastoTurístico = Math.toIntExact((Long) row.get(res.columns().get(0)));
@@ -139,6 +159,7 @@ public class Consultas {
 	public int getÚltimoAñoDatosGastoTurístico() {
 		if (últimoAñoDatosGastoTurístico == null) {
 			try (Transaction tx = db.beginTx()) {
+				Métricas.contarConsultaBD();
 				try (Result res = tx.execute("MATCH (te:TuristExpense) RETURN max(te.year)")) {
 					Map<String, Object> row = res.next();
 					últimoAñoDatosGastoTurístico = Math.toIntExact((Long) row.get(res.columns().get(0)));
@@ -158,6 +179,9 @@ public class Consultas {
 	 * en el periodo especificado.
 	 */
 	public Double getRiesgoPorPaís(LocalDate díaInicio, LocalDate díaFin, String idPaís) {
+		if (usarCubo(díaInicio, díaFin)) {
+			return cubo.getRiesgoPorPaís(díaInicio, díaFin, idPaís);
+		}
 		String diaInicioStr = díaInicio.format(DateTimeFormatter.ofPattern("yyyy-MM-dd"));
 		String diaFinStr = díaFin.format(DateTimeFormatter.ofPattern("yyyy-MM-dd"));
 		Propiedades propiedades = new Propiedades(db);
@@ -166,13 +190,22 @@ public class Consultas {
 		propiedades.getBool(Propiedad.ETL_AEROPUERTO_PAÍS) &&
 		propiedades.getBool(Propiedad.ETL_CONVERTIR_FECHAS_VUELOS) &&
 		propiedades.getBool(Propiedad.ETL_BORRAR_AEROPUERTOS_SIN_IATA)) {
-			try (Transaction tx = db.beginTx()) {
-				try (Result res = tx.execute(
-					"MATCH (:Airport)-[]->(:AirportOperationDay)-[]->(f:FLIGHT)" +
+			String consulta;
+			if (propiedades.getBool(Propiedad.ETL_AGREGADOS_LÍNEAS)) {
+				consulta = "MATCH (l:Line) " +
+					"WHERE l.destCountry = \"" + idPaís + "\" " +
+					"AND date(\"" + diaInicioStr + "\") <= l.day <= date(\"" + diaFinStr + "\") " +
+					"RETURN sum(l.risk)";
+			} else {
+				consulta = "MATCH (:Airport)-[]->(:AirportOperationDay)-[]->(f:FLIGHT)" +
 					"-[]->(:AirportOperationDay)<-[]-(:Airport)-[]-(c:Country) " +
 					"WHERE c.countryId=\"" + idPaís + "\" " +
 					"AND date(\"" + diaInicioStr + "\") <= f.dateOfDeparture <= date(\"" + diaFinStr + "\") " +
-					"RETURN sum(f.flightIfinal)")) {
+					"RETURN sum(f.flightIfinal)";
+			}
+			try (Transaction tx = db.beginTx()) {
+				Métricas.contarConsultaBD();
+				try (Result res = tx.execute(consulta)) {
 					Map<String, Object> row = res.next();
 					return Utils.resultadoADouble(row.get(res.columns().get(0)));
 				}
@@ -194,6 +227,9 @@ public class Consultas {
 	 * @return Número total de pasajeros en el rango de fechas indicado.
 	 */
 	public int getPasajerosTotales(LocalDate díaInicio, LocalDate díaFin, String idPaís) {
+		if (usarCubo(díaInicio, díaFin)) {
+			return Math.toIntExact(cubo.getPasajerosTotales(díaInicio, díaFin, idPaís));
+		}
 		String díaInicioStr = díaInicio.format(DateTimeFormatter.ofPattern("yyyy-MM-dd"));
 		String díaFinStr = díaFin.format(DateTimeFormatter.ofPattern("yyyy-MM-dd"));
 		Propiedades propiedades = new Propiedades(db);
@@ -203,13 +239,24 @@ public class Consultas {
 		propiedades.getBool(Propiedad.ETL_BORRAR_AEROPUERTOS_SIN_IATA)) {
 			try (Transaction tx = db.beginTx()) {
 				if (idPaís.isEmpty()) {
+					Métricas.contarConsultaBD();
 					try (Result res = tx.execute(
 						"MATCH (f:FLIGHT) WHERE date(\"" + díaInicioStr + "\") <= f.dateOfDeparture <= " +
 						"date(\"" + díaFinStr + "\") RETURN sum(f.passengers)")) {
 						Map<String, Object> row = res.next();
 						return Math.toIntExact((Long) row.get(res.columns().get(0)));
 					}
+				} else if (propiedades.getBool(Propiedad.ETL_AGREGADOS_LÍNEAS)) {
+					Métricas.contarConsultaBD();
+					try (Result res = tx.execute(
+						"MATCH (l:Line) " +
+						"WHERE l.destCountry = \"" + idPaís + "\" AND date(\"" + díaInicioStr + "\") <= " +
+						"l.day <= date(\"" + díaFinStr + "\") RETURN sum(l.passengers)")) {
+						Map<String, Object> row = res.next();
+						return Math.toIntExact((Long) row.get(res.columns().get(0)));
+					}
 				} else {
+					Métricas.contarConsultaBD();
 					try (Result res = tx.execute(
 						"MATCH (:Airport)-[]->(:AirportOperationDay)-[]->(f:FLIGHT)" +
 						"-[]->(:AirportOperationDay)-[]-(:Airport)-[]-(c:Country) " +
@@ -242,6 +289,9 @@ public class Consultas {
 	 * @return Ingresos totales (en euros) entre todos los vuelos en el periodo indicado
 	 */
 	public double getIngresosTurísticosTotales(LocalDate díaInicio, LocalDate díaFin, String idPaís) {
+		if (usarCubo(díaInicio, díaFin)) {
+			return cubo.getIngresosTurísticosTotales(díaInicio, díaFin, idPaís);
+		}
 		String díaInicioStr = díaInicio.format(DateTimeFormatter.ofPattern("yyyy-MM-dd"));
 		String díaFinStr = díaFin.format(DateTimeFormatter.ofPattern("yyyy-MM-dd"));
 		Propiedades propiedades = new Propiedades(db);
@@ -251,13 +301,24 @@ public class Consultas {
 		propiedades.getBool(Propiedad.ETL_BORRAR_AEROPUERTOS_SIN_IATA)) {
 			try (Transaction tx = db.beginTx()) {
 				if (idPaís.isEmpty()) {
+					Métricas.contarConsultaBD();
 					try (Result res = tx.execute(
 						"MATCH (f:FLIGHT) WHERE date(\"" + díaInicioStr + "\") <= f.dateOfDeparture <= " +
 						"date(\"" + díaFinStr + "\") RETURN sum(f.incomeFromTurism)")) {
 						Map<String, Object> row = res.next();
 						return (double) row.get(res.columns().get(0));
 					}
+				} else if (propiedades.getBool(Propiedad.ETL_AGREGADOS_LÍNEAS)) {
+					Métricas.contarConsultaBD();
+					try (Result res = tx.execute(
+						"MATCH (l:Line) " +
+						"WHERE l.destCountry = \"" + idPaís + "\" AND date(\"" + díaInicioStr + "\") <= " +
+						"l.day <= date(\"" + díaFinStr + "\") RETURN sum(l.incomeFromTurism)")) {
+						Map<String, Object> row = res.next();
+						return Utils.resultadoADouble(row.get(res.columns().get(0)));
+					}
 				} else {
+					Métricas.contarConsultaBD();
 					try (Result res = tx.execute(
 						"MATCH (:Airport)-[]->(:AirportOperationDay)-[]->(f:FLIGHT)" +
 						"-[]->(:AirportOperationDay)-[]-(:Airport)-[]-(c:Country) " +
@@ -291,6 +352,7 @@ public class Consultas {
 		if (propiedades.getBool(Propiedad.ETL_CONECTIVIDAD) &&
 		propiedades.getBool(Propiedad.ETL_BORRAR_AEROPUERTOS_SIN_IATA)) {
 			try (Transaction tx = db.beginTx()) {
+				Métricas.contarConsultaBD();
 				try (Result res = tx.execute(
 					"MATCH (a:Airport) RETURN sum(a.connectivity)")) {
 					Map<String, Object> row = res.next();
@@ -324,6 +386,7 @@ public class Consultas {
 		&& propiedades.getBool(Propiedad.ETL_CONVERTIR_FECHAS_VUELOS) &&
 		propiedades.getBool(Propiedad.ETL_BORRAR_AEROPUERTOS_SIN_IATA)) {
 			try (Transaction tx = db.beginTx()) {
+				Métricas.contarConsultaBD();
 				try (Result res = tx.execute(
 					"MATCH (a:Airport)-[]-(:AirportOperationDay)-[]->(f:FLIGHT) " +
 					"WHERE date(\"" + díaInicioStr + "\") <= f.dateOfDeparture <= date(\"" + díaFinStr + "\") " +
@@ -357,6 +420,9 @@ public class Consultas {
 	 * en el rango de fechas indicado. No incluye aerolínas con 0 pasajeros.
 	 */
 	public TreeMap<String, Long> getPasajerosPorAerolínea(LocalDate díaInicio, LocalDate díaFin, String idPaís) {
+		if (usarCubo(díaInicio, díaFin)) {
+			return cubo.getPasajerosPorAerolínea(díaInicio, díaFin, idPaís);
+		}
 		String díaInicioStr = díaInicio.format(DateTimeFormatter.ofPattern("yyyy-MM-dd"));
 		String díaFinStr = díaFin.format(DateTimeFormatter.ofPattern("yyyy-MM-dd"));
 		Propiedades propiedades = new Propiedades(db);
@@ -369,6 +435,12 @@ public class Consultas {
 			if (idPaís.isEmpty()) {
 				consulta = "MATCH (f:FLIGHT) WHERE date(\"" + díaInicioStr + "\") <= f.dateOfDeparture <= " +
 					"date(\"" + díaFinStr + "\") RETURN distinct(f.operator), sum(f.passengers)";
+			} else if (propiedades.getBool(Propiedad.ETL_AGREGADOS_LÍNEAS)) {
+				consulta = "MATCH (l:Line) " +
+					"WHERE l.destCountry = \"" + idPaís + "\" AND date(\"" + díaInicioStr + "\") <= " +
+					"l.day <= date(\"" + díaFinStr + "\") " +
+					"UNWIND range(0, size(l.operators) - 1) AS i " +
+					"RETURN distinct(l.operators[i]), sum(l.operatorPassengers[i])";
 			} else {
 				consulta = "MATCH (:Airport)-[]->(:AirportOperationDay)-[]->(f:FLIGHT)" +
 					"-[]->(:AirportOperationDay)-[]-(:Airport)-[]-(c:Country) " +
@@ -378,6 +450,7 @@ public class Consultas {
 			}
 
 			try (Transaction tx = db.beginTx()) {
+				Métricas.contarConsultaBD();
 				try (Result res = tx.execute(consulta)) {
 					List<String> columnas = res.columns();
 					while (res.hasNext()) {
@@ -416,6 +489,9 @@ public class Consultas {
 	 * uno en el rango de fechas indicado. No incluye aeropuertos con 0 pasajeros.
 	 */
 	public TreeMap<String, Long> getPasajerosPorAeropuerto(LocalDate díaInicio, LocalDate díaFin, String idPaís) {
+		if (usarCubo(díaInicio, díaFin)) {
+			return cubo.getPasajerosPorAeropuerto(díaInicio, díaFin, idPaís);
+		}
 		String díaInicioStr = díaInicio.format(DateTimeFormatter.ofPattern("yyyy-MM-dd"));
 		String díaFinStr = díaFin.format(DateTimeFormatter.ofPattern("yyyy-MM-dd"));
 		Propiedades propiedades = new Propiedades(db);
@@ -430,6 +506,20 @@ public class Consultas {
 				consulta = "MATCH (f:FLIGHT)-[]-(:AirportOperationDay)-[]-(a:Airport) " +
 					"WHERE date(\"" + díaInicioStr + "\") <= f.dateOfDeparture <= " +
 					"date(\"" + díaFinStr + "\") RETURN distinct(a.iata), sum(f.passengers)";
+			} else if (propiedades.getBool(Propiedad.ETL_AGREGADOS_LÍNEAS)) {
+				// Mismo cálculo que en la consulta sobre vuelos, pero sumando los agregados de cada línea y día
+				consulta = "MATCH (l:Line) " +
+					"WHERE l.destCountry = \"" + idPaís + "\" AND l.originCountry IS NOT NULL " +
+					"AND date(\"" + díaInicioStr + "\") <= l.day <= date(\"" + díaFinStr + "\") " +
+					"CALL { " +
+						"WITH l " +
+						"RETURN l.dest AS iata, l.passengers AS p " +
+						"UNION " +
+						"WITH l " +
+						"WITH l WHERE l.originCountry = \"" + idPaís + "\" " +
+						"RETURN l.origin AS iata, l.passengers AS p " +
+					"} " +
+					"RETURN distinct(iata), sum(p)";
 			} else {
 				/*
 				 * Esta consulta cuenta primero los pasajeros del aeropuerto de destino (que es un aeropuerto del país
@@ -452,6 +542,7 @@ public class Consultas {
 			}
 
 			try (Transaction tx = db.beginTx()) {
+				Métricas.contarConsultaBD();
 				try (Result res = tx.execute(consulta)) {
 					List<String> columnas = res.columns();
 					while (res.hasNext()) {
@@ -491,6 +582,9 @@ public class Consultas {
 	 * origen, un guión y el código IATA del aeropuerto de destino)
 	 */
 	public List<String> getLíneas(LocalDate díaInicio, LocalDate díaFin, String idPaís) {
+		if (usarCubo(díaInicio, díaFin)) {
+			return cubo.getLíneas(díaInicio, díaFin, idPaís);
+		}
 		String díaInicioStr = díaInicio.format(DateTimeFormatter.ofPattern("yyyy-MM-dd"));
 		String díaFinStr = díaFin.format(DateTimeFormatter.ofPattern("yyyy-MM-dd"));
 		Propiedades propiedades = new Propiedades(db);
@@ -500,7 +594,13 @@ public class Consultas {
 		propiedades.getBool(Propiedad.ETL_CONVERTIR_FECHAS_VUELOS) &&
 		propiedades.getBool(Propiedad.ETL_BORRAR_AEROPUERTOS_SIN_IATA)) {
 			String consulta;
-			if (idPaís.isEmpty()) {
+			if (propiedades.getBool(Propiedad.ETL_AGREGADOS_LÍNEAS)) {
+				consulta = "MATCH (l:Line) " +
+					"WHERE l.originCountry IS NOT NULL AND l.destCountry IS NOT NULL " +
+					(idPaís.isEmpty() ? "" : "AND l.destCountry = \"" + idPaís + "\" ") +
+					"AND date(\"" + díaInicioStr + "\") <= l.day <= date(\"" + díaFinStr + "\") " +
+					"RETURN distinct([l.origin, l.dest])";
+			} else if (idPaís.isEmpty()) {
 				consulta = "MATCH (c1:Country)-[]-(a1:Airport)-[]-(aod1:AirportOperationDay)-[]->(f:FLIGHT)" +
 					"-[]->(aod2:AirportOperationDay)-[]-(a2:Airport)-[]-(c2:Country) " +
 					"WHERE date(\"" + díaInicioStr + "\") <= f.dateOfDeparture <= date(\"" + díaFinStr + "\") " +
@@ -514,6 +614,7 @@ public class Consultas {
 			}
 
 			try (Transaction tx = db.beginTx()) {
+				Métricas.contarConsultaBD();
 				try (Result res = tx.execute(consulta)) {
 					List<String> columnas = res.columns();
 					while (res.hasNext()) {
@@ -530,4 +631,232 @@ public class Consultas {
 
 		return ret;
 	}
+
+	/**
+	 * Obtiene los valores de todas las líneas que llegan a un país en un rango de fechas usando solo dos consultas,
+	 * en lugar de consultar cada línea por separado.
+	 * Requiere que se hayan ejecutado las mismas operaciones ETL que {@link Línea#getPasajeros()} y la operación ETL
+	 * que añade las relaciones faltantes entre aeropuerto y país.
+	 * @param díaInicio Primer día a tener en cuenta (inclusivo)
+	 * @param díaFin Último día a tener en cuenta (inclusivo)
+	 * @param idPaís ID del país de destino de las líneas, o una cadena vacía para obtener las de todos los países
+	 * @return Mapa que relaciona el ID de cada línea con al menos un vuelo en el rango con sus valores. Las líneas
+	 * devueltas no acceden a la BD.
+	 * @throws ETLOperationRequiredException Si no se ha ejecutado alguna de las operaciones ETL necesarias
+	 */
+	public Map<String, Línea> getValoresLíneas(LocalDate díaInicio, LocalDate díaFin, String idPaís) {
+		String díaInicioStr = díaInicio.format(DateTimeFormatter.ofPattern("yyyy-MM-dd"));
+		String díaFinStr = díaFin.format(DateTimeFormatter.ofPattern("yyyy-MM-dd"));
+		Propiedades propiedades = new Propiedades(db);
+
+		if (propiedades.getBool(Propiedad.ETL_AEROPUERTO_PAÍS) &&
+		propiedades.getBool(Propiedad.ETL_PASAJEROS) &&
+		propiedades.getBool(Propiedad.ETL_CONVERTIR_FECHAS_VUELOS) &&
+		propiedades.getBool(Propiedad.ETL_INGRESOS_VUELO)) {
+			String consultaValores;
+			String consultaAerolíneas;
+			if (propiedades.getBool(Propiedad.ETL_AGREGADOS_LÍNEAS)) {
+				String filtro = "MATCH (l:Line) " +
+					"WHERE l.originCountry IS NOT NULL AND l.destCountry IS NOT NULL " +
+					(idPaís.isEmpty() ? "" : "AND l.destCountry = \"" + idPaís + "\" ") +
+					"AND date(\"" + díaInicioStr + "\") <= l.day <= date(\"" + díaFinStr + "\") ";
+				consultaValores = filtro +
+					"RETURN l.origin AS origen, l.dest AS destino, sum(l.passengers) AS numPasajeros, " +
+					"sum(l.incomeFromTurism) AS ingresosTurismo, sum(l.flights) AS numVuelos, " +
+					"sum(l.risk) AS riesgoImportado";
+				consultaAerolíneas = filtro +
+					"UNWIND range(0, size(l.operators) - 1) AS i " +
+					"RETURN l.origin AS origen, l.dest AS destino, l.operators[i] AS aerolínea, " +
+					"sum(l.operatorPassengers[i]) AS pasajeros";
+			} else {
+				String filtro = "MATCH (c1:Country)-[]-(a1:Airport)-[]-(aod1:AirportOperationDay)-[]->(f:FLIGHT)" +
+					"-[]->(aod2:AirportOperationDay)-[]-(a2:Airport)-[]-(c2:Country) " +
+					"WHERE " + (idPaís.isEmpty() ? "" : "c2.countryId = \"" + idPaís + "\" AND ") +
+					"date(\"" + díaInicioStr + "\") <= f.dateOfDeparture <= date(\"" + díaFinStr + "\") ";
+				consultaValores = filtro +
+					"RETURN a1.iata AS origen, a2.iata AS destino, sum(f.passengers) AS numPasajeros, " +
+					"sum(f.incomeFromTurism) AS ingresosTurismo, count(f) AS numVuelos, " +
+					"sum(f.flightIfinal) AS riesgoImportado";
+				consultaAerolíneas = filtro +
+					"RETURN a1.iata AS origen, a2.iata AS destino, f.operator AS aerolínea, " +
+					"sum(f.passengers) AS pasajeros";
+			}
+
+			Map<String, Map<String, Long>> aerolíneasLíneas = new TreeMap<>();
+			Map<String, Línea> ret = new TreeMap<>();
+			try (Transaction tx = db.beginTx()) {
+				Métricas.contarConsultaBD();
+				try (Result res = tx.execute(consultaAerolíneas)) {
+					while (res.hasNext()) {
+						Map<String, Object> row = res.next();
+						String aerolínea = (String) row.get("aerolínea");
+						Long numPasajeros = (Long) row.get("pasajeros");
+						if (!aerolínea.equals(AEROLÍNEA_DESCONOCIDA) && numPasajeros > 0) {
+							aerolíneasLíneas.computeIfAbsent(row.get("origen") + "-" + row.get("destino"),
+								id -> new TreeMap<>()).put(aerolínea, numPasajeros);
+						}
+					}
+				}
+				Métricas.contarConsultaBD();
+				try (Result res = tx.execute(consultaValores)) {
+					while (res.hasNext()) {
+						Map<String, Object> row = res.next();
+						long numVuelos = (Long) row.get("numVuelos");
+						if (numVuelos > 0) {
+							String id = row.get("origen") + "-" + row.get("destino");
+							ret.put(id, new Línea(id, (Long) row.get("numPasajeros"),
+								Utils.resultadoADouble(row.get("ingresosTurismo")), numVuelos,
+								Utils.resultadoADouble(row.get("riesgoImportado")),
+								aerolíneasLíneas.getOrDefault(id, new TreeMap<>())));
+						}
+					}
+				}
+			}
+			return ret;
+		} else {
+			throw new ETLOperationRequiredException("No se ha ejecutado una operación ETL requerida para realizar " +
+				"este cálculo.");
+		}
+	}
+
+	/**
+	 * Ejecuta una única consulta que obtiene los valores de varias líneas a la vez en un rango de fechas. Las líneas
+	 * pueden indicarse mediante una lista de IDs o mediante el país al que llegan.
+	 * La consulta se ejecuta en la transacción indicada y su resultado se devuelve sin recorrer, de forma que pueda
+	 * procesarse de forma incremental. Cada fila contiene las columnas "línea", "pasajeros", "vuelos", "ingresos",
+	 * "riesgo" y "aerolíneas". Esta última es una lista de pares [aerolínea, pasajeros] que puede incluir
+	 * aerolíneas desconocidas o nulas.
+	 * @param tx Transacción en la que se ejecuta la consulta. Debe seguir abierta mientras se recorre el resultado.
+	 * @param líneas IDs de las líneas a consultar. Si es null, se consultan todas las líneas que llegan al país
+	 *               indicado. Las líneas sin vuelos en el rango se incluyen con todos sus valores a 0.
+	 * @param idPaís País al que llegan las líneas a consultar. Solo se usa si la lista de líneas es null. Si se deja
+	 *               en blanco, se consultan todas las líneas con vuelos en el rango.
+	 *               Si se indica un país, requiere que se haya ejecutado la operación ETL que asigna un país a cada
+	 *               aeropuerto.
+	 * @param díaInicio Primer día a tener en cuenta (inclusivo)
+	 * @param díaFin Último día a tener en cuenta (inclusivo)
+	 * @return Resultado de la consulta, con una fila por línea
+	 * @throws ETLOperationRequiredException Si no se ha ejecutado la operación ETL
+	 * {@link Añadir#calcularNúmeroPasajeros()}, la operación ETL {@link Modificar#convertirFechasVuelos()}
+	 * o la operación ETL {@link Añadir#añadirIngresosVuelo(Boolean, Boolean)}, o si se indica un país y no se ha
+	 * ejecutado la operación ETL que asigna un país a cada aeropuerto.
+	 */
+	public Result getEstadísticasLíneas(Transaction tx, List<String> líneas, String idPaís, LocalDate díaInicio,
+										 LocalDate díaFin) {
+		Propiedades propiedades = new Propiedades(db);
+		if (!propiedades.getBool(Propiedad.ETL_PASAJEROS) ||
+		!propiedades.getBool(Propiedad.ETL_CONVERTIR_FECHAS_VUELOS) ||
+		!propiedades.getBool(Propiedad.ETL_INGRESOS_VUELO)) {
+			throw new ETLOperationRequiredException("Esta operación requiere que se haya ejecutado la operación ETL " +
+				"que calcula el número de pasajeros de cada vuelo, la operación ETL que calcula los ingresos por " +
+				"turismo de cada vuelo y la operación ETL que convierte las fechas de vuelos a tipo date " +
+				"antes de ejecutarla.");
+		}
+
+		if (líneas == null && !idPaís.isEmpty() && !propiedades.getBool(Propiedad.ETL_AEROPUERTO_PAÍS)) {
+			throw new ETLOperationRequiredException("Esta operación requiere que se haya ejecutado la operación ETL " +
+				"que asigna un país a cada aeropuerto antes de ejecutarla.");
+		}
+
+		String consulta;
+		if (propiedades.getBool(Propiedad.ETL_AGREGADOS_LÍNEAS)) {
+			String filtro;
+			if (líneas == null) {
+				filtro =
+					"MATCH (l:Line) " +
+					"WHERE " + (idPaís.isEmpty() ? "" : "l.destCountry = $pais AND ") +
+					"$inicio <= l.day <= $fin " +
+					"WITH l.origin + \"-\" + l.dest AS línea, l ";
+			} else {
+				filtro =
+					"UNWIND $lineas AS línea " +
+					"WITH línea, split(línea, \"-\") AS aeropuertos " +
+					"OPTIONAL MATCH (l:Line) " +
+					"WHERE l.origin = aeropuertos[0] AND l.dest = aeropuertos[1] AND $inicio <= l.day <= $fin ";
+			}
+			// Los pares [aerolínea, pasajeros] de todos los días se suman después de recibirlos
+			consulta = filtro +
+				"WITH línea, sum(l.passengers) AS pasajeros, sum(l.flights) AS vuelos, " +
+				"sum(l.incomeFromTurism) AS ingresos, sum(l.risk) AS riesgo, collect(l) AS días " +
+				"RETURN línea, pasajeros, vuelos, ingresos, riesgo, " +
+				"reduce(pares = [], d IN días | pares + " +
+				"[i IN range(0, size(d.operators) - 1) | [d.operators[i], d.operatorPassengers[i]]]) AS aerolíneas";
+		} else {
+			String filtro;
+			if (líneas == null) {
+				if (idPaís.isEmpty()) {
+					filtro =
+						"MATCH (a1:Airport)-[]-(:AirportOperationDay)-[]->(f:FLIGHT)-[]->" +
+						"(:AirportOperationDay)-[]-(a2:Airport) " +
+						"WHERE $inicio <= f.dateOfDeparture <= $fin ";
+				} else {
+					filtro =
+						"MATCH (a1:Airport)-[]-(:AirportOperationDay)-[]->(f:FLIGHT)-[]->" +
+						"(:AirportOperationDay)-[]-(a2:Airport)-[]-(c2:Country) " +
+						"WHERE c2.countryId = $pais AND $inicio <= f.dateOfDeparture <= $fin ";
+				}
+				filtro += "WITH a1.iata + \"-\" + a2.iata AS línea, f ";
+			} else {
+				filtro =
+					"UNWIND $lineas AS línea " +
+					"WITH línea, split(línea, \"-\") AS aeropuertos " +
+					"OPTIONAL MATCH (a1:Airport)-[]-(:AirportOperationDay)-[]->(f:FLIGHT)-[]->" +
+					"(:AirportOperationDay)-[]-(a2:Airport) " +
+					"WHERE a1.iata = aeropuertos[0] AND a2.iata = aeropuertos[1] AND " +
+					"$inicio <= f.dateOfDeparture <= $fin ";
+			}
+			// Se agrupa primero por aerolínea y después por línea, de forma que se recorren los vuelos una sola vez
+			consulta = filtro +
+				"WITH línea, f.operator AS aerolínea, sum(f.passengers) AS pasajerosAerolínea, " +
+				"count(f) AS vuelosAerolínea, sum(f.incomeFromTurism) AS ingresosAerolínea, " +
+				"sum(f.flightIfinal) AS riesgoAerolínea " +
+				"RETURN línea, sum(pasajerosAerolínea) AS pasajeros, sum(vuelosAerolínea) AS vuelos, " +
+				"sum(ingresosAerolínea) AS ingresos, sum(riesgoAerolínea) AS riesgo, " +
+				"collect([aerolínea, pasajerosAerolínea]) AS aerolíneas";
+		}
+
+		Map<String, Object> parámetros = new HashMap<>();
+		parámetros.put("lineas", líneas);
+		parámetros.put("pais", idPaís);
+		parámetros.put("inicio", díaInicio);
+		parámetros.put("fin", díaFin);
+		Métricas.contarConsultaBD();
+		return tx.execute(consulta, parámetros);
+	}
+
+	/**
+	 * Obtiene el número de vuelos que salen de cada aeropuerto en un rango de fechas usando una sola consulta. Los
+	 * valores coinciden con los de {@link earlywarn.main.modelo.datoid.Aeropuerto#getNumVuelosSalida()}.
+	 * @param díaInicio Primer día a tener en cuenta (inclusivo)
+	 * @param díaFin Último día a tener en cuenta (inclusivo)
+	 * @return Mapa que relaciona el código IATA de cada aeropuerto con al menos un vuelo de salida en el rango con
+	 * su número de vuelos de salida
+	 */
+	public Map<String, Long> getVuelosSalidaAeropuertos(LocalDate díaInicio, LocalDate díaFin) {
+		String díaInicioStr = díaInicio.format(DateTimeFormatter.ofPattern("yyyy-MM-dd"));
+		String díaFinStr = díaFin.format(DateTimeFormatter.ofPattern("yyyy-MM-dd"));
+		Map<String, Long> ret = new TreeMap<>();
+		try (Transaction tx = db.beginTx()) {
+			Métricas.contarConsultaBD();
+			try (Result res = tx.execute(
+				"MATCH (a:Airport)-[]-(:AirportOperationDay)-[]->(f:FLIGHT) " +
+				"WHERE date(\"" + díaInicioStr + "\") <= f.dateOfDeparture <= date(\"" + díaFinStr + "\") " +
+				"RETURN a.iata AS aeropuerto, count(f) AS vuelos")) {
+				while (res.hasNext()) {
+					Map<String, Object> row = res.next();
+					ret.put((String) row.get("aeropuerto"), (Long) row.get("vuelos"));
+				}
+			}
+		}
+		return ret;
+	}
+
+	/**
+	 * @param díaInicio Primer día de una consulta
+	 * @param díaFin Último día de una consulta
+	 * @return True si hay un cubo de líneas disponible y el rango de fechas de la consulta está contenido en él
+	 */
+	private boolean usarCubo(LocalDate díaInicio, LocalDate díaFin) {
+		return cubo != null && cubo.contiene(díaInicio, díaFin);
+	}
 }
@@ -0,0 +1,155 @@
+package earlywarn.main;
+
+import earlywarn.definiciones.IPersistible;
+
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Generador de números pseudoaleatorios divisible, basado en el algoritmo SplitMix64 (el mismo que usa
+ * {@link java.util.SplittableRandom}).
+ * A partir de un generador se pueden obtener otros independientes con {@link #dividir()}, de forma determinista: si el
+ * generador original se crea con una semilla fija y se divide siempre en el mismo orden, todos los generadores
+ * obtenidos producirán siempre la misma secuencia. Esto permite que cada componente de la metaheurística (y cada hilo,
+ * si hay varios) tenga su propio generador sin compartir estado y que la ejecución completa sea reproducible.
+ * A diferencia de {@link java.util.SplittableRandom}, el estado del generador puede almacenarse en un checkpoint.
+ * Las instancias no son seguras en presencia de varios hilos: cada hilo debe usar su propio generador.
+ */
+public class GeneradorAleatorio implements IPersistible {
+	// Incremento usado por los generadores creados a partir de una semilla
+	private static final long GAMMA_DORADA = 0x9e3779b97f4a7c15L;
+	// Usado para obtener semillas diferentes cada vez que se crea un generador sin especificar una
+	private static final AtomicLong generadorSemillas =
+		new AtomicLong(mezclar64(System.currentTimeMillis()) ^ mezclar64(System.nanoTime()));
+
+	private long semilla;
+	// Incremento que se suma a la semilla en cada paso. Siempre es impar.
+	private long gamma;
+
+	/**
+	 * Crea un generador con una semilla aleatoria
+	 */
+	public GeneradorAleatorio() {
+		this(semillaAleatoria());
+	}
+
+	/**
+	 * Crea un generador a partir de una semilla. Dos generadores creados con la misma semilla producen la misma
+	 * secuencia de valores.
+	 * @param semilla Semilla del generador
+	 */
+	public GeneradorAleatorio(long semilla) {
+		this(semilla, GAMMA_DORADA);
+	}
+
+	private GeneradorAleatorio(long semilla, long gamma) {
+		this.semilla = semilla;
+		this.gamma = gamma;
+	}
+
+	/**
+	 * @return Una semilla diferente cada vez que se llama a este método
+	 */
+	public static long semillaAleatoria() {
+		return mezclar64(generadorSemillas.getAndAdd(2 * GAMMA_DORADA));
+	}
+
+	/**
+	 * Crea un nuevo generador independiente de este. La secuencia producida por el nuevo generador depende únicamente
+	 * del estado de este en el momento de la llamada.
+	 * @return Nuevo generador
+	 */
+	public GeneradorAleatorio dividir() {
+		return new GeneradorAleatorio(nextLong(), mezclarGamma(sigSemilla()));
+	}
+
+	public long nextLong() {
+		return mezclar64(sigSemilla());
+	}
+
+	public int nextInt() {
+		return mezclar32(sigSemilla());
+	}
+
+	/**
+	 * @param límite Límite superior (exclusivo). Debe ser positivo.
+	 * @return Valor entero uniformemente distribuido entre 0 y límite - 1
+	 * @throws IllegalArgumentException Si el límite no es positivo
+	 */
+	public int nextInt(int límite) {
+		if (límite <= 0) {
+			throw new IllegalArgumentException("El límite debe ser positivo");
+		}
+		int r = mezclar32(sigSemilla());
+		int m = límite - 1;
+		if ((límite & m) == 0) {
+			// El límite es una potencia de 2
+			r &= m;
+		} else {
+			// Se descartan los valores que producirían una distribución sesgada
+			for (int u = r >>> 1; u + m - (r = u % límite) < 0; u = mezclar32(sigSemilla()) >>> 1) {
+				// Repetir
+			}
+		}
+		return r;
+	}
+
+	/**
+	 * @return Valor uniformemente distribuido entre 0 (inclusivo) y 1 (exclusivo)
+	 */
+	public double nextDouble() {
+		return (nextLong() >>> 11) * 0x1.0p-53;
+	}
+
+	/**
+	 * @return Valor uniformemente distribuido entre 0 (inclusivo) y 1 (exclusivo)
+	 */
+	public float nextFloat() {
+		return (nextInt() >>> 8) * 0x1.0p-24f;
+	}
+
+	public boolean nextBoolean() {
+		return nextInt() < 0;
+	}
+
+	@Override
+	public void escribirEstado(ObjectOutput salida) throws IOException {
+		salida.writeLong(semilla);
+		salida.writeLong(gamma);
+	}
+
+	@Override
+	public void leerEstado(ObjectInput entrada) throws IOException {
+		semilla = entrada.readLong();
+		gamma = entrada.readLong();
+	}
+
+	private long sigSemilla() {
+		return semilla += gamma;
+	}
+
+	private static long mezclar64(long z) {
+		z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+		z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+		return z ^ (z >>> 31);
+	}
+
+	private static int mezclar32(long z) {
+		z = (z ^ (z >>> 33)) * 0x62a9d9ed799705f5L;
+		return (int) (((z ^ (z >>> 28)) * 0xcb24d0a5c88c35b3L) >>> 32);
+	}
+
+	/**
+	 * Obtiene el incremento de un nuevo generador. El valor devuelto siempre es impar y tiene suficientes
+	 * transiciones entre bits 0 y 1 como para producir una secuencia de buena calidad.
+	 */
+	private static long mezclarGamma(long z) {
+		z = (z ^ (z >>> 33)) * 0xff51afd7ed558ccdL;
+		z = (z ^ (z >>> 33)) * 0xc4ceb9fe1a85ec53L;
+		z = (z ^ (z >>> 33)) | 1L;
+		int n = Long.bitCount(z ^ (z >>> 1));
+		return (n < 24) ? z ^ 0xaaaaaaaaaaaaaaaaL : z;
+	}
+}
@@ -2,37 +2,89 @@ package earlywarn.main;
 
 import earlywarn.definiciones.ICálculoFitness;
 import earlywarn.definiciones.IDCriterio;
+import earlywarn.definiciones.IPersistible;
 import earlywarn.definiciones.IllegalOperationException;
 import earlywarn.definiciones.OperaciónLínea;
 import earlywarn.main.modelo.datoid.Línea;
 import earlywarn.main.modelo.criterio.Criterio;
+import earlywarn.main.métricas.Métricas;
 import earlywarn.main.modelo.datoid.RegistroDatoID;
 import earlywarn.mh.vnsrs.ConversorLíneas;
+import earlywarn.mh.vnsrs.GestorCheckpoints;
+import earlywarn.mh.vnsrs.Movimiento;
+import earlywarn.mh.vnsrs.config.ListaRestricciones;
+import earlywarn.mh.vnsrs.restricción.RestriccionesVinculadas;
 import org.neo4j.logging.Log;
 
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
 import java.util.*;
 
 /**
  * Permite abrir y cerrar líneas durante la ejecución del programa. Lleva un registro con los valores de todos los
  * criterios que dependen de las líneas abiertas y permite consultar su valor porcentual en cualquier momento.
  */
-public class GestorLíneas {
+public class GestorLíneas implements IPersistible {
+	/*
+	 * Semilla usada para generar las claves Zobrist de las líneas. Es fija para que el hash de una solución no dependa
+	 * de la ejecución y para no consumir valores del generador de la metaheurística.
+	 */
+	private static final long SEMILLA_ZOBRIST = 0x5a0b1e57L;
+
 	private final ConversorLíneas conversorLíneas;
 	// Lista de criterios almacenados, cada uno identificado por un valor de un enum
 	protected final Map<IDCriterio, Criterio> criterios;
 	private final Log log;
-	private final Random random;
+	private GeneradorAleatorio random;
 	private final RegistroDatoID<Línea> registroLíneas;
 
-	// Mapa que mapea el ID de cada línea con su estado actual (true = abierta, false = cerrada)
-	private final Map<String, Boolean> líneas;
-	// Array de booleanos que también almacena el estado de las líneas. Permite copiar una solución de forma rápida.
+	/*
+	 * Estado de cada línea según su ID numérico (true = abierta, false = cerrada). Permite copiar una solución de
+	 * forma rápida.
+	 */
 	private final boolean[] líneasBool;
+	/*
+	 * IDs numéricos de las líneas abiertas y de las cerradas, sin un orden concreto. Las primeras numAbiertas
+	 * posiciones de abiertas y las primeras (número de líneas - numAbiertas) posiciones de cerradas son válidas.
+	 * Permiten elegir líneas al azar en un estado concreto en tiempo constante.
+	 */
+	private final int[] abiertas;
+	private final int[] cerradas;
+	// Posición de cada línea (según su ID numérico) dentro de la lista de abiertas o de cerradas
+	private final int[] posiciónEnLista;
 	// Número de líneas actualmente abiertas
 	private int numAbiertas;
+	/*
+	 * Clave aleatoria de cada línea según su ID numérico y hash Zobrist de la solución actual, que es el XOR de las
+	 * claves de todas las líneas cerradas. Se actualiza en tiempo constante cada vez que cambia el estado de una
+	 * línea.
+	 */
+	private final long[] clavesZobrist;
+	private long hash;
+	/*
+	 * Datos de cada línea según su ID numérico. Se rellena al añadir el primer criterio, ya que los criterios
+	 * precalculan la contribución de cada línea.
+	 */
+	private final Línea[] datosLíneas;
+	// Lista de criterios y vista de solo lectura de la misma, para poder recorrerlos y devolverlos sin crear colecciones
+	private final List<Criterio> listaCriterios;
+	private final List<Criterio> vistaCriterios;
+	/*
+	 * Valor porcentual de cada criterio en la solución actual, según su posición en la lista de criterios, y si el
+	 * valor almacenado está actualizado. Cada criterio se marca como desactualizado cuando recalcula su valor, de
+	 * forma que el fitness, las restricciones y las estadísticas comparten un mismo cálculo por criterio.
+	 */
+	private double[] porcentajes;
+	private boolean[] porcentajesVálidos;
+	// Movimiento aplicado con aplicar() pendiente de confirmar o deshacer. Null si no hay ninguno.
+	private Movimiento movimientoEnCurso;
 
 	// Clase usada para calcular el fitness final. Puede ser null.
 	private ICálculoFitness cálculoFitness;
+	// Restricciones que deben cumplir las soluciones y su versión vinculada a los criterios del gestor. Pueden ser null.
+	private ListaRestricciones listaRestricciones;
+	private RestriccionesVinculadas restricciones;
 
 	/**
 	 * Crea una instancia del gestor. El método está protegido ya que se debe usar {@link GestorLíneasBuilder} para
@@ -47,17 +99,28 @@ public class GestorLíneas {
 						   Log log) {
 		this.log = log;
 		this.conversorLíneas = conversorLíneas;
-		random = new Random();
-		this.líneas = new TreeMap<>();
-		líneasBool = new boolean[líneas.size()];
+		random = new GeneradorAleatorio();
+		int numLíneas = líneas.size();
+		líneasBool = new boolean[numLíneas];
+		abiertas = new int[numLíneas];
+		cerradas = new int[numLíneas];
+		posiciónEnLista = new int[numLíneas];
+		datosLíneas = new Línea[numLíneas];
+		clavesZobrist = new long[numLíneas];
+		GeneradorAleatorio generadorClaves = new GeneradorAleatorio(SEMILLA_ZOBRIST);
 		criterios = new EnumMap<>(IDCriterio.class);
-		for (String idLínea : líneas) {
-			this.líneas.put(idLínea, true);
-		}
-		for (int i = 0; i < líneas.size(); i++) {
+		listaCriterios = new ArrayList<>();
+		vistaCriterios = Collections.unmodifiableList(listaCriterios);
+		porcentajes = new double[0];
+		porcentajesVálidos = new boolean[0];
+		for (int i = 0; i < numLíneas; i++) {
 			líneasBool[i] = true;
+			abiertas[i] = i;
+			posiciónEnLista[i] = i;
+			clavesZobrist[i] = generadorClaves.nextLong();
 		}
-		numAbiertas = this.líneas.size();
+		numAbiertas = numLíneas;
+		hash = 0;
 		this.registroLíneas = registroLíneas;
 	}
 
@@ -67,7 +130,34 @@ public class GestorLíneas {
 	 * @param criterio Criterio a añadir
 	 */
 	protected void _añadirCriterio(Criterio criterio) {
+		criterio.prepararContribuciones(getDatosLíneas());
 		criterios.put(criterio.id, criterio);
+		listaCriterios.clear();
+		listaCriterios.addAll(criterios.values());
+		porcentajes = new double[listaCriterios.size()];
+		porcentajesVálidos = new boolean[listaCriterios.size()];
+		if (listaRestricciones != null) {
+			restricciones = listaRestricciones.vincular(listaCriterios);
+		}
+	}
+
+	/**
+	 * Fija las restricciones que deben cumplir las soluciones y las vincula con los criterios del gestor. Usado por
+	 * {@link GestorLíneasBuilder}.
+	 * @param restricciones Restricciones a comprobar
+	 */
+	protected void _añadirRestricciones(ListaRestricciones restricciones) {
+		listaRestricciones = restricciones;
+		this.restricciones = restricciones.vincular(listaCriterios);
+	}
+
+	/**
+	 * Fija el generador de números aleatorios usado por el gestor. Usado por {@link GestorLíneasBuilder}. Si no se
+	 * fija, se usa uno con una semilla aleatoria.
+	 * @param random Generador a usar
+	 */
+	protected void _añadirGenerador(GeneradorAleatorio random) {
+		this.random = random;
 	}
 
 	/**
@@ -86,32 +176,185 @@ public class GestorLíneas {
 	 * @param operación Operación a realizar (apertura o cierre)
 	 */
 	public void abrirCerrarLíneas(List<String> líneas, OperaciónLínea operación) {
+		comprobarSinMovimiento();
 		for (String idLínea : líneas) {
-			cambiarEstadoLínea(idLínea, operación);
+			if (conversorLíneas.contiene(idLínea)) {
+				cambiarEstadoLínea(conversorLíneas.getIDNumérico(idLínea), operación, true);
+			} else {
+				log.warn("No se puede variar el estado de la línea " + idLínea + " porque no está en " +
+					"la lista de líneas");
+			}
+		}
+	}
+
+	/**
+	 * Aplica un movimiento de forma provisional, abriendo o cerrando todas las líneas que lo forman. Tras evaluar la
+	 * solución resultante, el movimiento debe confirmarse con {@link #confirmar()} o deshacerse con
+	 * {@link #deshacer()} antes de realizar cualquier otra modificación.
+	 * @param movimiento Movimiento a aplicar. No debe modificarse hasta que se confirme o se deshaga.
+	 * @throws IllegalOperationException Si ya hay un movimiento pendiente de confirmar o deshacer
+	 */
+	public void aplicar(Movimiento movimiento) {
+		comprobarSinMovimiento();
+		movimientoEnCurso = movimiento;
+		for (int i = 0; i < listaCriterios.size(); i++) {
+			listaCriterios.get(i).iniciarMovimiento();
+		}
+		for (int i = 0; i < movimiento.getNumLíneas(); i++) {
+			cambiarEstadoLínea(movimiento.getLínea(i), movimiento.operación, true);
+		}
+	}
+
+	/**
+	 * Acepta el movimiento aplicado con {@link #aplicar(Movimiento)}, que pasa a ser definitivo
+	 * @throws IllegalOperationException Si no hay ningún movimiento pendiente
+	 */
+	public void confirmar() {
+		comprobarConMovimiento();
+		for (int i = 0; i < listaCriterios.size(); i++) {
+			listaCriterios.get(i).confirmarMovimiento();
+		}
+		movimientoEnCurso = null;
+	}
+
+	/**
+	 * Deshace el movimiento aplicado con {@link #aplicar(Movimiento)}. Cada criterio restaura el valor que tenía
+	 * antes del movimiento sin volver a calcularlo, por lo que el coste no depende de lo costoso que sea recalcular
+	 * los criterios.
+	 * @throws IllegalOperationException Si no hay ningún movimiento pendiente
+	 */
+	public void deshacer() {
+		comprobarConMovimiento();
+		for (int i = 0; i < listaCriterios.size(); i++) {
+			listaCriterios.get(i).deshacerMovimiento();
+			porcentajesVálidos[i] = false;
 		}
+		OperaciónLínea operaciónInversa = movimientoEnCurso.operación.invertir();
+		for (int i = movimientoEnCurso.getNumLíneas() - 1; i >= 0; i--) {
+			cambiarEstadoLínea(movimientoEnCurso.getLínea(i), operaciónInversa, false);
+		}
+		movimientoEnCurso = null;
+	}
+
+	/**
+	 * Rellena un movimiento con líneas elegidas al azar, sin repetición, de entre todas las que se pueden variar con
+	 * la operación indicada (las abiertas si se van a cerrar y las cerradas si se van a abrir). No crea objetos
+	 * nuevos.
+	 * @param movimiento Movimiento a rellenar. Su contenido anterior se descarta.
+	 * @param operación Operación a realizar
+	 * @param cantidad Número de líneas a elegir. Si hay menos líneas disponibles, se eligen todas.
+	 */
+	public void elegirAlAzar(Movimiento movimiento, OperaciónLínea operación, int cantidad) {
+		movimiento.reiniciar(operación);
+		int[] lista = operación == OperaciónLínea.ABRIR ? cerradas : abiertas;
+		int disponibles = operación == OperaciónLínea.ABRIR ? getNumCerradas() : numAbiertas;
+		int numElegir = Math.min(cantidad, disponibles);
+		/*
+		 * Fisher-Yates parcial: cada línea elegida se mueve al final de la parte de la lista que aún no se ha
+		 * considerado. El orden de las listas no es relevante, así que no hace falta restaurarlo.
+		 */
+		for (int i = 0; i < numElegir; i++) {
+			int último = disponibles - 1 - i;
+			int elegida = random.nextInt(último + 1);
+			intercambiar(lista, elegida, último);
+			movimiento.añadir(lista[último]);
+		}
+	}
+
+	/**
+	 * Calcula el fitness que tendría la solución tras aplicar un movimiento, sin modificar el estado de las líneas ni
+	 * el de los criterios. Puede llamarse desde varios hilos a la vez siempre que ninguno modifique el gestor mientras
+	 * tanto.
+	 * @param movimiento Movimiento a evaluar
+	 * @return Valor de fitness (entre 0 y 1) que tendría la solución tras aplicar el movimiento
+	 * @throws IllegalOperationException Si no se ha especificado un método de cálculo de fitness al crear esta
+	 * instancia
+	 */
+	public double evaluar(Movimiento movimiento) {
+		return evaluar(movimiento, null);
+	}
+
+	/**
+	 * Igual que {@link #evaluar(Movimiento)}, pero además almacena el valor porcentual calculado para cada criterio,
+	 * de forma que pueda reutilizarse al comprobar las restricciones con
+	 * {@link #cumpleRestricciones(Movimiento, double[])}
+	 * @param movimiento Movimiento a evaluar
+	 * @param porcentajes Array de tamaño igual al número de criterios en el que se almacenará el valor porcentual de
+	 *                    cada criterio tras aplicar el movimiento, o NaN si no se ha calculado. Puede ser null.
+	 * @return Valor de fitness (entre 0 y 1) que tendría la solución tras aplicar el movimiento
+	 * @throws IllegalOperationException Si no se ha especificado un método de cálculo de fitness al crear esta
+	 * instancia
+	 */
+	public double evaluar(Movimiento movimiento, double[] porcentajes) {
+		if (cálculoFitness != null) {
+			return cálculoFitness.evaluarMovimiento(listaCriterios, movimiento, porcentajes);
+		} else {
+			throw new IllegalOperationException("No se puede calcular el fitness de la solución si no se ha " +
+				"especificado un método de cálculo");
+		}
+	}
+
+	/**
+	 * Comprueba si la solución actual cumple las restricciones fijadas al crear esta instancia
+	 * @return True si se cumplen todas las restricciones o si no se ha fijado ninguna
+	 */
+	public boolean cumpleRestricciones() {
+		return restricciones == null || restricciones.cumple(Movimiento.VACÍO, getPorcentajesActuales());
+	}
+
+	/**
+	 * Comprueba si la solución resultante de aplicar un movimiento cumpliría las restricciones fijadas al crear esta
+	 * instancia, sin modificar el estado de las líneas ni el de los criterios. Puede llamarse desde varios hilos a la
+	 * vez siempre que ninguno modifique el gestor mientras tanto.
+	 * @param movimiento Movimiento a evaluar
+	 * @param porcentajes Valores porcentuales de los criterios obtenidos con {@link #evaluar(Movimiento, double[])}
+	 *                    para el mismo movimiento, o null si no se conocen
+	 * @return True si se cumplirían todas las restricciones o si no se ha fijado ninguna
+	 */
+	public boolean cumpleRestricciones(Movimiento movimiento, double[] porcentajes) {
+		return restricciones == null || restricciones.cumple(movimiento, porcentajes);
+	}
+
+	/**
+	 * Calcula la violación total de las restricciones en la solución actual
+	 * @return Suma de la violación de todas las restricciones que no se cumplen, o 0 si se cumplen todas o si no se
+	 * ha fijado ninguna
+	 * @see RestriccionesVinculadas#violación(Movimiento, double[])
+	 */
+	public double getViolaciónRestricciones() {
+		return getViolaciónRestricciones(Movimiento.VACÍO, getPorcentajesActuales());
+	}
+
+	/**
+	 * Calcula la violación total de las restricciones que tendría la solución tras aplicar un movimiento, sin
+	 * modificar el estado de las líneas ni el de los criterios
+	 * @param movimiento Movimiento a evaluar
+	 * @param porcentajes Valores porcentuales de los criterios obtenidos con {@link #evaluar(Movimiento, double[])}
+	 *                    para el mismo movimiento, o null si no se conocen
+	 * @return Suma de la violación de todas las restricciones que no se cumplirían, o 0 si se cumplirían todas o si
+	 * no se ha fijado ninguna
+	 */
+	public double getViolaciónRestricciones(Movimiento movimiento, double[] porcentajes) {
+		return restricciones == null ? 0 : restricciones.violación(movimiento, porcentajes);
 	}
 
 	/**
 	 * Varia el estado de cada una de las líneas en el gestor con una probabilidad del 50%
 	 */
 	public void variarAlAzar() {
-		for (Map.Entry<String, Boolean> entrada : líneas.entrySet()) {
+		comprobarSinMovimiento();
+		for (int i = 0; i < líneasBool.length; i++) {
 			if (random.nextBoolean()) {
-				OperaciónLínea operación = entrada.getValue() ? OperaciónLínea.CERRAR : OperaciónLínea.ABRIR;
-				cambiarEstadoLínea(entrada.getKey(), operación);
+				cambiarEstadoLínea(i, líneasBool[i] ? OperaciónLínea.CERRAR : OperaciónLínea.ABRIR, true);
 			}
 		}
 	}
 
-	public List<String> getLíneas() {
-		return new ArrayList<>(líneas.keySet());
-	}
-
 	/**
 	 * @return Número de líneas totales
 	 */
 	public int getNumLíneas() {
-		return líneas.size();
+		return líneasBool.length;
 	}
 
 	/**
@@ -125,7 +368,7 @@ public class GestorLíneas {
 	 * @return Número de líneas actualmente cerradas
 	 */
 	public int getNumCerradas() {
-		return líneas.size() - numAbiertas;
+		return líneasBool.length - numAbiertas;
 	}
 
 	/**
@@ -136,41 +379,58 @@ public class GestorLíneas {
 	}
 
 	/**
-	 * Devuelve los identificadores de las líneas que ocupen cada una de las posiciones indicadas dentro del conjunto
-	 * de todas las líneas que se encuentren en el estado indicado.
-	 * Por ejemplo, si el estado especificado es "abierta" y las posiciones son 1, 3 y 12, se devolverán la primera
-	 * línea abierta, la tercera y la decimosegunda.
-	 * @param posiciones Lista con las posiciones de las líneas a devolver
-	 * @param getAbiertas Si es true, solo se considerarán las líneas abiertas. Si es false, las cerradas.
-	 * @return Lista con las líneas que ocupan las posiciones indicadas de entre todas las que tienen el estado
-	 * indicado.
-	 */
-	public List<String> getPorPosiciónYEstado(List<Integer> posiciones, boolean getAbiertas) {
-		List<String> ret = new ArrayList<>();
-
-		List<Integer> posicionesOrdenadas = new ArrayList<>(posiciones);
-		posicionesOrdenadas.sort(null);
-
-		Iterator<Map.Entry<String, Boolean>> itLíneas = líneas.entrySet().iterator();
-		// Lleva la cuenta de cuántas líneas hemos encontrado hasta ahora que estén en el estado que buscamos
-		int procesadas = 0;
-		for (Integer posActual : posicionesOrdenadas) {
-			boolean encontrada = false;
-			while (!encontrada) {
-				Map.Entry<String, Boolean> entradaActual = itLíneas.next();
-				if (entradaActual.getValue() == getAbiertas) {
-					// Esta es la línea nº <procesadas> que está en el estado que buscamos
-					if (procesadas == posActual) {
-						ret.add(entradaActual.getKey());
-						encontrada = true;
-					}
-					procesadas++;
-				}
-			}
+	 * Copia el estado de todas las líneas en el array indicado, sin crear uno nuevo
+	 * @param destino Array en el que se copiará el estado de cada línea según su ID numérico. Debe tener el mismo
+	 *                tamaño que el número de líneas.
+	 */
+	public void copiarLíneasBool(boolean[] destino) {
+		System.arraycopy(líneasBool, 0, destino, 0, líneasBool.length);
+	}
+
+	/**
+	 * Copia en el array indicado el estado que tendrían todas las líneas tras aplicar un movimiento, sin aplicarlo
+	 * @param destino Array en el que se copiará el estado de cada línea según su ID numérico. Debe tener el mismo
+	 *                tamaño que el número de líneas.
+	 * @param movimiento Movimiento a tener en cuenta
+	 */
+	public void copiarLíneasBool(boolean[] destino, Movimiento movimiento) {
+		copiarLíneasBool(destino);
+		boolean abrir = movimiento.operación == OperaciónLínea.ABRIR;
+		for (int i = 0; i < movimiento.getNumLíneas(); i++) {
+			destino[movimiento.getLínea(i)] = abrir;
+		}
+	}
+
+	/**
+	 * @return Hash Zobrist de la solución actual. Dos soluciones con las mismas líneas abiertas tienen siempre el
+	 * mismo hash, y es muy improbable que dos soluciones diferentes lo compartan.
+	 */
+	public long getHash() {
+		return hash;
+	}
+
+	/**
+	 * Calcula el hash Zobrist que tendría la solución tras aplicar un movimiento, sin aplicarlo
+	 * @param movimiento Movimiento a tener en cuenta. Todas sus líneas deben estar en el estado contrario al que
+	 *                   indica su operación.
+	 * @return Hash de la solución resultante de aplicar el movimiento
+	 */
+	public long getHash(Movimiento movimiento) {
+		long ret = hash;
+		for (int i = 0; i < movimiento.getNumLíneas(); i++) {
+			ret ^= clavesZobrist[movimiento.getLínea(i)];
 		}
 		return ret;
 	}
 
+	/**
+	 * @param idNumérico ID numérico de una línea
+	 * @return True si la línea está abierta, false si está cerrada
+	 */
+	public boolean isAbierta(int idNumérico) {
+		return líneasBool[idNumérico];
+	}
+
 	/**
 	 * Obtiene el valor porcentual del criterio indicado. Un valor de 1 indica que el criterio tiene el mejor valor
 	 * posible, un valor de 0 indica que el criterio tiene el peor valor posible.
@@ -181,7 +441,7 @@ public class GestorLíneas {
 	public double getPorcentajeCriterio(IDCriterio id) {
 		Criterio criterio = criterios.get(id);
 		if (criterio != null) {
-			return criterio.getPorcentaje();
+			return getPorcentajesActuales()[listaCriterios.indexOf(criterio)];
 		} else {
 			throw new IllegalArgumentException("El criterio especificado no está incluido en este gestor");
 		}
@@ -193,22 +453,25 @@ public class GestorLíneas {
 	 */
 	public Map<IDCriterio, Double> getPorcentajeCriterios() {
 		Map<IDCriterio, Double> ret = new EnumMap<>(IDCriterio.class);
-		for (Map.Entry<IDCriterio, Criterio> entrada : criterios.entrySet()) {
-			ret.put(entrada.getKey(), entrada.getValue().getPorcentaje());
+		double[] actuales = getPorcentajesActuales();
+		for (int i = 0; i < listaCriterios.size(); i++) {
+			ret.put(listaCriterios.get(i).id, actuales[i]);
 		}
 		return ret;
 	}
 
 	/**
 	 * Obtiene el valor de fitness actual dados los valores de todos los criterios. Requiere que se haya especificado
-	 * un método de cálculo de fitness al instanciar esta clase
+	 * un método de cálculo de fitness al instanciar esta clase. Solo se recalcula el valor de los criterios que han
+	 * cambiado desde la última llamada, por lo que puede llamarse varias veces sin coste apreciable aunque cambien
+	 * los pesos del método de cálculo.
 	 * @return Valor de fitness (entre 0 y 1) que representa la calidad de la solución actual
 	 * @throws IllegalOperationException Si no se ha especificado un método de cálculo de fitness al crear esta
 	 * instancia
 	 */
 	public double getFitness() {
 		if (cálculoFitness != null) {
-			return cálculoFitness.calcularFitness(criterios.values());
+			return cálculoFitness.calcularFitness(listaCriterios, getPorcentajesActuales());
 		} else {
 			throw new IllegalOperationException("No se puede calcular el fitness de la solución si no se ha " +
 				"especificado un método de cálculo");
@@ -216,39 +479,148 @@ public class GestorLíneas {
 	}
 
 	/**
-	 * @return Lista de criterios usados en el gestor
+	 * @return Lista de solo lectura con los criterios usados en el gestor. Siempre se devuelve la misma instancia.
 	 */
 	public List<Criterio> getCriterios() {
-		return new ArrayList<>(criterios.values());
+		return vistaCriterios;
+	}
+
+	/**
+	 * Escribe el estado de todas las líneas y el del generador de números aleatorios. Los valores de los criterios
+	 * no se escriben, ya que se pueden recalcular a partir del estado de las líneas.
+	 */
+	@Override
+	public void escribirEstado(ObjectOutput salida) throws IOException {
+		random.escribirEstado(salida);
+		GestorCheckpoints.escribirBooleanos(salida, líneasBool);
+	}
+
+	/**
+	 * Restaura el estado de todas las líneas. Solo se abren o cierran las líneas cuyo estado difiere del actual, y
+	 * los criterios se actualizan igual que si se hubiesen variado de forma normal.
+	 */
+	@Override
+	public void leerEstado(ObjectInput entrada) throws IOException {
+		random.leerEstado(entrada);
+		boolean[] estadoLíneas = GestorCheckpoints.leerBooleanos(entrada);
+		if (estadoLíneas.length != líneasBool.length) {
+			throw new IOException("El número de líneas del checkpoint (" + estadoLíneas.length + ") no coincide " +
+				"con el del gestor (" + líneasBool.length + ")");
+		}
+		for (int i = 0; i < estadoLíneas.length; i++) {
+			if (estadoLíneas[i] != líneasBool[i]) {
+				cambiarEstadoLínea(i, estadoLíneas[i] ? OperaciónLínea.ABRIR : OperaciónLínea.CERRAR, true);
+			}
+		}
 	}
 
 	/**
 	 * Modifica el estado de una de las líneas almacenadas en el gestor, salvo que la línea ya esté en el estado
 	 * deseado.
-	 * @param idLínea ID de la línea a modificar
+	 * @param idNumérico ID numérico de la línea a modificar
 	 * @param operación Operación a realizar sobre la línea
+	 * @param recalcular True si se deben recalcular los valores de los criterios. False si los criterios ya tienen
+	 *                   el valor correcto (al deshacer un movimiento).
 	 */
-	private void cambiarEstadoLínea(String idLínea, OperaciónLínea operación) {
+	private void cambiarEstadoLínea(int idNumérico, OperaciónLínea operación, boolean recalcular) {
 		boolean abrir = operación == OperaciónLínea.ABRIR;
-		Boolean abierta = líneas.get(idLínea);
-		if (abierta != null) {
-			if (abierta != abrir) {
-				líneas.put(idLínea, !abierta);
-				líneasBool[conversorLíneas.getIDNumérico(idLínea)] = abrir;
+		if (líneasBool[idNumérico] != abrir) {
+			líneasBool[idNumérico] = abrir;
+			hash ^= clavesZobrist[idNumérico];
+			if (recalcular) {
 				// Recalcular los valores de todos los criteros
-				for (Criterio criterio : criterios.values()) {
-					criterio.recalcular(registroLíneas.get(idLínea), abrir);
+				for (int i = 0; i < listaCriterios.size(); i++) {
+					Criterio criterio = listaCriterios.get(i);
+					long inicio = System.nanoTime();
+					criterio.recalcular(idNumérico, abrir);
+					Métricas.registrarRecalcular(criterio.id, System.nanoTime() - inicio);
+					porcentajesVálidos[i] = false;
 				}
+			}
 
-				if (operación == OperaciónLínea.ABRIR) {
-					numAbiertas++;
-				} else {
-					numAbiertas--;
-				}
+			// Mover la línea de la lista de cerradas a la de abiertas o viceversa
+			if (abrir) {
+				quitarDeLista(cerradas, getNumCerradas(), idNumérico);
+				abiertas[numAbiertas] = idNumérico;
+				posiciónEnLista[idNumérico] = numAbiertas;
+				numAbiertas++;
+			} else {
+				quitarDeLista(abiertas, numAbiertas, idNumérico);
+				numAbiertas--;
+				int numCerradas = getNumCerradas();
+				cerradas[numCerradas - 1] = idNumérico;
+				posiciónEnLista[idNumérico] = numCerradas - 1;
+			}
+		}
+	}
+
+	/**
+	 * Actualiza el valor porcentual de los criterios que han cambiado desde la última llamada
+	 * @return Valor porcentual actual de cada criterio, según su posición en la lista de criterios. No debe modificarse.
+	 */
+	private double[] getPorcentajesActuales() {
+		for (int i = 0; i < porcentajes.length; i++) {
+			if (!porcentajesVálidos[i]) {
+				porcentajes[i] = listaCriterios.get(i).getPorcentaje();
+				porcentajesVálidos[i] = true;
 			}
-		} else {
-			log.warn("No se puede variar el estado de la línea " + idLínea + " porque no está en " +
-				"la lista de líneas");
 		}
+		return porcentajes;
+	}
+
+	/**
+	 * @throws IllegalOperationException Si hay un movimiento pendiente de confirmar o deshacer
+	 */
+	private void comprobarSinMovimiento() {
+		if (movimientoEnCurso != null) {
+			throw new IllegalOperationException("No se puede modificar el estado de las líneas mientras haya un " +
+				"movimiento pendiente de confirmar o deshacer");
+		}
+	}
+
+	/**
+	 * @throws IllegalOperationException Si no hay ningún movimiento pendiente de confirmar o deshacer
+	 */
+	private void comprobarConMovimiento() {
+		if (movimientoEnCurso == null) {
+			throw new IllegalOperationException("No hay ningún movimiento pendiente de confirmar o deshacer");
+		}
+	}
+
+	/**
+	 * @return Datos de todas las líneas según su ID numérico. Se obtienen del registro la primera vez que se llama.
+	 */
+	private Línea[] getDatosLíneas() {
+		if (datosLíneas.length > 0 && datosLíneas[0] == null) {
+			for (int i = 0; i < datosLíneas.length; i++) {
+				datosLíneas[i] = registroLíneas.get(conversorLíneas.getIDLínea(i));
+			}
+		}
+		return datosLíneas;
+	}
+
+	/**
+	 * Elimina una línea de la lista de abiertas o de cerradas, sustituyéndola por el último elemento de la lista
+	 * @param lista Lista de la que eliminar la línea
+	 * @param tamaño Número de elementos válidos de la lista antes de eliminar la línea
+	 * @param idNumérico ID numérico de la línea a eliminar
+	 */
+	private void quitarDeLista(int[] lista, int tamaño, int idNumérico) {
+		int posición = posiciónEnLista[idNumérico];
+		int últimaLínea = lista[tamaño - 1];
+		lista[posición] = últimaLínea;
+		posiciónEnLista[últimaLínea] = posición;
+	}
+
+	/**
+	 * Intercambia dos elementos de la lista de abiertas o de cerradas, actualizando su posición
+	 */
+	private void intercambiar(int[] lista, int pos1, int pos2) {
+		int línea1 = lista[pos1];
+		int línea2 = lista[pos2];
+		lista[pos1] = línea2;
+		lista[pos2] = línea1;
+		posiciónEnLista[línea2] = pos1;
+		posiciónEnLista[línea1] = pos2;
 	}
 }
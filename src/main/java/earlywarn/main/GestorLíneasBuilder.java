@@ -44,6 +44,8 @@ public class GestorLíneasBuilder extends GestorLíneas {
 	 * Añade todos los criterios necesarios para calcular las restricciones definidas en la configuración a la lista
 	 * de criterios a tener en cuenta.
 	 * A estos criterios se les asignará un peso de 0 si no estaban ya en la lista de pesos.
+	 * Las restricciones se vinculan con los criterios del gestor, y pueden comprobarse con
+	 * {@link GestorLíneas#cumpleRestricciones()}.
 	 * @param config Configuración para la metaheurística de VNS-RS. Debe contener la lista de restricciones a
 	 * considerar, así como los pesos de los diferentes criterios ya inicializados.
 	 * @param fCriterios Factoría de criterios que permita crear nuevos criterios dado únicamente su id
@@ -69,6 +71,12 @@ public class GestorLíneasBuilder extends GestorLíneas {
 				}
 			}
 		}
+		_añadirRestricciones(config.restricciones);
+		return this;
+	}
+
+	public GestorLíneasBuilder añadirGenerador(GeneradorAleatorio random) {
+		_añadirGenerador(random);
 		return this;
 	}
 
@@ -1,6 +1,9 @@
 package earlywarn.main;
 
 import earlywarn.definiciones.Propiedad;
+import earlywarn.main.invalidación.BusInvalidaciones;
+import earlywarn.main.invalidación.Invalidación;
+import earlywarn.main.métricas.Métricas;
 import org.neo4j.graphdb.GraphDatabaseService;
 import org.neo4j.graphdb.Result;
 import org.neo4j.graphdb.Transaction;
@@ -28,6 +31,7 @@ public class Propiedades {
 	 */
 	public boolean inicializadas() {
 		try (Transaction tx = db.beginTx()) {
+			Métricas.contarConsultaBD();
 			try (Result res = tx.execute("MATCH (p:Properties) RETURN p")) {
 				return res.hasNext();
 			}
@@ -44,6 +48,7 @@ public class Propiedades {
 			return false;
 		} else {
 			try (Transaction tx = db.beginTx()) {
+				Métricas.contarConsultaBD();
 				try (Result res = tx.execute("MATCH (p:Properties) RETURN p." + propiedad.name())) {
 					Map<String, Object> row = res.next();
 
@@ -61,6 +66,8 @@ public class Propiedades {
 	/**
 	 * Fija el valor de una propiedad booleana. Si existe, se sobrescribirá el valor anterior. Si no, se añadirá
 	 * una nueva propiedad con el valor indicado.
+	 * Las propiedades se fijan al completar las operaciones ETL, que pueden transformar cualquier dato de la BD, por lo
+	 * que también se publica una invalidación de todos los datos almacenados en las cachés.
 	 * @param propiedad Propiedad a fijar
 	 * @param valor Nuevo valor de la propiedad
 	 */
@@ -71,5 +78,6 @@ public class Propiedades {
 				"SET p." + propiedad.name() + " = " + valor);
 			tx.commit();
 		}
+		BusInvalidaciones.publicar(Invalidación.total(db.databaseName()));
 	}
 }
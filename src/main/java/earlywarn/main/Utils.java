@@ -32,30 +32,30 @@ public class Utils {
 	}
 
 	/**
-	 * Calcula la media de una lista de valores decimales
-	 * @param valores Lista de valores
-	 * @return Media de la lista de valores
+	 * Calcula la media de un array de valores decimales
+	 * @param valores Array de valores
+	 * @return Media del array de valores
 	 */
-	public static double getMedia(List<Double> valores) {
+	public static double getMedia(double[] valores) {
 		double total = 0;
-		for (Double valor : valores) {
+		for (double valor : valores) {
 			total += valor;
 		}
-		return total / valores.size();
+		return total / valores.length;
 	}
 
 	/**
-	 * Calcula la desviación típica de una lista de valores decimales
-	 * @param valores Lista de valores
-	 * @return Desvuación típica de la lista de valores
+	 * Calcula la desviación típica de un array de valores decimales
+	 * @param valores Array de valores
+	 * @return Desvuación típica del array de valores
 	 */
-	public static double getStd(List<Double> valores) {
+	public static double getStd(double[] valores) {
 		double totalCuadrados = 0;
 		double media = getMedia(valores);
-		for (Double valor : valores) {
+		for (double valor : valores) {
 			totalCuadrados += Math.pow(valor - media, 2);
 		}
-		return Math.sqrt(totalCuadrados / valores.size());
+		return Math.sqrt(totalCuadrados / valores.length);
 	}
 
 	/**
@@ -80,18 +80,18 @@ public class Utils {
 	}
 
 	/**
-	 * Calcula la desviación (distancia) de cada elemento de la lista proporcionada con respecto al valor
+	 * Calcula la desviación (distancia) de cada elemento del array proporcionado con respecto al valor
 	 * indicado y luego calcula la media de esas desviaciones y la devuelve.
-	 * @param elementos Lista de elementos sobre los que calcular la desviación media
+	 * @param elementos Array de elementos sobre los que calcular la desviación media
 	 * @param valor Valor con el que comparar cada elemento
-	 * @return Desviación media de los diferentes elementos de la lista con respecto al valor indicado
+	 * @return Desviación media de los diferentes elementos del array con respecto al valor indicado
 	 */
-	public static double getDesviaciónMedia(List<Double> elementos, double valor) {
+	public static double getDesviaciónMedia(double[] elementos, double valor) {
 		double ret = 0;
-		for (Double elem : elementos) {
+		for (double elem : elementos) {
 			ret += Math.abs(elem - valor);
 		}
-		return ret / elementos.size();
+		return ret / elementos.length;
 	}
 
 	/**
@@ -148,39 +148,6 @@ public class Utils {
 		return LocalDate.of(Integer.parseInt(split[0]), Integer.parseInt(split[1]), Integer.parseInt(split[2]));
 	}
 
-	/**
-	 * Devuelve una cierta cantidad de números aleatorios entre 0 y el valor máximo especificado, sin repetición.
-	 * @param max Límite superior usado para generar los valores (exclusivo)
-	 * @param cantidad Número de números aleatorios a generar
-	 * @return Lista con (cantidad) números aleatorios entre 0 y (max) - 1, sin repetición. Si (cantidad) >= (max),
-	 * devuelve una lista con los números desde 0 hasta (max) - 1.
-	 */
-	public static List<Integer> múltiplesAleatorios(int max, int cantidad) {
-		Random random = new Random();
-		int maxActual = max;
-		Set<Integer> númerosElegidos = new TreeSet<>();
-
-		while (númerosElegidos.size() < cantidad && maxActual > 0) {
-			int valorRandom = random.nextInt(maxActual);
-			/*
-			 * Funcionamiento del algoritmo: Por cada número que ya haya salido elegido que sea menor o igual al random
-			 * generado, tenemos que incrementar dicho random en 1. Así tenemos en cuenta las posiciones de los números
-			 * que ya han salido.
-			 * La comparación se hace teniendo en cuenta los incrementos de iteraciones anteriores.
-			 */
-			for (Integer elegidoActual : númerosElegidos) {
-				if (elegidoActual <= valorRandom) {
-					valorRandom++;
-				} else {
-					break;
-				}
-			}
-			númerosElegidos.add(valorRandom);
-			maxActual--;
-		}
-		return new ArrayList<>(númerosElegidos);
-	}
-
 	/**
 	 * Devuelve una string que incluye todos los elementos de la lista especificada convertidos a string y separados
 	 * por comas. Opcionalmente se pueden incluir corchetes al inicio y al final de la lista.
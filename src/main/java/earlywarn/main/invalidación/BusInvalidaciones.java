@@ -0,0 +1,43 @@
+package earlywarn.main.invalidación;
+
+import earlywarn.definiciones.IReceptorInvalidaciones;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Reparte las invalidaciones producidas por las modificaciones de la BD entre todas las cachés interesadas en ellas.
+ * Las invalidaciones se publican desde {@link DetectorCambios} al confirmarse cada transacción que modifica datos
+ * relevantes, o directamente desde el código que realiza la modificación.
+ */
+public class BusInvalidaciones {
+	private static final List<IReceptorInvalidaciones> receptores = new CopyOnWriteArrayList<>();
+
+	private BusInvalidaciones() {}
+
+	/**
+	 * Registra un receptor, que recibirá todas las invalidaciones publicadas a partir de ahora
+	 * @param receptor Receptor a registrar
+	 */
+	public static void registrar(IReceptorInvalidaciones receptor) {
+		receptores.add(receptor);
+	}
+
+	/**
+	 * Deja de enviar invalidaciones a un receptor
+	 * @param receptor Receptor registrado previamente
+	 */
+	public static void eliminar(IReceptorInvalidaciones receptor) {
+		receptores.remove(receptor);
+	}
+
+	/**
+	 * Envía una invalidación a todos los receptores registrados
+	 * @param invalidación Invalidación a publicar
+	 */
+	public static void publicar(Invalidación invalidación) {
+		for (IReceptorInvalidaciones receptor : receptores) {
+			receptor.invalidar(invalidación);
+		}
+	}
+}
@@ -0,0 +1,349 @@
+package earlywarn.main.invalidación;
+
+import org.neo4j.graphdb.*;
+import org.neo4j.graphdb.event.LabelEntry;
+import org.neo4j.graphdb.event.PropertyEntry;
+import org.neo4j.graphdb.event.TransactionData;
+import org.neo4j.graphdb.event.TransactionEventListener;
+
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * Detecta las modificaciones de los nodos de la BD de los que dependen los valores de las líneas (vuelos, aeropuertos,
+ * días de operación, datos turísticos y líneas precalculadas) y publica en {@link BusInvalidaciones} las líneas y
+ * fechas afectadas por cada transacción confirmada.
+ * Los cambios se analizan antes de confirmar la transacción, ya que es el único momento en el que se pueden recorrer
+ * las relaciones de los nodos modificados. Las invalidaciones se publican tras la confirmación, por lo que una
+ * transacción que se deshace no descarta nada.
+ * Si una transacción modifica demasiados nodos, o no es posible determinar a qué líneas afecta un cambio, se publica
+ * una invalidación menos precisa (todas las líneas en el rango de fechas afectado, o todas las líneas en cualquier
+ * fecha).
+ */
+public class DetectorCambios implements TransactionEventListener<List<Invalidación>> {
+	// Número máximo de nodos modificados que se analizan de forma individual en cada transacción
+	private static final int MAX_NODOS_DETALLADOS = 10000;
+
+	private static final Label VUELO = Label.label("FLIGHT");
+	private static final Label AEROPUERTO = Label.label("Airport");
+	private static final Label DÍA_OPERACIÓN = Label.label("AirportOperationDay");
+	private static final Label RATIO_TURISTAS = Label.label("TuristRatio");
+	private static final Label GASTO_TURISTAS = Label.label("TuristExpense");
+	private static final Label LÍNEA = Label.label("Line");
+	private static final RelationshipType OPERA_EN = RelationshipType.withName("OPERATES_ON");
+
+	private final String baseDatos;
+
+	/**
+	 * @param baseDatos Nombre de la base de datos cuyas transacciones se analizan
+	 */
+	public DetectorCambios(String baseDatos) {
+		this.baseDatos = baseDatos;
+	}
+
+	@Override
+	public List<Invalidación> beforeCommit(TransactionData datos, Transaction tx, GraphDatabaseService db) {
+		if (!hayCambios(datos)) {
+			return null;
+		}
+
+		/*
+		 * Los nodos modificados se cuentan a medida que se recogen, de forma que en una transacción muy grande (como
+		 * las de las operaciones ETL) se deja de analizar en cuanto se supera el límite
+		 */
+		Map<Long, Node> modificados = new HashMap<>();
+		for (Node nodo : datos.createdNodes()) {
+			if (!añadirModificado(modificados, nodo)) {
+				return Collections.singletonList(Invalidación.total(baseDatos));
+			}
+		}
+		for (Node nodo : datos.deletedNodes()) {
+			if (!añadirModificado(modificados, nodo)) {
+				return Collections.singletonList(Invalidación.total(baseDatos));
+			}
+		}
+		for (PropertyEntry<Node> entrada : datos.assignedNodeProperties()) {
+			if (!añadirModificado(modificados, entrada.entity())) {
+				return Collections.singletonList(Invalidación.total(baseDatos));
+			}
+		}
+		for (PropertyEntry<Node> entrada : datos.removedNodeProperties()) {
+			if (!añadirModificado(modificados, entrada.entity())) {
+				return Collections.singletonList(Invalidación.total(baseDatos));
+			}
+		}
+		for (LabelEntry entrada : datos.assignedLabels()) {
+			if (!añadirModificado(modificados, entrada.node())) {
+				return Collections.singletonList(Invalidación.total(baseDatos));
+			}
+		}
+		for (LabelEntry entrada : datos.removedLabels()) {
+			if (!añadirModificado(modificados, entrada.node())) {
+				return Collections.singletonList(Invalidación.total(baseDatos));
+			}
+		}
+		for (Relationship relación : datos.createdRelationships()) {
+			if (!añadirModificado(modificados, relación.getStartNode()) ||
+				!añadirModificado(modificados, relación.getEndNode())) {
+				return Collections.singletonList(Invalidación.total(baseDatos));
+			}
+		}
+		for (Relationship relación : datos.deletedRelationships()) {
+			try {
+				if (!añadirModificado(modificados, relación.getStartNode()) ||
+					!añadirModificado(modificados, relación.getEndNode())) {
+					return Collections.singletonList(Invalidación.total(baseDatos));
+				}
+			} catch (NotFoundException e) {
+				// No se puede saber qué nodos unía la relación
+				return Collections.singletonList(Invalidación.total(baseDatos));
+			}
+		}
+
+		/*
+		 * Valores anteriores a la transacción de las propiedades modificadas o eliminadas (todas, en el caso de los
+		 * nodos borrados) y etiquetas eliminadas. Permiten invalidar también los datos a los que afectaba cada nodo
+		 * antes de modificarlo.
+		 */
+		Map<Long, Map<String, Object>> propiedadesAnteriores = new HashMap<>();
+		for (PropertyEntry<Node> entrada : datos.assignedNodeProperties()) {
+			if (entrada.previouslyCommittedValue() != null) {
+				propiedadesAnteriores.computeIfAbsent(entrada.entity().getId(), k -> new HashMap<>())
+					.put(entrada.key(), entrada.previouslyCommittedValue());
+			}
+		}
+		for (PropertyEntry<Node> entrada : datos.removedNodeProperties()) {
+			propiedadesAnteriores.computeIfAbsent(entrada.entity().getId(), k -> new HashMap<>())
+				.put(entrada.key(), entrada.previouslyCommittedValue());
+		}
+		Map<Long, Set<String>> etiquetasEliminadas = new HashMap<>();
+		for (LabelEntry entrada : datos.removedLabels()) {
+			etiquetasEliminadas.computeIfAbsent(entrada.node().getId(), k -> new HashSet<>())
+				.add(entrada.label().name());
+		}
+
+		Acumulador acumulador = new Acumulador();
+		for (Node nodo : modificados.values()) {
+			if (acumulador.todo) {
+				break;
+			}
+			boolean borrado = datos.isDeleted(nodo);
+			Set<String> etiquetas = new HashSet<>();
+			if (!borrado) {
+				for (Label etiqueta : nodo.getLabels()) {
+					etiquetas.add(etiqueta.name());
+				}
+				// Estado actual del nodo
+				analizar(nodo, true, etiquetas, clave -> nodo.getProperty(clave, null), acumulador);
+			}
+
+			Map<String, Object> anteriores = propiedadesAnteriores.getOrDefault(nodo.getId(), Collections.emptyMap());
+			Set<String> eliminadas = etiquetasEliminadas.getOrDefault(nodo.getId(), Collections.emptySet());
+			if (borrado || !anteriores.isEmpty() || !eliminadas.isEmpty()) {
+				// Estado anterior del nodo. Las propiedades que no se han modificado conservan su valor actual.
+				etiquetas.addAll(eliminadas);
+				analizar(nodo, !borrado, etiquetas, clave -> {
+					if (anteriores.containsKey(clave)) {
+						return anteriores.get(clave);
+					} else {
+						return borrado ? null : nodo.getProperty(clave, null);
+					}
+				}, acumulador);
+			}
+		}
+		return acumulador.toInvalidaciones();
+	}
+
+	@Override
+	public void afterCommit(TransactionData datos, List<Invalidación> invalidaciones, GraphDatabaseService db) {
+		if (invalidaciones != null) {
+			for (Invalidación invalidación : invalidaciones) {
+				BusInvalidaciones.publicar(invalidación);
+			}
+		}
+	}
+
+	@Override
+	public void afterRollback(TransactionData datos, List<Invalidación> invalidaciones, GraphDatabaseService db) {
+		// Nada que invalidar
+	}
+
+	/**
+	 * @return True si la transacción modifica algún nodo o relación
+	 */
+	private boolean hayCambios(TransactionData datos) {
+		return datos.createdNodes().iterator().hasNext() || datos.deletedNodes().iterator().hasNext() ||
+			datos.assignedNodeProperties().iterator().hasNext() || datos.removedNodeProperties().iterator().hasNext() ||
+			datos.assignedLabels().iterator().hasNext() || datos.removedLabels().iterator().hasNext() ||
+			datos.createdRelationships().iterator().hasNext() || datos.deletedRelationships().iterator().hasNext();
+	}
+
+	/**
+	 * Añade un nodo al conjunto de nodos modificados
+	 * @param modificados Nodos modificados, indexados por ID
+	 * @param nodo Nodo a añadir
+	 * @return False si se ha superado el número máximo de nodos que se analizan de forma individual
+	 */
+	private boolean añadirModificado(Map<Long, Node> modificados, Node nodo) {
+		modificados.put(nodo.getId(), nodo);
+		return modificados.size() <= MAX_NODOS_DETALLADOS;
+	}
+
+	/**
+	 * Determina las líneas y fechas afectadas por un estado (actual o anterior a la transacción) de un nodo
+	 * modificado y las añade al acumulador
+	 * @param nodo Nodo modificado
+	 * @param recorrible True si se pueden recorrer las relaciones del nodo (es decir, si no se ha borrado)
+	 * @param etiquetas Etiquetas del nodo en el estado analizado
+	 * @param propiedades Función que devuelve el valor de cada propiedad del nodo en el estado analizado, o null si
+	 *                    no la tiene
+	 * @param acumulador Acumulador en el que se almacenan los datos afectados
+	 */
+	private void analizar(Node nodo, boolean recorrible, Set<String> etiquetas, Function<String, Object> propiedades,
+						  Acumulador acumulador) {
+		if (etiquetas.contains(VUELO.name())) {
+			LocalDate día = toFecha(propiedades.apply("dateOfDeparture"));
+			String línea = recorrible ? getLíneaVuelo(nodo) : null;
+			acumulador.añadirLínea(línea, día);
+		} else if (etiquetas.contains(LÍNEA.name())) {
+			Object origen = propiedades.apply("origin");
+			Object destino = propiedades.apply("dest");
+			String línea = origen == null || destino == null ? null : origen + "-" + destino;
+			acumulador.añadirLínea(línea, toFecha(propiedades.apply("day")));
+		} else if (etiquetas.contains(AEROPUERTO.name())) {
+			acumulador.añadirAeropuerto(propiedades.apply("iata"));
+		} else if (etiquetas.contains(DÍA_OPERACIÓN.name())) {
+			acumulador.añadirAeropuerto(recorrible ? getAeropuertoDíaOperación(nodo) : null);
+		} else if (etiquetas.contains(RATIO_TURISTAS.name()) || etiquetas.contains(GASTO_TURISTAS.name())) {
+			Object año = propiedades.apply("year");
+			Object mes = propiedades.apply("month");
+			try {
+				LocalDate inicio = LocalDate.of(((Number) año).intValue(), ((Number) mes).intValue(), 1);
+				acumulador.añadirRango(inicio, inicio.plusMonths(1).minusDays(1));
+			} catch (ClassCastException | NullPointerException | DateTimeException e) {
+				acumulador.todo = true;
+			}
+		}
+	}
+
+	/**
+	 * Obtiene el ID de la línea a la que pertenece un vuelo a partir de los aeropuertos que une
+	 * @param vuelo Nodo del vuelo
+	 * @return ID de la línea, o null si no se puede determinar
+	 */
+	private String getLíneaVuelo(Node vuelo) {
+		String origen = null;
+		String destino = null;
+		for (Relationship relación : vuelo.getRelationships()) {
+			Node otro = relación.getOtherNode(vuelo);
+			if (otro.hasLabel(DÍA_OPERACIÓN)) {
+				if (relación.getEndNode().equals(vuelo)) {
+					origen = getAeropuertoDíaOperación(otro);
+				} else {
+					destino = getAeropuertoDíaOperación(otro);
+				}
+			}
+		}
+		return origen == null || destino == null ? null : origen + "-" + destino;
+	}
+
+	/**
+	 * @param díaOperación Nodo de un día de operación de un aeropuerto
+	 * @return Código IATA del aeropuerto, o null si no se puede determinar
+	 */
+	private String getAeropuertoDíaOperación(Node díaOperación) {
+		// Tras la ETL, la relación con el aeropuerto es de tipo OPERATES_ON. Antes, su tipo es la fecha del día.
+		Iterable<Relationship> relaciones = díaOperación.getRelationships(Direction.INCOMING, OPERA_EN);
+		for (int intento = 0; intento < 2; intento++) {
+			for (Relationship relación : relaciones) {
+				Node otro = relación.getOtherNode(díaOperación);
+				if (otro.hasLabel(AEROPUERTO)) {
+					Object iata = otro.getProperty("iata", null);
+					return iata == null ? null : iata.toString();
+				}
+			}
+			relaciones = díaOperación.getRelationships(Direction.INCOMING);
+		}
+		return null;
+	}
+
+	/**
+	 * @param valor Valor de una propiedad de fecha, que puede estar almacenada como fecha o como texto
+	 * @return Fecha indicada por el valor, o null si no es válida
+	 */
+	private LocalDate toFecha(Object valor) {
+		if (valor instanceof LocalDate) {
+			return (LocalDate) valor;
+		} else if (valor instanceof String) {
+			try {
+				return LocalDate.parse((String) valor);
+			} catch (DateTimeParseException e) {
+				return null;
+			}
+		} else {
+			return null;
+		}
+	}
+
+	/**
+	 * Almacena los datos afectados por una transacción mientras se analizan sus cambios
+	 */
+	private class Acumulador {
+		// Líneas afectadas en cada día
+		private final Map<LocalDate, Set<String>> líneasPorDía = new TreeMap<>();
+		// Aeropuertos afectados en cualquier fecha
+		private final Set<String> aeropuertos = new HashSet<>();
+		// Rango de fechas en el que están afectadas todas las líneas. Null si no hay ninguno.
+		private LocalDate inicioTodas = null;
+		private LocalDate finTodas = null;
+		// True si están afectadas todas las líneas en cualquier fecha
+		private boolean todo = false;
+
+		void añadirLínea(String línea, LocalDate día) {
+			if (día == null) {
+				todo = true;
+			} else if (línea == null) {
+				añadirRango(día, día);
+			} else {
+				líneasPorDía.computeIfAbsent(día, k -> new HashSet<>()).add(línea);
+			}
+		}
+
+		void añadirAeropuerto(Object iata) {
+			if (iata == null) {
+				todo = true;
+			} else {
+				aeropuertos.add(iata.toString());
+			}
+		}
+
+		void añadirRango(LocalDate inicio, LocalDate fin) {
+			if (inicioTodas == null || inicio.isBefore(inicioTodas)) {
+				inicioTodas = inicio;
+			}
+			if (finTodas == null || fin.isAfter(finTodas)) {
+				finTodas = fin;
+			}
+		}
+
+		List<Invalidación> toInvalidaciones() {
+			if (todo) {
+				return Collections.singletonList(Invalidación.total(baseDatos));
+			}
+			List<Invalidación> ret = new ArrayList<>();
+			for (Map.Entry<LocalDate, Set<String>> entrada : líneasPorDía.entrySet()) {
+				ret.add(new Invalidación(baseDatos, entrada.getValue(), null, entrada.getKey(), entrada.getKey()));
+			}
+			if (!aeropuertos.isEmpty()) {
+				ret.add(new Invalidación(baseDatos, Collections.emptySet(), aeropuertos, null, null));
+			}
+			if (inicioTodas != null) {
+				ret.add(new Invalidación(baseDatos, null, null, inicioTodas, finTodas));
+			}
+			return ret.isEmpty() ? null : ret;
+		}
+	}
+}
@@ -0,0 +1,54 @@
+package earlywarn.main.invalidación;
+
+import org.neo4j.configuration.GraphDatabaseSettings;
+import org.neo4j.dbms.api.DatabaseManagementService;
+import org.neo4j.kernel.extension.ExtensionFactory;
+import org.neo4j.kernel.extension.ExtensionType;
+import org.neo4j.kernel.extension.context.ExtensionContext;
+import org.neo4j.kernel.internal.GraphDatabaseAPI;
+import org.neo4j.kernel.lifecycle.Lifecycle;
+import org.neo4j.kernel.lifecycle.LifecycleAdapter;
+
+/**
+ * Extensión de Neo4J que registra un {@link DetectorCambios} en cada base de datos al iniciarla y lo elimina al
+ * detenerla. Neo4J la carga automáticamente al arrancar a partir del fichero de servicios del plugin.
+ */
+public class ExtensiónDetectorCambios extends ExtensionFactory<ExtensiónDetectorCambios.Dependencias> {
+	/**
+	 * Servicios de Neo4J que necesita la extensión
+	 */
+	public interface Dependencias {
+		DatabaseManagementService databaseManagementService();
+		GraphDatabaseAPI graphDatabaseAPI();
+	}
+
+	public ExtensiónDetectorCambios() {
+		super(ExtensionType.DATABASE, "earlywarnDetectorCambios");
+	}
+
+	@Override
+	public Lifecycle newInstance(ExtensionContext contexto, Dependencias dependencias) {
+		String baseDatos = dependencias.graphDatabaseAPI().databaseName();
+		DatabaseManagementService gestor = dependencias.databaseManagementService();
+		return new LifecycleAdapter() {
+			private DetectorCambios detector = null;
+
+			@Override
+			public void start() {
+				// La base de datos del sistema no contiene datos del problema
+				if (!baseDatos.equals(GraphDatabaseSettings.SYSTEM_DATABASE_NAME)) {
+					detector = new DetectorCambios(baseDatos);
+					gestor.registerTransactionEventListener(baseDatos, detector);
+				}
+			}
+
+			@Override
+			public void shutdown() {
+				if (detector != null) {
+					gestor.unregisterTransactionEventListener(baseDatos, detector);
+					detector = null;
+				}
+			}
+		};
+	}
+}
@@ -0,0 +1,103 @@
+package earlywarn.main.invalidación;
+
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.Set;
+
+/**
+ * Describe los datos afectados por una modificación de la BD: las líneas cuyos valores pueden haber cambiado y el
+ * rango de fechas en el que lo han hecho.
+ * Las líneas afectadas pueden indicarse directamente o a través de sus aeropuertos: una línea está afectada si está
+ * en la lista de líneas o si alguno de sus aeropuertos está en la lista de aeropuertos. Si no se conocen las líneas
+ * afectadas, se consideran afectadas todas.
+ */
+public class Invalidación {
+	// Base de datos modificada
+	public final String baseDatos;
+	// IDs de las líneas afectadas. Null si están afectadas todas.
+	private final Set<String> líneas;
+	// Códigos IATA de los aeropuertos afectados
+	private final Set<String> aeropuertos;
+	// Rango de fechas afectado (inclusivo). Null si no está limitado por ese extremo.
+	public final LocalDate díaInicio;
+	public final LocalDate díaFin;
+
+	/**
+	 * Crea una invalidación
+	 * @param baseDatos Base de datos modificada
+	 * @param líneas IDs de las líneas afectadas, o null si están afectadas todas
+	 * @param aeropuertos Códigos IATA de los aeropuertos cuyas líneas están afectadas. Puede ser null si no hay
+	 *                    ninguno.
+	 * @param díaInicio Primer día afectado, o null si no hay límite
+	 * @param díaFin Último día afectado, o null si no hay límite
+	 */
+	public Invalidación(String baseDatos, Set<String> líneas, Set<String> aeropuertos, LocalDate díaInicio,
+						LocalDate díaFin) {
+		this.baseDatos = baseDatos;
+		this.líneas = líneas == null ? null : Collections.unmodifiableSet(líneas);
+		this.aeropuertos = aeropuertos == null ? Collections.emptySet() : Collections.unmodifiableSet(aeropuertos);
+		this.díaInicio = díaInicio;
+		this.díaFin = díaFin;
+	}
+
+	/**
+	 * @param baseDatos Base de datos modificada
+	 * @return Invalidación que afecta a todas las líneas en cualquier fecha
+	 */
+	public static Invalidación total(String baseDatos) {
+		return new Invalidación(baseDatos, null, null, null, null);
+	}
+
+	/**
+	 * @return True si la invalidación afecta a todas las líneas
+	 */
+	public boolean afectaATodas() {
+		return líneas == null;
+	}
+
+	/**
+	 * @return IDs de las líneas afectadas indicadas directamente. Null si están afectadas todas.
+	 */
+	public Set<String> getLíneas() {
+		return líneas;
+	}
+
+	/**
+	 * @return Códigos IATA de los aeropuertos cuyas líneas están afectadas
+	 */
+	public Set<String> getAeropuertos() {
+		return aeropuertos;
+	}
+
+	/**
+	 * @param díaInicio Primer día de un rango
+	 * @param díaFin Último día de un rango
+	 * @return True si el rango de fechas afectado se solapa con el indicado
+	 */
+	public boolean afectaARango(LocalDate díaInicio, LocalDate díaFin) {
+		return (this.díaInicio == null || !this.díaInicio.isAfter(díaFin)) &&
+			(this.díaFin == null || !this.díaFin.isBefore(díaInicio));
+	}
+
+	/**
+	 * @param idLínea ID de una línea
+	 * @return True si la invalidación afecta a la línea indicada
+	 */
+	public boolean afectaALínea(String idLínea) {
+		if (líneas == null || líneas.contains(idLínea)) {
+			return true;
+		}
+		if (aeropuertos.isEmpty()) {
+			return false;
+		}
+		String[] split = idLínea.split("-");
+		return aeropuertos.contains(split[0]) || aeropuertos.contains(split[1]);
+	}
+
+	@Override
+	public String toString() {
+		return "Invalidación (" + baseDatos + ", " + (líneas == null ? "todas las líneas" : líneas.size() +
+			" líneas") + ", " + aeropuertos.size() + " aeropuertos, " + (díaInicio == null ? "-" : díaInicio) +
+			" - " + (díaFin == null ? "-" : díaFin) + ")";
+	}
+}
@@ -0,0 +1,617 @@
+package earlywarn.main.modelo;
+
+import earlywarn.definiciones.ETLOperationRequiredException;
+import earlywarn.definiciones.Propiedad;
+import earlywarn.etl.Añadir;
+import earlywarn.main.Consultas;
+import earlywarn.main.Propiedades;
+import earlywarn.main.Utils;
+import earlywarn.main.modelo.datoid.Línea;
+import earlywarn.main.métricas.Métricas;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Result;
+import org.neo4j.graphdb.Transaction;
+
+import java.io.*;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+
+/**
+ * Cubo de datos indexado por línea y día que almacena, para cada línea, los valores acumulados (sumas de prefijos)
+ * de pasajeros, vuelos, ingresos por turismo, riesgo importado y pasajeros por aerolínea desde el primer día del cubo.
+ * Una vez construido, el valor de cualquier línea en cualquier rango de fechas contenido en el cubo se obtiene en
+ * tiempo constante como la diferencia entre dos valores acumulados, sin acceder a la BD.
+ * El cubo se construye en memoria a partir de la BD y, opcionalmente, puede almacenarse en disco para no tener que
+ * volver a construirlo.
+ */
+public class CuboLíneas {
+	// Identificador del formato del fichero en el que se almacena el cubo
+	private static final int FORMATO_FICHERO = 0x45574332;
+
+	// Cubos cargados desde disco, junto a la fecha de modificación del fichero del que se leyeron
+	private static final Map<String, CuboLíneas> cubosCargados = new HashMap<>();
+	private static final Map<String, Long> fechasCubosCargados = new HashMap<>();
+
+	// Primer día cubierto por el cubo
+	public final LocalDate primerDía;
+	// Número de días cubiertos por el cubo
+	public final int numDías;
+
+	// IDs de las líneas almacenadas, ordenados. La posición de cada línea es su índice en el resto de arrays.
+	private final String[] líneas;
+	private final Map<String, Integer> índicesLíneas;
+	private final String[] orígenes;
+	private final String[] destinos;
+	// Relaciona el código IATA de cada aeropuerto con el ID de su país
+	private final Map<String, String> paísesAeropuertos;
+	// Relaciona el código IATA de cada aeropuerto con los índices de las líneas que salen de él
+	private final Map<String, int[]> líneasPorOrigen;
+
+	/*
+	 * Valores acumulados por línea. La posición [l][d + 1] contiene la suma de los valores de la línea l desde el
+	 * primer día del cubo hasta el día d (inclusivo). La posición [l][0] siempre vale 0.
+	 */
+	private final long[][] pasajeros;
+	private final long[][] vuelos;
+	private final double[][] ingresos;
+	private final double[][] riesgo;
+
+	// Códigos de todas las aerolíneas presentes en el cubo
+	private final String[] aerolíneas;
+	// [l][k]: Índice en el array de aerolíneas de la k-ésima aerolínea que opera la línea l
+	private final int[][] aerolíneasLínea;
+	// [l][k][d + 1]: Pasajeros acumulados de la k-ésima aerolínea que opera la línea l
+	private final long[][][] pasajerosAerolíneas;
+
+	private CuboLíneas(LocalDate primerDía, int numDías, String[] líneas, Map<String, String> paísesAeropuertos,
+					   long[][] pasajeros, long[][] vuelos, double[][] ingresos, double[][] riesgo, String[] aerolíneas,
+					   int[][] aerolíneasLínea, long[][][] pasajerosAerolíneas) {
+		this.primerDía = primerDía;
+		this.numDías = numDías;
+		this.líneas = líneas;
+		this.paísesAeropuertos = paísesAeropuertos;
+		this.pasajeros = pasajeros;
+		this.vuelos = vuelos;
+		this.ingresos = ingresos;
+		this.riesgo = riesgo;
+		this.aerolíneas = aerolíneas;
+		this.aerolíneasLínea = aerolíneasLínea;
+		this.pasajerosAerolíneas = pasajerosAerolíneas;
+
+		índicesLíneas = new TreeMap<>();
+		orígenes = new String[líneas.length];
+		destinos = new String[líneas.length];
+		Map<String, List<Integer>> líneasPorOrigenTemp = new TreeMap<>();
+		for (int i = 0; i < líneas.length; i++) {
+			String[] split = líneas[i].split("-");
+			orígenes[i] = split[0];
+			destinos[i] = split[1];
+			índicesLíneas.put(líneas[i], i);
+			líneasPorOrigenTemp.computeIfAbsent(orígenes[i], k -> new ArrayList<>()).add(i);
+		}
+		líneasPorOrigen = new TreeMap<>();
+		for (Map.Entry<String, List<Integer>> entrada : líneasPorOrigenTemp.entrySet()) {
+			líneasPorOrigen.put(entrada.getKey(), entrada.getValue().stream().mapToInt(Integer::intValue).toArray());
+		}
+	}
+
+	/**
+	 * Construye un cubo con los datos de todas las líneas en el rango de fechas indicado.
+	 * Si se ha ejecutado la operación ETL {@link Añadir#añadirAgregadosLíneas()}, los datos se leen de los nodos Line.
+	 * Si no, se obtienen a partir de los vuelos.
+	 * Requiere que se haya ejecutado la operación ETL que calcula el número de pasajeros por vuelo, la operación ETL
+	 * que calcula los ingresos por turismo de cada vuelo, la operación ETL que convierte las fechas de vuelos a
+	 * tipo date y la operación ETL que añade las relaciones faltantes entre aeropuerto y país.
+	 * @param primerDía Primer día que cubrirá el cubo
+	 * @param últimoDía Último día que cubrirá el cubo (inclusivo)
+	 * @param db Conexión a la BD
+	 * @return Cubo con los datos de todas las líneas en el rango de fechas indicado
+	 * @throws ETLOperationRequiredException Si no se ha ejecutado alguna de las operaciones ETL requeridas
+	 */
+	public static CuboLíneas construir(LocalDate primerDía, LocalDate últimoDía, GraphDatabaseService db) {
+		Propiedades propiedades = new Propiedades(db);
+		if (!(propiedades.getBool(Propiedad.ETL_PASAJEROS) && propiedades.getBool(Propiedad.ETL_INGRESOS_VUELO) &&
+		propiedades.getBool(Propiedad.ETL_CONVERTIR_FECHAS_VUELOS) &&
+		propiedades.getBool(Propiedad.ETL_AEROPUERTO_PAÍS))) {
+			throw new ETLOperationRequiredException("No se ha ejecutado una operación ETL requerida para construir " +
+				"el cubo de líneas.");
+		}
+
+		String primerDíaStr = primerDía.format(DateTimeFormatter.ofPattern("yyyy-MM-dd"));
+		String últimoDíaStr = últimoDía.format(DateTimeFormatter.ofPattern("yyyy-MM-dd"));
+		int numDías = (int) ChronoUnit.DAYS.between(primerDía, últimoDía) + 1;
+
+		String consulta;
+		if (propiedades.getBool(Propiedad.ETL_AGREGADOS_LÍNEAS)) {
+			consulta = "MATCH (l:Line) " +
+				"WHERE date(\"" + primerDíaStr + "\") <= l.day <= date(\"" + últimoDíaStr + "\") " +
+				"RETURN l.origin AS origen, l.dest AS destino, l.day AS día, l.passengers AS pasajeros, " +
+				"l.flights AS vuelos, l.incomeFromTurism AS ingresos, l.risk AS riesgo, l.operators AS aerolíneas, " +
+				"l.operatorPassengers AS pasajerosAerolíneas";
+		} else {
+			consulta = "MATCH (a1:Airport)-[]-(:AirportOperationDay)-[]->(f:FLIGHT)-[]->" +
+				"(:AirportOperationDay)-[]-(a2:Airport) " +
+				"WHERE date(\"" + primerDíaStr + "\") <= f.dateOfDeparture <= date(\"" + últimoDíaStr + "\") " +
+				"WITH a1.iata AS origen, a2.iata AS destino, f.dateOfDeparture AS día, " +
+				"coalesce(f.operator, \"" + Consultas.AEROLÍNEA_DESCONOCIDA + "\") AS aerolínea, " +
+				"sum(f.passengers) AS pasajeros, count(f) AS vuelos, sum(f.incomeFromTurism) AS ingresos, " +
+				"sum(f.flightIfinal) AS riesgo " +
+				"RETURN origen, destino, día, sum(pasajeros) AS pasajeros, sum(vuelos) AS vuelos, " +
+				"sum(ingresos) AS ingresos, sum(riesgo) AS riesgo, collect(aerolínea) AS aerolíneas, " +
+				"collect(pasajeros) AS pasajerosAerolíneas";
+		}
+
+		Map<String, String> paísesAeropuertos = new TreeMap<>();
+		// Valores diarios de cada línea, aún sin acumular
+		Map<String, DatosLíneaTemp> datosLíneas = new TreeMap<>();
+		try (Transaction tx = db.beginTx()) {
+			Métricas.contarConsultaBD();
+			try (Result res = tx.execute("MATCH (a:Airport)-[]-(c:Country) RETURN a.iata, c.countryId")) {
+				List<String> columnas = res.columns();
+				while (res.hasNext()) {
+					Map<String, Object> row = res.next();
+					paísesAeropuertos.putIfAbsent((String) row.get(columnas.get(0)), (String) row.get(columnas.get(1)));
+				}
+			}
+
+			Métricas.contarConsultaBD();
+			try (Result res = tx.execute(consulta)) {
+				while (res.hasNext()) {
+					Map<String, Object> row = res.next();
+					String id = row.get("origen") + "-" + row.get("destino");
+					int d = (int) ChronoUnit.DAYS.between(primerDía, (LocalDate) row.get("día")) + 1;
+					DatosLíneaTemp datos = datosLíneas.computeIfAbsent(id, k -> new DatosLíneaTemp(numDías));
+					datos.pasajeros[d] += (Long) row.get("pasajeros");
+					datos.vuelos[d] += (Long) row.get("vuelos");
+					datos.ingresos[d] += Utils.resultadoADouble(row.get("ingresos"));
+					datos.riesgo[d] += Utils.resultadoADouble(row.get("riesgo"));
+
+					@SuppressWarnings("unchecked")
+					List<String> aerolíneas = (List<String>) row.get("aerolíneas");
+					@SuppressWarnings("unchecked")
+					List<Long> pasajerosAerolíneas = (List<Long>) row.get("pasajerosAerolíneas");
+					for (int i = 0; i < aerolíneas.size(); i++) {
+						long[] pasajerosAerolínea =
+							datos.pasajerosAerolíneas.computeIfAbsent(aerolíneas.get(i), k -> new long[numDías + 1]);
+						pasajerosAerolínea[d] += pasajerosAerolíneas.get(i);
+					}
+				}
+			}
+		}
+
+		// Convertir los valores diarios en acumulados y pasarlos a los arrays definitivos
+		int numLíneas = datosLíneas.size();
+		String[] líneas = new String[numLíneas];
+		long[][] pasajeros = new long[numLíneas][];
+		long[][] vuelos = new long[numLíneas][];
+		double[][] ingresos = new double[numLíneas][];
+		double[][] riesgo = new double[numLíneas][];
+		int[][] aerolíneasLínea = new int[numLíneas][];
+		long[][][] pasajerosAerolíneas = new long[numLíneas][][];
+		Map<String, Integer> índicesAerolíneas = new TreeMap<>();
+
+		int l = 0;
+		for (Map.Entry<String, DatosLíneaTemp> entrada : datosLíneas.entrySet()) {
+			DatosLíneaTemp datos = entrada.getValue();
+			líneas[l] = entrada.getKey();
+			for (int d = 1; d <= numDías; d++) {
+				datos.pasajeros[d] += datos.pasajeros[d - 1];
+				datos.vuelos[d] += datos.vuelos[d - 1];
+				datos.ingresos[d] += datos.ingresos[d - 1];
+				datos.riesgo[d] += datos.riesgo[d - 1];
+			}
+			pasajeros[l] = datos.pasajeros;
+			vuelos[l] = datos.vuelos;
+			ingresos[l] = datos.ingresos;
+			riesgo[l] = datos.riesgo;
+
+			aerolíneasLínea[l] = new int[datos.pasajerosAerolíneas.size()];
+			pasajerosAerolíneas[l] = new long[datos.pasajerosAerolíneas.size()][];
+			int k = 0;
+			for (Map.Entry<String, long[]> entradaAerolínea : datos.pasajerosAerolíneas.entrySet()) {
+				long[] acumulados = entradaAerolínea.getValue();
+				for (int d = 1; d <= numDías; d++) {
+					acumulados[d] += acumulados[d - 1];
+				}
+				aerolíneasLínea[l][k] =
+					índicesAerolíneas.computeIfAbsent(entradaAerolínea.getKey(), a -> índicesAerolíneas.size());
+				pasajerosAerolíneas[l][k] = acumulados;
+				k++;
+			}
+			l++;
+		}
+
+		String[] aerolíneas = new String[índicesAerolíneas.size()];
+		for (Map.Entry<String, Integer> entrada : índicesAerolíneas.entrySet()) {
+			aerolíneas[entrada.getValue()] = entrada.getKey();
+		}
+
+		return new CuboLíneas(primerDía, numDías, líneas, paísesAeropuertos, pasajeros, vuelos, ingresos, riesgo,
+			aerolíneas, aerolíneasLínea, pasajerosAerolíneas);
+	}
+
+	/**
+	 * Obtiene el cubo almacenado en el fichero indicado. Los cubos leídos se mantienen en memoria, de forma que solo
+	 * se vuelve a leer el fichero si ha sido modificado desde la última vez que se leyó.
+	 * @param rutaFichero Ruta al fichero que contiene el cubo, relativa a la carpeta del DBMS
+	 * @return Cubo almacenado en el fichero
+	 * @throws UncheckedIOException Si se produce un error al leer el fichero
+	 */
+	public static synchronized CuboLíneas get(String rutaFichero) {
+		long fechaModificación = new File(rutaFichero).lastModified();
+		CuboLíneas cubo = cubosCargados.get(rutaFichero);
+		if (cubo == null || fechasCubosCargados.get(rutaFichero) != fechaModificación) {
+			cubo = cargar(rutaFichero);
+			cubosCargados.put(rutaFichero, cubo);
+			fechasCubosCargados.put(rutaFichero, fechaModificación);
+		}
+		return cubo;
+	}
+
+	/**
+	 * Lee un cubo almacenado en un fichero mediante {@link #guardar(String)}
+	 * @param rutaFichero Ruta al fichero que contiene el cubo, relativa a la carpeta del DBMS
+	 * @return Cubo almacenado en el fichero
+	 * @throws UncheckedIOException Si se produce un error al leer el fichero
+	 */
+	public static CuboLíneas cargar(String rutaFichero) {
+		try (DataInputStream entrada = new DataInputStream(new BufferedInputStream(new FileInputStream(rutaFichero)))) {
+			if (entrada.readInt() != FORMATO_FICHERO) {
+				throw new IOException("El fichero " + rutaFichero + " no contiene un cubo de líneas");
+			}
+			LocalDate primerDía = LocalDate.ofEpochDay(entrada.readLong());
+			int numDías = entrada.readInt();
+
+			int numAeropuertos = entrada.readInt();
+			Map<String, String> paísesAeropuertos = new TreeMap<>();
+			for (int i = 0; i < numAeropuertos; i++) {
+				paísesAeropuertos.put(entrada.readUTF(), entrada.readUTF());
+			}
+
+			String[] aerolíneas = new String[entrada.readInt()];
+			for (int i = 0; i < aerolíneas.length; i++) {
+				aerolíneas[i] = entrada.readUTF();
+			}
+
+			int numLíneas = entrada.readInt();
+			String[] líneas = new String[numLíneas];
+			long[][] pasajeros = new long[numLíneas][];
+			long[][] vuelos = new long[numLíneas][];
+			double[][] ingresos = new double[numLíneas][];
+			double[][] riesgo = new double[numLíneas][];
+			int[][] aerolíneasLínea = new int[numLíneas][];
+			long[][][] pasajerosAerolíneas = new long[numLíneas][][];
+			for (int l = 0; l < numLíneas; l++) {
+				líneas[l] = entrada.readUTF();
+				pasajeros[l] = leerLongs(entrada, numDías + 1);
+				vuelos[l] = leerLongs(entrada, numDías + 1);
+				ingresos[l] = leerDoubles(entrada, numDías + 1);
+				riesgo[l] = leerDoubles(entrada, numDías + 1);
+				int numAerolíneasLínea = entrada.readInt();
+				aerolíneasLínea[l] = leerInts(entrada, numAerolíneasLínea);
+				pasajerosAerolíneas[l] = new long[numAerolíneasLínea][];
+				for (int k = 0; k < numAerolíneasLínea; k++) {
+					pasajerosAerolíneas[l][k] = leerLongs(entrada, numDías + 1);
+				}
+			}
+
+			return new CuboLíneas(primerDía, numDías, líneas, paísesAeropuertos, pasajeros, vuelos, ingresos, riesgo,
+				aerolíneas, aerolíneasLínea, pasajerosAerolíneas);
+		} catch (IOException e) {
+			throw new UncheckedIOException("Error al leer el cubo de líneas del fichero " + rutaFichero, e);
+		}
+	}
+
+	/**
+	 * Almacena el cubo en un fichero binario
+	 * @param rutaFichero Ruta al fichero de salida, relativa a la carpeta del DBMS
+	 * @throws UncheckedIOException Si se produce un error al escribir el fichero
+	 */
+	public void guardar(String rutaFichero) {
+		try (DataOutputStream salida = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(rutaFichero)))) {
+			salida.writeInt(FORMATO_FICHERO);
+			salida.writeLong(primerDía.toEpochDay());
+			salida.writeInt(numDías);
+
+			salida.writeInt(paísesAeropuertos.size());
+			for (Map.Entry<String, String> entrada : paísesAeropuertos.entrySet()) {
+				salida.writeUTF(entrada.getKey());
+				salida.writeUTF(entrada.getValue());
+			}
+
+			salida.writeInt(aerolíneas.length);
+			for (String aerolínea : aerolíneas) {
+				salida.writeUTF(aerolínea);
+			}
+
+			salida.writeInt(líneas.length);
+			for (int l = 0; l < líneas.length; l++) {
+				salida.writeUTF(líneas[l]);
+				escribirLongs(salida, pasajeros[l]);
+				escribirLongs(salida, vuelos[l]);
+				escribirDoubles(salida, ingresos[l]);
+				escribirDoubles(salida, riesgo[l]);
+				salida.writeInt(aerolíneasLínea[l].length);
+				escribirInts(salida, aerolíneasLínea[l]);
+				for (long[] acumulados : pasajerosAerolíneas[l]) {
+					escribirLongs(salida, acumulados);
+				}
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException("Error al guardar el cubo de líneas en el fichero " + rutaFichero, e);
+		}
+	}
+
+	/**
+	 * @param díaInicio Primer día del rango
+	 * @param díaFin Último día del rango
+	 * @return True si el rango de fechas indicado está completamente contenido en el cubo
+	 */
+	public boolean contiene(LocalDate díaInicio, LocalDate díaFin) {
+		return !díaInicio.isBefore(primerDía) && índiceDía(díaFin) < numDías && !díaFin.isBefore(díaInicio);
+	}
+
+	/**
+	 * Crea una instancia de una línea con sus valores en el rango de fechas indicado ya calculados. La línea no
+	 * necesitará acceder a la BD. Si la línea no está en el cubo, todos sus valores serán 0.
+	 * @param id ID de la línea
+	 * @param díaInicio Primer día a tener en cuenta
+	 * @param díaFin Último día a tener en cuenta
+	 * @return Línea con los valores que tiene en el rango de fechas indicado
+	 * @throws IllegalArgumentException Si el rango de fechas no está contenido en el cubo
+	 */
+	public Línea getLínea(String id, LocalDate díaInicio, LocalDate díaFin) {
+		comprobarRango(díaInicio, díaFin);
+		Integer l = índicesLíneas.get(id);
+		if (l == null) {
+			return new Línea(id, 0, 0, 0, 0, new TreeMap<>());
+		} else {
+			int i = índiceDía(díaInicio);
+			int f = índiceDía(díaFin) + 1;
+			Map<String, Long> pasajerosPorAerolínea = new TreeMap<>();
+			for (int k = 0; k < aerolíneasLínea[l].length; k++) {
+				añadirPasajerosAerolínea(pasajerosPorAerolínea, aerolíneas[aerolíneasLínea[l][k]],
+					pasajerosAerolíneas[l][k][f] - pasajerosAerolíneas[l][k][i]);
+			}
+			return new Línea(id, pasajeros[l][f] - pasajeros[l][i], ingresos[l][f] - ingresos[l][i],
+				vuelos[l][f] - vuelos[l][i], riesgo[l][f] - riesgo[l][i], pasajerosPorAerolínea);
+		}
+	}
+
+	/**
+	 * Obtiene el número de vuelos que salen de un aeropuerto en un rango de fechas. Solo se tienen en cuenta los
+	 * vuelos que tienen un aeropuerto de destino registrado en la BD.
+	 * @param idAeropuerto Código IATA del aeropuerto
+	 * @param díaInicio Primer día a tener en cuenta
+	 * @param díaFin Último día a tener en cuenta
+	 * @return Número de vuelos que salen del aeropuerto en el rango de fechas indicado
+	 * @throws IllegalArgumentException Si el rango de fechas no está contenido en el cubo
+	 */
+	public long getVuelosSalida(String idAeropuerto, LocalDate díaInicio, LocalDate díaFin) {
+		comprobarRango(díaInicio, díaFin);
+		int i = índiceDía(díaInicio);
+		int f = índiceDía(díaFin) + 1;
+		long ret = 0;
+		for (int l : líneasPorOrigen.getOrDefault(idAeropuerto, new int[0])) {
+			ret += vuelos[l][f] - vuelos[l][i];
+		}
+		return ret;
+	}
+
+	/**
+	 * @param idAeropuerto Código IATA del aeropuerto
+	 * @return ID del país en el que se encuentra el aeropuerto, o null si el cubo no tiene este dato
+	 */
+	public String getPaísAeropuerto(String idAeropuerto) {
+		return paísesAeropuertos.get(idAeropuerto);
+	}
+
+	/**
+	 * Equivalente a {@link Consultas#getLíneas(LocalDate, LocalDate, String)}
+	 * @throws IllegalArgumentException Si el rango de fechas no está contenido en el cubo
+	 */
+	public List<String> getLíneas(LocalDate díaInicio, LocalDate díaFin, String idPaís) {
+		comprobarRango(díaInicio, díaFin);
+		int i = índiceDía(díaInicio);
+		int f = índiceDía(díaFin) + 1;
+		List<String> ret = new ArrayList<>();
+		for (int l = 0; l < líneas.length; l++) {
+			if (vuelos[l][f] - vuelos[l][i] > 0 && paísesAeropuertos.get(orígenes[l]) != null &&
+			paísesAeropuertos.get(destinos[l]) != null && llegaAPaís(l, idPaís)) {
+				ret.add(líneas[l]);
+			}
+		}
+		return ret;
+	}
+
+	/**
+	 * Equivalente a {@link Consultas#getRiesgoPorPaís(LocalDate, LocalDate, String)}
+	 * @throws IllegalArgumentException Si el rango de fechas no está contenido en el cubo
+	 */
+	public double getRiesgoPorPaís(LocalDate díaInicio, LocalDate díaFin, String idPaís) {
+		comprobarRango(díaInicio, díaFin);
+		int i = índiceDía(díaInicio);
+		int f = índiceDía(díaFin) + 1;
+		double ret = 0;
+		for (int l = 0; l < líneas.length; l++) {
+			if (llegaAPaís(l, idPaís)) {
+				ret += riesgo[l][f] - riesgo[l][i];
+			}
+		}
+		return ret;
+	}
+
+	/**
+	 * Equivalente a {@link Consultas#getPasajerosTotales(LocalDate, LocalDate, String)}
+	 * @throws IllegalArgumentException Si el rango de fechas no está contenido en el cubo
+	 */
+	public long getPasajerosTotales(LocalDate díaInicio, LocalDate díaFin, String idPaís) {
+		comprobarRango(díaInicio, díaFin);
+		int i = índiceDía(díaInicio);
+		int f = índiceDía(díaFin) + 1;
+		long ret = 0;
+		for (int l = 0; l < líneas.length; l++) {
+			if (llegaAPaís(l, idPaís)) {
+				ret += pasajeros[l][f] - pasajeros[l][i];
+			}
+		}
+		return ret;
+	}
+
+	/**
+	 * Equivalente a {@link Consultas#getIngresosTurísticosTotales(LocalDate, LocalDate, String)}
+	 * @throws IllegalArgumentException Si el rango de fechas no está contenido en el cubo
+	 */
+	public double getIngresosTurísticosTotales(LocalDate díaInicio, LocalDate díaFin, String idPaís) {
+		comprobarRango(díaInicio, díaFin);
+		int i = índiceDía(díaInicio);
+		int f = índiceDía(díaFin) + 1;
+		double ret = 0;
+		for (int l = 0; l < líneas.length; l++) {
+			if (llegaAPaís(l, idPaís)) {
+				ret += ingresos[l][f] - ingresos[l][i];
+			}
+		}
+		return ret;
+	}
+
+	/**
+	 * Equivalente a {@link Consultas#getPasajerosPorAerolínea(LocalDate, LocalDate, String)}
+	 * @throws IllegalArgumentException Si el rango de fechas no está contenido en el cubo
+	 */
+	public TreeMap<String, Long> getPasajerosPorAerolínea(LocalDate díaInicio, LocalDate díaFin, String idPaís) {
+		comprobarRango(díaInicio, díaFin);
+		int i = índiceDía(díaInicio);
+		int f = índiceDía(díaFin) + 1;
+		TreeMap<String, Long> ret = new TreeMap<>();
+		for (int l = 0; l < líneas.length; l++) {
+			if (llegaAPaís(l, idPaís)) {
+				for (int k = 0; k < aerolíneasLínea[l].length; k++) {
+					añadirPasajerosAerolínea(ret, aerolíneas[aerolíneasLínea[l][k]],
+						pasajerosAerolíneas[l][k][f] - pasajerosAerolíneas[l][k][i]);
+				}
+			}
+		}
+		return ret;
+	}
+
+	/**
+	 * Equivalente a {@link Consultas#getPasajerosPorAeropuerto(LocalDate, LocalDate, String)}
+	 * @throws IllegalArgumentException Si el rango de fechas no está contenido en el cubo
+	 */
+	public TreeMap<String, Long> getPasajerosPorAeropuerto(LocalDate díaInicio, LocalDate díaFin, String idPaís) {
+		comprobarRango(díaInicio, díaFin);
+		int i = índiceDía(díaInicio);
+		int f = índiceDía(díaFin) + 1;
+		TreeMap<String, Long> ret = new TreeMap<>();
+		for (int l = 0; l < líneas.length; l++) {
+			long pasajerosLínea = pasajeros[l][f] - pasajeros[l][i];
+			if (pasajerosLínea > 0) {
+				if (idPaís.isEmpty()) {
+					ret.merge(orígenes[l], pasajerosLínea, Long::sum);
+					ret.merge(destinos[l], pasajerosLínea, Long::sum);
+				} else if (llegaAPaís(l, idPaís) && paísesAeropuertos.get(orígenes[l]) != null) {
+					ret.merge(destinos[l], pasajerosLínea, Long::sum);
+					if (idPaís.equals(paísesAeropuertos.get(orígenes[l]))) {
+						ret.merge(orígenes[l], pasajerosLínea, Long::sum);
+					}
+				}
+			}
+		}
+		return ret;
+	}
+
+	/**
+	 * @param l Índice de una línea
+	 * @param idPaís ID de un país, o una cadena vacía
+	 * @return True si el destino de la línea se encuentra en el país indicado o si el país está vacío
+	 */
+	private boolean llegaAPaís(int l, String idPaís) {
+		return idPaís.isEmpty() || idPaís.equals(paísesAeropuertos.get(destinos[l]));
+	}
+
+	private int índiceDía(LocalDate día) {
+		return (int) ChronoUnit.DAYS.between(primerDía, día);
+	}
+
+	private void comprobarRango(LocalDate díaInicio, LocalDate díaFin) {
+		if (!contiene(díaInicio, díaFin)) {
+			throw new IllegalArgumentException("El rango de fechas " + díaInicio + " - " + díaFin + " no está " +
+				"contenido en el cubo de líneas (" + primerDía + " - " + primerDía.plusDays(numDías - 1) + ")");
+		}
+	}
+
+	/*
+	 * Añade los pasajeros indicados a una aerolínea en un mapa de pasajeros por aerolínea. Igual que en las
+	 * consultas a la BD, se ignoran las aerolíneas desconocidas y las que no tienen pasajeros.
+	 */
+	private static void añadirPasajerosAerolínea(Map<String, Long> mapa, String aerolínea, long pasajeros) {
+		if (!aerolínea.equals(Consultas.AEROLÍNEA_DESCONOCIDA) && pasajeros > 0) {
+			mapa.merge(aerolínea, pasajeros, Long::sum);
+		}
+	}
+
+	private static int[] leerInts(DataInputStream entrada, int cantidad) throws IOException {
+		int[] ret = new int[cantidad];
+		for (int i = 0; i < cantidad; i++) {
+			ret[i] = entrada.readInt();
+		}
+		return ret;
+	}
+
+	private static long[] leerLongs(DataInputStream entrada, int cantidad) throws IOException {
+		long[] ret = new long[cantidad];
+		for (int i = 0; i < cantidad; i++) {
+			ret[i] = entrada.readLong();
+		}
+		return ret;
+	}
+
+	private static double[] leerDoubles(DataInputStream entrada, int cantidad) throws IOException {
+		double[] ret = new double[cantidad];
+		for (int i = 0; i < cantidad; i++) {
+			ret[i] = entrada.readDouble();
+		}
+		return ret;
+	}
+
+	private static void escribirInts(DataOutputStream salida, int[] valores) throws IOException {
+		for (int valor : valores) {
+			salida.writeInt(valor);
+		}
+	}
+
+	private static void escribirLongs(DataOutputStream salida, long[] valores) throws IOException {
+		for (long valor : valores) {
+			salida.writeLong(valor);
+		}
+	}
+
+	private static void escribirDoubles(DataOutputStream salida, double[] valores) throws IOException {
+		for (double valor : valores) {
+			salida.writeDouble(valor);
+		}
+	}
+
+	/**
+	 * Valores diarios de una línea, usados durante la construcción del cubo. Cada array tiene una posición más que
+	 * el número de días del cubo, para poder convertirlo después en un array de valores acumulados.
+	 */
+	private static class DatosLíneaTemp {
+		final long[] pasajeros;
+		final long[] vuelos;
+		final double[] ingresos;
+		final double[] riesgo;
+		final Map<String, long[]> pasajerosAerolíneas;
+
+		DatosLíneaTemp(int numDías) {
+			pasajeros = new long[numDías + 1];
+			vuelos = new long[numDías + 1];
+			ingresos = new double[numDías + 1];
+			riesgo = new double[numDías + 1];
+			pasajerosAerolíneas = new TreeMap<>();
+		}
+	}
+}
@@ -3,8 +3,10 @@ package earlywarn.main.modelo;
 import earlywarn.definiciones.ICálculoFitness;
 import earlywarn.definiciones.IDCriterio;
 import earlywarn.main.modelo.criterio.Criterio;
+import earlywarn.mh.vnsrs.Movimiento;
 
-import java.util.Collection;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -12,18 +14,46 @@ import java.util.Map;
  */
 public class FitnessPorPesos implements ICálculoFitness {
 	private final Map<IDCriterio, Float> pesos;
+	/*
+	 * Peso de cada criterio según el ordinal de su ID, para no tener que consultar el mapa al calcular el fitness.
+	 * NaN si el criterio no tenía un peso asignado la última vez que se consultó.
+	 */
+	private final double[] vectorPesos;
 
 	public FitnessPorPesos(Map<IDCriterio, Float> pesos) {
 		this.pesos = pesos;
+		vectorPesos = new double[IDCriterio.values().length];
+		Arrays.fill(vectorPesos, Double.NaN);
+		for (Map.Entry<IDCriterio, Float> entrada : pesos.entrySet()) {
+			vectorPesos[entrada.getKey().ordinal()] = entrada.getValue();
+		}
+	}
+
+	@Override
+	public double calcularFitness(List<Criterio> criterios, double[] porcentajes) {
+		double total = 0;
+		for (int i = 0; i < criterios.size(); i++) {
+			double peso = getPeso(criterios.get(i).id);
+			if (peso != 0) {
+				total += peso * porcentajes[i];
+			}
+		}
+		return total;
 	}
 
 	@Override
-	public double calcularFitness(Collection<Criterio> criterios) {
+	public double evaluarMovimiento(List<Criterio> criterios, Movimiento movimiento, double[] porcentajes) {
 		double total = 0;
-		for (Criterio criterio : criterios) {
-			float peso = getPesoCriterio(criterio.id);
+		for (int i = 0; i < criterios.size(); i++) {
+			Criterio criterio = criterios.get(i);
+			double peso = getPeso(criterio.id);
+			double porcentaje = Double.NaN;
 			if (peso != 0) {
-				total += peso * criterio.getPorcentaje();
+				porcentaje = criterio.evaluarMovimiento(movimiento);
+				total += peso * porcentaje;
+			}
+			if (porcentajes != null) {
+				porcentajes[i] = porcentaje;
 			}
 		}
 		return total;
@@ -44,6 +74,22 @@ public class FitnessPorPesos implements ICálculoFitness {
 		}
 	}
 
+	/**
+	 * Devuelve el peso de un criterio usando el vector de pesos. Si el criterio no tiene un peso en el vector, se
+	 * busca en el mapa de pesos, por si se ha añadido directamente al mapa tras crear esta instancia.
+	 * @param criterio Critero cuyo peso se quiere obtener
+	 * @throws IllegalArgumentException Si el criterio indicado no tiene un peso asignado
+	 * @return Peso del criterio indicado
+	 */
+	private double getPeso(IDCriterio criterio) {
+		double peso = vectorPesos[criterio.ordinal()];
+		if (Double.isNaN(peso)) {
+			peso = getPesoCriterio(criterio);
+			vectorPesos[criterio.ordinal()] = peso;
+		}
+		return peso;
+	}
+
 	/**
 	 * Fija el peso de un criterio
 	 * @param criterio Critero cuyo peso se quiere fijar
@@ -51,6 +97,7 @@ public class FitnessPorPesos implements ICálculoFitness {
 	 */
 	public void setPesoCriterio(IDCriterio criterio, float valor) {
 		pesos.put(criterio, valor);
+		vectorPesos[criterio.ordinal()] = valor;
 	}
 
 	/**
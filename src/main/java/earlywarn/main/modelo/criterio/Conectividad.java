@@ -1,9 +1,11 @@
 package earlywarn.main.modelo.criterio;
 
 import earlywarn.definiciones.IDCriterio;
+import earlywarn.definiciones.OperaciónLínea;
 import earlywarn.main.modelo.datoid.Aeropuerto;
 import earlywarn.main.modelo.datoid.Línea;
 import earlywarn.main.modelo.datoid.RegistroDatoID;
+import earlywarn.mh.vnsrs.Movimiento;
 
 /**
  * Representa el grado de conectividad de todos los aeropuertos, usando como valores máximo y mínimo la conectividad
@@ -13,6 +15,10 @@ import earlywarn.main.modelo.datoid.RegistroDatoID;
 public class Conectividad extends Criterio {
 	private final int conectividadPaís;
 	private double conectividadPerdidaActual;
+	// Valor al iniciar el movimiento en curso, usado para deshacerlo
+	private double conectividadPerdidaPrevia;
+	// Conectividad que aporta cada línea abierta, según su ID numérico
+	private double[] contribuciones;
 	private final RegistroDatoID<Aeropuerto> aeropuertos;
 
 	/**
@@ -47,18 +53,54 @@ public class Conectividad extends Criterio {
 	}
 
 	@Override
-	public void recalcular(Línea línea, boolean abrir) {
-		Aeropuerto aeropuertoOrigen = aeropuertos.get(línea.idAeropuertoOrigen);
-		/*
-		 * La conectividad que gana o pierde este aeropuerto se calcula con el % de vuelos de salida ganados o perdidos
-		 * en el mismo al abrir o cerrar esta línea
-		 */
-		double ratioVuelos = (float) línea.getNumVuelos() / aeropuertoOrigen.getNumVuelosSalida();
-		double variaciónConectividad = aeropuertoOrigen.getConectividadBase() * ratioVuelos;
+	public void prepararContribuciones(Línea[] líneas) {
+		contribuciones = new double[líneas.length];
+		for (int i = 0; i < líneas.length; i++) {
+			Línea línea = líneas[i];
+			Aeropuerto aeropuertoOrigen = aeropuertos.get(línea.idAeropuertoOrigen);
+			/*
+			 * La conectividad que gana o pierde este aeropuerto se calcula con el % de vuelos de salida ganados o
+			 * perdidos en el mismo al abrir o cerrar esta línea
+			 */
+			double ratioVuelos = (float) línea.getNumVuelos() / aeropuertoOrigen.getNumVuelosSalida();
+			contribuciones[i] = aeropuertoOrigen.getConectividadBase() * ratioVuelos;
+		}
+	}
+
+	@Override
+	public void recalcular(int idNumérico, boolean abrir) {
 		if (abrir) {
-			conectividadPerdidaActual -= variaciónConectividad;
+			conectividadPerdidaActual -= contribuciones[idNumérico];
 		} else {
-			conectividadPerdidaActual += variaciónConectividad;
+			conectividadPerdidaActual += contribuciones[idNumérico];
 		}
 	}
+
+	@Override
+	public double evaluarMovimiento(Movimiento movimiento) {
+		double conectividadPerdida = conectividadPerdidaActual;
+		for (int i = 0; i < movimiento.getNumLíneas(); i++) {
+			if (movimiento.operación == OperaciónLínea.ABRIR) {
+				conectividadPerdida -= contribuciones[movimiento.getLínea(i)];
+			} else {
+				conectividadPerdida += contribuciones[movimiento.getLínea(i)];
+			}
+		}
+		return 1 - conectividadPerdida / conectividadPaís;
+	}
+
+	@Override
+	public void iniciarMovimiento() {
+		conectividadPerdidaPrevia = conectividadPerdidaActual;
+	}
+
+	@Override
+	public void confirmarMovimiento() {
+		// Nada que hacer, el valor actual ya es el definitivo
+	}
+
+	@Override
+	public void deshacerMovimiento() {
+		conectividadPerdidaActual = conectividadPerdidaPrevia;
+	}
 }
@@ -2,6 +2,7 @@ package earlywarn.main.modelo.criterio;
 
 import earlywarn.definiciones.IDCriterio;
 import earlywarn.main.modelo.datoid.Línea;
+import earlywarn.mh.vnsrs.Movimiento;
 
 /**
  * Representa un criterio usado durante la ejecución del programa. Tiene un valor inicial y otro actual (que cambia
@@ -18,9 +19,53 @@ public abstract class Criterio {
 	public abstract double getPorcentaje();
 
 	/**
-	 * Recalcula el valor del criterio tras abirar o cerrar una línea
-	 * @param línea Línea que acaba de ser abierta o cerrada
+	 * Precalcula la contribución de cada línea al valor del criterio, de forma que abrir o cerrar una línea o evaluar
+	 * un movimiento no requiera consultar los datos de la línea. Debe llamarse una sola vez, antes de llamar a
+	 * cualquiera de los demás métodos que reciben IDs numéricos de líneas.
+	 * @param líneas Datos de todas las líneas, según su ID numérico
+	 */
+	public abstract void prepararContribuciones(Línea[] líneas);
+
+	/**
+	 * Recalcula el valor del criterio tras abrir o cerrar una línea
+	 * @param idNumérico ID numérico de la línea que acaba de ser abierta o cerrada
 	 * @param abrir True si la línea ha sido abierta, false si ha sido cerrada
 	 */
-	public abstract void recalcular(Línea línea, boolean abrir);
+	public abstract void recalcular(int idNumérico, boolean abrir);
+
+	/**
+	 * Calcula el valor porcentual que tendría el criterio tras aplicar un movimiento, sin modificar su estado. Puede
+	 * llamarse desde varios hilos a la vez siempre que ninguno modifique el criterio mientras tanto.
+	 * @param movimiento Movimiento a evaluar. Todas sus líneas deben estar en el estado contrario al que indica su
+	 *                   operación.
+	 * @return Valor que devolvería {@link #getPorcentaje()} tras aplicar el movimiento
+	 */
+	public abstract double evaluarMovimiento(Movimiento movimiento);
+
+	/**
+	 * @return Coste relativo de {@link #evaluarMovimiento(Movimiento)} y de los métodos equivalentes de cada criterio,
+	 * sin contar el que depende del número de líneas del movimiento. Usado para evaluar primero las restricciones
+	 * más baratas.
+	 */
+	public int getCosteEvaluación() {
+		return 1;
+	}
+
+	/**
+	 * Indica que empieza un movimiento. A partir de este momento, el criterio registra los cambios producidos por
+	 * {@link #recalcular(int, boolean)} para poder deshacerlos sin volver a calcularlos.
+	 */
+	public abstract void iniciarMovimiento();
+
+	/**
+	 * Indica que se acepta el movimiento en curso. Los cambios registrados desde {@link #iniciarMovimiento()} pasan
+	 * a ser definitivos.
+	 */
+	public abstract void confirmarMovimiento();
+
+	/**
+	 * Deshace el movimiento en curso, restaurando el valor que tenía el criterio al llamar a
+	 * {@link #iniciarMovimiento()}
+	 */
+	public abstract void deshacerMovimiento();
 }
@@ -0,0 +1,265 @@
+package earlywarn.main.modelo.criterio;
+
+import earlywarn.definiciones.OperaciónLínea;
+import earlywarn.main.Utils;
+import earlywarn.main.modelo.datoid.Línea;
+import earlywarn.mh.vnsrs.Movimiento;
+
+import java.util.*;
+
+/**
+ * Clase base de los criterios que miden el grado de homogeneidad entre el porcentaje de pasajeros restantes en una
+ * serie de elementos (aerolíneas o aeropuertos). El mejor valor se obtiene cuando todos los elementos tienen el mismo
+ * porcentaje de pasajeros restantes.
+ * Los elementos se identifican internamente por su posición en unos arrays de valores, y la contribución de cada
+ * línea a cada elemento se precalcula al crear el gestor de líneas, de forma que variar líneas o evaluar movimientos
+ * no requiere acceder a mapas.
+ */
+public abstract class Homogeneidad extends Criterio {
+	// Nombre de cada elemento según su posición
+	private final String[] nombres;
+	// Posición de cada elemento según su nombre
+	private final Map<String, Integer> posiciones;
+	// Número de pasajeros inicial y actual de cada elemento, según su posición
+	private final long[] pasajerosIniciales;
+	private final long[] pasajerosActuales;
+
+	/*
+	 * Contribución de cada línea a los elementos, en formato disperso. Las contribuciones de la línea con ID numérico
+	 * i se encuentran entre las posiciones inicioContribuciones[i] (inclusiva) e inicioContribuciones[i + 1]
+	 * (exclusiva) de los otros dos arrays, que indican el elemento afectado y el número de pasajeros.
+	 */
+	private int[] inicioContribuciones;
+	private int[] elementoContribución;
+	private long[] pasajerosContribución;
+
+	/*
+	 * Cambios realizados durante el movimiento en curso: posición de cada elemento modificado y número de pasajeros
+	 * que tenía antes de modificarlo, en el orden en el que se modificaron
+	 */
+	private int[] elementosModificados;
+	private long[] valoresPrevios;
+	private int numCambios;
+	private boolean movimientoEnCurso;
+
+	// Arrays auxiliares usados para calcular el valor del criterio. Cada hilo usa los suyos.
+	private final ThreadLocal<long[]> pasajerosAux;
+	private final ThreadLocal<double[]> porcentajesAux;
+
+	/**
+	 * @param pasajerosIniciales Mapa con el número inicial de pasajeros de cada elemento
+	 */
+	protected Homogeneidad(Map<String, Long> pasajerosIniciales) {
+		int numElementos = pasajerosIniciales.size();
+		nombres = new String[numElementos];
+		posiciones = new HashMap<>();
+		this.pasajerosIniciales = new long[numElementos];
+		pasajerosActuales = new long[numElementos];
+		int i = 0;
+		for (Map.Entry<String, Long> entrada : new TreeMap<>(pasajerosIniciales).entrySet()) {
+			nombres[i] = entrada.getKey();
+			posiciones.put(entrada.getKey(), i);
+			this.pasajerosIniciales[i] = entrada.getValue();
+			pasajerosActuales[i] = entrada.getValue();
+			i++;
+		}
+		elementosModificados = new int[16];
+		valoresPrevios = new long[16];
+		numCambios = 0;
+		movimientoEnCurso = false;
+		pasajerosAux = ThreadLocal.withInitial(() -> new long[numElementos]);
+		porcentajesAux = ThreadLocal.withInitial(() -> new double[numElementos]);
+	}
+
+	/**
+	 * Obtiene el número de pasajeros que aporta una línea a cada elemento
+	 * @param línea Línea a consultar
+	 * @param destino Mapa en el que se debe añadir el número de pasajeros que aporta la línea a cada elemento. Solo se
+	 *                deben incluir elementos para los que {@link #contiene(String)} devuelva true.
+	 */
+	protected abstract void obtenerContribuciones(Línea línea, Map<String, Long> destino);
+
+	/**
+	 * @param nombre Nombre de un elemento
+	 * @return True si el elemento forma parte de los considerados por el criterio
+	 */
+	protected boolean contiene(String nombre) {
+		return posiciones.containsKey(nombre);
+	}
+
+	@Override
+	public void prepararContribuciones(Línea[] líneas) {
+		inicioContribuciones = new int[líneas.length + 1];
+		List<Integer> elementos = new ArrayList<>();
+		List<Long> pasajeros = new ArrayList<>();
+		Map<String, Long> contribucionesLínea = new TreeMap<>();
+		for (int i = 0; i < líneas.length; i++) {
+			inicioContribuciones[i] = elementos.size();
+			contribucionesLínea.clear();
+			obtenerContribuciones(líneas[i], contribucionesLínea);
+			for (Map.Entry<String, Long> entrada : contribucionesLínea.entrySet()) {
+				elementos.add(posiciones.get(entrada.getKey()));
+				pasajeros.add(entrada.getValue());
+			}
+		}
+		inicioContribuciones[líneas.length] = elementos.size();
+		elementoContribución = new int[elementos.size()];
+		pasajerosContribución = new long[elementos.size()];
+		for (int i = 0; i < elementos.size(); i++) {
+			elementoContribución[i] = elementos.get(i);
+			pasajerosContribución[i] = pasajeros.get(i);
+		}
+	}
+
+	@Override
+	public double getPorcentaje() {
+		return evaluarMovimiento(Movimiento.VACÍO);
+	}
+
+	@Override
+	public void recalcular(int idNumérico, boolean abrir) {
+		for (int i = inicioContribuciones[idNumérico]; i < inicioContribuciones[idNumérico + 1]; i++) {
+			int elemento = elementoContribución[i];
+			if (movimientoEnCurso) {
+				registrarCambio(elemento);
+			}
+			if (abrir) {
+				pasajerosActuales[elemento] += pasajerosContribución[i];
+			} else {
+				pasajerosActuales[elemento] -= pasajerosContribución[i];
+			}
+		}
+	}
+
+	@Override
+	public double evaluarMovimiento(Movimiento movimiento) {
+		return getPorcentajeFinal(calcularPorcentajes(movimiento));
+	}
+
+	@Override
+	public int getCosteEvaluación() {
+		// Evaluar un movimiento requiere recorrer todos los elementos
+		return 1 + nombres.length;
+	}
+
+	@Override
+	public void iniciarMovimiento() {
+		numCambios = 0;
+		movimientoEnCurso = true;
+	}
+
+	@Override
+	public void confirmarMovimiento() {
+		numCambios = 0;
+		movimientoEnCurso = false;
+	}
+
+	@Override
+	public void deshacerMovimiento() {
+		for (int i = numCambios - 1; i >= 0; i--) {
+			pasajerosActuales[elementosModificados[i]] = valoresPrevios[i];
+		}
+		numCambios = 0;
+		movimientoEnCurso = false;
+	}
+
+	/**
+	 * @return Porcentaje de vuelos perdidos por el elemento que más vuelos ha perdido, o null si no hay elementos
+	 * registrados.
+	 */
+	public Double getPérdidaMáxima() {
+		if (nombres.length == 0) {
+			return null;
+		} else {
+			return evaluarPérdidaMáxima(Movimiento.VACÍO);
+		}
+	}
+
+	/**
+	 * Calcula el porcentaje de vuelos perdidos por el elemento que más vuelos perdería tras aplicar un movimiento,
+	 * sin modificar el estado del criterio
+	 * @param movimiento Movimiento a evaluar
+	 * @return Porcentaje de vuelos perdidos por el elemento que más vuelos perdería, o 0 si no hay elementos
+	 * registrados
+	 */
+	public double evaluarPérdidaMáxima(Movimiento movimiento) {
+		double[] porcentajes = calcularPorcentajes(movimiento);
+		if (porcentajes.length == 0) {
+			return 0;
+		}
+		double menor = porcentajes[0];
+		for (int i = 1; i < porcentajes.length; i++) {
+			if (porcentajes[i] < menor) {
+				menor = porcentajes[i];
+			}
+		}
+		return 1 - menor;
+	}
+
+	/**
+	 * @return Mapa con el número de pasajeros actual de cada elemento. Se crea un mapa nuevo en cada llamada.
+	 */
+	protected Map<String, Long> getPasajerosActuales() {
+		Map<String, Long> ret = new TreeMap<>();
+		for (int i = 0; i < nombres.length; i++) {
+			ret.put(nombres[i], pasajerosActuales[i]);
+		}
+		return ret;
+	}
+
+	/**
+	 * Calcula el valor porcentual del criterio una vez que está calculado el porcentaje de pasajeros restantes
+	 * de cada elemento
+	 * @param porcentajes Array que contiene el porcentaje de pasajeros restantes de cada elemento
+	 * @return Valor porcentual del criterio
+	 */
+	protected double getPorcentajeFinal(double[] porcentajes) {
+		/*
+		 * Calculamos la desviación típica de estos porcentajes y obtenemos su ratio con respecto a la
+		 * desviación máxima posible
+		 */
+		return 1 - Utils.getStd(porcentajes) / Utils.getStdMáxima(porcentajes.length);
+	}
+
+	/**
+	 * Calcula el porcentaje de pasajeros restantes que tendría cada elemento tras aplicar un movimiento
+	 * @param movimiento Movimiento a aplicar
+	 * @return Array con el porcentaje de pasajeros restantes de cada elemento. El array es propio del hilo actual y
+	 * se sobrescribe en la siguiente llamada.
+	 */
+	private double[] calcularPorcentajes(Movimiento movimiento) {
+		long[] pasajeros = pasajerosAux.get();
+		System.arraycopy(pasajerosActuales, 0, pasajeros, 0, pasajeros.length);
+		boolean abrir = movimiento.operación == OperaciónLínea.ABRIR;
+		for (int i = 0; i < movimiento.getNumLíneas(); i++) {
+			int idNumérico = movimiento.getLínea(i);
+			for (int j = inicioContribuciones[idNumérico]; j < inicioContribuciones[idNumérico + 1]; j++) {
+				if (abrir) {
+					pasajeros[elementoContribución[j]] += pasajerosContribución[j];
+				} else {
+					pasajeros[elementoContribución[j]] -= pasajerosContribución[j];
+				}
+			}
+		}
+
+		double[] porcentajes = porcentajesAux.get();
+		for (int i = 0; i < porcentajes.length; i++) {
+			porcentajes[i] = (double) pasajeros[i] / pasajerosIniciales[i];
+		}
+		return porcentajes;
+	}
+
+	/**
+	 * Registra el valor que tiene un elemento antes de modificarlo durante un movimiento
+	 * @param elemento Posición del elemento
+	 */
+	private void registrarCambio(int elemento) {
+		if (numCambios == elementosModificados.length) {
+			elementosModificados = Arrays.copyOf(elementosModificados, numCambios * 2);
+			valoresPrevios = Arrays.copyOf(valoresPrevios, numCambios * 2);
+		}
+		elementosModificados[numCambios] = elemento;
+		valoresPrevios[numCambios] = pasajerosActuales[elemento];
+		numCambios++;
+	}
+}
@@ -3,7 +3,6 @@ package earlywarn.main.modelo.criterio;
 import earlywarn.definiciones.IDCriterio;
 import earlywarn.main.Utils;
 
-import java.util.List;
 import java.util.Map;
 
 /**
@@ -20,7 +19,7 @@ public class HomogeneidadAerolíneasLineal extends HomogeneidadAerolíneas {
 	}
 
 	@Override
-	protected double getPorcentajeFinal(List<Double> porcentajes) {
+	protected double getPorcentajeFinal(double[] porcentajes) {
 		/*
 		 * Primero calculamos la media de los porcentajes y luego la desviación media de los diferentes elementos
 		 * con respecto a esta media calculada.
@@ -5,7 +5,6 @@ import earlywarn.main.Utils;
 import earlywarn.main.modelo.datoid.Aeropuerto;
 import earlywarn.main.modelo.datoid.RegistroDatoID;
 
-import java.util.List;
 import java.util.Map;
 
 /**
@@ -23,7 +22,7 @@ public class HomogeneidadAeropuertosLineal extends HomogeneidadAeropuertos {
 	}
 
 	@Override
-	protected double getPorcentajeFinal(List<Double> porcentajes) {
+	protected double getPorcentajeFinal(double[] porcentajes) {
 		/*
 		 * Primero calculamos la media de los porcentajes y luego la desviación media de los diferentes elementos
 		 * con respecto a esta media calculada.
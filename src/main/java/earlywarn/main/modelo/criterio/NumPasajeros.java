@@ -1,7 +1,9 @@
 package earlywarn.main.modelo.criterio;
 
 import earlywarn.definiciones.IDCriterio;
+import earlywarn.definiciones.OperaciónLínea;
 import earlywarn.main.modelo.datoid.Línea;
+import earlywarn.mh.vnsrs.Movimiento;
 
 /**
  * Representa el número de pasajeros que vuelan en la red de tráfico aéreo. Usado como aproximación para calcular las
@@ -10,6 +12,10 @@ import earlywarn.main.modelo.datoid.Línea;
 public class NumPasajeros extends Criterio {
 	private final long valorInicial;
 	private long valorActual;
+	// Valor al iniciar el movimiento en curso, usado para deshacerlo
+	private long valorPrevio;
+	// Valor que aporta cada línea abierta, según su ID numérico
+	private long[] contribuciones;
 
 	public NumPasajeros(long valorInicial) {
 		this.valorInicial = valorInicial;
@@ -31,11 +37,56 @@ public class NumPasajeros extends Criterio {
 	}
 
 	@Override
-	public void recalcular(Línea línea, boolean abrir) {
+	public void prepararContribuciones(Línea[] líneas) {
+		contribuciones = new long[líneas.length];
+		for (int i = 0; i < líneas.length; i++) {
+			contribuciones[i] = líneas[i].getPasajeros();
+		}
+	}
+
+	@Override
+	public void recalcular(int idNumérico, boolean abrir) {
 		if (abrir) {
-			valorActual += línea.getPasajeros();
+			valorActual += contribuciones[idNumérico];
 		} else {
-			valorActual -= línea.getPasajeros();
+			valorActual -= contribuciones[idNumérico];
+		}
+	}
+
+	@Override
+	public double evaluarMovimiento(Movimiento movimiento) {
+		return (double) evaluarValor(movimiento) / valorInicial;
+	}
+
+	/**
+	 * Calcula el valor que tendría el criterio tras aplicar un movimiento, sin modificar su estado
+	 * @param movimiento Movimiento a evaluar
+	 * @return Valor que devolvería {@link #getValorActual()} tras aplicar el movimiento
+	 */
+	public long evaluarValor(Movimiento movimiento) {
+		long valor = valorActual;
+		for (int i = 0; i < movimiento.getNumLíneas(); i++) {
+			if (movimiento.operación == OperaciónLínea.ABRIR) {
+				valor += contribuciones[movimiento.getLínea(i)];
+			} else {
+				valor -= contribuciones[movimiento.getLínea(i)];
+			}
 		}
+		return valor;
+	}
+
+	@Override
+	public void iniciarMovimiento() {
+		valorPrevio = valorActual;
+	}
+
+	@Override
+	public void confirmarMovimiento() {
+		// Nada que hacer, el valor actual ya es el definitivo
+	}
+
+	@Override
+	public void deshacerMovimiento() {
+		valorActual = valorPrevio;
 	}
 }
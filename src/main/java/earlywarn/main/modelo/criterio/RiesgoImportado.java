@@ -1,7 +1,9 @@
 package earlywarn.main.modelo.criterio;
 
 import earlywarn.definiciones.IDCriterio;
+import earlywarn.definiciones.OperaciónLínea;
 import earlywarn.main.modelo.datoid.Línea;
+import earlywarn.mh.vnsrs.Movimiento;
 
 /**
  * Representa el riesgo importado total que llega a través de la red de tráfico aéreo
@@ -9,6 +11,10 @@ import earlywarn.main.modelo.datoid.Línea;
 public class RiesgoImportado extends Criterio {
 	private final double valorInicial;
 	private double valorActual;
+	// Valor al iniciar el movimiento en curso, usado para deshacerlo
+	private double valorPrevio;
+	// Valor que aporta cada línea abierta, según su ID numérico
+	private double[] contribuciones;
 
 	public RiesgoImportado(double valorInicial) {
 		this.valorInicial = valorInicial;
@@ -30,11 +36,56 @@ public class RiesgoImportado extends Criterio {
 	}
 
 	@Override
-	public void recalcular(Línea línea, boolean abrir) {
+	public void prepararContribuciones(Línea[] líneas) {
+		contribuciones = new double[líneas.length];
+		for (int i = 0; i < líneas.length; i++) {
+			contribuciones[i] = líneas[i].getRiesgoImportado();
+		}
+	}
+
+	@Override
+	public void recalcular(int idNumérico, boolean abrir) {
 		if (abrir) {
-			valorActual += línea.getRiesgoImportado();
+			valorActual += contribuciones[idNumérico];
 		} else {
-			valorActual -= línea.getRiesgoImportado();
+			valorActual -= contribuciones[idNumérico];
+		}
+	}
+
+	@Override
+	public double evaluarMovimiento(Movimiento movimiento) {
+		return 1 - evaluarValor(movimiento) / valorInicial;
+	}
+
+	/**
+	 * Calcula el valor que tendría el criterio tras aplicar un movimiento, sin modificar su estado
+	 * @param movimiento Movimiento a evaluar
+	 * @return Valor que devolvería {@link #getValorActual()} tras aplicar el movimiento
+	 */
+	public double evaluarValor(Movimiento movimiento) {
+		double valor = valorActual;
+		for (int i = 0; i < movimiento.getNumLíneas(); i++) {
+			if (movimiento.operación == OperaciónLínea.ABRIR) {
+				valor += contribuciones[movimiento.getLínea(i)];
+			} else {
+				valor -= contribuciones[movimiento.getLínea(i)];
+			}
 		}
+		return valor;
+	}
+
+	@Override
+	public void iniciarMovimiento() {
+		valorPrevio = valorActual;
+	}
+
+	@Override
+	public void confirmarMovimiento() {
+		// Nada que hacer, el valor actual ya es el definitivo
+	}
+
+	@Override
+	public void deshacerMovimiento() {
+		valorActual = valorPrevio;
 	}
 }
@@ -4,6 +4,7 @@ import earlywarn.definiciones.ETLOperationRequiredException;
 import earlywarn.definiciones.Propiedad;
 import earlywarn.etl.Añadir;
 import earlywarn.main.Propiedades;
+import earlywarn.main.métricas.Métricas;
 import org.neo4j.graphdb.GraphDatabaseService;
 import org.neo4j.graphdb.Result;
 import org.neo4j.graphdb.Transaction;
@@ -17,6 +18,7 @@ import java.util.Map;
  * Esta clase permite consultar ciertas propiedades del aeropuerto (como su valor de conectividad base o el número de
  * vuelos que salen del mismo) minimizando el número de accesos a la BD (solo se accede la primera vez que se consulta
  * un dato, después el dato se cachea).
+ * Una misma instancia puede consultarse desde varios hilos.
  */
 public class Aeropuerto {
 	private final GraphDatabaseService db;
@@ -30,6 +32,8 @@ public class Aeropuerto {
 	private Integer conectividadBase;
 	private Long numVuelosSalida;
 	private String idPaís;
+	// True si ya se ha consultado en la BD que el aeropuerto no tiene ningún país asociado
+	private boolean sinPaís;
 
 	/**
 	 * Crea una instancia de la clase
@@ -39,11 +43,31 @@ public class Aeropuerto {
 	 * @param db Conexión a la BD
 	 */
 	public Aeropuerto(String id, LocalDate díaInicio, LocalDate díaFin, GraphDatabaseService db) {
+		this(id, null, null, null, díaInicio, díaFin, db);
+	}
+
+	/**
+	 * Crea una instancia de la clase con parte de sus valores ya calculados. Los valores que se especifiquen como
+	 * null se obtendrán de la BD la primera vez que se consulten.
+	 * @param id Código IATA que identifica al aeropuerto.
+	 * @param conectividadBase Conectividad base del aeropuerto, o null
+	 * @param numVuelosSalida Número de vuelos que salen del aeropuerto en el rango de fechas indicado, o null
+	 * @param idPaís ID del país en el que se encuentra el aeropuerto, o null. Si no se especifica una conexión a la
+	 *               BD, null indica que el aeropuerto no tiene ningún país asociado.
+	 * @param díaInicio Primer día a tener en cuenta al obtener datos de vuelos que pasan por este aeropuerto
+	 * @param díaFin Último día a tener en cuenta al obtener datos de vuelos que pasan por este aeropuerto
+	 * @param db Conexión a la BD. Puede ser null si se han especificado todos los valores anteriores.
+	 */
+	public Aeropuerto(String id, Integer conectividadBase, Long numVuelosSalida, String idPaís, LocalDate díaInicio,
+					  LocalDate díaFin, GraphDatabaseService db) {
 		this.id = id;
 		this.db = db;
 		this.díaInicio = díaInicio.format(DateTimeFormatter.ofPattern("yyyy-MM-dd"));
 		this.díaFin = díaFin.format(DateTimeFormatter.ofPattern("yyyy-MM-dd"));
-		propiedades = new Propiedades(db);
+		this.conectividadBase = conectividadBase;
+		this.numVuelosSalida = numVuelosSalida;
+		this.idPaís = idPaís;
+		propiedades = db == null ? null : new Propiedades(db);
 	}
 
 	/**
@@ -53,10 +77,11 @@ public class Aeropuerto {
 	 * @throws ETLOperationRequiredException Si no se ha ejecutado la operación ETL
 	 * {@link Añadir#añadirConectividad(String)}
 	 */
-	public int getConectividadBase() {
+	public synchronized int getConectividadBase() {
 		if (conectividadBase == null) {
 			if (propiedades.getBool(Propiedad.ETL_CONECTIVIDAD)) {
 				try (Transaction tx = db.beginTx()) {
+					Métricas.contarConsultaBD();
 					try (Result res = tx.execute(
 						"MATCH (a:Airport {iata: \"" + id + "\"}) " +
 						"RETURN a.connectivity")) {
@@ -83,9 +108,10 @@ public class Aeropuerto {
 	 * Devuelve el número de vuelos que salen de este aeropuerto en el rango de fechas correspondiente.
 	 * @return Número de vuelos que salen de este aeropuerto en el rango de fechas especificado al crearlo
 	 */
-	public long getNumVuelosSalida() {
+	public synchronized long getNumVuelosSalida() {
 		if (numVuelosSalida == null) {
 			try (Transaction tx = db.beginTx()) {
+				Métricas.contarConsultaBD();
 				try (Result res = tx.execute(
 					"MATCH (:Airport {iata: \"" + id + "\"})-[]-(:AirportOperationDay)-[]->(f:FLIGHT) " +
 					"WHERE date(\"" + díaInicio + "\") <= f.dateOfDeparture <= date(\"" + díaFin + "\") " +
@@ -102,20 +128,25 @@ public class Aeropuerto {
 	/**
 	 * Devuelve el ID del país en el que se encuentra este aeropuerto. Requiere que se haya ejecutado la operación
 	 * ETL que añade las relaciones faltantes entre aeropuerto y país.
-	 * @return ID del país en el que se encuentra este aeropuerto
+	 * @return ID del país en el que se encuentra este aeropuerto, o null si no tiene ningún país asociado
 	 * @throws ETLOperationRequiredException Si no se ha ejecutado la operación ETL
 	 * {@link Añadir#añadirConexionesAeropuertoPaís()}
 	 */
-	public String getIdPaís() {
-		if (idPaís == null) {
+	public synchronized String getIdPaís() {
+		if (idPaís == null && !sinPaís && db != null) {
 			if (propiedades.getBool(Propiedad.ETL_AEROPUERTO_PAÍS)) {
 				try (Transaction tx = db.beginTx()) {
+					Métricas.contarConsultaBD();
 					try (Result res = tx.execute(
 						"MATCH (:Airport {iata: \"" + id + "\"})-[]-(c:Country) " +
 						"RETURN c.countryId")) {
 
-						Map<String, Object> row = res.next();
-						idPaís = (String) row.get(res.columns().get(0));
+						if (res.hasNext()) {
+							Map<String, Object> row = res.next();
+							idPaís = (String) row.get(res.columns().get(0));
+						} else {
+							sinPaís = true;
+						}
 					}
 				}
 			} else {
@@ -1,25 +1,40 @@
 package earlywarn.main.modelo.datoid;
 
+import earlywarn.main.modelo.CuboLíneas;
 import org.neo4j.graphdb.GraphDatabaseService;
 
 import java.time.LocalDate;
 
 /**
- * Factoría que instancia un aeropuerto dado su ID
+ * Factoría que instancia un aeropuerto dado su ID.
+ * Si se especifica un cubo de líneas, el número de vuelos de salida y el país de los aeropuertos se obtienen del mismo
+ * en lugar de consultarse en la BD.
  */
 public class AeropuertoFactory implements IDatoIDFactory<Aeropuerto> {
 	private final GraphDatabaseService db;
 	private final LocalDate díaInicio;
 	private final LocalDate díaFin;
+	// Null si los datos deben obtenerse de la BD
+	private final CuboLíneas cubo;
 
 	public AeropuertoFactory(LocalDate díaInicio, LocalDate díaFin, GraphDatabaseService db) {
+		this(díaInicio, díaFin, db, null);
+	}
+
+	public AeropuertoFactory(LocalDate díaInicio, LocalDate díaFin, GraphDatabaseService db, CuboLíneas cubo) {
 		this.db = db;
 		this.díaInicio = díaInicio;
 		this.díaFin = díaFin;
+		this.cubo = cubo;
 	}
 
 	@Override
 	public Aeropuerto crear(String id) {
-		return new Aeropuerto(id, díaInicio, díaFin, db);
+		if (cubo == null) {
+			return new Aeropuerto(id, díaInicio, díaFin, db);
+		} else {
+			return new Aeropuerto(id, null, cubo.getVuelosSalida(id, díaInicio, díaFin), cubo.getPaísAeropuerto(id),
+				díaInicio, díaFin, db);
+		}
 	}
 }
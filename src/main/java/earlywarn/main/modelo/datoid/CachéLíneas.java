@@ -0,0 +1,156 @@
+package earlywarn.main.modelo.datoid;
+
+import earlywarn.main.invalidación.BusInvalidaciones;
+import earlywarn.main.invalidación.Invalidación;
+import org.neo4j.graphdb.GraphDatabaseService;
+
+import java.time.LocalDate;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Mantiene en memoria las últimas líneas consultadas de forma individual, junto con sus valores, de forma que las
+ * consultas repetidas sobre la misma línea y rango de fechas (o sobre varios valores de la misma línea) no accedan
+ * de nuevo a la BD.
+ * El número de líneas almacenadas está limitado. Si se supera, se descarta la que lleve más tiempo sin usarse.
+ * Las líneas se descartan cuando se modifican los datos de la BD de los que dependen (ver {@link BusInvalidaciones}),
+ * o manualmente con {@link #invalidar()}.
+ */
+public class CachéLíneas {
+	// Número máximo de líneas almacenadas
+	private static final int CAPACIDAD = 10000;
+
+	// Líneas almacenadas, ordenadas de menos a más recientemente usadas
+	private static final Map<Clave, Línea> líneas = new LinkedHashMap<>(16, 0.75f, true) {
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Clave, Línea> entrada) {
+			return size() > CAPACIDAD;
+		}
+	};
+	private static long aciertos = 0;
+	private static long fallos = 0;
+
+	static {
+		BusInvalidaciones.registrar(CachéLíneas::invalidar);
+	}
+
+	private CachéLíneas() {}
+
+	/**
+	 * Obtiene una línea con todos sus valores cargados. Si no está almacenada, sus valores se obtienen de la BD con una
+	 * única consulta (ver {@link Línea#cargarTodo()}). Si varios hilos solicitan a la vez una línea que no está
+	 * almacenada, solo uno de ellos accede a la BD.
+	 * @param id Identificador de la línea
+	 * @param díaInicio Primer día a tener en cuenta al obtener los datos de la línea
+	 * @param díaFin Último día a tener en cuenta al obtener los datos de la línea
+	 * @param db Conexión a la BD
+	 * @return Línea solicitada
+	 */
+	public static Línea get(String id, LocalDate díaInicio, LocalDate díaFin, GraphDatabaseService db) {
+		Clave clave = new Clave(db.databaseName(), id, díaInicio, díaFin);
+		Línea línea;
+		synchronized (líneas) {
+			línea = líneas.get(clave);
+			if (línea == null) {
+				línea = new Línea(id, díaInicio, díaFin, db);
+				líneas.put(clave, línea);
+				fallos++;
+			} else {
+				aciertos++;
+			}
+		}
+		// La carga se realiza fuera del bloqueo de la caché. Si ya se ha realizado, no tiene coste.
+		línea.cargarTodo();
+		return línea;
+	}
+
+	/**
+	 * Descarta todas las líneas almacenadas
+	 */
+	public static void invalidar() {
+		synchronized (líneas) {
+			líneas.clear();
+		}
+	}
+
+	/**
+	 * Descarta las líneas afectadas por una modificación de la BD
+	 * @param invalidación Datos modificados
+	 */
+	public static void invalidar(Invalidación invalidación) {
+		synchronized (líneas) {
+			Iterator<Clave> it = líneas.keySet().iterator();
+			while (it.hasNext()) {
+				Clave clave = it.next();
+				if (clave.baseDatos.equals(invalidación.baseDatos) &&
+					invalidación.afectaARango(clave.díaInicio, clave.díaFin) && invalidación.afectaALínea(clave.id)) {
+					it.remove();
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return Número de líneas almacenadas actualmente
+	 */
+	public static int getNumLíneas() {
+		synchronized (líneas) {
+			return líneas.size();
+		}
+	}
+
+	/**
+	 * @return Número de solicitudes que se han respondido con una línea almacenada
+	 */
+	public static long getAciertos() {
+		synchronized (líneas) {
+			return aciertos;
+		}
+	}
+
+	/**
+	 * @return Número de solicitudes que han requerido cargar la línea de la BD
+	 */
+	public static long getFallos() {
+		synchronized (líneas) {
+			return fallos;
+		}
+	}
+
+	/**
+	 * Identifica una línea almacenada
+	 */
+	private static class Clave {
+		private final String baseDatos;
+		private final String id;
+		private final LocalDate díaInicio;
+		private final LocalDate díaFin;
+
+		Clave(String baseDatos, String id, LocalDate díaInicio, LocalDate díaFin) {
+			this.baseDatos = baseDatos;
+			this.id = id;
+			this.díaInicio = díaInicio;
+			this.díaFin = díaFin;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (this == o) {
+				return true;
+			}
+			if (o == null || getClass() != o.getClass()) {
+				return false;
+			}
+			Clave otra = (Clave) o;
+			return baseDatos.equals(otra.baseDatos) && id.equals(otra.id) && díaInicio.equals(otra.díaInicio) &&
+				díaFin.equals(otra.díaFin);
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(baseDatos, id, díaInicio, díaFin);
+		}
+	}
+}
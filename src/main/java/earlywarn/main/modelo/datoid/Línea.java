@@ -7,6 +7,7 @@ import earlywarn.etl.Modificar;
 import earlywarn.main.Consultas;
 import earlywarn.main.Propiedades;
 import earlywarn.main.Utils;
+import earlywarn.main.métricas.Métricas;
 import org.neo4j.graphdb.GraphDatabaseService;
 import org.neo4j.graphdb.Result;
 import org.neo4j.graphdb.Transaction;
@@ -22,6 +23,9 @@ import java.util.TreeMap;
  * rango de fechas.
  * Esta clase permite consultar ciertas propiedades de la línea (como el número total de pasajeros o de vuelos)
  * minimizando el número de accesos a la BD.
+ * Si se ha ejecutado la operación ETL {@link Añadir#añadirAgregadosLíneas()}, los valores se obtienen a partir de los
+ * nodos Line en lugar de recorrer todos los vuelos de la línea.
+ * Una misma instancia puede consultarse desde varios hilos.
  */
 public class Línea {
 	private final GraphDatabaseService db;
@@ -63,6 +67,36 @@ public class Línea {
 		valoresSimplesCargados = false;
 	}
 
+	/**
+	 * Crea una instancia de la clase con todos sus valores ya calculados. La instancia no accederá a la BD.
+	 * @param id Identificador de la línea. Formado por el código IATA del aeropuerto de origen, un guión y el
+	 *           código IATA del aerpuerto destino.
+	 * @param pasajeros Número de pasajeros de la línea
+	 * @param ingresosTurísticos Ingresos por turismo de la línea
+	 * @param numVuelos Número de vuelos de la línea
+	 * @param riesgoImportado Riesgo importado de la línea
+	 * @param pasajerosPorAerolínea Pasajeros de la línea por aerolínea, sin incluir aerolíneas desconocidas ni
+	 *                              aerolíneas sin pasajeros
+	 */
+	public Línea(String id, long pasajeros, double ingresosTurísticos, long numVuelos, double riesgoImportado,
+				 Map<String, Long> pasajerosPorAerolínea) {
+		this.id = id;
+		db = null;
+		díaInicio = null;
+		díaFin = null;
+		propiedades = null;
+
+		String[] split = id.split("-");
+		idAeropuertoOrigen = split[0];
+		idAeropuertoDestino = split[1];
+		this.pasajeros = pasajeros;
+		this.ingresosTurísticos = ingresosTurísticos;
+		this.numVuelos = numVuelos;
+		this.riesgoImportado = riesgoImportado;
+		this.pasajerosPorAerolínea = pasajerosPorAerolínea;
+		valoresSimplesCargados = true;
+	}
+
 	/**
 	 * Obtiene el número total de pasajeros que circulan por esta línea en el periodo establecido.
 	 * Requiere que se haya ejecutado la operación ETL que calcula el número de pasajeros por vuelo, la operación ETL
@@ -73,7 +107,7 @@ public class Línea {
 	 * {@link Añadir#calcularNúmeroPasajeros()}, la operación ETL {@link Modificar#convertirFechasVuelos()}
 	 * o la operación ETL {@link Añadir#añadirIngresosVuelo(Boolean, Boolean)}.
 	 */
-	public long getPasajeros() {
+	public synchronized long getPasajeros() {
 		if (!valoresSimplesCargados) {
 			cargarValoresSimples();
 		}
@@ -91,7 +125,7 @@ public class Línea {
 	 * {@link Añadir#calcularNúmeroPasajeros()}, la operación ETL {@link Modificar#convertirFechasVuelos()}
 	 * o la operación ETL {@link Añadir#añadirIngresosVuelo(Boolean, Boolean)}.
 	 */
-	public double getIngresosTurísticos() {
+	public synchronized double getIngresosTurísticos() {
 		if (!valoresSimplesCargados) {
 			cargarValoresSimples();
 		}
@@ -108,7 +142,7 @@ public class Línea {
 	 * {@link Añadir#calcularNúmeroPasajeros()}, la operación ETL {@link Modificar#convertirFechasVuelos()}
 	 * o la operación ETL {@link Añadir#añadirIngresosVuelo(Boolean, Boolean)}.
 	 */
-	public long getNumVuelos() {
+	public synchronized long getNumVuelos() {
 		if (!valoresSimplesCargados) {
 			cargarValoresSimples();
 		}
@@ -125,7 +159,7 @@ public class Línea {
 	 * {@link Añadir#calcularNúmeroPasajeros()}, la operación ETL {@link Modificar#convertirFechasVuelos()}
 	 * o la operación ETL {@link Añadir#añadirIngresosVuelo(Boolean, Boolean)}.
 	 */
-	public double getRiesgoImportado() {
+	public synchronized double getRiesgoImportado() {
 		if (!valoresSimplesCargados) {
 			cargarValoresSimples();
 		}
@@ -142,17 +176,29 @@ public class Línea {
 	 * @throws ETLOperationRequiredException Si no se ha ejecutado la operación ETL
 	 * {@link Añadir#calcularNúmeroPasajeros()} o la operación ETL {@link Modificar#convertirFechasVuelos()}.
 	 */
-	public Map<String, Long> getPasajerosPorAerolínea() {
+	public synchronized Map<String, Long> getPasajerosPorAerolínea() {
 		if (pasajerosPorAerolínea == null) {
 			if (propiedades.getBool(Propiedad.ETL_PASAJEROS) &&
 			propiedades.getBool(Propiedad.ETL_CONVERTIR_FECHAS_VUELOS)) {
-				try (Transaction tx = db.beginTx()) {
-					try (Result res = tx.execute(
+				String consulta;
+				if (propiedades.getBool(Propiedad.ETL_AGREGADOS_LÍNEAS)) {
+					consulta =
+						"MATCH (l:Line) " +
+						"WHERE l.origin = \"" + idAeropuertoOrigen + "\" AND l.dest = \"" + idAeropuertoDestino +
+						"\" AND date(\"" + díaInicio + "\") <= l.day <= date(\"" + díaFin + "\") " +
+						"UNWIND range(0, size(l.operators) - 1) AS i " +
+						"RETURN distinct(l.operators[i]), sum(l.operatorPassengers[i])";
+				} else {
+					consulta =
 						"MATCH (a1:Airport)-[]-(aod1:AirportOperationDay)-[]->(f:FLIGHT)-[]->" +
 						"(aod2:AirportOperationDay)-[]-(a2:Airport) " +
 						"WHERE a1.iata = \"" + idAeropuertoOrigen + "\" AND a2.iata = \"" + idAeropuertoDestino +
 						"\" AND date(\"" + díaInicio + "\") <= f.dateOfDeparture <= date(\"" + díaFin + "\") " +
-						"RETURN distinct(f.operator), sum(f.passengers)")) {
+						"RETURN distinct(f.operator), sum(f.passengers)";
+				}
+				try (Transaction tx = db.beginTx()) {
+					Métricas.contarConsultaBD();
+					try (Result res = tx.execute(consulta)) {
 
 						pasajerosPorAerolínea = new TreeMap<>();
 						List<String> columnas = res.columns();
@@ -175,6 +221,98 @@ public class Línea {
 		return pasajerosPorAerolínea;
 	}
 
+	/**
+	 * Carga todos los valores de la línea (incluidos los pasajeros por aerolínea) con una única consulta a la BD. Si ya
+	 * están cargados, no hace nada.
+	 * Si no se han ejecutado todas las operaciones ETL necesarias para obtener todos los valores, no se carga ninguno.
+	 * En ese caso, cada valor se cargará por separado al consultarlo, lo que producirá un error si no se puede obtener.
+	 */
+	public synchronized void cargarTodo() {
+		if (valoresSimplesCargados && pasajerosPorAerolínea != null) {
+			return;
+		}
+		if (!propiedades.getBool(Propiedad.ETL_PASAJEROS) ||
+		!propiedades.getBool(Propiedad.ETL_CONVERTIR_FECHAS_VUELOS) ||
+		!propiedades.getBool(Propiedad.ETL_INGRESOS_VUELO)) {
+			return;
+		}
+
+		long pasajeros = 0;
+		double ingresosTurísticos = 0;
+		long numVuelos = 0;
+		double riesgoImportado = 0;
+		Map<String, Long> pasajerosPorAerolínea = new TreeMap<>();
+		try (Transaction tx = db.beginTx()) {
+			Métricas.contarConsultaBD();
+			if (propiedades.getBool(Propiedad.ETL_AGREGADOS_LÍNEAS)) {
+				// Cada nodo Line ya contiene los totales del día y su desglose por aerolínea
+				try (Result res = tx.execute(
+					"MATCH (l:Line) " +
+					"WHERE l.origin = \"" + idAeropuertoOrigen + "\" AND l.dest = \"" + idAeropuertoDestino +
+					"\" AND date(\"" + díaInicio + "\") <= l.day <= date(\"" + díaFin + "\") " +
+					"RETURN l.passengers AS numPasajeros, l.incomeFromTurism AS ingresosTurismo, " +
+					"l.flights AS numVuelos, l.risk AS riesgoImportado, l.operators AS aerolíneas, " +
+					"l.operatorPassengers AS pasajerosAerolíneas")) {
+					while (res.hasNext()) {
+						Map<String, Object> row = res.next();
+						pasajeros += ((Number) row.get("numPasajeros")).longValue();
+						ingresosTurísticos += Utils.resultadoADouble(row.get("ingresosTurismo"));
+						numVuelos += ((Number) row.get("numVuelos")).longValue();
+						riesgoImportado += Utils.resultadoADouble(row.get("riesgoImportado"));
+						List<?> aerolíneas = (List<?>) row.get("aerolíneas");
+						List<?> pasajerosAerolíneas = (List<?>) row.get("pasajerosAerolíneas");
+						for (int i = 0; i < aerolíneas.size(); i++) {
+							añadirPasajerosAerolínea(pasajerosPorAerolínea, (String) aerolíneas.get(i),
+								((Number) pasajerosAerolíneas.get(i)).longValue());
+						}
+					}
+				}
+			} else {
+				// Se agrupan los vuelos por aerolínea, de forma que los totales se obtienen sumando los de cada grupo
+				try (Result res = tx.execute(
+					"MATCH (a1:Airport)-[]-(aod1:AirportOperationDay)-[]->(f:FLIGHT)-[]->" +
+					"(aod2:AirportOperationDay)-[]-(a2:Airport) " +
+					"WHERE a1.iata = \"" + idAeropuertoOrigen + "\" AND a2.iata = \"" + idAeropuertoDestino +
+					"\" AND date(\"" + díaInicio + "\") <= f.dateOfDeparture <= date(\"" + díaFin + "\") " +
+					"RETURN f.operator AS aerolínea, sum(f.passengers) AS numPasajeros, " +
+					"sum(f.incomeFromTurism) AS ingresosTurismo, count(f) AS numVuelos, " +
+					"sum(f.flightIfinal) AS riesgoImportado")) {
+					while (res.hasNext()) {
+						Map<String, Object> row = res.next();
+						long pasajerosAerolínea = ((Number) row.get("numPasajeros")).longValue();
+						pasajeros += pasajerosAerolínea;
+						ingresosTurísticos += Utils.resultadoADouble(row.get("ingresosTurismo"));
+						numVuelos += ((Number) row.get("numVuelos")).longValue();
+						riesgoImportado += Utils.resultadoADouble(row.get("riesgoImportado"));
+						añadirPasajerosAerolínea(pasajerosPorAerolínea, (String) row.get("aerolínea"),
+							pasajerosAerolínea);
+					}
+				}
+			}
+		}
+		pasajerosPorAerolínea.values().removeIf(numPasajeros -> numPasajeros <= 0);
+
+		this.pasajeros = pasajeros;
+		this.ingresosTurísticos = ingresosTurísticos;
+		this.numVuelos = numVuelos;
+		this.riesgoImportado = riesgoImportado;
+		this.pasajerosPorAerolínea = pasajerosPorAerolínea;
+		valoresSimplesCargados = true;
+	}
+
+	/**
+	 * Suma pasajeros a los de una aerolínea, ignorando las aerolíneas desconocidas
+	 * @param pasajerosPorAerolínea Pasajeros de cada aerolínea
+	 * @param aerolínea Código de la aerolínea
+	 * @param numPasajeros Pasajeros a sumar
+	 */
+	private void añadirPasajerosAerolínea(Map<String, Long> pasajerosPorAerolínea, String aerolínea,
+										  long numPasajeros) {
+		if (aerolínea != null && !aerolínea.equals(Consultas.AEROLÍNEA_DESCONOCIDA)) {
+			pasajerosPorAerolínea.merge(aerolínea, numPasajeros, Long::sum);
+		}
+	}
+
 	/**
 	 * Carga los valores simples de la línea.
 	 * Requiere que se haya ejecutado la operación ETL que calcula el número de pasajeros por vuelo, la operación ETL
@@ -188,14 +326,27 @@ public class Línea {
 		if (propiedades.getBool(Propiedad.ETL_PASAJEROS) &&
 		propiedades.getBool(Propiedad.ETL_CONVERTIR_FECHAS_VUELOS) &&
 		propiedades.getBool(Propiedad.ETL_INGRESOS_VUELO)) {
-			try (Transaction tx = db.beginTx()) {
-				try (Result res = tx.execute(
+			String consulta;
+			if (propiedades.getBool(Propiedad.ETL_AGREGADOS_LÍNEAS)) {
+				// Los valores de la línea ya están agregados por día, solo hay que sumar los del periodo
+				consulta =
+					"MATCH (l:Line) " +
+					"WHERE l.origin = \"" + idAeropuertoOrigen + "\" AND l.dest = \"" + idAeropuertoDestino +
+					"\" AND date(\"" + díaInicio + "\") <= l.day <= date(\"" + díaFin + "\") " +
+					"RETURN sum(l.passengers) AS numPasajeros, sum(l.incomeFromTurism) AS ingresosTurismo, " +
+					"sum(l.flights) AS numVuelos, sum(l.risk) AS riesgoImportado";
+			} else {
+				consulta =
 					"MATCH (a1:Airport)-[]-(aod1:AirportOperationDay)-[]->(f:FLIGHT)-[]->" +
 					"(aod2:AirportOperationDay)-[]-(a2:Airport) " +
 					"WHERE a1.iata = \"" + idAeropuertoOrigen + "\" AND a2.iata = \"" + idAeropuertoDestino +
 					"\" AND date(\"" + díaInicio + "\") <= f.dateOfDeparture <= date(\"" + díaFin + "\") " +
 					"RETURN sum(f.passengers) AS numPasajeros, sum(f.incomeFromTurism) AS ingresosTurismo, " +
-					"count(f) AS numVuelos, sum(f.flightIfinal) AS riesgoImportado")) {
+					"count(f) AS numVuelos, sum(f.flightIfinal) AS riesgoImportado";
+			}
+			try (Transaction tx = db.beginTx()) {
+				Métricas.contarConsultaBD();
+				try (Result res = tx.execute(consulta)) {
 
 					Map<String, Object> row = res.next();
 					pasajeros = (Long) row.get("numPasajeros");
@@ -1,25 +1,38 @@
 package earlywarn.main.modelo.datoid;
 
+import earlywarn.main.modelo.CuboLíneas;
 import org.neo4j.graphdb.GraphDatabaseService;
 
 import java.time.LocalDate;
 
 /**
- * Factoría que instancia una línea de vuelo dada su ID
+ * Factoría que instancia una línea de vuelo dada su ID.
+ * Si se especifica un cubo de líneas, los valores de las líneas se obtienen del mismo en lugar de consultarse en la BD.
  */
 public class LíneaFactory implements IDatoIDFactory<Línea> {
 	private final GraphDatabaseService db;
 	private final LocalDate díaInicio;
 	private final LocalDate díaFin;
+	// Null si los datos deben obtenerse de la BD
+	private final CuboLíneas cubo;
 
 	public LíneaFactory(LocalDate díaInicio, LocalDate díaFin, GraphDatabaseService db) {
+		this(díaInicio, díaFin, db, null);
+	}
+
+	public LíneaFactory(LocalDate díaInicio, LocalDate díaFin, GraphDatabaseService db, CuboLíneas cubo) {
 		this.db = db;
 		this.díaInicio = díaInicio;
 		this.díaFin = díaFin;
+		this.cubo = cubo;
 	}
 
 	@Override
 	public Línea crear(String id) {
-		return new Línea(id, díaInicio, díaFin, db);
+		if (cubo == null) {
+			return new Línea(id, díaInicio, díaFin, db);
+		} else {
+			return cubo.getLínea(id, díaInicio, díaFin);
+		}
 	}
 }
@@ -7,6 +7,7 @@ import java.util.TreeMap;
  * Permite almacenar una serie de elementos identificados por un ID según se va necesitando acceder a sus datos.
  * La primera vez que se trate de acceder a los datos de un elemento, éste se insertará en el registro. A partir de
  * entonces, los accesos al mismo elemento devolverán la misma instancia.
+ * El registro puede compartirse entre varios hilos (por ejemplo, entre las ejecuciones de un lote de países).
  *
  * @param <T> Tipo de dato a almacenar
  */
@@ -24,7 +25,7 @@ public class RegistroDatoID<T> {
 		this.factoría = factoría;
 	}
 
-	public T get(String id) {
+	public synchronized T get(String id) {
 		T ret = elementos.get(id);
 		if (ret == null) {
 			ret = factoría.crear(id);
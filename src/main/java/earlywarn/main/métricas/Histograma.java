@@ -0,0 +1,132 @@
+package earlywarn.main.métricas;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histograma de valores enteros no negativos (normalmente latencias en nanosegundos) con cubetas de tamaño
+ * logarítmico. Cada potencia de 2 se divide en {@link #SUBCUBETAS} cubetas del mismo tamaño, por lo que el error
+ * relativo de los percentiles obtenidos es como mucho de 1 / SUBCUBETAS.
+ * Registrar un valor solo requiere un incremento atómico sobre un array de tamaño fijo, por lo que el histograma puede
+ * usarse desde varios hilos a la vez y en código crítico sin crear objetos.
+ */
+public class Histograma {
+	// Número de bits de precisión dentro de cada potencia de 2
+	private static final int BITS_SUBCUBETA = 3;
+	private static final int SUBCUBETAS = 1 << BITS_SUBCUBETA;
+	private static final int NUM_CUBETAS = SUBCUBETAS + (Long.SIZE - BITS_SUBCUBETA) * SUBCUBETAS;
+
+	private final AtomicLongArray cubetas;
+	private final LongAdder suma;
+	private final LongAccumulator máximo;
+
+	public Histograma() {
+		cubetas = new AtomicLongArray(NUM_CUBETAS);
+		suma = new LongAdder();
+		máximo = new LongAccumulator(Long::max, 0);
+	}
+
+	/**
+	 * Registra un nuevo valor en el histograma
+	 * @param valor Valor a registrar. Los valores negativos se registran como 0.
+	 */
+	public void registrar(long valor) {
+		if (valor < 0) {
+			valor = 0;
+		}
+		cubetas.incrementAndGet(índice(valor));
+		suma.add(valor);
+		máximo.accumulate(valor);
+	}
+
+	/**
+	 * @return Número de valores registrados
+	 */
+	public long getCuenta() {
+		long cuenta = 0;
+		for (int i = 0; i < NUM_CUBETAS; i++) {
+			cuenta += cubetas.get(i);
+		}
+		return cuenta;
+	}
+
+	/**
+	 * @return Suma de todos los valores registrados
+	 */
+	public long getSuma() {
+		return suma.sum();
+	}
+
+	/**
+	 * @return Media de los valores registrados, o 0 si no se ha registrado ninguno
+	 */
+	public double getMedia() {
+		long cuenta = getCuenta();
+		return cuenta == 0 ? 0 : (double) suma.sum() / cuenta;
+	}
+
+	/**
+	 * @return Mayor valor registrado, o 0 si no se ha registrado ninguno
+	 */
+	public long getMáximo() {
+		return máximo.get();
+	}
+
+	/**
+	 * Obtiene el valor aproximado del percentil indicado
+	 * @param percentil Percentil a obtener, entre 0 y 1
+	 * @return Límite inferior de la cubeta que contiene el percentil indicado, o 0 si no se ha registrado ningún valor
+	 */
+	public long getPercentil(double percentil) {
+		long cuenta = getCuenta();
+		long objetivo = Math.max((long) Math.ceil(percentil * cuenta), 1);
+		long acumulado = 0;
+		for (int i = 0; i < NUM_CUBETAS; i++) {
+			acumulado += cubetas.get(i);
+			if (acumulado >= objetivo) {
+				return límiteInferior(i);
+			}
+		}
+		return 0;
+	}
+
+	/**
+	 * Elimina todos los valores registrados
+	 */
+	public void reiniciar() {
+		for (int i = 0; i < NUM_CUBETAS; i++) {
+			cubetas.set(i, 0);
+		}
+		suma.reset();
+		máximo.reset();
+	}
+
+	/**
+	 * @param valor Valor no negativo
+	 * @return Índice de la cubeta en la que se debe registrar el valor
+	 */
+	private static int índice(long valor) {
+		if (valor < SUBCUBETAS) {
+			return (int) valor;
+		} else {
+			int exponente = Long.SIZE - 1 - Long.numberOfLeadingZeros(valor);
+			int subcubeta = (int) (valor >>> (exponente - BITS_SUBCUBETA)) & (SUBCUBETAS - 1);
+			return SUBCUBETAS + (exponente - BITS_SUBCUBETA) * SUBCUBETAS + subcubeta;
+		}
+	}
+
+	/**
+	 * @param índice Índice de una cubeta
+	 * @return Menor valor que se registra en la cubeta indicada
+	 */
+	private static long límiteInferior(int índice) {
+		if (índice < SUBCUBETAS) {
+			return índice;
+		} else {
+			int exponente = (índice - SUBCUBETAS) / SUBCUBETAS + BITS_SUBCUBETA;
+			int subcubeta = (índice - SUBCUBETAS) % SUBCUBETAS;
+			return (long) (SUBCUBETAS + subcubeta) << (exponente - BITS_SUBCUBETA);
+		}
+	}
+}
@@ -0,0 +1,250 @@
+package earlywarn.main.métricas;
+
+import earlywarn.definiciones.IDCriterio;
+import org.neo4j.logging.Log;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Registro global de métricas de rendimiento de la metaheurística. Contiene contadores de eventos y histogramas de
+ * latencias que se actualizan desde el código crítico, por lo que todas las operaciones de registro son baratas y
+ * seguras en presencia de varios hilos (contadores repartidos y cubetas atómicas).
+ * Las métricas se acumulan entre ejecuciones hasta que se reinician.
+ */
+public class Métricas {
+	/**
+	 * Eventos que se cuentan durante la ejecución
+	 */
+	public enum Contador {
+		// Iteraciones de la metaheurística
+		ITERACIONES,
+		// Movimientos aceptados y rechazados por el recocido simulado
+		MOVIMIENTOS_ACEPTADOS,
+		MOVIMIENTOS_RECHAZADOS,
+		// Movimientos candidatos evaluados (puede haber varios por iteración)
+		MOVIMIENTOS_EVALUADOS,
+		// Movimientos candidatos cuyo resultado se ha obtenido de la caché de evaluaciones
+		ACIERTOS_CACHÉ_EVALUACIONES,
+		// Movimientos que dan lugar a una solución que no cumple las restricciones
+		MOVIMIENTOS_INFACTIBLES,
+		// Cambios de entorno VNS que han dado lugar a un entorno diferente del anterior
+		CAMBIOS_ENTORNO,
+		// Consultas realizadas a la BD
+		CONSULTAS_BD,
+		// Tiempo total de ejecución de la metaheurística, en nanosegundos
+		TIEMPO_EJECUCIÓN_NS,
+		// Memoria asignada por el hilo de la metaheurística durante su ejecución, en bytes
+		BYTES_ASIGNADOS
+	}
+
+	/**
+	 * Operaciones cuya latencia se mide durante la ejecución
+	 */
+	public enum Temporizador {
+		/*
+		 * Evaluar las soluciones resultantes de los movimientos candidatos de una iteración (fitness y restricciones)
+		 * sin aplicarlos
+		 */
+		EVALUACIÓN_MOVIMIENTO,
+		// Iteración completa de la metaheurística
+		ITERACIÓN
+	}
+
+	private static final Map<Contador, LongAdder> contadores = new EnumMap<>(Contador.class);
+	private static final Map<Temporizador, Histograma> temporizadores = new EnumMap<>(Temporizador.class);
+	// Tiempo empleado por cada criterio en recalcular su valor tras abrir o cerrar una línea
+	private static final Map<IDCriterio, Histograma> tiemposRecalcular = new EnumMap<>(IDCriterio.class);
+
+	static {
+		for (Contador contador : Contador.values()) {
+			contadores.put(contador, new LongAdder());
+		}
+		for (Temporizador temporizador : Temporizador.values()) {
+			temporizadores.put(temporizador, new Histograma());
+		}
+		for (IDCriterio criterio : IDCriterio.values()) {
+			tiemposRecalcular.put(criterio, new Histograma());
+		}
+	}
+
+	private Métricas() {}
+
+	/**
+	 * Resumen de una métrica, usado para mostrar su valor
+	 */
+	public static class Resumen {
+		public final String métrica;
+		// Valor del contador o número de valores registrados en el histograma
+		public final Long cuenta;
+		// Datos del histograma, en nanosegundos. Null si la métrica es un contador.
+		public final Double media;
+		public final Long p50;
+		public final Long p90;
+		public final Long p99;
+		public final Long máximo;
+
+		public Resumen(String métrica, long cuenta) {
+			this.métrica = métrica;
+			this.cuenta = cuenta;
+			media = null;
+			p50 = null;
+			p90 = null;
+			p99 = null;
+			máximo = null;
+		}
+
+		public Resumen(String métrica, Histograma histograma) {
+			this.métrica = métrica;
+			cuenta = histograma.getCuenta();
+			media = histograma.getMedia();
+			p50 = histograma.getPercentil(0.5);
+			p90 = histograma.getPercentil(0.9);
+			p99 = histograma.getPercentil(0.99);
+			máximo = histograma.getMáximo();
+		}
+
+		public String toCsv() {
+			return métrica + "," + cuenta + "," + (media == null ? "" : media) + "," + (p50 == null ? "" : p50) +
+				"," + (p90 == null ? "" : p90) + "," + (p99 == null ? "" : p99) + "," + (máximo == null ? "" : máximo);
+		}
+
+		public static String cabecera() {
+			return "Métrica, Cuenta, Media (ns), p50 (ns), p90 (ns), p99 (ns), Máximo (ns)";
+		}
+	}
+
+	/**
+	 * Incrementa en 1 el contador indicado
+	 * @param contador Contador a incrementar
+	 */
+	public static void contar(Contador contador) {
+		contadores.get(contador).increment();
+	}
+
+	/**
+	 * Incrementa el contador indicado en la cantidad especificada
+	 * @param contador Contador a incrementar
+	 * @param cantidad Cantidad a sumar
+	 */
+	public static void sumar(Contador contador, long cantidad) {
+		contadores.get(contador).add(cantidad);
+	}
+
+	/**
+	 * Registra una consulta a la BD
+	 */
+	public static void contarConsultaBD() {
+		contadores.get(Contador.CONSULTAS_BD).increment();
+	}
+
+	/**
+	 * Registra la duración de una operación
+	 * @param temporizador Operación realizada
+	 * @param ns Duración de la operación en nanosegundos
+	 */
+	public static void registrarTiempo(Temporizador temporizador, long ns) {
+		temporizadores.get(temporizador).registrar(ns);
+	}
+
+	/**
+	 * Registra el tiempo que ha tardado un criterio en recalcular su valor
+	 * @param criterio Criterio que ha recalculado su valor
+	 * @param ns Duración del cálculo en nanosegundos
+	 */
+	public static void registrarRecalcular(IDCriterio criterio, long ns) {
+		tiemposRecalcular.get(criterio).registrar(ns);
+	}
+
+	/**
+	 * @return Memoria total asignada hasta ahora por el hilo actual, en bytes, o -1 si la JVM no permite medirla
+	 */
+	public static long getBytesAsignadosHilo() {
+		ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		if (bean instanceof com.sun.management.ThreadMXBean) {
+			com.sun.management.ThreadMXBean beanSun = (com.sun.management.ThreadMXBean) bean;
+			if (beanSun.isThreadAllocatedMemorySupported() && beanSun.isThreadAllocatedMemoryEnabled()) {
+				return beanSun.getThreadAllocatedBytes(Thread.currentThread().getId());
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * @return Lista con el resumen de todas las métricas. Los histogramas de criterios sin datos no se incluyen.
+	 */
+	public static List<Resumen> getResumen() {
+		List<Resumen> ret = new ArrayList<>();
+		for (Map.Entry<Contador, LongAdder> entrada : contadores.entrySet()) {
+			ret.add(new Resumen(entrada.getKey().name(), entrada.getValue().sum()));
+		}
+		long ns = contadores.get(Contador.TIEMPO_EJECUCIÓN_NS).sum();
+		if (ns > 0) {
+			// Tasa de asignación de memoria, en bytes por segundo
+			long bytes = contadores.get(Contador.BYTES_ASIGNADOS).sum();
+			ret.add(new Resumen("TASA_ASIGNACIÓN_BYTES_S", (long) (bytes / (ns / 1e9))));
+			// Movimientos evaluados por segundo
+			long evaluados = contadores.get(Contador.MOVIMIENTOS_EVALUADOS).sum();
+			ret.add(new Resumen("TASA_MOVIMIENTOS_EVALUADOS_S", (long) (evaluados / (ns / 1e9))));
+		}
+		for (Map.Entry<Temporizador, Histograma> entrada : temporizadores.entrySet()) {
+			ret.add(new Resumen(entrada.getKey().name(), entrada.getValue()));
+		}
+		for (Map.Entry<IDCriterio, Histograma> entrada : tiemposRecalcular.entrySet()) {
+			if (entrada.getValue().getCuenta() > 0) {
+				ret.add(new Resumen("RECALCULAR_" + entrada.getKey().name(), entrada.getValue()));
+			}
+		}
+		return ret;
+	}
+
+	/**
+	 * Elimina todos los valores registrados
+	 */
+	public static void reiniciar() {
+		for (LongAdder contador : contadores.values()) {
+			contador.reset();
+		}
+		for (Histograma histograma : temporizadores.values()) {
+			histograma.reiniciar();
+		}
+		for (Histograma histograma : tiemposRecalcular.values()) {
+			histograma.reiniciar();
+		}
+	}
+
+	/**
+	 * Almacena el resumen de todas las métricas en un fichero CSV
+	 * @param rutaFichero Ruta al fichero de salida
+	 * @param log Log de Neo4J
+	 */
+	public static void toCsv(String rutaFichero, Log log) {
+		try {
+			Files.createDirectory(Paths.get(rutaFichero).getParent());
+		} catch (FileAlreadyExistsException e) {
+			// OK
+		} catch (IOException e) {
+			log.warn("No se ha podido crear el directorio para almacenar las métricas.\n" + e);
+			return;
+		}
+
+		try (FileWriter fSalida = new FileWriter(rutaFichero)) {
+			fSalida.write(Resumen.cabecera() + "\n");
+			for (Resumen resumen : getResumen()) {
+				fSalida.write(resumen.toCsv() + "\n");
+			}
+		} catch (IOException e) {
+			log.warn("No se han podido guardar las métricas.\n" + e);
+		}
+	}
+}
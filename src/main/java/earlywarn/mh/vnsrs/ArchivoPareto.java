@@ -0,0 +1,425 @@
+package earlywarn.mh.vnsrs;
+
+import earlywarn.definiciones.IDCriterio;
+import earlywarn.definiciones.IPersistible;
+import earlywarn.main.GestorLíneas;
+import earlywarn.main.Utils;
+import org.neo4j.logging.Log;
+
+import java.io.*;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.*;
+
+/**
+ * Archivo con las soluciones no dominadas encontradas durante una ejecución de la metaheurística, usado en el modo
+ * multiobjetivo. Cada solución se describe con el valor porcentual de los criterios de la configuración, que son los
+ * objetivos a maximizar. Una solución domina a otra si es al menos igual de buena en todos los objetivos y mejor en
+ * alguno de ellos.
+ * Como el fitness es una suma ponderada de los mismos porcentajes, la mejor solución para una combinación de pesos no
+ * negativos es una solución no dominada. Por tanto, el frente exportado de una ejecución permite obtener una buena
+ * solución para otras combinaciones de pesos con una simple consulta ({@link #consultar(String, Map)}), sin tener
+ * que repetir la ejecución con cada una. El resultado es una aproximación: el frente solo contiene las soluciones
+ * visitadas por la búsqueda, y si el archivo se llena se descartan soluciones no dominadas, por lo que la mejor
+ * solución para una combinación de pesos concreta puede no estar en él.
+ * Las entradas se mantienen ordenadas de mayor a menor suma de sus objetivos: una solución solo puede estar dominada
+ * por otra con una suma mayor o igual, y solo puede dominar a otras con una suma menor o igual, lo que limita las
+ * comparaciones necesarias al insertar una nueva. El número de entradas está limitado. Si se supera, se descarta la
+ * entrada más cercana a otra del archivo, salvo que sea la mejor en alguno de los objetivos.
+ */
+public class ArchivoPareto implements IPersistible {
+	private static final String CABECERA_LÍNEAS = "Líneas cerradas";
+
+	private final List<IDCriterio> criterios;
+	private final int capacidad;
+	private final int numObjetivos;
+	// Número de longs necesarios para almacenar el estado de todas las líneas, a razón de un bit por línea
+	private final int numPalabras;
+
+	/*
+	 * Datos de cada entrada según el hueco que ocupa. Hay un hueco más que la capacidad del archivo para poder
+	 * insertar una entrada antes de descartar otra. Los objetivos de la entrada del hueco h ocupan las posiciones
+	 * h * numObjetivos a (h + 1) * numObjetivos - 1.
+	 */
+	private final double[] objetivos;
+	private final double[] sumas;
+	private final long[] hashes;
+	// Estado de las líneas de cada entrada (1 = abierta)
+	private final long[][] líneasAbiertas;
+	// Huecos ocupados, de mayor a menor suma de objetivos
+	private final int[] orden;
+	private int tamaño;
+	// Huecos libres
+	private final int[] libres;
+	private int numLibres;
+
+	// Arrays auxiliares, reservados una sola vez
+	private final boolean[] líneasAux;
+	private final boolean[] protegidos;
+
+	/**
+	 * Crea un archivo vacío
+	 * @param criterios Criterios que se usan como objetivos, en el orden en el que se proporcionarán sus valores
+	 * @param capacidad Número máximo de soluciones que se almacenan
+	 * @param numLíneas Número total de líneas del problema
+	 */
+	public ArchivoPareto(List<IDCriterio> criterios, int capacidad, int numLíneas) {
+		if (capacidad < 1) {
+			throw new IllegalArgumentException("La capacidad del archivo de Pareto debe ser positiva");
+		}
+		this.criterios = new ArrayList<>(criterios);
+		this.capacidad = capacidad;
+		numObjetivos = criterios.size();
+		numPalabras = (numLíneas + 63) >>> 6;
+		int numHuecos = capacidad + 1;
+		objetivos = new double[numHuecos * numObjetivos];
+		sumas = new double[numHuecos];
+		hashes = new long[numHuecos];
+		líneasAbiertas = new long[numHuecos][numPalabras];
+		orden = new int[numHuecos];
+		libres = new int[numHuecos];
+		líneasAux = new boolean[numLíneas];
+		protegidos = new boolean[numHuecos];
+		vaciar();
+	}
+
+	/**
+	 * @return Número de soluciones almacenadas
+	 */
+	public int getTamaño() {
+		return tamaño;
+	}
+
+	/**
+	 * Ofrece la solución actual de un gestor de líneas al archivo. La solución se añade si no está dominada por
+	 * ninguna de las almacenadas, y se eliminan las que pasen a estar dominadas por ella.
+	 * @param valores Valor de cada objetivo en la solución, en el orden indicado al crear el archivo
+	 * @param gLíneas Gestor de líneas que contiene la solución. Debe cumplir las restricciones.
+	 * @return True si la solución se ha añadido al archivo
+	 */
+	public boolean ofrecer(double[] valores, GestorLíneas gLíneas) {
+		double suma = 0;
+		for (int o = 0; o < numObjetivos; o++) {
+			suma += valores[o];
+		}
+
+		// Comprobar si alguna entrada con una suma mayor o igual domina a la nueva solución o es igual a ella
+		int posición = 0;
+		while (posición < tamaño && sumas[orden[posición]] >= suma) {
+			if (dominaOIgual(orden[posición], valores)) {
+				return false;
+			}
+			posición++;
+		}
+		/*
+		 * Eliminar las entradas dominadas por la nueva solución. Por redondeo, puede haber alguna con la misma suma
+		 * antes de la posición de inserción.
+		 */
+		int inicio = posición;
+		while (inicio > 0 && sumas[orden[inicio - 1]] == suma) {
+			inicio--;
+		}
+		int escritura = inicio;
+		int nuevaPosición = posición;
+		for (int i = inicio; i < tamaño; i++) {
+			int hueco = orden[i];
+			if (domina(valores, hueco)) {
+				libres[numLibres++] = hueco;
+				if (i < posición) {
+					nuevaPosición--;
+				}
+			} else {
+				orden[escritura++] = hueco;
+			}
+		}
+		tamaño = escritura;
+
+		// Insertar la nueva solución
+		int hueco = libres[--numLibres];
+		System.arraycopy(orden, nuevaPosición, orden, nuevaPosición + 1, tamaño - nuevaPosición);
+		orden[nuevaPosición] = hueco;
+		tamaño++;
+		System.arraycopy(valores, 0, objetivos, hueco * numObjetivos, numObjetivos);
+		sumas[hueco] = suma;
+		hashes[hueco] = gLíneas.getHash();
+		gLíneas.copiarLíneasBool(líneasAux);
+		long[] bits = líneasAbiertas[hueco];
+		Arrays.fill(bits, 0);
+		for (int i = 0; i < líneasAux.length; i++) {
+			if (líneasAux[i]) {
+				bits[i >>> 6] |= 1L << i;
+			}
+		}
+
+		if (tamaño > capacidad) {
+			int descartado = elegirDescartado();
+			quitar(descartado);
+			return descartado != hueco;
+		}
+		return true;
+	}
+
+	/**
+	 * Almacena el frente de soluciones no dominadas en un fichero CSV. Cada fila contiene el valor de cada objetivo y
+	 * la lista de líneas cerradas de una solución. Las filas están ordenadas de mayor a menor suma de los objetivos.
+	 * @param rutaFichero Ruta al fichero de salida
+	 * @param conversorLíneas Conversor que permite obtener el ID de cada línea
+	 * @param log Log de Neo4J
+	 */
+	public void toCsv(String rutaFichero, ConversorLíneas conversorLíneas, Log log) {
+		try {
+			Files.createDirectory(Paths.get(rutaFichero).getParent());
+		} catch (FileAlreadyExistsException e) {
+			// OK
+		} catch (IOException e) {
+			log.warn("No se ha podido crear el directorio para almacenar el frente de Pareto.\n" + e);
+			return;
+		}
+
+		try (FileWriter fSalida = new FileWriter(rutaFichero)) {
+			fSalida.write(Utils.listaToString(criterios, false, false) + "," + CABECERA_LÍNEAS + "\n");
+			for (int i = 0; i < tamaño; i++) {
+				int hueco = orden[i];
+				StringBuilder sb = new StringBuilder();
+				for (int o = 0; o < numObjetivos; o++) {
+					sb.append(objetivos[hueco * numObjetivos + o]).append(",");
+				}
+				long[] bits = líneasAbiertas[hueco];
+				for (int l = 0; l < líneasAux.length; l++) {
+					líneasAux[l] = (bits[l >>> 6] & (1L << l)) != 0;
+				}
+				sb.append("\"").append(Utils.listaToString(conversorLíneas.getCerradas(líneasAux), false, false))
+					.append("\"\n");
+				fSalida.write(sb.toString());
+			}
+		} catch (IOException e) {
+			log.warn("No se ha podido guardar el frente de Pareto.\n" + e);
+		}
+	}
+
+	/**
+	 * Obtiene la mejor solución de un frente de Pareto exportado con {@link #toCsv(String, ConversorLíneas, Log)}
+	 * para una combinación de pesos cualquiera. Como el frente es una aproximación (ver la descripción de la clase),
+	 * la solución devuelta es la mejor de las almacenadas, no necesariamente la mejor posible.
+	 * @param rutaFichero Ruta al fichero que contiene el frente
+	 * @param pesos Peso de cada criterio. Los criterios del frente que no estén incluidos tienen un peso de 0.
+	 * @return Solución del frente con el mayor fitness según los pesos indicados
+	 * @throws IllegalArgumentException Si alguno de los pesos corresponde a un criterio que no forma parte del
+	 * frente, o si el frente no contiene ninguna solución
+	 * @throws UncheckedIOException Si se produce un error al leer el fichero
+	 */
+	public static SoluciónFrente consultar(String rutaFichero, Map<IDCriterio, Double> pesos) {
+		try (BufferedReader entrada = new BufferedReader(new FileReader(rutaFichero))) {
+			String cabecera = entrada.readLine();
+			if (cabecera == null) {
+				throw new IllegalArgumentException("El fichero " + rutaFichero + " no contiene un frente de Pareto");
+			}
+			String[] columnas = cabecera.split(",");
+			List<IDCriterio> criteriosFrente = new ArrayList<>();
+			for (int i = 0; i < columnas.length - 1; i++) {
+				criteriosFrente.add(IDCriterio.valueOf(columnas[i]));
+			}
+			for (IDCriterio criterio : pesos.keySet()) {
+				if (!criteriosFrente.contains(criterio)) {
+					throw new IllegalArgumentException("El criterio " + criterio + " no forma parte del frente de " +
+						"Pareto almacenado en " + rutaFichero);
+				}
+			}
+			double[] vectorPesos = new double[criteriosFrente.size()];
+			for (int i = 0; i < vectorPesos.length; i++) {
+				vectorPesos[i] = pesos.getOrDefault(criteriosFrente.get(i), 0.0);
+			}
+
+			String mejorFila = null;
+			double mejorFitness = Double.NEGATIVE_INFINITY;
+			String fila;
+			while ((fila = entrada.readLine()) != null) {
+				String[] valores = fila.substring(0, fila.indexOf('"')).split(",");
+				double fitness = 0;
+				for (int i = 0; i < vectorPesos.length; i++) {
+					fitness += vectorPesos[i] * Double.parseDouble(valores[i]);
+				}
+				if (fitness > mejorFitness) {
+					mejorFitness = fitness;
+					mejorFila = fila;
+				}
+			}
+			if (mejorFila == null) {
+				throw new IllegalArgumentException("El frente de Pareto almacenado en " + rutaFichero + " está vacío");
+			}
+			return new SoluciónFrente(criteriosFrente, mejorFila, mejorFitness);
+		} catch (IOException e) {
+			throw new UncheckedIOException("Error al leer el frente de Pareto del fichero " + rutaFichero, e);
+		}
+	}
+
+	@Override
+	public void escribirEstado(ObjectOutput salida) throws IOException {
+		salida.writeInt(tamaño);
+		for (int i = 0; i < tamaño; i++) {
+			int hueco = orden[i];
+			for (int o = 0; o < numObjetivos; o++) {
+				salida.writeDouble(objetivos[hueco * numObjetivos + o]);
+			}
+			salida.writeLong(hashes[hueco]);
+			for (long palabra : líneasAbiertas[hueco]) {
+				salida.writeLong(palabra);
+			}
+		}
+	}
+
+	@Override
+	public void leerEstado(ObjectInput entrada) throws IOException {
+		int nuevoTamaño = entrada.readInt();
+		if (nuevoTamaño > capacidad) {
+			throw new IOException("El archivo de Pareto del checkpoint (" + nuevoTamaño + " soluciones) supera la " +
+				"capacidad del actual (" + capacidad + ")");
+		}
+		vaciar();
+		for (int i = 0; i < nuevoTamaño; i++) {
+			int hueco = libres[--numLibres];
+			double suma = 0;
+			for (int o = 0; o < numObjetivos; o++) {
+				double valor = entrada.readDouble();
+				objetivos[hueco * numObjetivos + o] = valor;
+				suma += valor;
+			}
+			sumas[hueco] = suma;
+			hashes[hueco] = entrada.readLong();
+			for (int p = 0; p < numPalabras; p++) {
+				líneasAbiertas[hueco][p] = entrada.readLong();
+			}
+			orden[tamaño++] = hueco;
+		}
+	}
+
+	/**
+	 * Elimina todas las entradas del archivo
+	 */
+	private void vaciar() {
+		tamaño = 0;
+		numLibres = libres.length;
+		for (int i = 0; i < libres.length; i++) {
+			// Los huecos se asignan en orden creciente
+			libres[i] = libres.length - 1 - i;
+		}
+	}
+
+	/**
+	 * @return True si la entrada del hueco indicado domina a la solución con los valores indicados o es igual a ella
+	 */
+	private boolean dominaOIgual(int hueco, double[] valores) {
+		int base = hueco * numObjetivos;
+		for (int o = 0; o < numObjetivos; o++) {
+			if (objetivos[base + o] < valores[o]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @return True si la solución con los valores indicados domina a la entrada del hueco indicado
+	 */
+	private boolean domina(double[] valores, int hueco) {
+		int base = hueco * numObjetivos;
+		boolean mejorEnAlguno = false;
+		for (int o = 0; o < numObjetivos; o++) {
+			double valor = objetivos[base + o];
+			if (valores[o] < valor) {
+				return false;
+			} else if (valores[o] > valor) {
+				mejorEnAlguno = true;
+			}
+		}
+		return mejorEnAlguno;
+	}
+
+	/**
+	 * Elige la entrada a descartar cuando se supera la capacidad del archivo: la más cercana a cualquier otra, sin
+	 * contar las que son las mejores en alguno de los objetivos
+	 * @return Hueco de la entrada a descartar
+	 */
+	private int elegirDescartado() {
+		for (int i = 0; i < tamaño; i++) {
+			protegidos[orden[i]] = false;
+		}
+		for (int o = 0; o < numObjetivos; o++) {
+			int mejor = orden[0];
+			for (int i = 1; i < tamaño; i++) {
+				if (objetivos[orden[i] * numObjetivos + o] > objetivos[mejor * numObjetivos + o]) {
+					mejor = orden[i];
+				}
+			}
+			protegidos[mejor] = true;
+		}
+
+		// Si todas las entradas están protegidas, se descarta la de menor suma
+		int descartado = orden[tamaño - 1];
+		double menorDistancia = Double.POSITIVE_INFINITY;
+		for (int i = 0; i < tamaño; i++) {
+			int a = orden[i];
+			if (protegidos[a]) {
+				continue;
+			}
+			for (int j = 0; j < tamaño; j++) {
+				int b = orden[j];
+				if (a != b) {
+					double distancia = distanciaCuadrado(a, b);
+					if (distancia < menorDistancia) {
+						menorDistancia = distancia;
+						descartado = a;
+					}
+				}
+			}
+		}
+		return descartado;
+	}
+
+	private double distanciaCuadrado(int huecoA, int huecoB) {
+		double total = 0;
+		for (int o = 0; o < numObjetivos; o++) {
+			double diferencia = objetivos[huecoA * numObjetivos + o] - objetivos[huecoB * numObjetivos + o];
+			total += diferencia * diferencia;
+		}
+		return total;
+	}
+
+	/**
+	 * Elimina del archivo la entrada del hueco indicado
+	 */
+	private void quitar(int hueco) {
+		for (int i = 0; i < tamaño; i++) {
+			if (orden[i] == hueco) {
+				System.arraycopy(orden, i + 1, orden, i, tamaño - i - 1);
+				tamaño--;
+				libres[numLibres++] = hueco;
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Solución de un frente de Pareto exportado, obtenida con {@link #consultar(String, Map)}
+	 */
+	public static class SoluciónFrente {
+		// Fitness de la solución según los pesos usados en la consulta
+		public final double fitness;
+		// Valor porcentual de cada criterio del frente
+		public final Map<IDCriterio, Double> porcentajes;
+		public final List<String> líneasCerradas;
+
+		private SoluciónFrente(List<IDCriterio> criterios, String fila, double fitness) {
+			this.fitness = fitness;
+			int inicioLíneas = fila.indexOf('"');
+			String[] valores = fila.substring(0, inicioLíneas).split(",");
+			porcentajes = new EnumMap<>(IDCriterio.class);
+			for (int i = 0; i < criterios.size(); i++) {
+				porcentajes.put(criterios.get(i), Double.parseDouble(valores[i]));
+			}
+			String textoLíneas = fila.substring(inicioLíneas + 1, fila.lastIndexOf('"'));
+			líneasCerradas = textoLíneas.isEmpty() ? new ArrayList<>() : Arrays.asList(textoLíneas.split(","));
+		}
+	}
+}
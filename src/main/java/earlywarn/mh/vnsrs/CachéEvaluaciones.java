@@ -0,0 +1,125 @@
+package earlywarn.mh.vnsrs;
+
+import earlywarn.main.GestorLíneas;
+
+import java.util.Arrays;
+
+/**
+ * Caché de tamaño fijo con el fitness y la factibilidad de soluciones ya evaluadas, identificadas por su hash Zobrist
+ * ({@link GestorLíneas#getHash()}). Permite puntuar sin volver a evaluar los criterios las soluciones que la
+ * metaheurística visita repetidamente (por ejemplo, un movimiento seguido del inverso).
+ * Usa direccionamiento abierto con sondeo lineal sobre arrays de tipos primitivos, por lo que consultar e insertar
+ * valores no crea objetos. Si no hay huecos libres cerca de la posición que corresponde a una nueva entrada, ésta
+ * sustituye a la que ocupa dicha posición.
+ * Las instancias no son seguras en presencia de varios hilos.
+ */
+public class CachéEvaluaciones {
+	// Número máximo de posiciones consecutivas que se consultan al buscar o insertar una entrada
+	private static final int MAX_SONDEOS = 8;
+
+	private final long[] claves;
+	// Fitness de cada entrada. NaN si la posición está libre.
+	private final double[] fitness;
+	private final boolean[] factibles;
+	private final int máscara;
+	private final int maxSondeos;
+
+	// Número de consultas que han encontrado y que no han encontrado la solución buscada
+	private long aciertos;
+	private long fallos;
+
+	/**
+	 * Crea una caché vacía
+	 * @param tamaño Número máximo de entradas. Se redondea a la siguiente potencia de 2.
+	 */
+	public CachéEvaluaciones(int tamaño) {
+		if (tamaño < 1) {
+			throw new IllegalArgumentException("El tamaño de la caché debe ser positivo");
+		}
+		int capacidad = tamaño == 1 ? 1 : Integer.highestOneBit(tamaño - 1) << 1;
+		claves = new long[capacidad];
+		fitness = new double[capacidad];
+		factibles = new boolean[capacidad];
+		Arrays.fill(fitness, Double.NaN);
+		máscara = capacidad - 1;
+		maxSondeos = Math.min(MAX_SONDEOS, capacidad);
+		aciertos = 0;
+		fallos = 0;
+	}
+
+	/**
+	 * Busca una solución en la caché
+	 * @param hash Hash de la solución
+	 * @return Posición de la solución en la caché, que permite obtener sus datos con {@link #getFitness(int)} y
+	 * {@link #isFactible(int)}, o -1 si la solución no está en la caché
+	 */
+	public int buscar(long hash) {
+		int posición = (int) hash & máscara;
+		for (int i = 0; i < maxSondeos; i++) {
+			if (Double.isNaN(fitness[posición])) {
+				break;
+			} else if (claves[posición] == hash) {
+				aciertos++;
+				return posición;
+			}
+			posición = (posición + 1) & máscara;
+		}
+		fallos++;
+		return -1;
+	}
+
+	/**
+	 * Almacena los datos de una solución en la caché
+	 * @param hash Hash de la solución
+	 * @param fitnessSolución Fitness de la solución
+	 * @param factible True si la solución cumple las restricciones
+	 */
+	public void insertar(long hash, double fitnessSolución, boolean factible) {
+		int inicial = (int) hash & máscara;
+		int destino = inicial;
+		int posición = inicial;
+		for (int i = 0; i < maxSondeos; i++) {
+			if (Double.isNaN(fitness[posición]) || claves[posición] == hash) {
+				destino = posición;
+				break;
+			}
+			posición = (posición + 1) & máscara;
+		}
+		claves[destino] = hash;
+		fitness[destino] = fitnessSolución;
+		factibles[destino] = factible;
+	}
+
+	/**
+	 * @param posición Posición devuelta por {@link #buscar(long)}
+	 * @return Fitness de la solución almacenada en la posición indicada
+	 */
+	public double getFitness(int posición) {
+		return fitness[posición];
+	}
+
+	/**
+	 * @param posición Posición devuelta por {@link #buscar(long)}
+	 * @return True si la solución almacenada en la posición indicada cumple las restricciones
+	 */
+	public boolean isFactible(int posición) {
+		return factibles[posición];
+	}
+
+	public long getAciertos() {
+		return aciertos;
+	}
+
+	public long getFallos() {
+		return fallos;
+	}
+
+	/**
+	 * @return Porcentaje de consultas en las que se ha encontrado la solución buscada (entre 0 y 1), o 0 si no se ha
+	 * realizado ninguna
+	 */
+	public double getTasaAciertos() {
+		long consultas = aciertos + fallos;
+		return consultas == 0 ? 0 : (double) aciertos / consultas;
+	}
+}
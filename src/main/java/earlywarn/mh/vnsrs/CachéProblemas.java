@@ -0,0 +1,227 @@
+package earlywarn.mh.vnsrs;
+
+import earlywarn.main.invalidación.BusInvalidaciones;
+import earlywarn.main.invalidación.Invalidación;
+import earlywarn.mh.vnsrs.config.Config;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.logging.Log;
+
+import java.io.File;
+import java.time.LocalDate;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Mantiene en memoria los datos de los últimos problemas obtenidos de la BD, de forma que las llamadas consecutivas a
+ * procedimientos que trabajan sobre el mismo problema (mismo país, rango de fechas y origen de los datos) no tengan
+ * que volver a consultarlos.
+ * El número de problemas almacenados está limitado. Si se supera, se descarta el que lleve más tiempo sin usarse.
+ * Los problemas almacenados se descartan cuando se modifican los datos de la BD de los que dependen (ver
+ * {@link BusInvalidaciones}), o manualmente con {@link #invalidar()}. Si se usa un cubo de líneas, los problemas
+ * obtenidos del mismo se vuelven a cargar si el fichero del cubo se modifica.
+ * Los datos de un mismo problema pueden usarse a la vez desde varias ejecuciones. Si se solicita un problema que se
+ * está cargando, se espera a que termine la carga en lugar de cargarlo de nuevo.
+ */
+public class CachéProblemas {
+	// Número máximo de problemas almacenados
+	private static final int CAPACIDAD = 4;
+
+	// Tareas que cargan cada problema, ordenadas de menos a más recientemente usadas
+	private static final Map<Clave, FutureTask<DatosProblema>> problemas = new LinkedHashMap<>(16, 0.75f, true) {
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Clave, FutureTask<DatosProblema>> entrada) {
+			return size() > CAPACIDAD;
+		}
+	};
+	private static long aciertos = 0;
+	private static long fallos = 0;
+
+	static {
+		BusInvalidaciones.registrar(CachéProblemas::invalidar);
+	}
+
+	private CachéProblemas() {}
+
+	/**
+	 * Obtiene los datos del problema definido en la configuración. Si no están almacenados, se obtienen de la BD
+	 * (ver {@link DatosProblema#desdeBD(Config, GraphDatabaseService, Log)}).
+	 * @param config Configuración de la metaheurística
+	 * @param db Conexión a la BD
+	 * @param log Log de Neo4J
+	 * @return Datos del problema
+	 */
+	public static DatosProblema get(Config config, GraphDatabaseService db, Log log) {
+		Clave clave = new Clave(config, db);
+		FutureTask<DatosProblema> tarea;
+		boolean cargar = false;
+		synchronized (problemas) {
+			tarea = problemas.get(clave);
+			if (tarea == null) {
+				tarea = new FutureTask<>(() -> DatosProblema.desdeBD(config, db, log));
+				problemas.put(clave, tarea);
+				cargar = true;
+				fallos++;
+			} else {
+				aciertos++;
+			}
+		}
+
+		if (cargar) {
+			tarea.run();
+		} else {
+			log.info("Datos del problema (" + config.país + ", " + config.díaInicio + " - " + config.díaFin +
+				") obtenidos de la caché");
+		}
+		try {
+			return tarea.get();
+		} catch (ExecutionException e) {
+			// No se almacenan los problemas que no se han podido cargar
+			synchronized (problemas) {
+				problemas.remove(clave, tarea);
+			}
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			} else {
+				throw new IllegalStateException(e.getCause());
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Se ha interrumpido la carga de los datos del problema", e);
+		}
+	}
+
+	/**
+	 * Descarta todos los problemas almacenados. Las ejecuciones que ya los estén usando no se ven afectadas.
+	 */
+	public static void invalidar() {
+		synchronized (problemas) {
+			problemas.clear();
+		}
+	}
+
+	/**
+	 * Descarta los problemas afectados por una modificación de la BD. Los problemas que aún se están cargando se
+	 * descartan siempre, ya que pueden haber leído los datos antes de la modificación.
+	 * @param invalidación Datos modificados
+	 */
+	public static void invalidar(Invalidación invalidación) {
+		synchronized (problemas) {
+			Iterator<Map.Entry<Clave, FutureTask<DatosProblema>>> it = problemas.entrySet().iterator();
+			while (it.hasNext()) {
+				Map.Entry<Clave, FutureTask<DatosProblema>> entrada = it.next();
+				Clave clave = entrada.getKey();
+				if (clave.baseDatos.equals(invalidación.baseDatos) &&
+					invalidación.afectaARango(clave.díaInicio, clave.díaFin) &&
+					(!entrada.getValue().isDone() || afectaAProblema(invalidación, entrada.getValue()))) {
+					it.remove();
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return Número de problemas almacenados actualmente
+	 */
+	public static int getNumProblemas() {
+		synchronized (problemas) {
+			return problemas.size();
+		}
+	}
+
+	/**
+	 * @return Número de solicitudes que se han respondido con un problema almacenado
+	 */
+	public static long getAciertos() {
+		synchronized (problemas) {
+			return aciertos;
+		}
+	}
+
+	/**
+	 * @return Número de solicitudes que han requerido cargar el problema de la BD
+	 */
+	public static long getFallos() {
+		synchronized (problemas) {
+			return fallos;
+		}
+	}
+
+	/**
+	 * Comprueba si una invalidación afecta a alguna línea de un problema ya cargado. Una línea que no forma parte del
+	 * problema también lo afecta si su destino es uno de los aeropuertos del país, ya que puede tratarse de una línea
+	 * nueva.
+	 * @param invalidación Datos modificados
+	 * @param tarea Tarea que ha cargado el problema
+	 * @return True si la invalidación afecta al problema
+	 */
+	private static boolean afectaAProblema(Invalidación invalidación, FutureTask<DatosProblema> tarea) {
+		if (invalidación.afectaATodas()) {
+			return true;
+		}
+		DatosProblema datos;
+		try {
+			datos = tarea.get();
+		} catch (ExecutionException | InterruptedException e) {
+			return true;
+		}
+		Set<String> destinos = new HashSet<>();
+		for (String línea : datos.líneas) {
+			if (invalidación.afectaALínea(línea)) {
+				return true;
+			}
+			destinos.add(línea.split("-")[1]);
+		}
+		for (String línea : invalidación.getLíneas()) {
+			if (destinos.contains(línea.split("-")[1])) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Identifica un problema almacenado
+	 */
+	private static class Clave {
+		private final String baseDatos;
+		private final String país;
+		private final LocalDate díaInicio;
+		private final LocalDate díaFin;
+		// Cubo de líneas y fecha de modificación de su fichero. Null y 0 si no se usa un cubo.
+		private final String rutaCubo;
+		private final long fechaCubo;
+
+		Clave(Config config, GraphDatabaseService db) {
+			baseDatos = db.databaseName();
+			país = config.país;
+			díaInicio = config.díaInicio;
+			díaFin = config.díaFin;
+			rutaCubo = config.rutaCubo;
+			fechaCubo = rutaCubo == null ? 0 : new File(rutaCubo).lastModified();
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (this == o) {
+				return true;
+			}
+			if (o == null || getClass() != o.getClass()) {
+				return false;
+			}
+			Clave otra = (Clave) o;
+			return fechaCubo == otra.fechaCubo && baseDatos.equals(otra.baseDatos) && país.equals(otra.país) &&
+				díaInicio.equals(otra.díaInicio) && díaFin.equals(otra.díaFin) && Objects.equals(rutaCubo, otra.rutaCubo);
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(baseDatos, país, díaInicio, díaFin, rutaCubo, fechaCubo);
+		}
+	}
+}
@@ -1,9 +1,9 @@
 package earlywarn.mh.vnsrs;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.TreeMap;
 
 /**
  * Clase capaz de convertir un ID de línea a un ID numérico y de realizar conversiones entre arrays de booleanos que
@@ -13,19 +13,27 @@ public class ConversorLíneas {
 	// Mapea IDs de líneas a IDs numéricos
 	private final Map<String, Integer> idANúmero;
 	// Mapea IDs numéricas a IDs de líneas
-	private final Map<Integer, String> númeroAId;
+	private final String[] númeroAId;
 
 	public ConversorLíneas(List<String> líneas) {
-		idANúmero = new TreeMap<>();
-		númeroAId = new TreeMap<>();
+		idANúmero = new HashMap<>();
+		númeroAId = new String[líneas.size()];
 		int i = 0;
 		for (String línea : líneas) {
 			idANúmero.put(línea, i);
-			númeroAId.put(i, línea);
+			númeroAId[i] = línea;
 			i++;
 		}
 	}
 
+	/**
+	 * @param idLínea ID de una línea
+	 * @return True si la línea indicada tiene asignado un ID numérico
+	 */
+	public boolean contiene(String idLínea) {
+		return idANúmero.containsKey(idLínea);
+	}
+
 	/**
 	 * Devuelve el identificador numérico de la línea con el ID indicado
 	 * @param idLínea ID de la línea
@@ -41,7 +49,7 @@ public class ConversorLíneas {
 	 * @return ID de la línea correspondiente al ID numérico indicado
 	 */
 	public String getIDLínea(int idNumérico) {
-		return númeroAId.get(idNumérico);
+		return númeroAId[idNumérico];
 	}
 
 	/**
@@ -1,30 +1,20 @@
 package earlywarn.mh.vnsrs;
 
 import earlywarn.definiciones.IDCriterio;
-import earlywarn.main.Consultas;
-import earlywarn.main.modelo.datoid.Aeropuerto;
 import earlywarn.main.modelo.criterio.*;
-import earlywarn.main.modelo.datoid.RegistroDatoID;
-import earlywarn.mh.vnsrs.config.Config;
 
 /**
  * Clase que permite crear instancias de criterios mediante la configuración del algoritmo VNS-RS
  */
 public class CriterioFactory {
-	private final Consultas consultas;
-	private final Config config;
-	private final RegistroDatoID<Aeropuerto> registroAeropuertos;
+	private final DatosProblema datos;
 
 	/**
 	 * Instancia la factoría
-	 * @param consultas Clase usada para hacer consultas a la BD
-	 * @param config Configuración para la metaheurística de VNS-RS
-	 * @param registroAeropuertos Registro con los datos de aeropuertos
+	 * @param datos Datos del problema, que incluyen los valores iniciales de cada criterio
 	 */
-	public CriterioFactory(Consultas consultas, Config config, RegistroDatoID<Aeropuerto> registroAeropuertos) {
-		this.consultas = consultas;
-		this.config = config;
-		this.registroAeropuertos = registroAeropuertos;
+	public CriterioFactory(DatosProblema datos) {
+		this.datos = datos;
 	}
 
 	/**
@@ -35,29 +25,23 @@ public class CriterioFactory {
 	public Criterio criterio(IDCriterio id) {
 		switch (id) {
 			case RIESGO_IMPORTADO:
-				return new RiesgoImportado(consultas.getRiesgoPorPaís(config.díaInicio, config.díaFin, config.país));
+				return new RiesgoImportado(datos.getRiesgoTotal());
 			case NÚMERO_PASAJEROS:
-				return new NumPasajeros(consultas.getPasajerosTotales(config.díaInicio, config.díaFin, config.país));
+				return new NumPasajeros(datos.getPasajerosTotales());
 			case INGRESOS_TURÍSTICOS:
-				return new IngresosTurísticos(
-					consultas.getIngresosTurísticosTotales(config.díaInicio, config.díaFin, config.país));
+				return new IngresosTurísticos(datos.getIngresosTotales());
 			case HOMOGENEIDAD_AEROLÍNEAS:
-				return new HomogeneidadAerolíneas(
-					consultas.getPasajerosPorAerolínea(config.díaInicio, config.díaFin, config.país));
+				return new HomogeneidadAerolíneas(datos.getPasajerosPorAerolínea());
 			case HOMOGENEIDAD_AEROLÍNEAS_LINEAL:
-				return new HomogeneidadAerolíneasLineal(
-					consultas.getPasajerosPorAerolínea(config.díaInicio, config.díaFin, config.país));
+				return new HomogeneidadAerolíneasLineal(datos.getPasajerosPorAerolínea());
 			case HOMOGENEIDAD_AEROPUERTOS:
-				return new HomogeneidadAeropuertos(
-					consultas.getPasajerosPorAeropuerto(config.díaInicio, config.díaFin, config.país), config.país,
-					registroAeropuertos);
+				return new HomogeneidadAeropuertos(datos.getPasajerosPorAeropuerto(), datos.país,
+					datos.registroAeropuertos);
 			case HOMOGENEIDAD_AEROPUERTOS_LINEAL:
-				return new HomogeneidadAeropuertosLineal(
-					consultas.getPasajerosPorAeropuerto(config.díaInicio, config.díaFin, config.país), config.país,
-					registroAeropuertos);
+				return new HomogeneidadAeropuertosLineal(datos.getPasajerosPorAeropuerto(), datos.país,
+					datos.registroAeropuertos);
 			case CONECTIVIDAD:
-				return new Conectividad(
-					consultas.getConectividadPaís(config.díaInicio, config.díaFin, config.país), registroAeropuertos);
+				return new Conectividad(datos.getConectividadPaís(), datos.registroAeropuertos);
 			default:
 				throw new IllegalStateException("El ID de criterio " + id + " no se ha asociado con " +
 					"ninguna subclase de Criterio");
@@ -0,0 +1,261 @@
+package earlywarn.mh.vnsrs;
+
+import earlywarn.definiciones.IllegalOperationException;
+import earlywarn.main.Consultas;
+import earlywarn.main.modelo.CuboLíneas;
+import earlywarn.main.modelo.datoid.*;
+import earlywarn.mh.vnsrs.config.Config;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.logging.Log;
+
+import java.io.File;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Agrupa todos los datos del problema que necesita la metaheurística para ejecutarse: la lista de líneas, los
+ * registros de líneas y aeropuertos y los valores iniciales de cada criterio.
+ * Los datos pueden obtenerse de la BD (ver {@link #desdeBD(Config, GraphDatabaseService, Log)}) o de un snapshot
+ * almacenado en disco (ver {@link SnapshotProblema}). En el segundo caso, la ejecución no accede a la BD en ningún
+ * momento.
+ * Los valores iniciales se obtienen la primera vez que se necesitan. Una misma instancia puede usarse desde varios
+ * hilos (ver {@link CachéProblemas}).
+ */
+public class DatosProblema {
+	// País sobre el que se está trabajando
+	public final String país;
+	// Rango de fechas sobre el que se está trabajando
+	public final LocalDate díaInicio;
+	public final LocalDate díaFin;
+	// IDs de todas las líneas del problema
+	public final List<String> líneas;
+	public final ConversorLíneas conversorLíneas;
+	public final RegistroDatoID<Línea> registroLíneas;
+	public final RegistroDatoID<Aeropuerto> registroAeropuertos;
+	// Usado para obtener los valores iniciales que aún no se conozcan. Null si no se puede acceder a la BD.
+	private final Consultas consultas;
+
+	// Valores iniciales de los criterios. Null si aún no se han obtenido.
+	private Double riesgoTotal;
+	private Long pasajerosTotales;
+	private Double ingresosTotales;
+	private Map<String, Long> pasajerosPorAerolínea;
+	private Map<String, Long> pasajerosPorAeropuerto;
+	private Integer conectividadPaís;
+
+	/**
+	 * Crea una instancia de la clase. Los valores iniciales de los criterios se obtendrán mediante la clase de
+	 * consultas la primera vez que se necesiten, salvo que se especifiquen con los métodos correspondientes.
+	 * @param país País sobre el que se está trabajando
+	 * @param díaInicio Primer día del rango de fechas considerado
+	 * @param díaFin Último día del rango de fechas considerado
+	 * @param líneas Lista con los IDs de todas las líneas del problema
+	 * @param registroLíneas Registro que permite acceder a los datos de las líneas
+	 * @param registroAeropuertos Registro que permite acceder a los datos de los aeropuertos
+	 * @param consultas Clase usada para obtener los valores iniciales de los criterios. Puede ser null si todos los
+	 *                  valores iniciales se especifican manualmente.
+	 */
+	public DatosProblema(String país, LocalDate díaInicio, LocalDate díaFin, List<String> líneas,
+						 RegistroDatoID<Línea> registroLíneas, RegistroDatoID<Aeropuerto> registroAeropuertos,
+						 Consultas consultas) {
+		this.país = país;
+		this.díaInicio = díaInicio;
+		this.díaFin = díaFin;
+		this.líneas = líneas;
+		conversorLíneas = new ConversorLíneas(líneas);
+		this.registroLíneas = registroLíneas;
+		this.registroAeropuertos = registroAeropuertos;
+		this.consultas = consultas;
+	}
+
+	/**
+	 * Obtiene los datos del problema definido en la configuración a partir de la BD. Si la configuración especifica
+	 * un cubo de líneas que contenga su rango de fechas o indica que se construya uno, los datos de las líneas se
+	 * obtendrán del mismo.
+	 * @param config Configuración de la metaheurística
+	 * @param db Conexión a la BD
+	 * @param log Log de Neo4J
+	 * @return Datos del problema
+	 */
+	public static DatosProblema desdeBD(Config config, GraphDatabaseService db, Log log) {
+		CuboLíneas cubo = cargarCubo(config, db, log);
+		AeropuertoFactory fAeropuertos = new AeropuertoFactory(config.díaInicio, config.díaFin, db, cubo);
+		LíneaFactory fLíneas = new LíneaFactory(config.díaInicio, config.díaFin, db, cubo);
+		Consultas consultas = new Consultas(db, cubo);
+		List<String> líneas = consultas.getLíneas(config.díaInicio, config.díaFin, config.país);
+		return new DatosProblema(config.país, config.díaInicio, config.díaFin, líneas,
+			new RegistroDatoID<>(fLíneas), new RegistroDatoID<>(fAeropuertos), consultas);
+	}
+
+	/**
+	 * Obtiene a partir de la BD los datos de los problemas de varios países con el mismo rango de fechas. Las líneas
+	 * de todos los países se obtienen con una sola consulta y se reparten según el país de su aeropuerto de destino.
+	 * Los datos de cada línea se cargan una sola vez, y los registros de líneas y aeropuertos se comparten entre
+	 * todos los problemas, por lo que éstos pueden resolverse a la vez en varios hilos.
+	 * @param config Configuración de la metaheurística. Su país se ignora.
+	 * @param países IDs de los países de los que obtener el problema. Los países repetidos se tienen en cuenta una
+	 *               sola vez.
+	 * @param db Conexión a la BD
+	 * @param log Log de Neo4J
+	 * @return Datos del problema de cada país, en el orden en el que aparece por primera vez en la lista de países
+	 */
+	public static Map<String, DatosProblema> desdeBD(Config config, List<String> países, GraphDatabaseService db,
+													 Log log) {
+		CuboLíneas cubo = cargarCubo(config, db, log);
+		AeropuertoFactory fAeropuertos = new AeropuertoFactory(config.díaInicio, config.díaFin, db, cubo);
+		LíneaFactory fLíneas = new LíneaFactory(config.díaInicio, config.díaFin, db, cubo);
+		Consultas consultas = new Consultas(db, cubo);
+		RegistroDatoID<Línea> registroLíneas = new RegistroDatoID<>(fLíneas);
+		RegistroDatoID<Aeropuerto> registroAeropuertos = new RegistroDatoID<>(fAeropuertos);
+
+		Map<String, List<String>> líneasPorPaís = new LinkedHashMap<>();
+		for (String país : países) {
+			líneasPorPaís.put(país, new ArrayList<>());
+		}
+		for (String idLínea : consultas.getLíneas(config.díaInicio, config.díaFin, "")) {
+			Línea línea = registroLíneas.get(idLínea);
+			List<String> líneasPaís =
+				líneasPorPaís.get(registroAeropuertos.get(línea.idAeropuertoDestino).getIdPaís());
+			if (líneasPaís != null) {
+				líneasPaís.add(idLínea);
+				// Cargar los datos de la línea antes de que se use desde varios hilos
+				línea.getPasajeros();
+			}
+		}
+
+		Map<String, DatosProblema> ret = new LinkedHashMap<>();
+		for (Map.Entry<String, List<String>> entrada : líneasPorPaís.entrySet()) {
+			ret.put(entrada.getKey(), new DatosProblema(entrada.getKey(), config.díaInicio, config.díaFin,
+				entrada.getValue(), registroLíneas, registroAeropuertos, consultas));
+		}
+		return ret;
+	}
+
+	public synchronized double getRiesgoTotal() {
+		if (riesgoTotal == null) {
+			riesgoTotal = getConsultas().getRiesgoPorPaís(díaInicio, díaFin, país);
+		}
+		return riesgoTotal;
+	}
+
+	public synchronized long getPasajerosTotales() {
+		if (pasajerosTotales == null) {
+			pasajerosTotales = (long) getConsultas().getPasajerosTotales(díaInicio, díaFin, país);
+		}
+		return pasajerosTotales;
+	}
+
+	public synchronized double getIngresosTotales() {
+		if (ingresosTotales == null) {
+			ingresosTotales = getConsultas().getIngresosTurísticosTotales(díaInicio, díaFin, país);
+		}
+		return ingresosTotales;
+	}
+
+	public synchronized Map<String, Long> getPasajerosPorAerolínea() {
+		if (pasajerosPorAerolínea == null) {
+			pasajerosPorAerolínea = getConsultas().getPasajerosPorAerolínea(díaInicio, díaFin, país);
+		}
+		return pasajerosPorAerolínea;
+	}
+
+	public synchronized Map<String, Long> getPasajerosPorAeropuerto() {
+		if (pasajerosPorAeropuerto == null) {
+			pasajerosPorAeropuerto = getConsultas().getPasajerosPorAeropuerto(díaInicio, díaFin, país);
+		}
+		return pasajerosPorAeropuerto;
+	}
+
+	public synchronized int getConectividadPaís() {
+		if (conectividadPaís == null) {
+			conectividadPaís = getConsultas().getConectividadPaís(díaInicio, díaFin, país);
+		}
+		return conectividadPaís;
+	}
+
+	/**
+	 * @return True si el valor inicial de conectividad está disponible, ya sea porque ya se ha obtenido o porque se
+	 * puede consultar en la BD.
+	 */
+	public synchronized boolean tieneConectividad() {
+		return conectividadPaís != null || consultas != null;
+	}
+
+	/*
+	 * Setters usados para especificar los valores iniciales de los criterios cuando éstos ya se conocen (por ejemplo,
+	 * al cargar un snapshot)
+	 */
+
+	public void setRiesgoTotal(double riesgoTotal) {
+		this.riesgoTotal = riesgoTotal;
+	}
+
+	public void setPasajerosTotales(long pasajerosTotales) {
+		this.pasajerosTotales = pasajerosTotales;
+	}
+
+	public void setIngresosTotales(double ingresosTotales) {
+		this.ingresosTotales = ingresosTotales;
+	}
+
+	public void setPasajerosPorAerolínea(Map<String, Long> pasajerosPorAerolínea) {
+		this.pasajerosPorAerolínea = pasajerosPorAerolínea;
+	}
+
+	public void setPasajerosPorAeropuerto(Map<String, Long> pasajerosPorAeropuerto) {
+		this.pasajerosPorAeropuerto = pasajerosPorAeropuerto;
+	}
+
+	public void setConectividadPaís(Integer conectividadPaís) {
+		this.conectividadPaís = conectividadPaís;
+	}
+
+	/**
+	 * @return Clase de consultas a usar para obtener los valores iniciales
+	 * @throws IllegalOperationException Si los datos del problema no tienen acceso a la BD
+	 */
+	private Consultas getConsultas() {
+		if (consultas == null) {
+			throw new IllegalOperationException("El valor solicitado no está incluido en los datos del problema y " +
+				"no se puede consultar en la BD");
+		}
+		return consultas;
+	}
+
+	/**
+	 * Carga el cubo de líneas especificado en la configuración, si lo hay. Si la configuración indica que se
+	 * construya un cubo y no hay ningún fichero de cubo que contenga su rango de fechas, se construye uno a partir de
+	 * la BD y, si se ha especificado una ruta al cubo, se almacena en ella.
+	 * @param config Configuración de la metaheurística
+	 * @param db Conexión a la BD
+	 * @param log Log de Neo4J
+	 * @return Cubo de líneas a usar, o null si no se ha especificado ninguno en la configuración o si el cubo no
+	 * contiene el rango de fechas de la configuración y no se debe construir uno.
+	 */
+	private static CuboLíneas cargarCubo(Config config, GraphDatabaseService db, Log log) {
+		if (config.rutaCubo != null && (!config.construirCubo || new File(config.rutaCubo).exists())) {
+			CuboLíneas cubo = CuboLíneas.get(config.rutaCubo);
+			if (cubo.contiene(config.díaInicio, config.díaFin)) {
+				return cubo;
+			} else if (!config.construirCubo) {
+				log.warn("El cubo de líneas " + config.rutaCubo + " no contiene el rango de fechas de la " +
+					"configuración. Los datos se obtendrán de la BD.");
+				return null;
+			}
+		}
+
+		if (config.construirCubo) {
+			log.info("Construyendo cubo de líneas entre " + config.díaInicio + " y " + config.díaFin);
+			CuboLíneas cubo = CuboLíneas.construir(config.díaInicio, config.díaFin, db);
+			if (config.rutaCubo != null) {
+				cubo.guardar(config.rutaCubo);
+			}
+			return cubo;
+		} else {
+			return null;
+		}
+	}
+}
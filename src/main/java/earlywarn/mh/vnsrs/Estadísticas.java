@@ -1,58 +1,283 @@
 package earlywarn.mh.vnsrs;
 
+import earlywarn.definiciones.IPersistible;
 import org.neo4j.logging.Log;
 
-import java.io.FileWriter;
-import java.io.IOException;
-import java.nio.file.FileAlreadyExistsException;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.concurrent.locks.LockSupport;
+import java.util.zip.GZIPOutputStream;
 
 /**
- * Clase que almacena diversas estadísticas durante la ejecución de la metaheurística
+ * Clase que registra diversas estadísticas durante la ejecución de la metaheurística.
+ * Las estadísticas de cada iteración no se mantienen en memoria: se envían a un hilo en segundo plano que las escribe
+ * en un fichero CSV a medida que se van registrando. Solo se conserva el fitness de la mejor solución de las últimas
+ * iteraciones, que es el dato necesario para evaluar la condición de parada.
+ * Las iteraciones se envían al hilo de escritura a través de un buffer circular de arrays de tipos primitivos con un
+ * único productor (el hilo de la metaheurística) y un único consumidor, de forma que registrar una iteración no crea
+ * ningún objeto.
  */
-public class Estadísticas {
+public class Estadísticas implements IPersistible {
+	// Número máximo de iteraciones pendientes de escribir. Si se alcanza, el registro de iteraciones se bloquea.
+	private static final int TAMAÑO_COLA = 4096;
+	// Tiempo que espera el hilo de escritura antes de volver a comprobar si hay iteraciones pendientes
+	private static final long ESPERA_ESCRITURA_NS = 1_000_000;
+	// Tiempo que espera el registro de iteraciones antes de volver a comprobar si hay hueco en la cola
+	private static final long ESPERA_REGISTRO_NS = 100_000;
+
 	private final Log log;
-	public final List<EstadísticasIteración> listaEstadísticas;
+	/*
+	 * Buffer circular con el fitness de la mejor solución tras cada una de las últimas iteraciones registradas.
+	 * La iteración registrada en la posición i (contando desde 0) se almacena en la posición i % tamaño.
+	 */
+	private final double[] fitnessMejor;
+	// Número de iteraciones registradas hasta ahora
+	private int numRegistradas;
 
-	public Estadísticas(Log log) {
+	/*
+	 * Cola de iteraciones pendientes de escribir, almacenadas por columnas. La iteración encolada en la posición i
+	 * (contando desde 0) ocupa la posición i % TAMAÑO_COLA de cada array. Null si no se escribe ningún fichero.
+	 */
+	private final int[] colaIter;
+	private final int[] colaAbiertas;
+	private final int[] colaAVariar;
+	private final double[] colaTemperatura;
+	private final double[] colaFitnessActual;
+	private final double[] colaFitnessMejor;
+	private final double[] colaProbAceptación;
+	/*
+	 * Número de iteraciones encoladas y número de iteraciones ya procesadas por el hilo de escritura. El primero solo
+	 * lo modifica el hilo de la metaheurística y el segundo solo el de escritura. La escritura de estos valores hace
+	 * visibles para el otro hilo los datos de las posiciones correspondientes de la cola.
+	 */
+	private volatile long encoladas;
+	private volatile long procesadas;
+	// True cuando ya no se van a encolar más iteraciones
+	private volatile boolean fin;
+	// Hilo que escribe las iteraciones. Null si no se escribe ningún fichero.
+	private final Thread hiloEscritura;
+
+	/**
+	 * Crea una instancia de la clase
+	 * @param tamañoHistorial Número de iteraciones cuyo mejor fitness se debe poder consultar con
+	 *                        {@link #getFitnessMejor(int)}
+	 * @param rutaFichero Ruta al fichero CSV de salida. Si termina en ".gz", el fichero se comprimirá con gzip.
+	 *                    Si es null, las estadísticas no se escribirán en ningún fichero.
+	 * @param log Log de Neo4J
+	 */
+	public Estadísticas(int tamañoHistorial, String rutaFichero, Log log) {
 		this.log = log;
-		listaEstadísticas = new ArrayList<>();
+		fitnessMejor = new double[Math.max(tamañoHistorial, 1)];
+		numRegistradas = 0;
+
+		Writer salida = rutaFichero == null ? null : abrirFichero(rutaFichero);
+		if (salida == null) {
+			colaIter = null;
+			colaAbiertas = null;
+			colaAVariar = null;
+			colaTemperatura = null;
+			colaFitnessActual = null;
+			colaFitnessMejor = null;
+			colaProbAceptación = null;
+			hiloEscritura = null;
+		} else {
+			colaIter = new int[TAMAÑO_COLA];
+			colaAbiertas = new int[TAMAÑO_COLA];
+			colaAVariar = new int[TAMAÑO_COLA];
+			colaTemperatura = new double[TAMAÑO_COLA];
+			colaFitnessActual = new double[TAMAÑO_COLA];
+			colaFitnessMejor = new double[TAMAÑO_COLA];
+			colaProbAceptación = new double[TAMAÑO_COLA];
+			encoladas = 0;
+			procesadas = 0;
+			fin = false;
+			hiloEscritura = new Thread(() -> escribir(salida), "earlywarn-estadísticas");
+			hiloEscritura.setDaemon(true);
+			hiloEscritura.start();
+		}
 	}
 
 	/**
-	 * Registra las estadísticas de una sola iteración al final de la misma
-	 * @param estadísticasIteración Estadísticas de la iteración
+	 * Registra las estadísticas de una sola iteración al final de la misma. No crea ningún objeto.
+	 * @param numIter Número de la iteración que acaba de concluir
+	 * @param numLíneasAbiertas Número de líneas que han estado abiertas durante la iteración
+	 * @param líneasAVariar Número de líneas a variar en el entorno en el que se ha ejecutado esta iteración, con
+	 *                      signo positivo si se abrían y negativo si se cerraban
+	 * @param temperatura Valor de temperatura usado durante esta iteración
+	 * @param fitnessActual Fitness de la solución considerada en esta iteración
+	 * @param fitnessMejor Finess de la mejor solución encontrada hasta el fin de esta iteración
+	 * @param probAceptación Probabilidad de aceptar la solución considerada en la iteración actual. NaN para no
+	 *                       incluir este dato en esta iteración.
+	 * @see EstadísticasIteración
 	 */
-	public void registrarIteración(EstadísticasIteración estadísticasIteración) {
-		listaEstadísticas.add(estadísticasIteración);
+	public void registrarIteración(int numIter, int numLíneasAbiertas, int líneasAVariar, double temperatura,
+								   double fitnessActual, double fitnessMejor, double probAceptación) {
+		this.fitnessMejor[numRegistradas % this.fitnessMejor.length] = fitnessMejor;
+		numRegistradas++;
+		if (hiloEscritura != null && esperarHueco()) {
+			long posiciónCola = encoladas;
+			int pos = (int) (posiciónCola % TAMAÑO_COLA);
+			colaIter[pos] = numIter;
+			colaAbiertas[pos] = numLíneasAbiertas;
+			colaAVariar[pos] = líneasAVariar;
+			colaTemperatura[pos] = temperatura;
+			colaFitnessActual[pos] = fitnessActual;
+			colaFitnessMejor[pos] = fitnessMejor;
+			colaProbAceptación[pos] = probAceptación;
+			encoladas = posiciónCola + 1;
+		}
 	}
 
 	/**
-	 * Convierte el registro de estadísticas almacenado a un fichero CSV. El fichero tendrá una línea por cada
-	 * iteración sobre la que se hayan almacenado estadísticas, además de una cabecera listando los campos en la
-	 * primera línea.
+	 * Devuelve el fitness de la mejor solución encontrada hasta la iteración indicada
+	 * @param posición Posición de la iteración en el orden en el que se registró, empezando en 0
+	 * @return Fitness de la mejor solución al final de la iteración indicada
+	 * @throws IllegalArgumentException Si la iteración no se ha registrado aún o si ya no está en el historial
+	 */
+	public double getFitnessMejor(int posición) {
+		if (posición >= numRegistradas || posición < numRegistradas - fitnessMejor.length || posición < 0) {
+			throw new IllegalArgumentException("La iteración " + posición + " no está en el historial de " +
+				"estadísticas");
+		}
+		return fitnessMejor[posición % fitnessMejor.length];
+	}
+
+	/**
+	 * Escribe el historial de fitness de las últimas iteraciones, necesario para seguir evaluando la condición de
+	 * parada al reanudar la ejecución
+	 */
+	@Override
+	public void escribirEstado(ObjectOutput salida) throws IOException {
+		salida.writeInt(numRegistradas);
+		salida.writeInt(fitnessMejor.length);
+		for (double valor : fitnessMejor) {
+			salida.writeDouble(valor);
+		}
+	}
+
+	@Override
+	public void leerEstado(ObjectInput entrada) throws IOException {
+		numRegistradas = entrada.readInt();
+		int tamaño = entrada.readInt();
+		if (tamaño != fitnessMejor.length) {
+			throw new IOException("El tamaño del historial de estadísticas del checkpoint (" + tamaño + ") no " +
+				"coincide con el actual (" + fitnessMejor.length + ")");
+		}
+		for (int i = 0; i < tamaño; i++) {
+			fitnessMejor[i] = entrada.readDouble();
+		}
+	}
+
+	/**
+	 * Espera a que se escriban todas las iteraciones registradas y cierra el fichero de salida. No se pueden registrar
+	 * más iteraciones tras llamar a este método.
+	 */
+	public void cerrar() {
+		if (hiloEscritura != null && hiloEscritura.isAlive()) {
+			fin = true;
+			LockSupport.unpark(hiloEscritura);
+			try {
+				hiloEscritura.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	/**
+	 * Si la cola está llena, espera a que el hilo de escritura libere alguna posición
+	 * @return True si hay hueco en la cola, false si el hilo de escritura ha terminado por un error, en cuyo caso la
+	 * iteración se debe descartar
+	 */
+	private boolean esperarHueco() {
+		while (encoladas - procesadas >= TAMAÑO_COLA) {
+			if (!hiloEscritura.isAlive()) {
+				return false;
+			}
+			LockSupport.parkNanos(ESPERA_REGISTRO_NS);
+		}
+		return true;
+	}
+
+	/**
+	 * Abre el fichero de salida, creando su directorio si es necesario
 	 * @param rutaFichero Ruta al fichero de salida
+	 * @return Writer con buffer que escribe en el fichero, o null si no se ha podido abrir
 	 */
-	public void toCsv(String rutaFichero) {
+	private Writer abrirFichero(String rutaFichero) {
+		Path ruta = Paths.get(rutaFichero);
 		try {
-			Files.createDirectory(Paths.get(rutaFichero).getParent());
-		} catch (FileAlreadyExistsException e) {
-			// OK
+			if (ruta.getParent() != null) {
+				Files.createDirectories(ruta.getParent());
+			}
 		} catch (IOException e) {
 			log.warn("No se ha podido crear el directorio para almacenar las estadísticas de la metaheurística.\n" + e);
-			return;
+			return null;
 		}
 
-		try (FileWriter fSalida = new FileWriter(rutaFichero)) {
+		try {
+			OutputStream salida = new FileOutputStream(rutaFichero);
+			if (rutaFichero.endsWith(".gz")) {
+				salida = new GZIPOutputStream(salida);
+			}
+			return new BufferedWriter(new OutputStreamWriter(salida, StandardCharsets.UTF_8));
+		} catch (IOException e) {
+			log.warn("No se ha podido abrir el fichero para almacenar las estadísticas de la metaheurística.\n" + e);
+			return null;
+		}
+	}
+
+	/**
+	 * Método ejecutado por el hilo de escritura. Escribe la cabecera y después cada una de las iteraciones según se
+	 * van registrando, hasta que se cierran las estadísticas y no quedan iteraciones pendientes. Si se produce un error
+	 * de escritura, las iteraciones restantes se descartan para no bloquear la ejecución de la metaheurística.
+	 * @param salida Writer en el que se escribirán las estadísticas
+	 */
+	private void escribir(Writer salida) {
+		boolean error = false;
+		try (Writer fSalida = salida) {
 			fSalida.write(EstadísticasIteración.cabecera() + "\n");
-			for (EstadísticasIteración entrada : listaEstadísticas) {
-				fSalida.write(entrada.toString() + "\n");
+			while (true) {
+				// Se comprueba el fin antes de leer las encoladas para no perder las últimas iteraciones registradas
+				boolean terminar = fin;
+				long disponibles = encoladas;
+				long posiciónCola = procesadas;
+				if (posiciónCola == disponibles) {
+					if (terminar) {
+						break;
+					}
+					LockSupport.parkNanos(ESPERA_ESCRITURA_NS);
+					continue;
+				}
+				for (; posiciónCola < disponibles; posiciónCola++) {
+					if (!error) {
+						try {
+							fSalida.write(leer((int) (posiciónCola % TAMAÑO_COLA)).toString());
+							fSalida.write('\n');
+						} catch (IOException e) {
+							log.warn("No se han podido guardar las estadísticas de la metaheurística.\n" + e);
+							error = true;
+						}
+					}
+				}
+				procesadas = disponibles;
 			}
 		} catch (IOException e) {
 			log.warn("No se han podido guardar las estadísticas de la metaheurística.\n" + e);
 		}
 	}
+
+	/**
+	 * Obtiene las estadísticas almacenadas en una posición de la cola. Solo se llama desde el hilo de escritura.
+	 * @param pos Posición en los arrays de la cola
+	 * @return Estadísticas de la iteración almacenada en esa posición
+	 */
+	private EstadísticasIteración leer(int pos) {
+		double probAceptación = colaProbAceptación[pos];
+		return new EstadísticasIteración(colaIter[pos], colaAbiertas[pos], colaAVariar[pos], colaTemperatura[pos],
+			colaFitnessActual[pos], colaFitnessMejor[pos], Double.isNaN(probAceptación) ? null : probAceptación);
+	}
 }
@@ -0,0 +1,185 @@
+package earlywarn.mh.vnsrs;
+
+import earlywarn.main.GestorLíneas;
+import earlywarn.main.métricas.Métricas;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Evalúa varios movimientos candidatos a partir del mismo estado de las líneas. Los movimientos solo se evalúan (no se
+ * aplican), por lo que todas las evaluaciones leen el mismo estado y pueden repartirse entre varios hilos sin
+ * sincronización adicional. Si hay más de un candidato, la evaluación se realiza en un pool fork/join compartido por
+ * todas las ejecuciones de la metaheurística.
+ * Si se proporciona una caché de evaluaciones, los candidatos que llevan a una solución evaluada anteriormente se
+ * puntúan con los datos de la caché, sin evaluar los criterios.
+ * Los movimientos, los valores de fitness y la factibilidad de cada candidato se almacenan en arrays reservados al
+ * crear la instancia, que se reutilizan en todas las iteraciones.
+ */
+public class EvaluadorCandidatos {
+	// Pool en el que se evalúan los candidatos. Sus hilos son demonio para no impedir que se detenga la BD.
+	private static final ForkJoinPool pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors(), p -> {
+		ForkJoinWorkerThread hilo = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(p);
+		hilo.setName("earlywarn-evaluación-" + hilo.getPoolIndex());
+		return hilo;
+	}, null, false);
+
+	private final Movimiento[] candidatos;
+	// Fitness de cada candidato (sin penalizar) y si cumple las restricciones
+	private final double[] fitness;
+	private final boolean[] factibles;
+	/*
+	 * Valor porcentual de cada criterio tras aplicar cada candidato. Se calcula al obtener el fitness y se reutiliza
+	 * al comprobar las restricciones.
+	 */
+	private final double[][] porcentajes;
+	// Caché de evaluaciones anteriores. Null si no se usa.
+	private final CachéEvaluaciones caché;
+	// Hash de la solución resultante de cada candidato y si el candidato debe evaluarse por no estar en la caché
+	private final long[] hashes;
+	private final boolean[] pendientes;
+
+	/**
+	 * Crea una instancia de la clase
+	 * @param numCandidatos Número de candidatos que se evalúan en cada iteración
+	 * @param numLíneas Número total de líneas del problema. Determina la capacidad de cada movimiento.
+	 * @param numCriterios Número de criterios del gestor de líneas sobre el que se evaluarán los candidatos
+	 * @param caché Caché en la que se almacenan y se buscan los resultados de las evaluaciones, o null para evaluar
+	 *              siempre todos los candidatos
+	 */
+	public EvaluadorCandidatos(int numCandidatos, int numLíneas, int numCriterios, CachéEvaluaciones caché) {
+		if (numCandidatos < 1) {
+			throw new IllegalArgumentException("El número de candidatos por iteración debe ser al menos 1");
+		}
+		candidatos = new Movimiento[numCandidatos];
+		for (int i = 0; i < numCandidatos; i++) {
+			candidatos[i] = new Movimiento(numLíneas);
+		}
+		fitness = new double[numCandidatos];
+		factibles = new boolean[numCandidatos];
+		porcentajes = new double[numCandidatos][numCriterios];
+		this.caché = caché;
+		hashes = new long[numCandidatos];
+		pendientes = new boolean[numCandidatos];
+	}
+
+	/**
+	 * @return Número de candidatos que se evalúan en cada iteración
+	 */
+	public int getNumCandidatos() {
+		return candidatos.length;
+	}
+
+	/**
+	 * @param posición Posición del candidato
+	 * @return Movimiento correspondiente al candidato indicado. Debe rellenarse antes de llamar a
+	 * {@link #evaluar(GestorLíneas)}.
+	 */
+	public Movimiento getCandidato(int posición) {
+		return candidatos[posición];
+	}
+
+	/**
+	 * @return Caché de evaluaciones usada, o null si no se usa ninguna
+	 */
+	public CachéEvaluaciones getCaché() {
+		return caché;
+	}
+
+	/**
+	 * @param posición Posición del candidato
+	 * @return Fitness que tendría la solución tras aplicar el candidato indicado, calculado en la última evaluación
+	 */
+	public double getFitness(int posición) {
+		return fitness[posición];
+	}
+
+	/**
+	 * @param posición Posición del candidato
+	 * @return True si la solución resultante de aplicar el candidato indicado cumple las restricciones
+	 */
+	public boolean isFactible(int posición) {
+		return factibles[posición];
+	}
+
+	/**
+	 * Evalúa todos los candidatos sobre el estado actual del gestor de líneas. El gestor no debe modificarse hasta que
+	 * este método termine. Si solo hay un candidato que evaluar, se evalúa directamente en el hilo actual.
+	 * @param gLíneas Gestor de líneas que contiene el estado actual y las restricciones que deben cumplir las
+	 *                soluciones
+	 */
+	public void evaluar(GestorLíneas gLíneas) {
+		// Obtener de la caché los resultados de los candidatos que ya se han evaluado antes
+		int numPendientes = 0;
+		for (int i = 0; i < candidatos.length; i++) {
+			pendientes[i] = true;
+			if (caché != null) {
+				hashes[i] = gLíneas.getHash(candidatos[i]);
+				int posición = caché.buscar(hashes[i]);
+				if (posición >= 0) {
+					fitness[i] = caché.getFitness(posición);
+					factibles[i] = caché.isFactible(posición);
+					pendientes[i] = false;
+				}
+			}
+			if (pendientes[i]) {
+				numPendientes++;
+			}
+		}
+
+		if (numPendientes == 1) {
+			for (int i = 0; i < candidatos.length; i++) {
+				evaluarCandidato(i, gLíneas);
+			}
+		} else if (numPendientes > 1) {
+			pool.invoke(new TareaEvaluación(0, candidatos.length, gLíneas));
+		}
+
+		if (caché != null) {
+			for (int i = 0; i < candidatos.length; i++) {
+				if (pendientes[i]) {
+					caché.insertar(hashes[i], fitness[i], factibles[i]);
+				}
+			}
+			Métricas.sumar(Métricas.Contador.ACIERTOS_CACHÉ_EVALUACIONES, candidatos.length - numPendientes);
+		}
+	}
+
+	/**
+	 * Evalúa un candidato, salvo que no esté pendiente de evaluar
+	 */
+	private void evaluarCandidato(int posición, GestorLíneas gLíneas) {
+		if (!pendientes[posición]) {
+			return;
+		}
+		Movimiento candidato = candidatos[posición];
+		fitness[posición] = gLíneas.evaluar(candidato, porcentajes[posición]);
+		factibles[posición] = gLíneas.cumpleRestricciones(candidato, porcentajes[posición]);
+	}
+
+	/**
+	 * Evalúa un rango de candidatos, dividiéndolo a la mitad hasta que cada tarea contiene uno solo
+	 */
+	private class TareaEvaluación extends RecursiveAction {
+		private final int inicio;
+		private final int fin;
+		private final GestorLíneas gLíneas;
+
+		TareaEvaluación(int inicio, int fin, GestorLíneas gLíneas) {
+			this.inicio = inicio;
+			this.fin = fin;
+			this.gLíneas = gLíneas;
+		}
+
+		@Override
+		protected void compute() {
+			if (fin - inicio == 1) {
+				evaluarCandidato(inicio, gLíneas);
+			} else {
+				int mitad = (inicio + fin) >>> 1;
+				invokeAll(new TareaEvaluación(inicio, mitad, gLíneas), new TareaEvaluación(mitad, fin, gLíneas));
+			}
+		}
+	}
+}
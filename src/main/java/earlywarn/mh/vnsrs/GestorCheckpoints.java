@@ -0,0 +1,216 @@
+package earlywarn.mh.vnsrs;
+
+import earlywarn.definiciones.IPersistible;
+import org.neo4j.logging.Log;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Almacena periódicamente el estado completo de la búsqueda en un fichero binario (checkpoint), de forma que una
+ * ejecución larga que se interrumpa pueda reanudarse desde el último checkpoint en lugar de empezar de cero.
+ * El estado se serializa en memoria en el hilo de la metaheurística, que es la única parte del proceso que detiene la
+ * búsqueda. La compresión y la escritura del fichero se realizan en un hilo en segundo plano.
+ * El intervalo entre checkpoints se amplía automáticamente si es necesario para que el tiempo dedicado a serializar
+ * el estado no supere el {@link #FRACCIÓN_MAX_COSTE} del tiempo de ejecución.
+ */
+public class GestorCheckpoints {
+	// Identificador del formato del fichero en el que se almacenan los checkpoints
+	private static final int FORMATO_FICHERO = 0x45574350;
+	// Versión del formato. Debe incrementarse cada vez que cambie el estado almacenado por alguna clase.
+	private static final int VERSIÓN_FORMATO = 4;
+	// Fracción máxima del tiempo de ejecución que se puede dedicar a generar checkpoints
+	private static final double FRACCIÓN_MAX_COSTE = 0.01;
+
+	private final String rutaFichero;
+	private final Log log;
+	// Tiempo mínimo entre checkpoints, en nanosegundos
+	private final long intervaloNs;
+	private final ExecutorService hiloEscritura;
+	// True mientras haya un checkpoint pendiente de escribir en el fichero
+	private final AtomicBoolean escribiendo;
+	// Instante (en ns) a partir del cual se debe generar el siguiente checkpoint
+	private long sigInstante;
+	// Tamaño del último checkpoint generado. Usado para reservar directamente la memoria necesaria para el siguiente.
+	private int tamañoÚltimo;
+
+	// Datos usados para informar del coste de los checkpoints al terminar
+	private final long inicio;
+	private int numCheckpoints;
+	private long costeTotalNs;
+
+	/**
+	 * Crea una instancia de la clase
+	 * @param rutaFichero Ruta al fichero en el que se almacenarán los checkpoints. Cada checkpoint sustituye al
+	 *                    anterior.
+	 * @param intervaloMs Tiempo mínimo entre checkpoints, en milisegundos
+	 * @param log Log de Neo4J
+	 */
+	public GestorCheckpoints(String rutaFichero, long intervaloMs, Log log) {
+		this.rutaFichero = rutaFichero;
+		this.log = log;
+		intervaloNs = intervaloMs * 1_000_000;
+		hiloEscritura = Executors.newSingleThreadExecutor(tarea -> {
+			Thread hilo = new Thread(tarea, "earlywarn-checkpoints");
+			hilo.setDaemon(true);
+			return hilo;
+		});
+		escribiendo = new AtomicBoolean(false);
+		inicio = System.nanoTime();
+		sigInstante = inicio + intervaloNs;
+		tamañoÚltimo = 1024;
+		numCheckpoints = 0;
+		costeTotalNs = 0;
+	}
+
+	/**
+	 * Comprueba si se debe generar un checkpoint. No tiene efectos secundarios, por lo que puede llamarse en cada
+	 * iteración sin coste apreciable. Si aún se está escribiendo el checkpoint anterior, el siguiente se retrasa.
+	 * @return True si se debe generar un checkpoint ahora
+	 */
+	public boolean toca() {
+		return System.nanoTime() >= sigInstante && !escribiendo.get();
+	}
+
+	/**
+	 * Genera un checkpoint con el estado indicado. El estado se serializa antes de que el método termine, por lo que
+	 * puede seguir modificándose inmediatamente después. El fichero se escribe en segundo plano.
+	 * @param estado Estado a almacenar
+	 */
+	public void guardar(IPersistible estado) {
+		long inicioCaptura = System.nanoTime();
+		byte[] datos;
+		try {
+			ByteArrayOutputStream buffer = new ByteArrayOutputStream(tamañoÚltimo);
+			try (ObjectOutputStream salida = new ObjectOutputStream(buffer)) {
+				salida.writeInt(FORMATO_FICHERO);
+				salida.writeInt(VERSIÓN_FORMATO);
+				estado.escribirEstado(salida);
+			}
+			datos = buffer.toByteArray();
+		} catch (IOException e) {
+			log.warn("No se ha podido generar el checkpoint de la metaheurística.\n" + e);
+			sigInstante = System.nanoTime() + intervaloNs;
+			return;
+		}
+		long ahora = System.nanoTime();
+		long coste = ahora - inicioCaptura;
+		numCheckpoints++;
+		costeTotalNs += coste;
+		tamañoÚltimo = datos.length;
+		sigInstante = ahora + Math.max(intervaloNs, (long) (coste / FRACCIÓN_MAX_COSTE));
+
+		escribiendo.set(true);
+		hiloEscritura.execute(() -> escribir(datos));
+	}
+
+	/**
+	 * Espera a que se escriba el último checkpoint generado y detiene el hilo de escritura. No se pueden generar más
+	 * checkpoints tras llamar a este método.
+	 */
+	public void cerrar() {
+		hiloEscritura.shutdown();
+		try {
+			if (!hiloEscritura.awaitTermination(1, TimeUnit.MINUTES)) {
+				log.warn("No se ha terminado de escribir el último checkpoint de la metaheurística");
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		if (numCheckpoints > 0) {
+			long ns = Math.max(System.nanoTime() - inicio, 1);
+			log.info("Generados " + numCheckpoints + " checkpoints en " + costeTotalNs / 1_000_000 + " ms (" +
+				String.format("%.3f", costeTotalNs * 100.0 / ns) + "% del tiempo de ejecución)");
+		}
+	}
+
+	/**
+	 * Restaura el estado almacenado en un checkpoint
+	 * @param rutaFichero Ruta al fichero que contiene el checkpoint
+	 * @param estado Instancia en la que se restaurará el estado
+	 * @throws UncheckedIOException Si se produce un error al leer el fichero o si éste no corresponde a la instancia
+	 * indicada
+	 */
+	public static void restaurar(String rutaFichero, IPersistible estado) {
+		try (ObjectInputStream entrada = new ObjectInputStream(new GZIPInputStream(new BufferedInputStream(
+			new FileInputStream(rutaFichero))))) {
+			if (entrada.readInt() != FORMATO_FICHERO) {
+				throw new IOException("El fichero " + rutaFichero + " no contiene un checkpoint de la metaheurística");
+			}
+			int versión = entrada.readInt();
+			if (versión != VERSIÓN_FORMATO) {
+				throw new IOException("El checkpoint del fichero " + rutaFichero + " usa una versión del formato (" +
+					versión + ") no compatible con la actual (" + VERSIÓN_FORMATO + ")");
+			}
+			estado.leerEstado(entrada);
+		} catch (IOException e) {
+			throw new UncheckedIOException("Error al leer el checkpoint del fichero " + rutaFichero, e);
+		}
+	}
+
+	/**
+	 * Escribe un array de booleanos empaquetando 8 valores en cada byte
+	 * @param salida Flujo de salida
+	 * @param valores Valores a escribir
+	 * @throws IOException Si se produce un error al escribir
+	 */
+	public static void escribirBooleanos(ObjectOutput salida, boolean[] valores) throws IOException {
+		salida.writeInt(valores.length);
+		byte[] bytes = new byte[(valores.length + 7) / 8];
+		for (int i = 0; i < valores.length; i++) {
+			if (valores[i]) {
+				bytes[i >>> 3] |= 1 << (i & 7);
+			}
+		}
+		salida.write(bytes);
+	}
+
+	/**
+	 * Lee un array de booleanos escrito con {@link #escribirBooleanos(ObjectOutput, boolean[])}
+	 * @param entrada Flujo de entrada
+	 * @return Array leído
+	 * @throws IOException Si se produce un error al leer
+	 */
+	public static boolean[] leerBooleanos(ObjectInput entrada) throws IOException {
+		boolean[] valores = new boolean[entrada.readInt()];
+		byte[] bytes = new byte[(valores.length + 7) / 8];
+		entrada.readFully(bytes);
+		for (int i = 0; i < valores.length; i++) {
+			valores[i] = (bytes[i >>> 3] & (1 << (i & 7))) != 0;
+		}
+		return valores;
+	}
+
+	/**
+	 * Método ejecutado por el hilo de escritura. El checkpoint se escribe primero en un fichero temporal que después
+	 * sustituye al anterior, de forma que una interrupción a mitad de la escritura no deja un checkpoint corrupto.
+	 * @param datos Checkpoint serializado
+	 */
+	private void escribir(byte[] datos) {
+		try {
+			Path ruta = Paths.get(rutaFichero);
+			if (ruta.getParent() != null) {
+				Files.createDirectories(ruta.getParent());
+			}
+			Path rutaTemporal = Paths.get(rutaFichero + ".tmp");
+			try (OutputStream salida = new GZIPOutputStream(new FileOutputStream(rutaTemporal.toFile()), 65536)) {
+				salida.write(datos);
+			}
+			try {
+				Files.move(rutaTemporal, ruta, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(rutaTemporal, ruta, StandardCopyOption.REPLACE_EXISTING);
+			}
+		} catch (IOException e) {
+			log.warn("No se ha podido guardar el checkpoint de la metaheurística.\n" + e);
+		} finally {
+			escribiendo.set(false);
+		}
+	}
+}
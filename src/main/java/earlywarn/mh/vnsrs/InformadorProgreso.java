@@ -0,0 +1,89 @@
+package earlywarn.mh.vnsrs;
+
+import org.neo4j.logging.Log;
+
+import java.util.function.Supplier;
+
+/**
+ * Permite informar del progreso de un proceso iterativo en el log de forma periódica, en lugar de en cada iteración.
+ * El intervalo entre informes puede definirse en número de iteraciones, en tiempo transcurrido o de ambas formas (en
+ * cuyo caso se informa cuando se cumpla cualquiera de las dos condiciones).
+ * Los mensajes solo se construyen cuando realmente se van a escribir en el log.
+ */
+public class InformadorProgreso {
+	private final Log log;
+	// Número de iteraciones entre informes. 0 si no se informa en base a las iteraciones.
+	private final int intervaloIteraciones;
+	// Tiempo entre informes, en nanosegundos. 0 si no se informa en base al tiempo.
+	private final long intervaloNs;
+
+	// Iteración e instante (en ns) en el que se debe realizar el siguiente informe
+	private long sigIteración;
+	private long sigInstante;
+	// Iteración e instante (en ns) del último informe, usados para calcular la velocidad de ejecución
+	private int iteraciónÚltimoInforme;
+	private long instanteÚltimoInforme;
+
+	/**
+	 * Crea una instancia de la clase
+	 * @param intervaloIteraciones Número de iteraciones entre informes, o 0 para no informar en base a las iteraciones
+	 * @param intervaloMs Tiempo entre informes en milisegundos, o 0 para no informar en base al tiempo
+	 * @param log Log de Neo4J
+	 */
+	public InformadorProgreso(int intervaloIteraciones, long intervaloMs, Log log) {
+		this.log = log;
+		this.intervaloIteraciones = intervaloIteraciones;
+		intervaloNs = intervaloMs * 1_000_000;
+		reiniciar();
+	}
+
+	/**
+	 * Reinicia los intervalos, de forma que el siguiente informe se realizará un intervalo completo después de la
+	 * llamada a este método
+	 */
+	public void reiniciar() {
+		iteraciónÚltimoInforme = 0;
+		instanteÚltimoInforme = System.nanoTime();
+		sigIteración = intervaloIteraciones > 0 ? intervaloIteraciones : Long.MAX_VALUE;
+		sigInstante = intervaloNs > 0 ? instanteÚltimoInforme + intervaloNs : Long.MAX_VALUE;
+	}
+
+	/**
+	 * Comprueba si se debe informar del progreso en la iteración indicada. No tiene efectos secundarios, por lo que
+	 * puede llamarse en cada iteración sin coste apreciable.
+	 * @param iteración Iteración actual
+	 * @return True si se debe informar del progreso en esta iteración
+	 */
+	public boolean toca(int iteración) {
+		return iteración >= sigIteración || (sigInstante != Long.MAX_VALUE && System.nanoTime() >= sigInstante);
+	}
+
+	/**
+	 * Escribe un mensaje de progreso en el log, junto a la velocidad de ejecución desde el último informe, y vuelve a
+	 * empezar el intervalo. Normalmente se llama tras comprobar que {@link #toca(int)} devuelve true.
+	 * @param iteración Iteración actual
+	 * @param mensaje Mensaje a escribir
+	 */
+	public void informar(int iteración, String mensaje) {
+		long ahora = System.nanoTime();
+		long ns = Math.max(ahora - instanteÚltimoInforme, 1);
+		long velocidad = (iteración - iteraciónÚltimoInforme) * 1_000_000_000L / ns;
+		log.info(mensaje + " (" + velocidad + " it/s)");
+
+		iteraciónÚltimoInforme = iteración;
+		instanteÚltimoInforme = ahora;
+		sigIteración = intervaloIteraciones > 0 ? (long) iteración + intervaloIteraciones : Long.MAX_VALUE;
+		sigInstante = intervaloNs > 0 ? ahora + intervaloNs : Long.MAX_VALUE;
+	}
+
+	/**
+	 * Escribe un mensaje de progreso en el log si corresponde hacerlo en la iteración indicada
+	 * @param iteración Iteración actual
+	 * @param mensaje Función que construye el mensaje. Solo se llama si se va a escribir el mensaje.
+	 */
+	public void informarSiToca(int iteración, Supplier<String> mensaje) {
+		if (toca(iteración)) {
+			informar(iteración, mensaje.get());
+		}
+	}
+}
@@ -0,0 +1,160 @@
+package earlywarn.mh.vnsrs;
+
+import earlywarn.mh.vnsrs.config.Config;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.logging.Log;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Ejecuta la metaheurística sobre varios países con el mismo rango de fechas. Los datos de todos los países se
+ * obtienen de la BD una sola vez (ver {@link DatosProblema#desdeBD(Config, List, GraphDatabaseService, Log)}) y las
+ * ejecuciones de cada país se realizan a la vez, como mucho una por procesador.
+ */
+public class LoteVnsRs {
+	private LoteVnsRs() {}
+
+	/**
+	 * Ejecuta la metaheurística sobre cada uno de los países indicados y espera a que terminen todas las ejecuciones.
+	 * Cada ejecución usa la configuración del fichero indicado, sustituyendo el país y el rango de fechas. En todas las
+	 * rutas de ficheros de salida (incluidas las de checkpoints y del frente de Pareto de la configuración),
+	 * {@link Config#MARCA_ID} se sustituye por el ID del país.
+	 * @param rutaConfig Ruta al fichero de configuración
+	 * @param países IDs de los países sobre los que ejecutar la metaheurística. Los países repetidos se ejecutan una
+	 *               sola vez.
+	 * @param díaInicio Primer día del rango de fechas considerado
+	 * @param díaFin Último día del rango de fechas considerado
+	 * @param rutaResultado Ruta al fichero en el que se almacenará la mejor solución de cada país.
+	 *                      {@link Config#MARCA_ID} se sustituye por el ID del país.
+	 * @param rutaEstadísticas Ruta al fichero en el que se escribirán las estadísticas de cada país.
+	 *                         {@link Config#MARCA_ID} se sustituye por el ID del país.
+	 * @param db Conexión a la BD
+	 * @param log Log de Neo4J
+	 * @return Resultado de cada país, en el orden en el que aparece por primera vez en la lista de países
+	 */
+	public static List<ResultadoPaís> ejecutar(String rutaConfig, List<String> países, LocalDate díaInicio,
+											   LocalDate díaFin, String rutaResultado, String rutaEstadísticas,
+											   GraphDatabaseService db, Log log) {
+		List<String> paísesÚnicos = new ArrayList<>(new LinkedHashSet<>(países));
+		if (paísesÚnicos.size() < países.size()) {
+			log.warn("Se han eliminado " + (países.size() - paísesÚnicos.size()) + " países repetidos del lote");
+		}
+		países = paísesÚnicos;
+		if (países.isEmpty()) {
+			return new ArrayList<>();
+		}
+		Config configBase = crearConfig(rutaConfig, "", díaInicio, díaFin);
+		log.info("Cargando los datos del lote de " + países.size() + " países (" + díaInicio + " - " + díaFin + ")");
+		Map<String, DatosProblema> datosPaíses = DatosProblema.desdeBD(configBase, países, db, log);
+
+		int numHilos = Math.min(países.size(), Runtime.getRuntime().availableProcessors());
+		ExecutorService ejecutor = Executors.newFixedThreadPool(numHilos, new FactoríaHilos());
+		try {
+			List<Future<ResultadoPaís>> futuros = new ArrayList<>();
+			for (Map.Entry<String, DatosProblema> entrada : datosPaíses.entrySet()) {
+				String país = entrada.getKey();
+				Config config = crearConfig(rutaConfig, país, díaInicio, díaFin);
+				futuros.add(ejecutor.submit(() -> ejecutarPaís(config, entrada.getValue(),
+					rutaResultado.replace(Config.MARCA_ID, país), rutaEstadísticas.replace(Config.MARCA_ID, país),
+					log)));
+			}
+
+			List<ResultadoPaís> ret = new ArrayList<>();
+			for (Future<ResultadoPaís> futuro : futuros) {
+				try {
+					ret.add(futuro.get());
+				} catch (ExecutionException e) {
+					// ejecutarPaís() captura todas las excepciones, por lo que esto no debería ocurrir
+					throw new IllegalStateException(e.getCause());
+				}
+			}
+			return ret;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Se ha interrumpido la ejecución del lote", e);
+		} finally {
+			ejecutor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Método ejecutado en los hilos del lote
+	 */
+	private static ResultadoPaís ejecutarPaís(Config config, DatosProblema datos, String rutaResultado,
+											  String rutaEstadísticas, Log log) {
+		long inicio = System.currentTimeMillis();
+		try {
+			VnsRs vnsrs = new VnsRs(config, datos, log);
+			if (config.rutaCheckpoint != null) {
+				vnsrs.setRutaCheckpoint(config.rutaCheckpoint.replace(Config.MARCA_ID, config.país));
+			}
+			if (config.rutaFrentePareto != null) {
+				vnsrs.setRutaFrentePareto(config.rutaFrentePareto.replace(Config.MARCA_ID, config.país));
+			}
+			log.info("Inicio de la ejecución VNS-RS del país " + config.país + " (" + datos.líneas.size() + " líneas)");
+			vnsrs.ejecutar(rutaEstadísticas);
+			vnsrs.guardarResultado(rutaResultado);
+			log.info("Fin de la ejecución VNS-RS del país " + config.país + ". Fitness de la mejor solución: " +
+				vnsrs.getFitnessMejor());
+			return new ResultadoPaís(config.país, datos.líneas.size(), vnsrs.getFitnessMejor(),
+				(System.currentTimeMillis() - inicio) / 1000.0, null);
+		} catch (RuntimeException e) {
+			log.error("Error en la ejecución VNS-RS del país " + config.país, e);
+			return new ResultadoPaís(config.país, datos.líneas.size(), null,
+				(System.currentTimeMillis() - inicio) / 1000.0, e.toString());
+		}
+	}
+
+	/**
+	 * Lee la configuración de la metaheurística y sustituye su país y su rango de fechas. Cada ejecución usa su propia
+	 * instancia, ya que la metaheurística puede modificarla.
+	 */
+	private static Config crearConfig(String rutaConfig, String país, LocalDate díaInicio, LocalDate díaFin) {
+		Config config = new Config(rutaConfig);
+		config.país = país;
+		config.díaInicio = díaInicio;
+		config.díaFin = díaFin;
+		return config;
+	}
+
+	/**
+	 * Resultado de la ejecución de la metaheurística sobre uno de los países del lote
+	 */
+	public static class ResultadoPaís {
+		public final String país;
+		public final long numLíneas;
+		// Fitness de la mejor solución encontrada. Null si la ejecución ha terminado con un error.
+		public final Double fitnessMejor;
+		public final double segundos;
+		// Mensaje de error, si la ejecución ha terminado con uno
+		public final String error;
+
+		public ResultadoPaís(String país, long numLíneas, Double fitnessMejor, double segundos, String error) {
+			this.país = país;
+			this.numLíneas = numLíneas;
+			this.fitnessMejor = fitnessMejor;
+			this.segundos = segundos;
+			this.error = error;
+		}
+	}
+
+	/**
+	 * Crea los hilos del lote. Los hilos son demonio para no impedir que se detenga la BD.
+	 */
+	private static class FactoríaHilos implements ThreadFactory {
+		private final AtomicInteger numHilo = new AtomicInteger(1);
+
+		@Override
+		public Thread newThread(Runnable tarea) {
+			Thread hilo = new Thread(tarea, "earlywarn-lote-" + numHilo.getAndIncrement());
+			hilo.setDaemon(true);
+			return hilo;
+		}
+	}
+}
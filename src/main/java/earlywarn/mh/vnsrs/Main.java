@@ -1,5 +1,8 @@
 package earlywarn.mh.vnsrs;
 
+import earlywarn.definiciones.IDCriterio;
+import earlywarn.main.modelo.CuboLíneas;
+import earlywarn.main.métricas.Métricas;
 import earlywarn.mh.vnsrs.config.Config;
 import org.neo4j.graphdb.GraphDatabaseService;
 import org.neo4j.logging.Log;
@@ -9,7 +12,11 @@ import org.neo4j.procedure.Procedure;
 import org.neo4j.procedure.UserFunction;
 
 import java.io.*;
+import java.time.LocalDate;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
 
 /**
  * Clase desde la que se ejecuta la metaheurística de recocido simulado + VNS
@@ -31,6 +38,19 @@ public class Main {
 	public static final String RUTA_CONFIG = "import/config_vnsrs.xml";
 	private static final String RUTA_RESULTADO = "export/resultado_vnsrs.txt";
 	private static final String RUTA_ESTADÍSTICAS = "export/stats_vnsrs.csv";
+	// Estadísticas de las ejecuciones reanudadas, que solo contienen las iteraciones posteriores al checkpoint
+	private static final String RUTA_ESTADÍSTICAS_REANUDADA = "export/stats_vnsrs_reanudada.csv";
+	// Rutas usadas por los trabajos en segundo plano. "{id}" se sustituye por el ID de cada trabajo.
+	private static final String RUTA_RESULTADO_TRABAJO = "export/resultado_vnsrs_{id}.txt";
+	private static final String RUTA_ESTADÍSTICAS_TRABAJO = "export/stats_vnsrs_{id}.csv";
+	// Rutas usadas por las ejecuciones por lotes. "{id}" se sustituye por el ID de cada país.
+	private static final String RUTA_RESULTADO_LOTE = "export/resultado_vnsrs_lote_{id}.txt";
+	private static final String RUTA_ESTADÍSTICAS_LOTE = "export/stats_vnsrs_lote_{id}.csv";
+	private static final String RUTA_MÉTRICAS = "export/métricas_vnsrs.csv";
+	// Ficheros que conservan el estado de las ejecuciones con rango de fechas deslizante
+	private static final String RUTA_SNAPSHOT_VENTANA = "export/ventana_vnsrs.bin";
+	private static final String RUTA_RESULTADO_VENTANA = "export/resultado_vnsrs_ventana.txt";
+	private static final String RUTA_ESTADÍSTICAS_VENTANA = "export/stats_vnsrs_ventana.csv";
 
 	@Context
 	public GraphDatabaseService db;
@@ -42,10 +62,232 @@ public class Main {
 		log.info("Inicio metaheurística");
 		Config config = new Config(RUTA_CONFIG);
 		VnsRs vnsrs = new VnsRs(config, db, log);
-		vnsrs.ejecutar();
+		vnsrs.ejecutar(RUTA_ESTADÍSTICAS);
 		vnsrs.printResultado();
 		vnsrs.guardarResultado(RUTA_RESULTADO);
-		vnsrs.guardarEstadísticas(RUTA_ESTADÍSTICAS);
+		Métricas.toCsv(RUTA_MÉTRICAS, log);
+	}
+
+	/**
+	 * Ejecuta la metaheurística sobre el país de la configuración y el rango de fechas indicado, reutilizando los
+	 * datos y la mejor solución de la última llamada a este procedimiento. Pensado para repetir la optimización cada
+	 * vez que el rango de fechas se desplaza: solo se consultan los días que entran y salen del rango, y la búsqueda
+	 * se limita a refinar la solución anterior. Si no hay una ejecución anterior compatible, se realiza una completa.
+	 * @param díaInicio Primer día del rango de fechas considerado
+	 * @param díaFin Último día del rango de fechas considerado
+	 * @param rutaConfig Ruta al fichero de configuración a usar, relativa a la carpeta del DBMS. Su rango de fechas
+	 *                   se ignora.
+	 */
+	@Procedure
+	public void vnsRsVentana(@Name("díaInicio") LocalDate díaInicio, @Name("díaFin") LocalDate díaFin,
+							 @Name(value = "rutaConfig", defaultValue = RUTA_CONFIG) String rutaConfig) {
+		Config config = new Config(rutaConfig);
+		VnsRs vnsrs = VentanaDeslizante.ejecutar(config, díaInicio, díaFin, RUTA_SNAPSHOT_VENTANA,
+			RUTA_RESULTADO_VENTANA, RUTA_ESTADÍSTICAS_VENTANA, db, log);
+		vnsrs.printResultado();
+		Métricas.toCsv(RUTA_MÉTRICAS, log);
+	}
+
+	/**
+	 * Ejecuta la metaheurística sobre varios países con el mismo rango de fechas. Los datos de todos los países se
+	 * cargan una sola vez y las ejecuciones se realizan a la vez, como mucho una por procesador. La mejor solución y
+	 * las estadísticas se almacenan en ficheros propios de cada país.
+	 * @param países IDs de los países sobre los que ejecutar la metaheurística
+	 * @param díaInicio Primer día del rango de fechas considerado
+	 * @param díaFin Último día del rango de fechas considerado
+	 * @param rutaConfig Ruta al fichero de configuración a usar, relativa a la carpeta del DBMS. Su país y su rango
+	 *                   de fechas se ignoran.
+	 * @return Resultado de cada país
+	 */
+	@Procedure
+	public Stream<LoteVnsRs.ResultadoPaís> vnsRsLote(@Name("países") List<String> países,
+													 @Name("díaInicio") LocalDate díaInicio,
+													 @Name("díaFin") LocalDate díaFin,
+													 @Name(value = "rutaConfig", defaultValue = RUTA_CONFIG)
+														 String rutaConfig) {
+		List<LoteVnsRs.ResultadoPaís> resultados = LoteVnsRs.ejecutar(rutaConfig, países, díaInicio, díaFin,
+			RUTA_RESULTADO_LOTE, RUTA_ESTADÍSTICAS_LOTE, db, log);
+		Métricas.toCsv(RUTA_MÉTRICAS, log);
+		return resultados.stream();
+	}
+
+	/**
+	 * Lanza una ejecución de la metaheurística en segundo plano y termina inmediatamente. El estado de la ejecución
+	 * puede consultarse con {@link #vnsRsStatus(Long)} y la ejecución puede detenerse con {@link #vnsRsCancel(Long)}.
+	 * La mejor solución y las estadísticas se almacenan en ficheros propios de cada trabajo, identificados por su ID.
+	 * @param rutaConfig Ruta al fichero de configuración a usar, relativa a la carpeta del DBMS
+	 * @return ID del trabajo lanzado
+	 */
+	@Procedure
+	public Stream<ResultadoTrabajo> vnsRsStart(@Name(value = "rutaConfig", defaultValue = RUTA_CONFIG)
+												   String rutaConfig) {
+		Config config = new Config(rutaConfig);
+		TrabajoVnsRs trabajo = TrabajoVnsRs.lanzar(config, db, RUTA_RESULTADO_TRABAJO, RUTA_ESTADÍSTICAS_TRABAJO, log);
+		return Stream.of(new ResultadoTrabajo(trabajo));
+	}
+
+	/**
+	 * Devuelve el estado de un trabajo lanzado con {@link #vnsRsStart(String)}
+	 * @param id ID del trabajo, o -1 para obtener el estado de todos los trabajos
+	 * @return Estado del trabajo o trabajos indicados
+	 */
+	@Procedure
+	public Stream<ResultadoTrabajo> vnsRsStatus(@Name(value = "id", defaultValue = "-1") Long id) {
+		if (id < 0) {
+			return TrabajoVnsRs.getTodos().stream().map(ResultadoTrabajo::new);
+		} else {
+			return Stream.of(new ResultadoTrabajo(getTrabajo(id)));
+		}
+	}
+
+	/**
+	 * Detiene un trabajo lanzado con {@link #vnsRsStart(String)}. El trabajo se detendrá al final de su iteración
+	 * actual y almacenará la mejor solución encontrada hasta el momento.
+	 * @param id ID del trabajo
+	 * @return Estado del trabajo en el momento de solicitar la cancelación
+	 */
+	@Procedure
+	public Stream<ResultadoTrabajo> vnsRsCancel(@Name("id") Long id) {
+		TrabajoVnsRs trabajo = getTrabajo(id);
+		trabajo.cancelar();
+		return Stream.of(new ResultadoTrabajo(trabajo));
+	}
+
+	/**
+	 * Elimina todos los trabajos lanzados con {@link #vnsRsStart(String)} que ya han terminado, de forma que dejen de
+	 * aparecer en {@link #vnsRsStatus(Long)}
+	 */
+	@Procedure
+	public void vnsRsEliminarTerminados() {
+		int eliminados = TrabajoVnsRs.eliminarTerminados();
+		log.info("Eliminados " + eliminados + " trabajos VNS-RS terminados");
+	}
+
+	/**
+	 * Ejecuta la metaheurística sobre los datos del problema almacenados en un snapshot, sin acceder a la BD. Los
+	 * criterios, pesos y parámetros se leen del fichero de configuración. El país y el rango de fechas de la
+	 * configuración deben coincidir con los del snapshot.
+	 * @param rutaSnapshot Ruta al fichero generado con {@link #exportarProblema(String)}, relativa a la carpeta
+	 *                     del DBMS
+	 * @throws IllegalArgumentException Si el país o el rango de fechas de la configuración no coinciden con los del
+	 * snapshot
+	 */
+	@Procedure
+	public void vnsRsDesdeSnapshot(@Name("rutaSnapshot") String rutaSnapshot) {
+		log.info("Inicio metaheurística a partir del snapshot " + rutaSnapshot);
+		Config config = new Config(RUTA_CONFIG);
+		DatosProblema datos = SnapshotProblema.cargar(rutaSnapshot);
+		if (!datos.país.equals(config.país) || !datos.díaInicio.equals(config.díaInicio) ||
+			!datos.díaFin.equals(config.díaFin)) {
+			throw new IllegalArgumentException("El país o el rango de fechas de la configuración (" + config.país +
+				", " + config.díaInicio + " - " + config.díaFin + ") no coinciden con los del snapshot (" + datos.país +
+				", " + datos.díaInicio + " - " + datos.díaFin + ")");
+		}
+		VnsRs vnsrs = new VnsRs(config, datos, log);
+		vnsrs.ejecutar(RUTA_ESTADÍSTICAS);
+		vnsrs.printResultado();
+		vnsrs.guardarResultado(RUTA_RESULTADO);
+		Métricas.toCsv(RUTA_MÉTRICAS, log);
+	}
+
+	/**
+	 * Reanuda una ejecución de la metaheurística a partir de un checkpoint. La configuración debe ser la misma que la
+	 * de la ejecución que generó el checkpoint. Las estadísticas de las iteraciones posteriores al checkpoint se
+	 * escriben en un fichero propio y, si la configuración lo indica, se siguen generando checkpoints.
+	 * @param rutaCheckpoint Ruta al fichero que contiene el checkpoint, relativa a la carpeta del DBMS
+	 */
+	@Procedure
+	public void vnsRsReanudar(@Name("rutaCheckpoint") String rutaCheckpoint) {
+		log.info("Reanudando metaheurística a partir del checkpoint " + rutaCheckpoint);
+		Config config = new Config(RUTA_CONFIG);
+		VnsRs vnsrs = new VnsRs(config, db, log);
+		vnsrs.reanudar(rutaCheckpoint, RUTA_ESTADÍSTICAS_REANUDADA);
+		vnsrs.printResultado();
+		vnsrs.guardarResultado(RUTA_RESULTADO);
+		Métricas.toCsv(RUTA_MÉTRICAS, log);
+	}
+
+	/**
+	 * Obtiene todos los datos del problema definido en el fichero de configuración y los almacena en un snapshot
+	 * binario, que puede usarse después para ejecutar la metaheurística sin acceder a la BD.
+	 * @param rutaFichero Ruta al fichero de salida, relativa a la carpeta del DBMS
+	 */
+	@Procedure
+	public void exportarProblema(@Name("rutaFichero") String rutaFichero) {
+		Config config = new Config(RUTA_CONFIG);
+		log.info("Exportando los datos del problema (" + config.país + ", " + config.díaInicio + " - " +
+			config.díaFin + ") a " + rutaFichero);
+		SnapshotProblema.exportar(CachéProblemas.get(config, db, log), rutaFichero);
+	}
+
+	/**
+	 * Devuelve las métricas de rendimiento acumuladas por todas las ejecuciones de la metaheurística desde que se
+	 * inició la BD o desde la última llamada a {@link #reiniciarMétricas()}. Los contadores solo incluyen el valor
+	 * de la cuenta; los histogramas incluyen además la media y los percentiles 50, 90 y 99 en nanosegundos.
+	 * @return Una fila por cada métrica
+	 */
+	@Procedure
+	public Stream<Métricas.Resumen> métricas() {
+		return Métricas.getResumen().stream();
+	}
+
+	/**
+	 * Elimina los valores de todas las métricas de rendimiento registradas hasta ahora
+	 */
+	@Procedure
+	public void reiniciarMétricas() {
+		Métricas.reiniciar();
+	}
+
+	/**
+	 * Devuelve el estado de la caché que almacena los datos de los últimos problemas cargados
+	 * @return Número de problemas almacenados y número de solicitudes respondidas con y sin la caché
+	 */
+	@Procedure
+	public Stream<EstadoCaché> cachéProblemas() {
+		return Stream.of(new EstadoCaché(CachéProblemas.getNumProblemas(), CachéProblemas.getAciertos(),
+			CachéProblemas.getFallos()));
+	}
+
+	/**
+	 * Descarta los datos de todos los problemas almacenados en la caché, de forma que la próxima ejecución los
+	 * vuelva a obtener de la BD
+	 */
+	@Procedure
+	public void invalidarCachéProblemas() {
+		CachéProblemas.invalidar();
+	}
+
+	/**
+	 * Construye un cubo de líneas con los datos de todas las líneas en el rango de fechas indicado y lo almacena en
+	 * un fichero. Si se indica la ruta de este fichero en la configuración de la metaheurística, cualquier ejecución
+	 * cuyo rango de fechas esté contenido en el del cubo obtendrá los datos de las líneas del mismo.
+	 * @param primerDía Primer día que cubrirá el cubo
+	 * @param últimoDía Último día que cubrirá el cubo (inclusivo)
+	 * @param rutaFichero Ruta al fichero de salida, relativa a la carpeta del DBMS
+	 */
+	@Procedure
+	public void generarCuboLíneas(@Name("primerDía") LocalDate primerDía, @Name("últimoDía") LocalDate últimoDía,
+								  @Name("rutaFichero") String rutaFichero) {
+		log.info("Generando cubo de líneas entre " + primerDía + " y " + últimoDía);
+		CuboLíneas.construir(primerDía, últimoDía, db).guardar(rutaFichero);
+	}
+
+	/**
+	 * Obtiene la mejor solución de un frente de Pareto exportado por una ejecución en modo multiobjetivo para la
+	 * combinación de pesos indicada, sin tener que volver a ejecutar la metaheurística
+	 * @param rutaFichero Ruta al fichero que contiene el frente, relativa a la carpeta del DBMS
+	 * @param pesos Peso de cada criterio, usando como clave su ID. Los criterios no incluidos tienen un peso de 0.
+	 * @return Solución del frente con el mayor fitness según los pesos indicados
+	 */
+	@Procedure
+	public Stream<ResultadoFrentePareto> consultarFrentePareto(@Name("rutaFichero") String rutaFichero,
+															   @Name("pesos") Map<String, Object> pesos) {
+		Map<IDCriterio, Double> pesosCriterios = new HashMap<>();
+		for (Map.Entry<String, Object> entrada : pesos.entrySet()) {
+			pesosCriterios.put(IDCriterio.valueOf(entrada.getKey()), ((Number) entrada.getValue()).doubleValue());
+		}
+		return Stream.of(new ResultadoFrentePareto(ArchivoPareto.consultar(rutaFichero, pesosCriterios)));
 	}
 
 	/**
@@ -84,4 +326,78 @@ public class Main {
 			throw new RuntimeException(e);
 		}
 	}
+
+	/**
+	 * @param id ID de un trabajo
+	 * @return Trabajo con el ID indicado
+	 * @throws IllegalArgumentException Si no existe ningún trabajo con el ID indicado
+	 */
+	private TrabajoVnsRs getTrabajo(long id) {
+		TrabajoVnsRs trabajo = TrabajoVnsRs.get(id);
+		if (trabajo == null) {
+			throw new IllegalArgumentException("No existe ningún trabajo VNS-RS con ID " + id);
+		}
+		return trabajo;
+	}
+
+	/**
+	 * Estado de la caché de problemas
+	 */
+	public static class EstadoCaché {
+		public final long problemas;
+		public final long aciertos;
+		public final long fallos;
+
+		public EstadoCaché(long problemas, long aciertos, long fallos) {
+			this.problemas = problemas;
+			this.aciertos = aciertos;
+			this.fallos = fallos;
+		}
+	}
+
+	/**
+	 * Solución de un frente de Pareto obtenida para una combinación de pesos
+	 */
+	public static class ResultadoFrentePareto {
+		public final double fitness;
+		// Valor porcentual de cada criterio en la solución
+		public final Map<String, Object> porcentajes;
+		public final List<String> líneasCerradas;
+
+		public ResultadoFrentePareto(ArchivoPareto.SoluciónFrente solución) {
+			fitness = solución.fitness;
+			porcentajes = new HashMap<>();
+			for (Map.Entry<IDCriterio, Double> entrada : solución.porcentajes.entrySet()) {
+				porcentajes.put(entrada.getKey().name(), entrada.getValue());
+			}
+			líneasCerradas = solución.líneasCerradas;
+		}
+	}
+
+	/**
+	 * Estado de un trabajo de VNS-RS lanzado en segundo plano
+	 */
+	public static class ResultadoTrabajo {
+		public final long id;
+		public final String estado;
+		public final double segundos;
+		// Datos de la ejecución. Null si la metaheurística aún no ha empezado a ejecutarse.
+		public final Long iteración;
+		public final Double temperatura;
+		public final Double fitnessActual;
+		public final Double fitnessMejor;
+		// Mensaje de error, si el trabajo ha terminado con uno
+		public final String error;
+
+		public ResultadoTrabajo(TrabajoVnsRs trabajo) {
+			id = trabajo.id;
+			estado = trabajo.getEstado().name();
+			segundos = trabajo.getSegundos();
+			iteración = trabajo.getIteración();
+			temperatura = trabajo.getTemperatura();
+			fitnessActual = trabajo.getFitnessActual();
+			fitnessMejor = trabajo.getFitnessMejor();
+			error = trabajo.getError();
+		}
+	}
 }
@@ -0,0 +1,72 @@
+package earlywarn.mh.vnsrs;
+
+import earlywarn.definiciones.OperaciónLínea;
+
+/**
+ * Representa un movimiento de la metaheurística: un conjunto de líneas que se abren o se cierran a la vez.
+ * Las líneas se identifican por su ID numérico. La instancia está pensada para reutilizarse en todas las iteraciones,
+ * de forma que generar un movimiento no requiera crear objetos nuevos.
+ */
+public class Movimiento {
+	// Movimiento que no incluye ninguna línea. No debe modificarse.
+	public static final Movimiento VACÍO = new Movimiento(0);
+
+	// IDs numéricos de las líneas que forman parte del movimiento. Solo son válidas las primeras numLíneas posiciones.
+	private final int[] líneas;
+	private int numLíneas;
+	public OperaciónLínea operación;
+
+	/**
+	 * Crea un movimiento vacío
+	 * @param capacidad Número máximo de líneas que puede incluir el movimiento
+	 */
+	public Movimiento(int capacidad) {
+		líneas = new int[capacidad];
+		numLíneas = 0;
+		operación = OperaciónLínea.CERRAR;
+	}
+
+	/**
+	 * Elimina todas las líneas del movimiento y fija la operación que se realizará sobre las que se añadan después
+	 * @param operación Operación del movimiento
+	 */
+	public void reiniciar(OperaciónLínea operación) {
+		this.operación = operación;
+		numLíneas = 0;
+	}
+
+	/**
+	 * Añade una línea al movimiento
+	 * @param idNumérico ID numérico de la línea
+	 * @throws IllegalStateException Si se ha alcanzado la capacidad del movimiento
+	 */
+	public void añadir(int idNumérico) {
+		if (numLíneas == líneas.length) {
+			throw new IllegalStateException("Se ha alcanzado el número máximo de líneas del movimiento (" +
+				líneas.length + ")");
+		}
+		líneas[numLíneas++] = idNumérico;
+	}
+
+	/**
+	 * @param posición Posición de la línea dentro del movimiento, entre 0 y {@link #getNumLíneas()} - 1
+	 * @return ID numérico de la línea en la posición indicada
+	 */
+	public int getLínea(int posición) {
+		return líneas[posición];
+	}
+
+	/**
+	 * @return Número de líneas que forman parte del movimiento
+	 */
+	public int getNumLíneas() {
+		return numLíneas;
+	}
+
+	/**
+	 * @return True si el movimiento no incluye ninguna línea
+	 */
+	public boolean isVacío() {
+		return numLíneas == 0;
+	}
+}
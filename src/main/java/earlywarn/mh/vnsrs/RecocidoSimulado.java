@@ -1,13 +1,17 @@
 package earlywarn.mh.vnsrs;
 
+import earlywarn.definiciones.IPersistible;
+import earlywarn.main.GeneradorAleatorio;
 import earlywarn.mh.vnsrs.config.ConfigRS;
 
-import java.util.Random;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
 
 /**
  * Clase que implementa los método necesarios para ejecutar la metaheurística del recocido simulado
  */
-public class RecocidoSimulado {
+public class RecocidoSimulado implements IPersistible {
 	/*
 	 * Determina la penalización en la probabilidad de aceptación de las soluciones infactibles.
 	 */
@@ -21,11 +25,11 @@ public class RecocidoSimulado {
 	public int fase;
 
 	private final ConfigRS config;
-	private final Random rand;
+	private final GeneradorAleatorio rand;
 
-	public RecocidoSimulado(ConfigRS config) {
+	public RecocidoSimulado(ConfigRS config, GeneradorAleatorio rand) {
 		this.config = config;
-		rand = new Random();
+		this.rand = rand;
 
 		iteración = 0;
 		temperatura = config.tInicial;
@@ -83,4 +87,20 @@ public class RecocidoSimulado {
 	public double probabilidadAceptación(double fitnessActual, double fitnessNueva) {
 		return Math.exp((fitnessNueva - fitnessActual) / temperatura);
 	}
+
+	@Override
+	public void escribirEstado(ObjectOutput salida) throws IOException {
+		salida.writeInt(iteración);
+		salida.writeDouble(temperatura);
+		salida.writeInt(fase);
+		rand.escribirEstado(salida);
+	}
+
+	@Override
+	public void leerEstado(ObjectInput entrada) throws IOException {
+		iteración = entrada.readInt();
+		temperatura = entrada.readDouble();
+		fase = entrada.readInt();
+		rand.leerEstado(entrada);
+	}
 }
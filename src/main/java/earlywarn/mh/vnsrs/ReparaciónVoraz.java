@@ -0,0 +1,81 @@
+package earlywarn.mh.vnsrs;
+
+import earlywarn.definiciones.OperaciónLínea;
+import earlywarn.main.GestorLíneas;
+
+import java.util.Arrays;
+
+/**
+ * Repara una solución infactible de forma voraz, abriendo o cerrando líneas hasta que cumpla todas las restricciones.
+ * Permite obtener una solución inicial factible sin tener que generar soluciones al azar hasta dar con una.
+ * Cada línea se puntúa según cuánto reduce la violación de las restricciones al variar su estado por cada unidad de
+ * fitness que se pierde al hacerlo. Las líneas se ordenan una sola vez según esta puntuación y se varían en ese orden
+ * hasta que la solución es factible, por lo que el coste total es de O(n log n). Para puntuar cada línea basta con
+ * evaluar un movimiento que solo la incluye a ella, lo que usa las contribuciones de cada línea precalculadas por los
+ * criterios.
+ */
+public class ReparaciónVoraz {
+	// Pérdida de fitness mínima considerada al puntuar las líneas, para no dividir entre 0
+	private static final double PÉRDIDA_MÍNIMA = 1e-9;
+
+	private ReparaciónVoraz() {}
+
+	/**
+	 * Intenta reparar la solución actual de un gestor de líneas. Si no lo consigue, la solución queda en el estado más
+	 * cercano a ser factible que se ha encontrado.
+	 * @param gLíneas Gestor de líneas que contiene la solución a reparar y las restricciones que debe cumplir
+	 * @return Número de líneas cuyo estado se ha variado si se ha obtenido una solución factible, o -1 si no ha sido
+	 * posible
+	 */
+	public static int reparar(GestorLíneas gLíneas) {
+		double violaciónActual = gLíneas.getViolaciónRestricciones();
+		if (violaciónActual <= 0) {
+			return 0;
+		}
+		int numLíneas = gLíneas.getNumLíneas();
+		Movimiento movimiento = new Movimiento(1);
+		double[] porcentajes = new double[gLíneas.getCriterios().size()];
+		double fitnessActual = gLíneas.getFitness();
+
+		// Puntuar las líneas cuyo cambio de estado reduce la violación de las restricciones
+		Integer[] candidatas = new Integer[numLíneas];
+		double[] puntuaciones = new double[numLíneas];
+		int numCandidatas = 0;
+		for (int i = 0; i < numLíneas; i++) {
+			prepararMovimiento(movimiento, gLíneas, i);
+			double fitness = gLíneas.evaluar(movimiento, porcentajes);
+			double mejora = violaciónActual - gLíneas.getViolaciónRestricciones(movimiento, porcentajes);
+			if (mejora > 0) {
+				puntuaciones[i] = mejora / Math.max(fitnessActual - fitness, PÉRDIDA_MÍNIMA);
+				candidatas[numCandidatas++] = i;
+			}
+		}
+		Arrays.sort(candidatas, 0, numCandidatas, (l1, l2) -> Double.compare(puntuaciones[l2], puntuaciones[l1]));
+
+		/*
+		 * Variar las líneas en orden hasta que la solución sea factible. Como el efecto de cada línea depende de las
+		 * que ya se han variado, se vuelve a comprobar antes de variar cada una y se omiten las que ya no reducen la
+		 * violación.
+		 */
+		int variadas = 0;
+		for (int i = 0; i < numCandidatas && violaciónActual > 0; i++) {
+			prepararMovimiento(movimiento, gLíneas, candidatas[i]);
+			double violación = gLíneas.getViolaciónRestricciones(movimiento, null);
+			if (violación < violaciónActual) {
+				gLíneas.aplicar(movimiento);
+				gLíneas.confirmar();
+				violaciónActual = violación;
+				variadas++;
+			}
+		}
+		return violaciónActual <= 0 ? variadas : -1;
+	}
+
+	/**
+	 * Prepara un movimiento que varía el estado de una sola línea
+	 */
+	private static void prepararMovimiento(Movimiento movimiento, GestorLíneas gLíneas, int idNumérico) {
+		movimiento.reiniciar(gLíneas.isAbierta(idNumérico) ? OperaciónLínea.CERRAR : OperaciónLínea.ABRIR);
+		movimiento.añadir(idNumérico);
+	}
+}
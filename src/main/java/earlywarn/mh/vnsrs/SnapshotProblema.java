@@ -0,0 +1,326 @@
+package earlywarn.mh.vnsrs;
+
+import earlywarn.definiciones.ETLOperationRequiredException;
+import earlywarn.main.modelo.datoid.Aeropuerto;
+import earlywarn.main.modelo.datoid.Línea;
+import earlywarn.main.modelo.datoid.RegistroDatoID;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.*;
+
+/**
+ * Permite almacenar en disco todos los datos de un problema ya cargado (líneas, aportación de cada línea a cada
+ * criterio, pasajeros por aerolínea y aeropuerto, valores iniciales de los criterios y datos de los aeropuertos) y
+ * volver a cargarlos sin acceder a la BD.
+ * Los datos se almacenan por columnas en un fichero binario (un array por cada valor, en lugar de un registro por
+ * cada línea). Al cargarlo, el fichero se mapea en memoria, lo que permite leer cada columna de una sola vez.
+ */
+public class SnapshotProblema {
+	// Identificador del formato del fichero en el que se almacena el snapshot
+	private static final int FORMATO_FICHERO = 0x45575350;
+	// Valor almacenado como país de los aeropuertos que no tienen ningún país asociado
+	private static final String SIN_PAÍS = "";
+
+	private SnapshotProblema() {}
+
+	/**
+	 * Almacena los datos del problema indicado en un fichero. Todos los datos que aún no se hayan obtenido se
+	 * consultarán antes de escribir el fichero.
+	 * Si la BD no contiene los datos de conectividad, el snapshot se generará sin ellos y no podrá usarse con el
+	 * criterio de conectividad.
+	 * @param datos Datos del problema a almacenar
+	 * @param rutaFichero Ruta al fichero de salida, relativa a la carpeta del DBMS
+	 * @throws UncheckedIOException Si se produce un error al escribir el fichero
+	 */
+	public static void exportar(DatosProblema datos, String rutaFichero) {
+		Integer conectividadPaís;
+		try {
+			conectividadPaís = datos.getConectividadPaís();
+		} catch (ETLOperationRequiredException e) {
+			conectividadPaís = null;
+		}
+
+		// Índices de aerolíneas y aeropuertos, en el orden en que se almacenarán
+		Map<String, Integer> aerolíneas = new TreeMap<>();
+		Map<String, Integer> aeropuertos = new TreeMap<>();
+		for (String aerolínea : datos.getPasajerosPorAerolínea().keySet()) {
+			aerolíneas.put(aerolínea, 0);
+		}
+		for (String aeropuerto : datos.getPasajerosPorAeropuerto().keySet()) {
+			aeropuertos.put(aeropuerto, 0);
+		}
+		for (String idLínea : datos.líneas) {
+			Línea línea = datos.registroLíneas.get(idLínea);
+			aeropuertos.put(línea.idAeropuertoOrigen, 0);
+			aeropuertos.put(línea.idAeropuertoDestino, 0);
+			for (String aerolínea : línea.getPasajerosPorAerolínea().keySet()) {
+				aerolíneas.put(aerolínea, 0);
+			}
+		}
+		asignarÍndices(aerolíneas);
+		asignarÍndices(aeropuertos);
+
+		try (DataOutputStream salida = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(rutaFichero)))) {
+			salida.writeInt(FORMATO_FICHERO);
+			salida.writeUTF(datos.país);
+			salida.writeLong(datos.díaInicio.toEpochDay());
+			salida.writeLong(datos.díaFin.toEpochDay());
+
+			// Valores iniciales de los criterios
+			salida.writeDouble(datos.getRiesgoTotal());
+			salida.writeLong(datos.getPasajerosTotales());
+			salida.writeDouble(datos.getIngresosTotales());
+			salida.writeBoolean(conectividadPaís != null);
+			salida.writeInt(conectividadPaís == null ? 0 : conectividadPaís);
+
+			// Aerolíneas
+			salida.writeInt(aerolíneas.size());
+			for (String aerolínea : aerolíneas.keySet()) {
+				salida.writeUTF(aerolínea);
+			}
+			escribirMapa(salida, datos.getPasajerosPorAerolínea(), aerolíneas);
+
+			// Aeropuertos
+			salida.writeInt(aeropuertos.size());
+			for (String aeropuerto : aeropuertos.keySet()) {
+				salida.writeUTF(aeropuerto);
+			}
+			for (String aeropuerto : aeropuertos.keySet()) {
+				String idPaís = datos.registroAeropuertos.get(aeropuerto).getIdPaís();
+				salida.writeUTF(idPaís == null ? SIN_PAÍS : idPaís);
+			}
+			for (String aeropuerto : aeropuertos.keySet()) {
+				salida.writeLong(datos.registroAeropuertos.get(aeropuerto).getNumVuelosSalida());
+			}
+			if (conectividadPaís != null) {
+				for (String aeropuerto : aeropuertos.keySet()) {
+					salida.writeInt(datos.registroAeropuertos.get(aeropuerto).getConectividadBase());
+				}
+			}
+			escribirMapa(salida, datos.getPasajerosPorAeropuerto(), aeropuertos);
+
+			// Líneas. Cada valor se almacena como una columna.
+			List<Línea> líneas = new ArrayList<>();
+			for (String idLínea : datos.líneas) {
+				líneas.add(datos.registroLíneas.get(idLínea));
+			}
+			salida.writeInt(líneas.size());
+			for (Línea línea : líneas) {
+				salida.writeInt(aeropuertos.get(línea.idAeropuertoOrigen));
+			}
+			for (Línea línea : líneas) {
+				salida.writeInt(aeropuertos.get(línea.idAeropuertoDestino));
+			}
+			for (Línea línea : líneas) {
+				salida.writeLong(línea.getPasajeros());
+			}
+			for (Línea línea : líneas) {
+				salida.writeLong(línea.getNumVuelos());
+			}
+			for (Línea línea : líneas) {
+				salida.writeDouble(línea.getIngresosTurísticos());
+			}
+			for (Línea línea : líneas) {
+				salida.writeDouble(línea.getRiesgoImportado());
+			}
+			/*
+			 * Pasajeros por aerolínea de cada línea, en formato disperso: primero la posición en la que empiezan los
+			 * datos de cada línea y después los índices de las aerolíneas y sus pasajeros.
+			 */
+			int posición = 0;
+			salida.writeInt(posición);
+			for (Línea línea : líneas) {
+				posición += línea.getPasajerosPorAerolínea().size();
+				salida.writeInt(posición);
+			}
+			for (Línea línea : líneas) {
+				for (String aerolínea : línea.getPasajerosPorAerolínea().keySet()) {
+					salida.writeInt(aerolíneas.get(aerolínea));
+				}
+			}
+			for (Línea línea : líneas) {
+				for (Long pasajeros : línea.getPasajerosPorAerolínea().values()) {
+					salida.writeLong(pasajeros);
+				}
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException("Error al guardar el snapshot del problema en el fichero " + rutaFichero, e);
+		}
+	}
+
+	/**
+	 * Carga los datos de un problema almacenados en un fichero mediante {@link #exportar(DatosProblema, String)}.
+	 * Los datos obtenidos no tienen acceso a la BD.
+	 * @param rutaFichero Ruta al fichero que contiene el snapshot, relativa a la carpeta del DBMS
+	 * @return Datos del problema almacenados en el fichero
+	 * @throws UncheckedIOException Si se produce un error al leer el fichero
+	 */
+	public static DatosProblema cargar(String rutaFichero) {
+		try (FileChannel canal = FileChannel.open(Paths.get(rutaFichero), StandardOpenOption.READ)) {
+			MappedByteBuffer buffer = canal.map(FileChannel.MapMode.READ_ONLY, 0, canal.size());
+			if (buffer.getInt() != FORMATO_FICHERO) {
+				throw new IOException("El fichero " + rutaFichero + " no contiene un snapshot del problema");
+			}
+			String país = leerTexto(buffer);
+			LocalDate díaInicio = LocalDate.ofEpochDay(buffer.getLong());
+			LocalDate díaFin = LocalDate.ofEpochDay(buffer.getLong());
+
+			double riesgoTotal = buffer.getDouble();
+			long pasajerosTotales = buffer.getLong();
+			double ingresosTotales = buffer.getDouble();
+			boolean tieneConectividad = buffer.get() != 0;
+			int conectividadPaís = buffer.getInt();
+
+			String[] aerolíneas = leerTextos(buffer, buffer.getInt());
+			Map<String, Long> pasajerosPorAerolínea = leerMapa(buffer, aerolíneas);
+
+			int numAeropuertos = buffer.getInt();
+			String[] aeropuertos = leerTextos(buffer, numAeropuertos);
+			String[] paísesAeropuertos = leerTextos(buffer, numAeropuertos);
+			long[] vuelosSalida = leerLongs(buffer, numAeropuertos);
+			int[] conectividadAeropuertos = tieneConectividad ? leerInts(buffer, numAeropuertos) : null;
+			Map<String, Long> pasajerosPorAeropuerto = leerMapa(buffer, aeropuertos);
+
+			int numLíneas = buffer.getInt();
+			int[] origen = leerInts(buffer, numLíneas);
+			int[] destino = leerInts(buffer, numLíneas);
+			long[] pasajeros = leerLongs(buffer, numLíneas);
+			long[] vuelos = leerLongs(buffer, numLíneas);
+			double[] ingresos = leerDoubles(buffer, numLíneas);
+			double[] riesgo = leerDoubles(buffer, numLíneas);
+			int[] inicioAerolíneas = leerInts(buffer, numLíneas + 1);
+			int[] aerolíneasLíneas = leerInts(buffer, inicioAerolíneas[numLíneas]);
+			long[] pasajerosAerolíneasLíneas = leerLongs(buffer, inicioAerolíneas[numLíneas]);
+
+			Map<String, Aeropuerto> mapaAeropuertos = new HashMap<>();
+			for (int i = 0; i < numAeropuertos; i++) {
+				Integer conectividad = tieneConectividad ? conectividadAeropuertos[i] : null;
+				String idPaís = SIN_PAÍS.equals(paísesAeropuertos[i]) ? null : paísesAeropuertos[i];
+				mapaAeropuertos.put(aeropuertos[i], new Aeropuerto(aeropuertos[i], conectividad, vuelosSalida[i],
+					idPaís, díaInicio, díaFin, null));
+			}
+
+			List<String> líneas = new ArrayList<>(numLíneas);
+			Map<String, Línea> mapaLíneas = new HashMap<>();
+			for (int l = 0; l < numLíneas; l++) {
+				String id = aeropuertos[origen[l]] + "-" + aeropuertos[destino[l]];
+				Map<String, Long> pasajerosPorAerolíneaLínea = new TreeMap<>();
+				for (int i = inicioAerolíneas[l]; i < inicioAerolíneas[l + 1]; i++) {
+					pasajerosPorAerolíneaLínea.put(aerolíneas[aerolíneasLíneas[i]], pasajerosAerolíneasLíneas[i]);
+				}
+				líneas.add(id);
+				mapaLíneas.put(id, new Línea(id, pasajeros[l], ingresos[l], vuelos[l], riesgo[l],
+					pasajerosPorAerolíneaLínea));
+			}
+
+			DatosProblema datos = new DatosProblema(país, díaInicio, díaFin, líneas,
+				new RegistroDatoID<>(id -> getElemento(mapaLíneas, id, "línea")),
+				new RegistroDatoID<>(id -> getElemento(mapaAeropuertos, id, "aeropuerto")), null);
+			datos.setRiesgoTotal(riesgoTotal);
+			datos.setPasajerosTotales(pasajerosTotales);
+			datos.setIngresosTotales(ingresosTotales);
+			datos.setPasajerosPorAerolínea(pasajerosPorAerolínea);
+			datos.setPasajerosPorAeropuerto(pasajerosPorAeropuerto);
+			datos.setConectividadPaís(tieneConectividad ? conectividadPaís : null);
+			return datos;
+		} catch (IOException e) {
+			throw new UncheckedIOException("Error al leer el snapshot del problema del fichero " + rutaFichero, e);
+		}
+	}
+
+	/**
+	 * Asigna a cada clave del mapa su posición dentro del mismo
+	 * @param mapa Mapa ordenado cuyos valores se sobrescribirán
+	 */
+	private static void asignarÍndices(Map<String, Integer> mapa) {
+		int i = 0;
+		for (Map.Entry<String, Integer> entrada : mapa.entrySet()) {
+			entrada.setValue(i);
+			i++;
+		}
+	}
+
+	private static <T> T getElemento(Map<String, T> elementos, String id, String tipo) {
+		T elemento = elementos.get(id);
+		if (elemento == null) {
+			throw new IllegalArgumentException("El snapshot del problema no contiene datos de la " + tipo + " " + id);
+		}
+		return elemento;
+	}
+
+	/**
+	 * Escribe un mapa de valores como dos columnas: los índices de las claves y sus valores
+	 */
+	private static void escribirMapa(DataOutputStream salida, Map<String, Long> mapa, Map<String, Integer> índices)
+		throws IOException {
+		salida.writeInt(mapa.size());
+		for (String clave : mapa.keySet()) {
+			salida.writeInt(índices.get(clave));
+		}
+		for (Long valor : mapa.values()) {
+			salida.writeLong(valor);
+		}
+	}
+
+	private static Map<String, Long> leerMapa(ByteBuffer buffer, String[] claves) {
+		int tamaño = buffer.getInt();
+		int[] índices = leerInts(buffer, tamaño);
+		long[] valores = leerLongs(buffer, tamaño);
+		Map<String, Long> ret = new TreeMap<>();
+		for (int i = 0; i < tamaño; i++) {
+			ret.put(claves[índices[i]], valores[i]);
+		}
+		return ret;
+	}
+
+	/**
+	 * Lee una cadena escrita con {@link DataOutputStream#writeUTF(String)}. Los identificadores almacenados no
+	 * contienen caracteres nulos ni fuera del plano básico, por lo que su codificación coincide con UTF-8.
+	 */
+	private static String leerTexto(ByteBuffer buffer) {
+		byte[] bytes = new byte[Short.toUnsignedInt(buffer.getShort())];
+		buffer.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	private static String[] leerTextos(ByteBuffer buffer, int cantidad) {
+		String[] ret = new String[cantidad];
+		for (int i = 0; i < cantidad; i++) {
+			ret[i] = leerTexto(buffer);
+		}
+		return ret;
+	}
+
+	/*
+	 * Las columnas numéricas se leen de una vez mediante una vista del buffer. Las vistas no modifican la posición
+	 * del buffer original, así que hay que avanzarla manualmente.
+	 */
+
+	private static int[] leerInts(ByteBuffer buffer, int cantidad) {
+		int[] ret = new int[cantidad];
+		buffer.asIntBuffer().get(ret);
+		buffer.position(buffer.position() + cantidad * Integer.BYTES);
+		return ret;
+	}
+
+	private static long[] leerLongs(ByteBuffer buffer, int cantidad) {
+		long[] ret = new long[cantidad];
+		buffer.asLongBuffer().get(ret);
+		buffer.position(buffer.position() + cantidad * Long.BYTES);
+		return ret;
+	}
+
+	private static double[] leerDoubles(ByteBuffer buffer, int cantidad) {
+		double[] ret = new double[cantidad];
+		buffer.asDoubleBuffer().get(ret);
+		buffer.position(buffer.position() + cantidad * Double.BYTES);
+		return ret;
+	}
+}
@@ -0,0 +1,293 @@
+package earlywarn.mh.vnsrs;
+
+import earlywarn.mh.vnsrs.config.Config;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.logging.Log;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Representa una ejecución de la metaheurística lanzada en segundo plano. Las ejecuciones se realizan en un
+ * ejecutor propio, de forma que el procedimiento que las lanza termina inmediatamente y pueden ejecutarse varias a
+ * la vez. Cada ejecución se identifica con un número que permite consultar su estado o cancelarla.
+ * Al terminar una ejecución se descarta la instancia de la metaheurística y solo se conservan sus datos finales. Se
+ * conservan como mucho {@link #MAX_TRABAJOS_TERMINADOS} trabajos terminados; si se supera este número, se eliminan
+ * los más antiguos.
+ */
+public class TrabajoVnsRs {
+	public enum Estado {
+		// El trabajo está esperando a que haya un hilo libre
+		EN_COLA,
+		// Se están cargando los datos del problema
+		CARGANDO,
+		EN_EJECUCIÓN,
+		COMPLETADO,
+		CANCELADO,
+		ERROR
+	}
+
+	// Ejecutor en el que se ejecutan los trabajos. Como mucho se ejecuta un trabajo por procesador a la vez.
+	private static final ExecutorService ejecutor = Executors.newFixedThreadPool(
+		Runtime.getRuntime().availableProcessors(), new FactoríaHilos());
+	// Número máximo de trabajos terminados que se conservan
+	private static final int MAX_TRABAJOS_TERMINADOS = 100;
+	// Trabajos lanzados desde que se inició la BD y que no se han eliminado, por ID
+	private static final Map<Long, TrabajoVnsRs> trabajos = new ConcurrentHashMap<>();
+	private static final AtomicLong sigId = new AtomicLong(1);
+
+	public final long id;
+	private final Log log;
+	// Instante en el que se lanzó el trabajo
+	private final long inicio;
+	// Instante en el que terminó el trabajo. 0 si aún no ha terminado.
+	private volatile long fin;
+	private volatile Estado estado;
+	// Instancia de la metaheurística. Null hasta que se cargan los datos del problema y después de terminar.
+	private volatile VnsRs vnsrs;
+	// Datos de la metaheurística al terminar el trabajo. Null si no ha llegado a crearse.
+	private volatile Long iteraciónFinal;
+	private volatile Double temperaturaFinal;
+	private volatile Double fitnessActualFinal;
+	private volatile Double fitnessMejorFinal;
+	// Mensaje de error, si el trabajo ha terminado con uno
+	private volatile String error;
+	// True si se ha solicitado cancelar el trabajo
+	private volatile boolean cancelado;
+
+	private TrabajoVnsRs(long id, Log log) {
+		this.id = id;
+		this.log = log;
+		inicio = System.currentTimeMillis();
+		fin = 0;
+		estado = Estado.EN_COLA;
+	}
+
+	/**
+	 * Lanza una nueva ejecución de la metaheurística en segundo plano. Al terminar (incluso si se cancela), la mejor
+	 * solución encontrada se almacenará en el fichero de resultado indicado.
+	 * @param config Configuración de la metaheurística
+	 * @param db Conexión a la BD, usada para cargar los datos del problema
+	 * @param rutaResultado Ruta al fichero en el que se almacenará la mejor solución encontrada.
+	 *                      {@link Config#MARCA_ID} se sustituye por el ID del trabajo.
+	 * @param rutaEstadísticas Ruta al fichero en el que se escribirán las estadísticas de la ejecución.
+	 *                         {@link Config#MARCA_ID} se sustituye por el ID del trabajo.
+	 * @param log Log de Neo4J
+	 * @return Trabajo lanzado
+	 */
+	public static TrabajoVnsRs lanzar(Config config, GraphDatabaseService db, String rutaResultado,
+									  String rutaEstadísticas, Log log) {
+		TrabajoVnsRs trabajo = new TrabajoVnsRs(sigId.getAndIncrement(), log);
+		eliminarAntiguos();
+		trabajos.put(trabajo.id, trabajo);
+		String idTexto = String.valueOf(trabajo.id);
+		ejecutor.execute(() -> trabajo.ejecutar(config, db, rutaResultado.replace(Config.MARCA_ID, idTexto),
+			rutaEstadísticas.replace(Config.MARCA_ID, idTexto)));
+		return trabajo;
+	}
+
+	/**
+	 * @param id ID de un trabajo
+	 * @return Trabajo con el ID indicado, o null si no existe
+	 */
+	public static TrabajoVnsRs get(long id) {
+		return trabajos.get(id);
+	}
+
+	/**
+	 * @return Lista con todos los trabajos lanzados desde que se inició la BD, ordenados por ID
+	 */
+	public static List<TrabajoVnsRs> getTodos() {
+		List<TrabajoVnsRs> ret = new ArrayList<>(trabajos.values());
+		ret.sort((t1, t2) -> Long.compare(t1.id, t2.id));
+		return ret;
+	}
+
+	/**
+	 * Elimina todos los trabajos terminados (completados, cancelados o con error)
+	 * @return Número de trabajos eliminados
+	 */
+	public static int eliminarTerminados() {
+		int eliminados = 0;
+		for (TrabajoVnsRs trabajo : trabajos.values()) {
+			if (trabajo.isTerminado() && trabajos.remove(trabajo.id, trabajo)) {
+				eliminados++;
+			}
+		}
+		return eliminados;
+	}
+
+	/**
+	 * Elimina los trabajos terminados más antiguos hasta que no se supere {@link #MAX_TRABAJOS_TERMINADOS}
+	 */
+	private static void eliminarAntiguos() {
+		List<TrabajoVnsRs> terminados = new ArrayList<>();
+		for (TrabajoVnsRs trabajo : trabajos.values()) {
+			if (trabajo.isTerminado()) {
+				terminados.add(trabajo);
+			}
+		}
+		if (terminados.size() > MAX_TRABAJOS_TERMINADOS) {
+			terminados.sort((t1, t2) -> Long.compare(t1.id, t2.id));
+			for (int i = 0; i < terminados.size() - MAX_TRABAJOS_TERMINADOS; i++) {
+				trabajos.remove(terminados.get(i).id, terminados.get(i));
+			}
+		}
+	}
+
+	/**
+	 * Solicita que se cancele el trabajo. Si la metaheurística ya se está ejecutando, se detendrá al final de la
+	 * iteración actual y se almacenará la mejor solución encontrada hasta el momento.
+	 */
+	public void cancelar() {
+		cancelado = true;
+		VnsRs vnsrsActual = vnsrs;
+		if (vnsrsActual != null) {
+			vnsrsActual.cancelar();
+		}
+	}
+
+	public Estado getEstado() {
+		return estado;
+	}
+
+	public String getError() {
+		return error;
+	}
+
+	/**
+	 * @return True si el trabajo ha terminado, ya sea normalmente, por una cancelación o por un error
+	 */
+	public boolean isTerminado() {
+		Estado estadoActual = estado;
+		return estadoActual == Estado.COMPLETADO || estadoActual == Estado.CANCELADO || estadoActual == Estado.ERROR;
+	}
+
+	/**
+	 * @return Segundos transcurridos desde que se lanzó el trabajo hasta ahora o, si ya ha terminado, hasta que
+	 * terminó
+	 */
+	public double getSegundos() {
+		long finActual = fin;
+		return ((finActual == 0 ? System.currentTimeMillis() : finActual) - inicio) / 1000.0;
+	}
+
+	/**
+	 * @return Iteración actual de la metaheurística (o la última, si el trabajo ha terminado). Null si la
+	 * metaheurística aún no ha empezado a ejecutarse.
+	 */
+	public Long getIteración() {
+		VnsRs vnsrsActual = getVnsRsEnEjecución();
+		return vnsrsActual == null ? iteraciónFinal : Long.valueOf(vnsrsActual.getIteración());
+	}
+
+	/**
+	 * @return Temperatura actual de la metaheurística (o la última, si el trabajo ha terminado). Null si la
+	 * metaheurística aún no ha empezado a ejecutarse.
+	 */
+	public Double getTemperatura() {
+		VnsRs vnsrsActual = getVnsRsEnEjecución();
+		return vnsrsActual == null ? temperaturaFinal : Double.valueOf(vnsrsActual.getTemperatura());
+	}
+
+	/**
+	 * @return Fitness de la solución actual (o de la última, si el trabajo ha terminado). Null si la
+	 * metaheurística aún no ha empezado a ejecutarse.
+	 */
+	public Double getFitnessActual() {
+		VnsRs vnsrsActual = getVnsRsEnEjecución();
+		return vnsrsActual == null ? fitnessActualFinal : Double.valueOf(vnsrsActual.getFitnessActual());
+	}
+
+	/**
+	 * @return Fitness de la mejor solución encontrada. Null si la metaheurística aún no ha empezado a ejecutarse.
+	 */
+	public Double getFitnessMejor() {
+		VnsRs vnsrsActual = getVnsRsEnEjecución();
+		return vnsrsActual == null ? fitnessMejorFinal : Double.valueOf(vnsrsActual.getFitnessMejor());
+	}
+
+	/**
+	 * @return Instancia de la metaheurística si se está ejecutando, o null si aún no ha empezado o ya ha terminado
+	 */
+	private VnsRs getVnsRsEnEjecución() {
+		VnsRs vnsrsActual = vnsrs;
+		return vnsrsActual == null || estado == Estado.CARGANDO ? null : vnsrsActual;
+	}
+
+	/**
+	 * Método ejecutado en el hilo del ejecutor
+	 */
+	private void ejecutar(Config config, GraphDatabaseService db, String rutaResultado, String rutaEstadísticas) {
+		if (cancelado) {
+			fin = System.currentTimeMillis();
+			estado = Estado.CANCELADO;
+			return;
+		}
+		try {
+			estado = Estado.CARGANDO;
+			VnsRs nuevaVnsRs = new VnsRs(config, db, log);
+			if (config.rutaCheckpoint != null) {
+				nuevaVnsRs.setRutaCheckpoint(config.rutaCheckpoint.replace(Config.MARCA_ID, String.valueOf(id)));
+			}
+			if (config.rutaFrentePareto != null) {
+				nuevaVnsRs.setRutaFrentePareto(config.rutaFrentePareto.replace(Config.MARCA_ID, String.valueOf(id)));
+			}
+			vnsrs = nuevaVnsRs;
+			// La cancelación puede haberse solicitado mientras se cargaban los datos
+			if (cancelado) {
+				nuevaVnsRs.cancelar();
+			}
+			estado = Estado.EN_EJECUCIÓN;
+			log.info("Inicio del trabajo VNS-RS " + id);
+			nuevaVnsRs.ejecutar(rutaEstadísticas);
+			// Si se ha cancelado antes de encontrar una solución inicial factible, no hay resultado que almacenar
+			if (nuevaVnsRs.tieneSolución()) {
+				nuevaVnsRs.guardarResultado(rutaResultado);
+			}
+			liberar();
+			estado = nuevaVnsRs.isCancelada() ? Estado.CANCELADO : Estado.COMPLETADO;
+			log.info("Fin del trabajo VNS-RS " + id + " (" + estado + "). Fitness de la mejor solución: " +
+				fitnessMejorFinal);
+		} catch (RuntimeException e) {
+			liberar();
+			error = e.toString();
+			estado = Estado.ERROR;
+			log.error("Error en el trabajo VNS-RS " + id, e);
+		}
+	}
+
+	/**
+	 * Almacena los datos finales de la metaheurística y descarta su instancia, de forma que un trabajo terminado no
+	 * mantenga en memoria los datos del problema ni el estado de la búsqueda
+	 */
+	private void liberar() {
+		VnsRs vnsrsActual = vnsrs;
+		if (vnsrsActual != null && estado != Estado.CARGANDO) {
+			iteraciónFinal = (long) vnsrsActual.getIteración();
+			temperaturaFinal = vnsrsActual.getTemperatura();
+			fitnessActualFinal = vnsrsActual.getFitnessActual();
+			fitnessMejorFinal = vnsrsActual.tieneSolución() ? Double.valueOf(vnsrsActual.getFitnessMejor()) : null;
+		}
+		vnsrs = null;
+		fin = System.currentTimeMillis();
+	}
+
+	/**
+	 * Crea los hilos del ejecutor. Los hilos son demonio para no impedir que se detenga la BD.
+	 */
+	private static class FactoríaHilos implements ThreadFactory {
+		private final AtomicInteger numHilo = new AtomicInteger(1);
+
+		@Override
+		public Thread newThread(Runnable tarea) {
+			Thread hilo = new Thread(tarea, "earlywarn-vnsrs-" + numHilo.getAndIncrement());
+			hilo.setDaemon(true);
+			return hilo;
+		}
+	}
+}
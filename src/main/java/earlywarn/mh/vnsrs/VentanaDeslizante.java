@@ -0,0 +1,268 @@
+package earlywarn.mh.vnsrs;
+
+import earlywarn.main.Consultas;
+import earlywarn.main.modelo.datoid.*;
+import earlywarn.mh.vnsrs.config.Config;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.logging.Log;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.util.*;
+
+/**
+ * Permite volver a optimizar el problema cuando su rango de fechas se desplaza (por ejemplo, un día cada vez)
+ * aprovechando el trabajo realizado en la ejecución anterior:
+ * - Los datos del problema de la ejecución anterior se conservan en un snapshot. Los valores de las líneas y
+ * aeropuertos del nuevo rango se obtienen sumando los de los días que entran en el rango y restando los de los días
+ * que salen del mismo, con una consulta agrupada por cada uno, en lugar de consultar de nuevo el rango completo.
+ * - La búsqueda parte de la mejor solución de la ejecución anterior y se limita a refinarla, con una temperatura
+ * inicial y un número de iteraciones sin mejora más bajos que los de la configuración.
+ * Si no hay datos de una ejecución anterior compatible, se realiza una ejecución completa.
+ */
+public class VentanaDeslizante {
+	// Fracción de la temperatura inicial de la configuración usada al refinar una solución anterior
+	private static final float FRACCIÓN_T_REFINAMIENTO = 0.1f;
+	// Divisor aplicado al número de iteraciones sin mejora de la configuración al refinar una solución anterior
+	private static final int DIVISOR_IT_PARADA = 10;
+
+	private VentanaDeslizante() {}
+
+	/**
+	 * Ejecuta la metaheurística sobre el rango de fechas indicado, reutilizando los datos y la solución de la
+	 * ejecución anterior si es posible. Al terminar, el snapshot y el fichero de resultado quedan listos para la
+	 * siguiente ejecución.
+	 * @param config Configuración de la metaheurística. Se sustituye su rango de fechas.
+	 * @param díaInicio Primer día del nuevo rango de fechas
+	 * @param díaFin Último día del nuevo rango de fechas
+	 * @param rutaSnapshot Ruta al snapshot con los datos del problema de la ejecución anterior, que se sustituirá
+	 *                     por el del nuevo rango
+	 * @param rutaResultado Ruta al fichero con la mejor solución de la ejecución anterior, que se sustituirá por la
+	 *                      del nuevo rango
+	 * @param rutaEstadísticas Ruta al fichero en el que se escribirán las estadísticas de la ejecución
+	 * @param db Conexión a la BD
+	 * @param log Log de Neo4J
+	 * @return Instancia de la metaheurística ejecutada
+	 */
+	public static VnsRs ejecutar(Config config, LocalDate díaInicio, LocalDate díaFin, String rutaSnapshot,
+								 String rutaResultado, String rutaEstadísticas, GraphDatabaseService db, Log log) {
+		config.díaInicio = díaInicio;
+		config.díaFin = díaFin;
+
+		DatosProblema anterior = null;
+		if (Files.exists(Paths.get(rutaSnapshot))) {
+			anterior = SnapshotProblema.cargar(rutaSnapshot);
+			if (!esCompatible(anterior, config)) {
+				log.info("El snapshot " + rutaSnapshot + " (" + anterior.país + ", " + anterior.díaInicio + " - " +
+					anterior.díaFin + ") no es compatible con el nuevo rango. Se realizará una ejecución completa.");
+				anterior = null;
+			}
+		}
+
+		DatosProblema datos;
+		if (anterior == null || config.rutaCubo != null) {
+			// El cubo de líneas ya permite obtener los datos de cualquier rango que contenga sin recalcularlos
+			datos = DatosProblema.desdeBD(config, db, log);
+		} else {
+			log.info("Desplazando el rango de fechas de " + anterior.díaInicio + " - " + anterior.díaFin + " a " +
+				díaInicio + " - " + díaFin);
+			datos = desplazar(anterior, díaInicio, díaFin, db);
+		}
+		guardarSnapshot(datos, rutaSnapshot);
+
+		VnsRs vnsrs = new VnsRs(config, datos, log);
+		if (anterior != null) {
+			List<String> cerradas = leerLíneasCerradas(rutaResultado, log);
+			if (cerradas != null) {
+				vnsrs.setSoluciónInicial(cerradas);
+				config.configRS.tInicial *= FRACCIÓN_T_REFINAMIENTO;
+				config.itParada = Math.max(1, config.itParada / DIVISOR_IT_PARADA);
+				log.info("Refinando la solución anterior (" + cerradas.size() + " líneas cerradas). Temperatura " +
+					"inicial: " + config.configRS.tInicial + ", iteraciones sin mejora: " + config.itParada);
+			}
+		}
+		vnsrs.ejecutar(rutaEstadísticas);
+		vnsrs.guardarResultado(rutaResultado);
+		return vnsrs;
+	}
+
+	/**
+	 * Obtiene los datos del problema para un nuevo rango de fechas a partir de los de un rango anterior. El nuevo
+	 * rango debe ser compatible con el anterior (ver {@link #esCompatible(DatosProblema, Config)}).
+	 * Los valores iniciales de los criterios se consultarán en la BD cuando se necesiten.
+	 * @param anterior Datos del problema en el rango anterior. Sus valores deben estar disponibles sin acceder a la
+	 *                 BD (por ejemplo, porque se han cargado de un snapshot).
+	 * @param díaInicio Primer día del nuevo rango
+	 * @param díaFin Último día del nuevo rango
+	 * @param db Conexión a la BD
+	 * @return Datos del problema en el nuevo rango
+	 */
+	public static DatosProblema desplazar(DatosProblema anterior, LocalDate díaInicio, LocalDate díaFin,
+										  GraphDatabaseService db) {
+		Consultas consultas = new Consultas(db);
+		// Valores de los días que salen del rango y de los que entran en él
+		Map<String, Línea> salientes = new HashMap<>();
+		Map<String, Long> vuelosSalientes = new HashMap<>();
+		if (díaInicio.isAfter(anterior.díaInicio)) {
+			LocalDate últimoSaliente = díaInicio.minusDays(1);
+			salientes = consultas.getValoresLíneas(anterior.díaInicio, últimoSaliente, anterior.país);
+			vuelosSalientes = consultas.getVuelosSalidaAeropuertos(anterior.díaInicio, últimoSaliente);
+		}
+		Map<String, Línea> entrantes = new HashMap<>();
+		Map<String, Long> vuelosEntrantes = new HashMap<>();
+		if (díaFin.isAfter(anterior.díaFin)) {
+			LocalDate primerEntrante = anterior.díaFin.plusDays(1);
+			entrantes = consultas.getValoresLíneas(primerEntrante, díaFin, anterior.país);
+			vuelosEntrantes = consultas.getVuelosSalidaAeropuertos(primerEntrante, díaFin);
+		}
+
+		// Las líneas del nuevo rango son las anteriores más las nuevas, sin contar las que se quedan sin vuelos
+		List<String> líneas = new ArrayList<>();
+		Map<String, Línea> mapaLíneas = new HashMap<>();
+		Set<String> idsAeropuertos = new TreeSet<>();
+		for (String idLínea : anterior.líneas) {
+			Línea línea = combinar(anterior.registroLíneas.get(idLínea), entrantes.get(idLínea),
+				salientes.get(idLínea));
+			if (línea.getNumVuelos() > 0) {
+				líneas.add(idLínea);
+				mapaLíneas.put(idLínea, línea);
+			}
+		}
+		for (Map.Entry<String, Línea> entrada : entrantes.entrySet()) {
+			if (!mapaLíneas.containsKey(entrada.getKey()) && entrada.getValue().getNumVuelos() > 0) {
+				líneas.add(entrada.getKey());
+				mapaLíneas.put(entrada.getKey(), entrada.getValue());
+			}
+		}
+		for (Línea línea : mapaLíneas.values()) {
+			idsAeropuertos.add(línea.idAeropuertoOrigen);
+			idsAeropuertos.add(línea.idAeropuertoDestino);
+		}
+
+		/*
+		 * Los aeropuertos que ya formaban parte del problema conservan su país y su conectividad, que no dependen
+		 * del rango. Los nuevos se consultarán en la BD cuando se necesiten.
+		 */
+		Set<String> aeropuertosAnteriores = new HashSet<>();
+		for (String idLínea : anterior.líneas) {
+			Línea línea = anterior.registroLíneas.get(idLínea);
+			aeropuertosAnteriores.add(línea.idAeropuertoOrigen);
+			aeropuertosAnteriores.add(línea.idAeropuertoDestino);
+		}
+		Map<String, Aeropuerto> mapaAeropuertos = new HashMap<>();
+		for (String id : idsAeropuertos) {
+			if (aeropuertosAnteriores.contains(id)) {
+				Aeropuerto aeropuerto = anterior.registroAeropuertos.get(id);
+				Integer conectividad = anterior.tieneConectividad() ? aeropuerto.getConectividadBase() : null;
+				long vuelosSalida = aeropuerto.getNumVuelosSalida() + vuelosEntrantes.getOrDefault(id, 0L) -
+					vuelosSalientes.getOrDefault(id, 0L);
+				mapaAeropuertos.put(id, new Aeropuerto(id, conectividad, vuelosSalida, aeropuerto.getIdPaís(),
+					díaInicio, díaFin, db));
+			}
+		}
+
+		LíneaFactory fLíneas = new LíneaFactory(díaInicio, díaFin, db);
+		AeropuertoFactory fAeropuertos = new AeropuertoFactory(díaInicio, díaFin, db);
+		return new DatosProblema(anterior.país, díaInicio, díaFin, líneas,
+			new RegistroDatoID<>(id -> mapaLíneas.containsKey(id) ? mapaLíneas.get(id) : fLíneas.crear(id)),
+			new RegistroDatoID<>(id -> mapaAeropuertos.containsKey(id) ? mapaAeropuertos.get(id) :
+				fAeropuertos.crear(id)),
+			consultas);
+	}
+
+	/**
+	 * Comprueba si los datos del problema de una ejecución anterior pueden desplazarse hasta el rango de fechas de la
+	 * configuración: el país debe ser el mismo y el nuevo rango debe empezar y terminar en o después del anterior,
+	 * solapándose con él.
+	 */
+	private static boolean esCompatible(DatosProblema anterior, Config config) {
+		return anterior.país.equals(config.país) && !config.díaInicio.isBefore(anterior.díaInicio) &&
+			!config.díaFin.isBefore(anterior.díaFin) && !config.díaInicio.isAfter(anterior.díaFin);
+	}
+
+	/**
+	 * Obtiene los valores de una línea en el nuevo rango de fechas
+	 * @param anterior Línea en el rango anterior
+	 * @param entrante Línea en los días que entran en el rango. Null si no tiene vuelos en esos días.
+	 * @param saliente Línea en los días que salen del rango. Null si no tiene vuelos en esos días.
+	 * @return Línea en el nuevo rango
+	 */
+	private static Línea combinar(Línea anterior, Línea entrante, Línea saliente) {
+		long pasajeros = anterior.getPasajeros();
+		double ingresos = anterior.getIngresosTurísticos();
+		long vuelos = anterior.getNumVuelos();
+		double riesgo = anterior.getRiesgoImportado();
+		Map<String, Long> pasajerosPorAerolínea = new TreeMap<>(anterior.getPasajerosPorAerolínea());
+		if (entrante != null) {
+			pasajeros += entrante.getPasajeros();
+			ingresos += entrante.getIngresosTurísticos();
+			vuelos += entrante.getNumVuelos();
+			riesgo += entrante.getRiesgoImportado();
+			for (Map.Entry<String, Long> entrada : entrante.getPasajerosPorAerolínea().entrySet()) {
+				pasajerosPorAerolínea.merge(entrada.getKey(), entrada.getValue(), Long::sum);
+			}
+		}
+		if (saliente != null) {
+			pasajeros -= saliente.getPasajeros();
+			ingresos -= saliente.getIngresosTurísticos();
+			vuelos -= saliente.getNumVuelos();
+			riesgo -= saliente.getRiesgoImportado();
+			for (Map.Entry<String, Long> entrada : saliente.getPasajerosPorAerolínea().entrySet()) {
+				pasajerosPorAerolínea.merge(entrada.getKey(), -entrada.getValue(), Long::sum);
+			}
+			// Las aerolíneas sin pasajeros no se incluyen
+			pasajerosPorAerolínea.values().removeIf(valor -> valor <= 0);
+		}
+		return new Línea(anterior.id, pasajeros, ingresos, vuelos, riesgo, pasajerosPorAerolínea);
+	}
+
+	/**
+	 * Almacena el snapshot del nuevo rango. El snapshot se escribe primero en un fichero temporal, ya que el anterior
+	 * puede seguir mapeado en memoria.
+	 */
+	private static void guardarSnapshot(DatosProblema datos, String rutaSnapshot) {
+		Path ruta = Paths.get(rutaSnapshot);
+		Path rutaTemporal = Paths.get(rutaSnapshot + ".tmp");
+		if (ruta.getParent() != null) {
+			try {
+				Files.createDirectories(ruta.getParent());
+			} catch (IOException e) {
+				throw new UncheckedIOException("No se ha podido crear el directorio del snapshot", e);
+			}
+		}
+		SnapshotProblema.exportar(datos, rutaTemporal.toString());
+		try {
+			Files.move(rutaTemporal, ruta, StandardCopyOption.REPLACE_EXISTING);
+		} catch (IOException e) {
+			throw new UncheckedIOException("No se ha podido sustituir el snapshot " + rutaSnapshot, e);
+		}
+	}
+
+	/**
+	 * Lee las líneas cerradas de un fichero de resultado escrito por {@link VnsRs#guardarResultado(String)}
+	 * @return Lista de líneas cerradas, o null si no se ha podido leer el fichero
+	 */
+	private static List<String> leerLíneasCerradas(String rutaResultado, Log log) {
+		try (BufferedReader entrada = new BufferedReader(new FileReader(rutaResultado))) {
+			// La tercera línea contiene las líneas cerradas
+			entrada.readLine();
+			entrada.readLine();
+			String cerradas = entrada.readLine();
+			if (cerradas == null) {
+				log.warn("El fichero de resultado " + rutaResultado + " no tiene el formato esperado");
+				return null;
+			}
+			return cerradas.trim().isEmpty() ? new ArrayList<>() : Arrays.asList(cerradas.split(", "));
+		} catch (IOException e) {
+			log.warn("No se ha podido leer la solución anterior del fichero " + rutaResultado + ".\n" + e);
+			return null;
+		}
+	}
+}
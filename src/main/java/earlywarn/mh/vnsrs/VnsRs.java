@@ -1,15 +1,18 @@
 package earlywarn.mh.vnsrs;
 
 import earlywarn.definiciones.IDCriterio;
+import earlywarn.definiciones.IPersistible;
 import earlywarn.definiciones.IRecocidoSimulado;
 import earlywarn.definiciones.IllegalOperationException;
 import earlywarn.definiciones.OperaciónLínea;
-import earlywarn.main.Consultas;
+import earlywarn.main.GeneradorAleatorio;
 import earlywarn.main.GestorLíneas;
 import earlywarn.main.GestorLíneasBuilder;
 import earlywarn.main.Utils;
 import earlywarn.main.modelo.FitnessPorPesos;
-import earlywarn.main.modelo.datoid.*;
+import earlywarn.main.métricas.Métricas;
+import earlywarn.main.modelo.datoid.Línea;
+import earlywarn.main.modelo.datoid.RegistroDatoID;
 import earlywarn.mh.vnsrs.config.Config;
 import earlywarn.mh.vnsrs.config.ConfigRS;
 import earlywarn.mh.vnsrs.entornos.EntornoVNS;
@@ -19,6 +22,8 @@ import org.neo4j.logging.Log;
 
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
 import java.nio.file.FileAlreadyExistsException;
 import java.nio.file.Files;
 import java.nio.file.Paths;
@@ -29,18 +34,33 @@ import java.util.Map;
 /**
  * Clase que implementa la metaheurística de recocido simulado + VNS
  */
-public class VnsRs implements IRecocidoSimulado {
+public class VnsRs implements IRecocidoSimulado, IPersistible {
 	private final Log log;
 	private final Config config;
 	private RecocidoSimulado rs;
 	private GestorEntornos gEntornos;
 	private GestorLíneas gLíneas;
-	private final RegistroDatoID<Aeropuerto> registroAeropuertos;
+	private final DatosProblema datos;
 	private final RegistroDatoID<Línea> registroLíneas;
-	private final Consultas consultas;
 	private final List<String> líneas;
 	private final ConversorLíneas conversorLíneas;
 	private Estadísticas estadísticas;
+	private InformadorProgreso progreso;
+	// Movimientos candidatos de cada iteración. Se reutilizan en todas las iteraciones.
+	private EvaluadorCandidatos candidatos;
+	// Ruta al fichero de checkpoints y gestor que los genera. Null si no se generan checkpoints.
+	private String rutaCheckpoint;
+	private GestorCheckpoints checkpoints;
+	/*
+	 * Ruta al fichero en el que se exportará el frente de Pareto y archivo de soluciones no dominadas. Null si no se
+	 * usa el modo multiobjetivo.
+	 */
+	private String rutaFrentePareto;
+	private ArchivoPareto archivoPareto;
+	// Valor de cada objetivo de la solución actual. Se reutiliza cada vez que se ofrece una solución al archivo.
+	private double[] valoresObjetivos;
+	// Líneas cerradas en la solución inicial. Null si la búsqueda parte de todas las líneas abiertas.
+	private List<String> líneasCerradasIniciales;
 
 	/*
 	 * Número forzado de iteraciones a realizar. Si se fija, el algoritmo siempre terminará exactamente tras este
@@ -51,32 +71,113 @@ public class VnsRs implements IRecocidoSimulado {
 	private int solucionesPeores;
 	// Número de soluciones que eran peores que la actual y fueron aceptadas
 	private int solucionesPeoresAceptadas;
-	// Mejor solución encontrada hasta ahora (como array de booleanos) y su fitness
+	/*
+	 * Mejor solución encontrada hasta ahora (como array de booleanos) y su fitness. El array se reserva una sola vez
+	 * y se sobrescribe cada vez que se encuentra una solución mejor.
+	 */
 	private boolean[] mejorSolución;
 	private double fitnessMejorSolución;
+	// Fitness de la solución actual (penalizado si la solución es infactible)
+	private double fitnessActual;
 	// Número de iteración actual
 	private int iter;
 
+	/*
+	 * Estado de la ejecución publicado al final de cada iteración, para que pueda consultarse desde otros hilos
+	 * mientras la metaheurística se ejecuta
+	 */
+	private volatile int iterPublicada;
+	private volatile double temperaturaPublicada;
+	private volatile double fitnessActualPublicado;
+	private volatile double fitnessMejorPublicado;
+	// True si se ha solicitado detener la ejecución
+	private volatile boolean cancelada;
+
+	/**
+	 * Crea una instancia de la metaheurística que trabajará sobre el problema definido en la configuración. Los datos
+	 * del problema se obtienen de la caché de problemas, o de la BD si no están en ella.
+	 * @param config Configuración de la metaheurística
+	 * @param db Conexión a la BD
+	 * @param log Log de Neo4J
+	 */
 	public VnsRs(Config config, GraphDatabaseService db, Log log) {
+		this(config, CachéProblemas.get(config, db, log), log);
+	}
+
+	/**
+	 * Crea una instancia de la metaheurística que trabajará sobre los datos del problema indicados
+	 * @param config Configuración de la metaheurística
+	 * @param datos Datos del problema. Si se han cargado de un snapshot, la ejecución no accederá a la BD.
+	 * @param log Log de Neo4J
+	 */
+	public VnsRs(Config config, DatosProblema datos, Log log) {
 		this.log = log;
 		this.config = config;
+		this.datos = datos;
 		numFijoIteraciones = -1;
-		AeropuertoFactory fAeropuertos = new AeropuertoFactory(config.díaInicio, config.díaFin, db);
-		registroAeropuertos = new RegistroDatoID<>(fAeropuertos);
-		LíneaFactory fLíneas = new LíneaFactory(config.díaInicio, config.díaFin, db);
-		registroLíneas = new RegistroDatoID<>(fLíneas);
-		consultas = new Consultas(db);
-		líneas = consultas.getLíneas(config.díaInicio, config.díaFin, config.país);
-		conversorLíneas = new ConversorLíneas(líneas);
+		registroLíneas = datos.registroLíneas;
+		líneas = datos.líneas;
+		conversorLíneas = datos.conversorLíneas;
+		rutaCheckpoint = config.rutaCheckpoint;
+		rutaFrentePareto = config.rutaFrentePareto;
 	}
 
 	/**
 	 * Ejecuta la metaheurística con funcionamiento y parámetros estándar
+	 * @param rutaEstadísticas Ruta al fichero CSV en el que se escribirán las estadísticas de cada iteración según
+	 *                         avanza la ejecución. Si termina en ".gz", el fichero se comprimirá. Si es null, no se
+	 *                         escribirán las estadísticas.
+	 */
+	public void ejecutar(String rutaEstadísticas) {
+		log.info("Semilla de la ejecución: " + config.semilla);
+		init(rutaEstadísticas);
+		_ejecutar(false);
+	}
+
+	/**
+	 * Reanuda una ejecución de la metaheurística a partir de un checkpoint generado por una ejecución anterior con la
+	 * misma configuración y los mismos datos del problema. La ejecución continúa exactamente en el punto en el que se
+	 * generó el checkpoint.
+	 * @param rutaCheckpoint Ruta al fichero que contiene el checkpoint
+	 * @param rutaEstadísticas Ruta al fichero CSV en el que se escribirán las estadísticas de las iteraciones
+	 *                         posteriores al checkpoint. Debe ser distinto del de la ejecución original, que puede
+	 *                         contener ya algunas de esas iteraciones. Si es null, no se escribirán las estadísticas.
+	 * @throws java.io.UncheckedIOException Si no se puede leer el checkpoint o si no corresponde a esta ejecución
 	 */
-	public void ejecutar() {
-		rs = new RecocidoSimulado(config.configRS);
-		init();
-		_ejecutar();
+	public void reanudar(String rutaCheckpoint, String rutaEstadísticas) {
+		init(rutaEstadísticas);
+		GestorCheckpoints.restaurar(rutaCheckpoint, this);
+		log.info("Reanudada ejecución VNS + RS en la iteración " + iter + ". Fitness de la mejor solución: " +
+			fitnessMejorSolución);
+		_ejecutar(true);
+	}
+
+	/**
+	 * Cambia la ruta al fichero en el que se almacenarán los checkpoints, que por defecto es la indicada en la
+	 * configuración. Debe llamarse antes de ejecutar la metaheurística.
+	 * @param rutaCheckpoint Nueva ruta, o null para no generar checkpoints
+	 */
+	public void setRutaCheckpoint(String rutaCheckpoint) {
+		this.rutaCheckpoint = rutaCheckpoint;
+	}
+
+	/**
+	 * Cambia la ruta al fichero en el que se exportará el frente de Pareto, que por defecto es la indicada en la
+	 * configuración. Debe llamarse antes de ejecutar la metaheurística.
+	 * @param rutaFrentePareto Nueva ruta, o null para no usar el modo multiobjetivo
+	 */
+	public void setRutaFrentePareto(String rutaFrentePareto) {
+		this.rutaFrentePareto = rutaFrentePareto;
+	}
+
+	/**
+	 * Fija la solución de la que parte la búsqueda, por ejemplo, la mejor solución de una ejecución anterior sobre un
+	 * problema similar. Debe llamarse antes de ejecutar la metaheurística.
+	 * @param líneasCerradas Líneas cerradas en la solución inicial. Las que no formen parte del problema se ignoran.
+	 *                       El resto de líneas estarán abiertas.
+	 */
+	public void setSoluciónInicial(List<String> líneasCerradas) {
+		líneasCerradasIniciales = líneasCerradas;
 	}
 
 	/**
@@ -132,18 +233,50 @@ public class VnsRs implements IRecocidoSimulado {
 	}
 
 	/**
-	 * Almacena las estadísticas de la ejecución a un fichero CSV.
-	 * Requiere que se haya ejecutado el algoritmo con anterioridad.
-	 * @param rutaFichero Ruta al fichero de salida
-	 * @throws IllegalOperationException Si la metaheurística aún no se ha ejecutado
+	 * Solicita que se detenga la ejecución de la metaheurística. Puede llamarse desde cualquier hilo. La ejecución
+	 * terminará al final de la iteración actual, y la mejor solución encontrada hasta entonces quedará disponible
+	 * como si la ejecución hubiese terminado normalmente. Si aún se estaba buscando una solución inicial factible, la
+	 * ejecución terminará sin ninguna solución (ver {@link #tieneSolución()}).
 	 */
-	public void guardarEstadísticas(String rutaFichero) {
-		if (estadísticas == null) {
-			throw new IllegalOperationException("No se puede almacenar las estadísticas de la metaheurística si " +
-				"ésta no se ha ejecutado aún");
-		} else {
-			estadísticas.toCsv(rutaFichero);
-		}
+	public void cancelar() {
+		cancelada = true;
+	}
+
+	/**
+	 * @return True si la ejecución ha obtenido una solución válida, que puede consultarse o almacenarse. Solo es
+	 * false si la metaheurística no se ha ejecutado aún o si se ha cancelado antes de encontrar una solución inicial
+	 * factible.
+	 */
+	public boolean tieneSolución() {
+		return mejorSolución != null;
+	}
+
+	/**
+	 * @return True si se ha solicitado detener la ejecución mediante {@link #cancelar()}
+	 */
+	public boolean isCancelada() {
+		return cancelada;
+	}
+
+	/*
+	 * Métodos que devuelven el estado de la ejecución. Pueden llamarse desde cualquier hilo mientras la metaheurística
+	 * se ejecuta. Los valores se actualizan al final de cada iteración.
+	 */
+
+	public int getIteración() {
+		return iterPublicada;
+	}
+
+	public double getTemperatura() {
+		return temperaturaPublicada;
+	}
+
+	public double getFitnessActual() {
+		return fitnessActualPublicado;
+	}
+
+	public double getFitnessMejor() {
+		return fitnessMejorPublicado;
 	}
 
 	@Override
@@ -157,11 +290,10 @@ public class VnsRs implements IRecocidoSimulado {
 		configRS.tInicial = tInicial;
 		configRS.alfa = 1;
 		configRS.itReducciónT = config.configRS.itReducciónT;
-		rs = new RecocidoSimulado(configRS);
 		config.configRS = configRS;
 
-		init();
-		_ejecutar();
+		init(null);
+		_ejecutar(false);
 
 		return (float) solucionesPeoresAceptadas / solucionesPeores;
 	}
@@ -173,7 +305,7 @@ public class VnsRs implements IRecocidoSimulado {
 	 * @return Fitness de la solución especificada
 	 */
 	public double calcularFitnessSolución(List<String> líneasCerradas) {
-		CriterioFactory fCriterios = new CriterioFactory(consultas, config, registroAeropuertos);
+		CriterioFactory fCriterios = new CriterioFactory(datos);
 		gLíneas = new GestorLíneasBuilder(líneas, registroLíneas, conversorLíneas, log)
 			.añadirCriterios(config.criterios, fCriterios)
 			.añadirCálculoFitness(new FitnessPorPesos(config.pesos))
@@ -187,58 +319,269 @@ public class VnsRs implements IRecocidoSimulado {
 		return gLíneas.getFitness();
 	}
 
+	/**
+	 * Almacena el estado completo de la búsqueda. Solo debe llamarse entre dos iteraciones.
+	 */
+	@Override
+	public void escribirEstado(ObjectOutput salida) throws IOException {
+		// Hasta que no se acepta la solución inicial no hay un estado válido desde el que reanudar la búsqueda
+		if (mejorSolución == null) {
+			throw new IOException("Aún no se ha aceptado la solución inicial de la búsqueda");
+		}
+		// Datos que identifican el problema, para comprobar que el checkpoint se restaura sobre el mismo
+		salida.writeUTF(datos.país);
+		salida.writeLong(datos.díaInicio.toEpochDay());
+		salida.writeLong(datos.díaFin.toEpochDay());
+		salida.writeInt(líneas.size());
+		salida.writeInt(líneas.hashCode());
+
+		salida.writeInt(iter);
+		salida.writeInt(solucionesPeores);
+		salida.writeInt(solucionesPeoresAceptadas);
+		salida.writeDouble(fitnessActual);
+		salida.writeDouble(fitnessMejorSolución);
+		GestorCheckpoints.escribirBooleanos(salida, mejorSolución);
+		gLíneas.escribirEstado(salida);
+		rs.escribirEstado(salida);
+		gEntornos.escribirEstado(salida);
+		estadísticas.escribirEstado(salida);
+		salida.writeBoolean(archivoPareto != null);
+		if (archivoPareto != null) {
+			archivoPareto.escribirEstado(salida);
+		}
+	}
+
+	@Override
+	public void leerEstado(ObjectInput entrada) throws IOException {
+		String país = entrada.readUTF();
+		long díaInicio = entrada.readLong();
+		long díaFin = entrada.readLong();
+		int numLíneas = entrada.readInt();
+		int hashLíneas = entrada.readInt();
+		if (!país.equals(datos.país) || díaInicio != datos.díaInicio.toEpochDay() ||
+			díaFin != datos.díaFin.toEpochDay() || numLíneas != líneas.size() || hashLíneas != líneas.hashCode()) {
+			throw new IOException("El checkpoint no corresponde a los datos del problema actual (" + datos.país +
+				", " + datos.díaInicio + " - " + datos.díaFin + ", " + líneas.size() + " líneas)");
+		}
+
+		iter = entrada.readInt();
+		solucionesPeores = entrada.readInt();
+		solucionesPeoresAceptadas = entrada.readInt();
+		fitnessActual = entrada.readDouble();
+		fitnessMejorSolución = entrada.readDouble();
+		mejorSolución = GestorCheckpoints.leerBooleanos(entrada);
+		if (mejorSolución.length != líneas.size()) {
+			throw new IOException("El número de líneas de la mejor solución del checkpoint (" + mejorSolución.length +
+				") no coincide con el actual (" + líneas.size() + ")");
+		}
+		gLíneas.leerEstado(entrada);
+		rs.leerEstado(entrada);
+		gEntornos.leerEstado(entrada);
+		estadísticas.leerEstado(entrada);
+		boolean conArchivo = entrada.readBoolean();
+		if (conArchivo != (archivoPareto != null)) {
+			throw new IOException("El uso del modo multiobjetivo en el checkpoint no coincide con el de la " +
+				"configuración actual");
+		}
+		if (archivoPareto != null) {
+			archivoPareto.leerEstado(entrada);
+		}
+		// La solución actual siempre es factible salvo que se permitan soluciones infactibles
+		if (!config.permitirInfactibles && !gLíneas.cumpleRestricciones()) {
+			throw new IOException("La solución del checkpoint no cumple las restricciones de la configuración actual");
+		}
+	}
+
 	/**
 	 * Inicializa las variables necesarias para ejecutar el algoritmo
+	 * @param rutaEstadísticas Ruta al fichero de estadísticas, o null para no escribirlas
 	 */
-	private void init() {
-		CriterioFactory fCriterios = new CriterioFactory(consultas, config, registroAeropuertos);
-		gEntornos = new GestorEntornos(config.configVNS, conversorLíneas, líneas.size(), config.configRS.tInicial);
+	private void init(String rutaEstadísticas) {
+		CriterioFactory fCriterios = new CriterioFactory(datos);
+		/*
+		 * Cada componente obtiene su propio generador a partir del de la configuración, siempre en el mismo orden,
+		 * para que la ejecución sea reproducible
+		 */
+		GeneradorAleatorio generador = config.crearGenerador();
+		rs = new RecocidoSimulado(config.configRS, generador.dividir());
+		gEntornos = new GestorEntornos(config.configVNS, líneas.size(), config.configRS.tInicial, generador.dividir());
 		gLíneas = new GestorLíneasBuilder(líneas, registroLíneas, conversorLíneas, log)
 			.añadirCriterios(config.criterios, fCriterios)
 			.añadirCriteriosRestricciones(config, fCriterios)
+			.añadirGenerador(generador.dividir())
 			.añadirCálculoFitness(new FitnessPorPesos(config.pesos))
 			.build();
-		estadísticas = new Estadísticas(log);
+		CachéEvaluaciones caché = null;
+		if (config.tamañoCachéEvaluaciones > 0) {
+			caché = new CachéEvaluaciones(config.tamañoCachéEvaluaciones);
+		}
+		candidatos = new EvaluadorCandidatos(config.candidatosPorIteración, líneas.size(),
+			gLíneas.getCriterios().size(), caché);
+		// El frente de Pareto solo tiene sentido en ejecuciones con la condición de parada habitual
+		if (rutaFrentePareto != null && numFijoIteraciones < 0) {
+			archivoPareto = new ArchivoPareto(config.criterios, config.tamañoArchivoPareto, líneas.size());
+			valoresObjetivos = new double[config.criterios.size()];
+		} else {
+			archivoPareto = null;
+		}
+		// Solo es necesario conservar el fitness de las últimas itParada iteraciones para evaluar la condición de parada
+		estadísticas = new Estadísticas(config.itParada + 1, rutaEstadísticas, log);
+		progreso = new InformadorProgreso(config.itProgreso, config.msProgreso, log);
 
 		solucionesPeores = 0;
 		solucionesPeoresAceptadas = 0;
 		mejorSolución = null;
 		fitnessMejorSolución = -1;
+		fitnessActual = 0;
 		iter = 0;
+		checkpoints = null;
+	}
+
+	/**
+	 * Ejecuta la metaheurística una vez que ésta está inicializada. Al terminar, se cierran el fichero de
+	 * estadísticas y el de checkpoints.
+	 * @param reanudada True si se ha restaurado el estado de una ejecución anterior, en cuyo caso no se prepara la
+	 *                  solución inicial
+	 */
+	private void _ejecutar(boolean reanudada) {
+		// Los checkpoints solo tienen sentido en ejecuciones con la condición de parada habitual
+		if (rutaCheckpoint != null && numFijoIteraciones < 0) {
+			checkpoints = new GestorCheckpoints(rutaCheckpoint, config.msCheckpoint, log);
+		}
+		long inicio = System.nanoTime();
+		long bytesInicio = Métricas.getBytesAsignadosHilo();
+		try {
+			if (!reanudada && !prepararSoluciónInicial()) {
+				log.info("Ejecución cancelada antes de encontrar una solución inicial factible. No hay resultado.");
+				return;
+			}
+			buclePrincipal();
+			CachéEvaluaciones caché = candidatos.getCaché();
+			if (caché != null) {
+				log.info("Caché de evaluaciones: " + caché.getAciertos() + " aciertos de " +
+					(caché.getAciertos() + caché.getFallos()) + " consultas (" +
+					String.format("%.2f", caché.getTasaAciertos() * 100) + "%)");
+			}
+			if (archivoPareto != null) {
+				archivoPareto.toCsv(rutaFrentePareto, conversorLíneas, log);
+				log.info("Frente de Pareto con " + archivoPareto.getTamaño() + " soluciones almacenado en " +
+					rutaFrentePareto);
+			}
+		} finally {
+			estadísticas.cerrar();
+			if (checkpoints != null) {
+				checkpoints.cerrar();
+			}
+			Métricas.sumar(Métricas.Contador.TIEMPO_EJECUCIÓN_NS, System.nanoTime() - inicio);
+			if (bytesInicio >= 0) {
+				Métricas.sumar(Métricas.Contador.BYTES_ASIGNADOS, Métricas.getBytesAsignadosHilo() - bytesInicio);
+			}
+		}
 	}
 
 	/**
-	 * Ejecuta la metaheurística una vez que ésta está inicializada
+	 * Prepara la solución inicial de la búsqueda y registra sus estadísticas. La solución solo se acepta (y pasa a ser
+	 * la mejor encontrada) si cumple las restricciones o si se permiten soluciones infactibles.
+	 * @return True si se ha aceptado la solución inicial, false si la ejecución se ha cancelado antes de encontrar una
+	 * solución inicial factible
 	 */
-	private void _ejecutar() {
-		if (!config.permitirInfactibles) {
-			asegurarSoluciónInicialFactible();
+	private boolean prepararSoluciónInicial() {
+		if (líneasCerradasIniciales != null) {
+			List<String> cerradas = new ArrayList<>();
+			for (String idLínea : líneasCerradasIniciales) {
+				if (conversorLíneas.contiene(idLínea)) {
+					cerradas.add(idLínea);
+				}
+			}
+			gLíneas.abrirCerrarLíneas(cerradas, OperaciónLínea.CERRAR);
+		}
+		if (!config.permitirInfactibles && !asegurarSoluciónInicialFactible()) {
+			return false;
 		}
 
-		double fitnessActual = gLíneas.getFitness();
+		fitnessActual = gLíneas.getFitness();
 		mejorSolución = gLíneas.getLíneasBool();
 		fitnessMejorSolución = fitnessActual;
+		if (archivoPareto != null && gLíneas.cumpleRestricciones()) {
+			ofrecerSoluciónActual();
+		}
 
 		// Registrar estadísticas del estado inicial
-		estadísticas.registrarIteración(new EstadísticasIteración(-1, gLíneas.getNumAbiertas(),
-			new EntornoVNS(gEntornos.getEntorno()), rs.temperatura, fitnessActual, fitnessMejorSolución, null));
+		estadísticas.registrarIteración(-1, gLíneas.getNumAbiertas(), gEntornos.getEntorno().getNumLíneasConSigno(),
+			rs.temperatura, fitnessActual, fitnessMejorSolución, Double.NaN);
+		return true;
+	}
+
+	/**
+	 * Bucle principal de la metaheurística
+	 */
+	private void buclePrincipal() {
+		publicarEstado();
 
 		while (continuar()) {
+			long inicioIteración = System.nanoTime();
 			EntornoVNS entorno = gEntornos.getEntorno();
-			log.info("Inicio iter " + iter + ". Abiertas: " + gLíneas.getNumAbiertas() + ", fitness actual: " +
-				fitnessActual + ", entorno: " + entorno.operación + " " + entorno.getNumLíneas() +
-				", T: " + rs.temperatura);
+			if (progreso.toca(iter)) {
+				progreso.informar(iter, "Iter " + iter + ". Abiertas: " + gLíneas.getNumAbiertas() +
+					", fitness actual: " + fitnessActual + ", mejor fitness: " + fitnessMejorSolución + ", entorno: " +
+					entorno.operación + " " + entorno.getNumLíneas() + ", T: " + rs.temperatura);
+			}
+			if (log.isDebugEnabled()) {
+				log.debug("Inicio iter " + iter + ". Abiertas: " + gLíneas.getNumAbiertas() + ", fitness actual: " +
+					fitnessActual + ", entorno: " + entorno.operación + " " + entorno.getNumLíneas() +
+					", T: " + rs.temperatura);
+			}
 
-			List<String> líneasAVariar = getLíneasAVariar(entorno);
+			/*
+			 * Elegir al azar las líneas a abrir o cerrar en cada candidato en base al entorno en el que nos
+			 * encontremos. Todos los candidatos parten de la solución actual.
+			 */
+			int numCandidatos = candidatos.getNumCandidatos();
+			for (int i = 0; i < numCandidatos; i++) {
+				gLíneas.elegirAlAzar(candidatos.getCandidato(i), entorno.operación, entorno.getNumLíneas());
+			}
 			int numAbiertas = gLíneas.getNumAbiertas();
-			gLíneas.abrirCerrarLíneas(líneasAVariar, entorno.operación);
-			double nuevoFitness = gLíneas.getFitness();
+			/*
+			 * Evaluar los candidatos (fitness y restricciones) sin aplicarlos. El estado de las líneas y de los
+			 * criterios solo se modifica si se acepta la nueva solución.
+			 */
+			long inicioEvaluación = System.nanoTime();
+			candidatos.evaluar(gLíneas);
+			Métricas.registrarTiempo(Métricas.Temporizador.EVALUACIÓN_MOVIMIENTO, System.nanoTime() - inicioEvaluación);
+			Métricas.sumar(Métricas.Contador.MOVIMIENTOS_EVALUADOS, numCandidatos);
 
-			// Verificar restricciones
-			boolean factible = config.restricciones.cumple(gLíneas.getCriterios());
-			if (!factible) {
-				nuevoFitness = rs.penalizarFitness(fitnessActual, nuevoFitness);
+			/*
+			 * Elegir el mejor candidato. Si no se permiten soluciones infactibles, solo se tienen en cuenta los
+			 * candidatos factibles. Si no queda ninguno, se considera el primero, que será rechazado.
+			 */
+			int elegido = -1;
+			double nuevoFitness = 0;
+			for (int i = 0; i < numCandidatos; i++) {
+				boolean factibleCandidato = candidatos.isFactible(i);
+				double fitnessCandidato = candidatos.getFitness(i);
+				if (!factibleCandidato) {
+					Métricas.contar(Métricas.Contador.MOVIMIENTOS_INFACTIBLES);
+					fitnessCandidato = rs.penalizarFitness(fitnessActual, fitnessCandidato);
+				} else if (fitnessCandidato > fitnessMejorSolución) {
+					// Comprobar si esta solución es el nuevo máximo global
+					fitnessMejorSolución = fitnessCandidato;
+					gLíneas.copiarLíneasBool(mejorSolución, candidatos.getCandidato(i));
+				}
+				boolean elegible = factibleCandidato || config.permitirInfactibles;
+				if (elegible && (elegido < 0 || fitnessCandidato > nuevoFitness)) {
+					elegido = i;
+					nuevoFitness = fitnessCandidato;
+				}
+			}
+			boolean factible;
+			if (elegido < 0) {
+				elegido = 0;
+				factible = false;
+				nuevoFitness = rs.penalizarFitness(fitnessActual, candidatos.getFitness(0));
+			} else {
+				factible = candidatos.isFactible(elegido);
 			}
+			Movimiento movimiento = candidatos.getCandidato(elegido);
 
 			/*
 			 * Registrar la nueva solución considerada en el gestor de entornos para que pueda usarse en el cálculo
@@ -246,70 +589,65 @@ public class VnsRs implements IRecocidoSimulado {
 			 */
 			gEntornos.registrarNuevaSolución(numAbiertas, entorno.operación, nuevoFitness, fitnessActual);
 
-			// Comprobar si esta solución es el nuevo máximo global
-			if (factible && nuevoFitness > fitnessMejorSolución) {
-				fitnessMejorSolución = nuevoFitness;
-				mejorSolución = gLíneas.getLíneasBool();
-			}
-
 			boolean esPeorSolución = nuevoFitness < fitnessActual;
 			if (esPeorSolución) {
 				solucionesPeores++;
 			}
-			// Comprobar si aceptamos esta nueva solución o si nos quedamos con la anterior
-			Double probAceptación;
+			// Comprobar si aceptamos esta nueva solución o si nos quedamos con la anterior. NaN si no hay probabilidad.
+			double probAceptación;
 			boolean considerarSolución;
 			if (!factible && !config.permitirInfactibles) {
-				probAceptación = null;
+				probAceptación = Double.NaN;
 				considerarSolución = false;
 			} else {
 				if (esPeorSolución) {
 					probAceptación = rs.probabilidadAceptación(fitnessActual, nuevoFitness);
 				} else {
-					probAceptación = null;
+					probAceptación = Double.NaN;
 				}
 				considerarSolución = rs.considerarSolución(fitnessActual, nuevoFitness);
 			}
 
 			if (considerarSolución) {
+				Métricas.contar(Métricas.Contador.MOVIMIENTOS_ACEPTADOS);
 				fitnessActual = nuevoFitness;
-				gEntornos.registrarNuevaPosición(líneasAVariar);
+				gLíneas.aplicar(movimiento);
+				gLíneas.confirmar();
+				gEntornos.registrarNuevaPosición(movimiento);
 				if (esPeorSolución) {
 					solucionesPeoresAceptadas++;
 				}
+				if (archivoPareto != null && factible) {
+					ofrecerSoluciónActual();
+				}
 			} else {
-				gLíneas.abrirCerrarLíneas(líneasAVariar, entorno.operación.invertir());
+				Métricas.contar(Métricas.Contador.MOVIMIENTOS_RECHAZADOS);
 				// Indicar que nos mantenemos en el mismo estado, es decir, no se ha variado ninguna línea
-				gEntornos.registrarNuevaPosición(new ArrayList<>());
+				gEntornos.registrarNuevaPosición(Movimiento.VACÍO);
 			}
 
 			// Registrar estadísticas de esta iteración
-			estadísticas.registrarIteración(new EstadísticasIteración(iter, gLíneas.getNumAbiertas(),
-				new EntornoVNS(gEntornos.getEntorno()), rs.temperatura, fitnessActual, fitnessMejorSolución,
-				probAceptación));
+			estadísticas.registrarIteración(iter, gLíneas.getNumAbiertas(), gEntornos.getEntorno().getNumLíneasConSigno(),
+				rs.temperatura, fitnessActual, fitnessMejorSolución, probAceptación);
 
 			iter++;
 			rs.sigIter();
 			gEntornos.sigIter(gLíneas.getNumAbiertas(), rs.temperatura);
+			Métricas.contar(Métricas.Contador.ITERACIONES);
+			publicarEstado();
+			Métricas.registrarTiempo(Métricas.Temporizador.ITERACIÓN, System.nanoTime() - inicioIteración);
+			if (checkpoints != null && checkpoints.toca()) {
+				checkpoints.guardar(this);
+			}
 		}
-	}
 
-	/**
-	 * Obtiene una lista con las líneas a abrir o cerrrar en la iteración actual. Las líneas se determinan de forma
-	 * aleatoria en base al entorno en el que nos encontremos.
-	 * @param entorno Entorno VNS en el que nos encontramos ahora mismo
-	 * @return Lista de líneas que deben ser abiertas o cerradas
-	 */
-	private List<String> getLíneasAVariar(EntornoVNS entorno) {
-		int numLíneasPosibles;
-		if (entorno.operación == OperaciónLínea.ABRIR) {
-			numLíneasPosibles = gLíneas.getNumCerradas();
-		} else {
-			numLíneasPosibles = gLíneas.getNumAbiertas();
+		/*
+		 * Si se ha cancelado la ejecución, se guarda su estado final para que pueda reanudarse más adelante. Solo se
+		 * llega aquí si se ha aceptado la solución inicial.
+		 */
+		if (cancelada && checkpoints != null) {
+			checkpoints.guardar(this);
 		}
-		// Posiciones al azar en la lista de líneas que identifican las líneas a abrir o cerrar
-		List<Integer> posiciones = Utils.múltiplesAleatorios(numLíneasPosibles, entorno.getNumLíneas());
-		return gLíneas.getPorPosiciónYEstado(posiciones, entorno.operación == OperaciónLínea.CERRAR);
 	}
 
 	/**
@@ -318,14 +656,16 @@ public class VnsRs implements IRecocidoSimulado {
 	 * @return True si la ejecución debe continuar, false si se cumple la condición de parada.
 	 */
 	private boolean continuar() {
-		if (numFijoIteraciones >= 0) {
+		if (cancelada) {
+			return false;
+		} else if (numFijoIteraciones >= 0) {
 			return iter < numFijoIteraciones;
 		} else {
 			if (iter < config.itParada) {
 				return true;
 			} else {
 				double fitnessHaceItParadaIteraciones =
-					estadísticas.listaEstadísticas.get(iter - config.itParada).fitnessMejor;
+					estadísticas.getFitnessMejor(iter - config.itParada);
 				if (config.porcentMejora == 0) {
 					return fitnessMejorSolución > fitnessHaceItParadaIteraciones;
 				} else {
@@ -337,13 +677,60 @@ public class VnsRs implements IRecocidoSimulado {
 	}
 
 	/**
-	 * Comprueba si la solución inicial es factible, y en caso de que no lo sea, genera nuevas soluciones al azar
-	 * hasta encontrar una factible.
+	 * Publica el estado actual de la ejecución para que pueda consultarse desde otros hilos
+	 */
+	private void publicarEstado() {
+		iterPublicada = iter;
+		temperaturaPublicada = rs.temperatura;
+		fitnessActualPublicado = fitnessActual;
+		fitnessMejorPublicado = fitnessMejorSolución;
+	}
+
+	/**
+	 * Ofrece la solución actual al archivo de soluciones no dominadas
+	 */
+	private void ofrecerSoluciónActual() {
+		for (int i = 0; i < valoresObjetivos.length; i++) {
+			valoresObjetivos[i] = gLíneas.getPorcentajeCriterio(config.criterios.get(i));
+		}
+		archivoPareto.ofrecer(valoresObjetivos, gLíneas);
+	}
+
+	/**
+	 * Comprueba si la solución inicial es factible, y en caso de que no lo sea, la repara de forma voraz. Si no es
+	 * posible repararla, genera nuevas soluciones al azar hasta encontrar una factible o hasta que se cancele la
+	 * ejecución.
+	 * @return True si la solución inicial es factible, false si la ejecución se ha cancelado antes de encontrar una
 	 */
-	private void asegurarSoluciónInicialFactible() {
-		while (!config.restricciones.cumple(gLíneas.getCriterios())) {
-			log.info("Descartada solución inicial con " + gLíneas.getNumAbiertas() + " líneas abiertas por ser infactible");
+	private boolean asegurarSoluciónInicialFactible() {
+		if (gLíneas.cumpleRestricciones()) {
+			return true;
+		}
+		int variadas = ReparaciónVoraz.reparar(gLíneas);
+		if (variadas >= 0) {
+			log.info("Solución inicial reparada variando el estado de " + variadas + " líneas");
+			return true;
+		}
+		log.info("No se ha podido reparar la solución inicial. Se buscará una solución factible al azar.");
+
+		int descartadas = 0;
+		while (!cancelada && !gLíneas.cumpleRestricciones()) {
+			if (log.isDebugEnabled()) {
+				log.debug("Descartada solución inicial con " + gLíneas.getNumAbiertas() + " líneas abiertas por ser " +
+					"infactible");
+			}
+			descartadas++;
+			// Se comprueba antes si toca informar para no crear el mensaje (ni una función que lo cree) en cada intento
+			if (progreso.toca(descartadas)) {
+				progreso.informar(descartadas, "Buscando solución inicial factible. Descartadas " + descartadas +
+					" soluciones hasta ahora");
+			}
 			gLíneas.variarAlAzar();
 		}
+		if (descartadas > 0) {
+			log.info("Descartadas " + descartadas + " soluciones iniciales por ser infactibles");
+		}
+		progreso.reiniciar();
+		return gLíneas.cumpleRestricciones();
 	}
 }
@@ -1,6 +1,7 @@
 package earlywarn.mh.vnsrs.config;
 
 import earlywarn.definiciones.IDCriterio;
+import earlywarn.main.GeneradorAleatorio;
 import earlywarn.main.Utils;
 import earlywarn.mh.vnsrs.restricción.Restricción;
 import org.w3c.dom.Document;
@@ -19,6 +20,12 @@ import java.util.*;
  */
 @SuppressWarnings("ProhibitedExceptionThrown")
 public class Config {
+	/*
+	 * Cadena que se sustituye en las rutas de los ficheros de salida para que cada ejecución use los suyos: por el ID
+	 * del trabajo en los trabajos en segundo plano y por el ID del país en las ejecuciones por lotes
+	 */
+	public static final String MARCA_ID = "{id}";
+
 	public ConfigVNS configVNS;
 	public ConfigRS configRS;
 	/*
@@ -41,6 +48,55 @@ public class Config {
 	public ListaRestricciones restricciones;
 	// True para permitir considerar soluciones infactibles
 	public boolean permitirInfactibles;
+	/*
+	 * Ruta al fichero que contiene el cubo de líneas a usar para obtener los datos de las líneas, relativa a la
+	 * carpeta del DBMS. Null si los datos deben obtenerse de la BD.
+	 */
+	public String rutaCubo;
+	/*
+	 * True para construir en memoria a partir de la BD un cubo de líneas con el rango de fechas de la configuración
+	 * si no hay ningún fichero de cubo que lo contenga. Si se ha especificado una ruta al cubo, el cubo construido
+	 * se almacena en ella para las siguientes ejecuciones. Si no, solo se mantiene en memoria.
+	 */
+	public boolean construirCubo;
+	/*
+	 * Intervalo entre mensajes de progreso durante la ejecución, en número de iteraciones y en milisegundos. Un valor
+	 * de 0 desactiva el intervalo correspondiente.
+	 */
+	public int itProgreso;
+	public long msProgreso;
+	/*
+	 * Ruta al fichero en el que se almacenarán checkpoints periódicos del estado de la búsqueda, relativa a la
+	 * carpeta del DBMS. {@link #MARCA_ID} se sustituye por el ID del trabajo o del país. Null si no se deben generar
+	 * checkpoints.
+	 */
+	public String rutaCheckpoint;
+	// Tiempo mínimo entre checkpoints, en milisegundos
+	public long msCheckpoint;
+	/*
+	 * Semilla de la que se obtienen todos los números aleatorios usados en la ejecución. Si no se especifica en el
+	 * fichero, se elige una al azar.
+	 */
+	public long semilla;
+	/*
+	 * Número de movimientos candidatos que se generan y evalúan en cada iteración. Los candidatos se evalúan en
+	 * paralelo, y solo el mejor de ellos se considera para su aceptación. Con el valor por defecto (1), se evalúa un
+	 * único movimiento por iteración.
+	 */
+	public int candidatosPorIteración;
+	/*
+	 * Número máximo de soluciones cuyo fitness y factibilidad se guardan en la caché de evaluaciones, para no tener
+	 * que volver a evaluarlas si se visitan de nuevo. 0 para no usar la caché.
+	 */
+	public int tamañoCachéEvaluaciones;
+	/*
+	 * Ruta al fichero CSV en el que se exportará el frente de soluciones no dominadas encontradas durante la
+	 * ejecución, relativa a la carpeta del DBMS. {@link #MARCA_ID} se sustituye por el ID del trabajo o del país. Null
+	 * si no se usa el modo multiobjetivo.
+	 */
+	public String rutaFrentePareto;
+	// Número máximo de soluciones del frente de Pareto
+	public int tamañoArchivoPareto;
 
 	/**
 	 * Instancia la configuración
@@ -139,5 +195,96 @@ public class Config {
 
 		Element elemInfactibles = Utils.toLista(raíz.getElementsByTagName("permitirInfactibles")).get(0);
 		permitirInfactibles = Boolean.parseBoolean(elemInfactibles.getTextContent());
+
+		// Elemento opcional
+		List<Element> elemsRutaCubo = Utils.toLista(raíz.getElementsByTagName("rutaCubo"));
+		if (elemsRutaCubo.isEmpty()) {
+			rutaCubo = null;
+		} else {
+			rutaCubo = elemsRutaCubo.get(0).getTextContent();
+		}
+		// Elemento opcional. Por defecto, no se construye ningún cubo.
+		List<Element> elemsConstruirCubo = Utils.toLista(raíz.getElementsByTagName("construirCubo"));
+		if (elemsConstruirCubo.isEmpty()) {
+			construirCubo = false;
+		} else {
+			construirCubo = Boolean.parseBoolean(elemsConstruirCubo.get(0).getTextContent().trim());
+		}
+		// Elementos opcionales. Por defecto, se informa del progreso cada 10 segundos.
+		List<Element> elemsItProgreso = Utils.toLista(raíz.getElementsByTagName("itProgreso"));
+		if (elemsItProgreso.isEmpty()) {
+			itProgreso = 0;
+		} else {
+			itProgreso = Integer.parseInt(elemsItProgreso.get(0).getTextContent());
+		}
+		List<Element> elemsMsProgreso = Utils.toLista(raíz.getElementsByTagName("msProgreso"));
+		if (elemsMsProgreso.isEmpty()) {
+			msProgreso = 10000;
+		} else {
+			msProgreso = Long.parseLong(elemsMsProgreso.get(0).getTextContent());
+		}
+		// Elementos opcionales. Por defecto, no se generan checkpoints, y si se generan, es como mucho uno por minuto.
+		List<Element> elemsRutaCheckpoint = Utils.toLista(raíz.getElementsByTagName("rutaCheckpoint"));
+		if (elemsRutaCheckpoint.isEmpty()) {
+			rutaCheckpoint = null;
+		} else {
+			rutaCheckpoint = elemsRutaCheckpoint.get(0).getTextContent();
+		}
+		List<Element> elemsMsCheckpoint = Utils.toLista(raíz.getElementsByTagName("msCheckpoint"));
+		if (elemsMsCheckpoint.isEmpty()) {
+			msCheckpoint = 60000;
+		} else {
+			msCheckpoint = Long.parseLong(elemsMsCheckpoint.get(0).getTextContent());
+		}
+		// Elemento opcional
+		List<Element> elemsSemilla = Utils.toLista(raíz.getElementsByTagName("semilla"));
+		if (elemsSemilla.isEmpty()) {
+			semilla = GeneradorAleatorio.semillaAleatoria();
+		} else {
+			semilla = Long.parseLong(elemsSemilla.get(0).getTextContent().trim());
+		}
+		// Elemento opcional
+		List<Element> elemsCandidatos = Utils.toLista(raíz.getElementsByTagName("candidatosPorIteración"));
+		if (elemsCandidatos.isEmpty()) {
+			candidatosPorIteración = 1;
+		} else {
+			candidatosPorIteración = Integer.parseInt(elemsCandidatos.get(0).getTextContent().trim());
+			if (candidatosPorIteración < 1) {
+				throw new IllegalArgumentException("El número de candidatos por iteración debe ser al menos 1");
+			}
+		}
+		// Elemento opcional. Por defecto, la caché ocupa alrededor de 1 MB.
+		List<Element> elemsTamañoCaché = Utils.toLista(raíz.getElementsByTagName("tamañoCachéEvaluaciones"));
+		if (elemsTamañoCaché.isEmpty()) {
+			tamañoCachéEvaluaciones = 65536;
+		} else {
+			tamañoCachéEvaluaciones = Integer.parseInt(elemsTamañoCaché.get(0).getTextContent().trim());
+		}
+		// Elementos opcionales. Por defecto, no se usa el modo multiobjetivo.
+		List<Element> elemsRutaFrente = Utils.toLista(raíz.getElementsByTagName("rutaFrentePareto"));
+		if (elemsRutaFrente.isEmpty()) {
+			rutaFrentePareto = null;
+		} else {
+			rutaFrentePareto = elemsRutaFrente.get(0).getTextContent().trim();
+		}
+		List<Element> elemsTamañoArchivo = Utils.toLista(raíz.getElementsByTagName("tamañoArchivoPareto"));
+		if (elemsTamañoArchivo.isEmpty()) {
+			tamañoArchivoPareto = 100;
+		} else {
+			tamañoArchivoPareto = Integer.parseInt(elemsTamañoArchivo.get(0).getTextContent().trim());
+			if (tamañoArchivoPareto < 1) {
+				throw new IllegalArgumentException("El tamaño del archivo de Pareto debe ser al menos 1");
+			}
+		}
+	}
+
+	/**
+	 * Crea un generador de números aleatorios a partir de la semilla de la configuración. Cada llamada devuelve un
+	 * generador nuevo que produce la misma secuencia, por lo que las ejecuciones que usen la misma configuración
+	 * serán reproducibles. Cada componente debe obtener su propio generador con {@link GeneradorAleatorio#dividir()}.
+	 * @return Generador raíz de la ejecución
+	 */
+	public GeneradorAleatorio crearGenerador() {
+		return new GeneradorAleatorio(semilla);
 	}
 }
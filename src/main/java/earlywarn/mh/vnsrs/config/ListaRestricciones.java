@@ -1,7 +1,9 @@
 package earlywarn.mh.vnsrs.config;
 
 import earlywarn.main.modelo.criterio.Criterio;
+import earlywarn.mh.vnsrs.Movimiento;
 import earlywarn.mh.vnsrs.restricción.Restricción;
+import earlywarn.mh.vnsrs.restricción.RestriccionesVinculadas;
 
 import java.util.ArrayList;
 import java.util.Iterator;
@@ -39,6 +41,32 @@ public class ListaRestricciones implements Iterable<Restricción> {
 		return true;
 	}
 
+	/**
+	 * Comprueba si el estado que tendría una lista de criterios tras aplicar un movimiento cumple todas las
+	 * restricciones de esta lista de restricciones. No modifica el estado de los criterios.
+	 * @param criterios Lista de criterios a comprobar
+	 * @param movimiento Movimiento a evaluar
+	 * @return True si los criterios especificados cumplirían todas las restricciones tras aplicar el movimiento, false
+	 * en caso contrario
+	 */
+	public boolean cumple(List<Criterio> criterios, Movimiento movimiento) {
+		for (Restricción restricción : restricciones) {
+			if (!restricción.cumple(criterios, movimiento)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Vincula las restricciones de esta lista con los criterios sobre los que se evalúan
+	 * @param criterios Lista de criterios disponibles. No debe modificarse mientras se use el resultado.
+	 * @return Restricciones vinculadas con los criterios de la lista
+	 */
+	public RestriccionesVinculadas vincular(List<Criterio> criterios) {
+		return new RestriccionesVinculadas(this, criterios);
+	}
+
 	@Override
 	public Iterator<Restricción> iterator() {
 		return restricciones.iterator();
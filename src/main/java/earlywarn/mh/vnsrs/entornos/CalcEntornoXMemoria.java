@@ -1,10 +1,12 @@
 package earlywarn.mh.vnsrs.entornos;
 
 import earlywarn.definiciones.OperaciónLínea;
+import earlywarn.main.GeneradorAleatorio;
 import earlywarn.mh.vnsrs.config.ConfigVNS;
 
-import java.util.List;
-import java.util.Random;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
 
 /**
  * Determina el entorno horizontal a usar a continuación (la operación a realizar) usando un razonamiento basado en
@@ -14,7 +16,7 @@ public class CalcEntornoXMemoria implements ICalcEntornoX {
 	// Constante por la que se multiplica el porcentaje de temperatura restante para el cálculo del entorno horizontal
 	private static final float MULT_PORCENT_TEMPERATURA_ENTORNO_X = 3.0f;
 
-	private final Random random;
+	private final GeneradorAleatorio random;
 	private final ConfigVNS config;
 	// Temperatura inicial del RS
 	private final double temperaturaInicial;
@@ -23,21 +25,21 @@ public class CalcEntornoXMemoria implements ICalcEntornoX {
 
 	private final MemoriaCasosX casosX;
 
-	public CalcEntornoXMemoria(ConfigVNS configVNS, int numLíneas, double temperaturaInicial) {
-		random = new Random();
+	public CalcEntornoXMemoria(ConfigVNS configVNS, int numLíneas, double temperaturaInicial,
+							   GeneradorAleatorio random) {
+		this.random = random;
 		config = configVNS;
 		this.temperaturaInicial = temperaturaInicial;
 		this.numLíneas = numLíneas;
-		casosX = new MemoriaCasosX(Math.round(config.tamañoMemoriaX * numLíneas), numLíneas);
+		casosX = new MemoriaCasosX(Math.round(config.tamañoMemoriaX * numLíneas), numLíneas, random.dividir());
 	}
 
 	@Override
 	public void registrarNuevaSolución(int numLíneasAbiertas, OperaciónLínea operaciónRealizada, double nuevoFitness,
 									   double fitnessActual) {
 		// Creamos un nuevo caso con esta información y lo añadimos a la memoria de casos
-		CasoEntornoX nuevoCaso = new CasoEntornoX(numLíneasAbiertas, operaciónRealizada == OperaciónLínea.ABRIR,
-			nuevoFitness > fitnessActual);
-		casosX.añadir(nuevoCaso, nuevoCaso.numLíneasAbiertas);
+		casosX.añadir(numLíneasAbiertas, getOperaciónRecomendada(operaciónRealizada == OperaciónLínea.ABRIR,
+			nuevoFitness > fitnessActual));
 	}
 
 	/**
@@ -59,25 +61,22 @@ public class CalcEntornoXMemoria implements ICalcEntornoX {
 		if (numMaxLíneas > numLíneas) {
 			numMaxLíneas = numLíneas;
 		}
-		List<CasoEntornoX> casos = casosX.getCasosEnRango(numMinLíneas, numMaxLíneas);
 
 		/*
 		 * Recorremos los casos. Cada caso tiene un peso que depende de la diferencia entre su número de líneas
 		 * abiertas y el número de líneas actualmente abiertas. Los casos que tengan la mayor diferencia tendrán un
 		 * peso de 1 solo voto. Por cada unidad más cerca del número de líneas actual que esté el caso, éste gana 1
-		 * voto más.
+		 * voto más. Todos los casos con el mismo número de líneas tienen el mismo peso, así que basta con multiplicarlo
+		 * por el número de casos de cada tipo.
 		 */
 		int diferenciaMax = Math.max(numLíneasAbiertas - numMinLíneas, numMaxLíneas - numLíneasAbiertas);
 		int votosAbrir = 0;
 		int votosCerrar = 0;
-		for (CasoEntornoX caso : casos) {
-			int diferencia = Math.abs(caso.numLíneasAbiertas - numLíneasAbiertas);
+		for (int numLíneasCaso = Math.max(numMinLíneas, 0); numLíneasCaso <= numMaxLíneas; numLíneasCaso++) {
+			int diferencia = Math.abs(numLíneasCaso - numLíneasAbiertas);
 			int peso = diferenciaMax - diferencia + 1;
-			if (caso.getOperación() == OperaciónLínea.ABRIR) {
-				votosAbrir += peso;
-			} else {
-				votosCerrar += peso;
-			}
+			votosAbrir += peso * casosX.getNumCasos(numLíneasCaso, OperaciónLínea.ABRIR);
+			votosCerrar += peso * casosX.getNumCasos(numLíneasCaso, OperaciónLínea.CERRAR);
 		}
 		// El ratio de votos determina la probabilidad de abrir líneas (en este cálculo basado en casos)
 		double probabilidadAbrirCasos = (double) votosAbrir / (votosAbrir + votosCerrar);
@@ -96,4 +95,31 @@ public class CalcEntornoXMemoria implements ICalcEntornoX {
 			return OperaciónLínea.CERRAR;
 		}
 	}
+
+	/**
+	 * Determina qué operación recomienda un caso. Si se abrieron líneas y el resultado mejoró, o se cerraron y el
+	 * resultado empeoró, se recomienda abrir líneas. En caso contrario, se recomienda cerrarlas.
+	 * @param abrir True si en el caso se abrieron líneas, false si se cerraron
+	 * @param mejora True si el fitness mejoró tras la operación
+	 * @return Operación recomendada por el caso
+	 */
+	private static OperaciónLínea getOperaciónRecomendada(boolean abrir, boolean mejora) {
+		if (abrir == mejora) {
+			return OperaciónLínea.ABRIR;
+		} else {
+			return OperaciónLínea.CERRAR;
+		}
+	}
+
+	@Override
+	public void escribirEstado(ObjectOutput salida) throws IOException {
+		random.escribirEstado(salida);
+		casosX.escribirEstado(salida);
+	}
+
+	@Override
+	public void leerEstado(ObjectInput entrada) throws IOException {
+		random.leerEstado(entrada);
+		casosX.leerEstado(entrada);
+	}
 }
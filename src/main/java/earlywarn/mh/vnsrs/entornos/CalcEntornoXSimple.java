@@ -1,17 +1,20 @@
 package earlywarn.mh.vnsrs.entornos;
 
 import earlywarn.definiciones.OperaciónLínea;
+import earlywarn.main.GeneradorAleatorio;
 
-import java.util.Random;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
 
 /**
  * Determina el entorno horizontal (la operación a realizar) de forma aleatoria
  */
 public class CalcEntornoXSimple implements ICalcEntornoX {
-	private final Random random;
+	private final GeneradorAleatorio random;
 
-	public CalcEntornoXSimple() {
-		random = new Random();
+	public CalcEntornoXSimple(GeneradorAleatorio random) {
+		this.random = random;
 	}
 
 	/**
@@ -30,4 +33,14 @@ public class CalcEntornoXSimple implements ICalcEntornoX {
 									   double nuevoFitness, double fitnessActual) {
 		// El cálculo aleatorio no necesita esta información para nada
 	}
+
+	@Override
+	public void escribirEstado(ObjectOutput salida) throws IOException {
+		random.escribirEstado(salida);
+	}
+
+	@Override
+	public void leerEstado(ObjectInput entrada) throws IOException {
+		random.leerEstado(entrada);
+	}
 }
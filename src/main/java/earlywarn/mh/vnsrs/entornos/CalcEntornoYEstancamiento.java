@@ -1,11 +1,12 @@
 package earlywarn.mh.vnsrs.entornos;
 
 import earlywarn.main.Utils;
+import earlywarn.mh.vnsrs.Movimiento;
 import earlywarn.mh.vnsrs.config.ConfigVNS;
-import earlywarn.mh.vnsrs.ConversorLíneas;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
 
 /**
  * Clase que determina el entorno vertical a usar (el número de líneas a abrir o cerrar) comprobando hasta qué punto
@@ -20,17 +21,17 @@ public class CalcEntornoYEstancamiento implements ICalcEntornoY {
 
 	private final MemoriaEstadosY estadosY;
 
-	public CalcEntornoYEstancamiento(ConfigVNS configVNS, ConversorLíneas conversorLíneas, int numLíneas,
-									 double temperaturaInicial) {
+	public CalcEntornoYEstancamiento(ConfigVNS configVNS, int numLíneas, double temperaturaInicial) {
 		config = configVNS;
 		this.temperaturaInicial = temperaturaInicial;
 		this.numLíneas = numLíneas;
-		estadosY = new MemoriaEstadosY(config, conversorLíneas, numLíneas);
+		estadosY = new MemoriaEstadosY(config, numLíneas);
 	}
 
-	public void registrarNuevaPosición(List<String> líneasVariadas) {
+	@Override
+	public void registrarNuevaPosición(Movimiento movimiento) {
 		// Añadir esta entrada a la memoria que almacena las últimas posiciones visitadas
-		estadosY.insertar(líneasVariadas);
+		estadosY.insertar(movimiento);
 	}
 
 	/**
@@ -42,9 +43,9 @@ public class CalcEntornoYEstancamiento implements ICalcEntornoY {
 	public int numEntornoY(double temperaturaActual) {
 		/*
 		 * Tenemos que calcular el valor de estancamiento para cada porcentaje de líneas para el que se hace esta
-		 * comprobación
+		 * comprobación. Como solo nos interesa su media, basta con ir sumándolos.
 		 */
-		List<Double> valoresEstancamiento = new ArrayList<>();
+		double sumaEstancamiento = 0;
 		for (int i = 1; i <= config.numComprobaciones; i++) {
 			int numLíneasActual = Math.round(config.getDistComprobacionesY() * i * numLíneas);
 			// Iteraciones que hace que no logramos al menos (numLíneas) de distancia con respecto a la solución actual
@@ -56,10 +57,10 @@ public class CalcEntornoYEstancamiento implements ICalcEntornoY {
 			// También se tiene en cuenta la velocidad de variación de líneas especificada por el usuario
 			estancamientoAjustado *= Utils.log2(config.líneasPorIt);
 
-			valoresEstancamiento.add(estancamientoAjustado);
+			sumaEstancamiento += estancamientoAjustado;
 		}
 		// El valor de estancamiento final es la media de todos los calculados
-		double estancamientoMedio = Utils.getMedia(valoresEstancamiento);
+		double estancamientoMedio = sumaEstancamiento / config.numComprobaciones;
 		// El estancamiento medio se redondea hacia abajo para determinar el número de entorno vertical
 		int numEntorno = (int) Math.floor(estancamientoMedio);
 		// Comprobar que no excedemos el entorno máximo permitido
@@ -69,4 +70,14 @@ public class CalcEntornoYEstancamiento implements ICalcEntornoY {
 		}
 		return numEntorno;
 	}
+
+	@Override
+	public void escribirEstado(ObjectOutput salida) throws IOException {
+		estadosY.escribirEstado(salida);
+	}
+
+	@Override
+	public void leerEstado(ObjectInput entrada) throws IOException {
+		estadosY.leerEstado(entrada);
+	}
 }
@@ -1,9 +1,11 @@
 package earlywarn.mh.vnsrs.entornos;
 
 import earlywarn.main.Utils;
+import earlywarn.mh.vnsrs.Movimiento;
 import earlywarn.mh.vnsrs.config.ConfigVNS;
 
-import java.util.List;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
 
 /**
  * Determina qué entorno vertical usar en función del porcentaje de temperatura restante
@@ -44,7 +46,17 @@ public class CalcEntornoYSimple implements ICalcEntornoY {
 	}
 
 	@Override
-	public void registrarNuevaPosición(List<String> líneasVariadas) {
+	public void registrarNuevaPosición(Movimiento movimiento) {
 		// Nada que registrar ya que esta versión no usa una memoria
 	}
+
+	@Override
+	public void escribirEstado(ObjectOutput salida) {
+		// El cálculo simple no tiene estado
+	}
+
+	@Override
+	public void leerEstado(ObjectInput entrada) {
+		// El cálculo simple no tiene estado
+	}
 }
@@ -21,4 +21,13 @@ public class EstadoEntornoY {
 		líneas = otra.líneas.clone();
 		distancia = otra.distancia;
 	}
+
+	/**
+	 * Sobrescribe los valores de esta entrada con los de otra, sin crear objetos nuevos
+	 * @param otra Entrada cuyos valores se copiarán. Debe tener el mismo número de líneas que esta.
+	 */
+	public void copiar(EstadoEntornoY otra) {
+		System.arraycopy(otra.líneas, 0, líneas, 0, líneas.length);
+		distancia = otra.distancia;
+	}
 }
@@ -1,15 +1,20 @@
 package earlywarn.mh.vnsrs.entornos;
 
+import earlywarn.definiciones.IPersistible;
 import earlywarn.definiciones.OperaciónLínea;
+import earlywarn.main.GeneradorAleatorio;
+import earlywarn.main.métricas.Métricas;
 import earlywarn.mh.vnsrs.*;
 import earlywarn.mh.vnsrs.config.ConfigVNS;
 
-import java.util.*;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
 
 /**
  * Clase que gestiona el cambio de entorno de VNS
  */
-public class GestorEntornos {
+public class GestorEntornos implements IPersistible {
 	private final ConfigVNS config;
 	// Número de iteraciones restantes hasta que se tenga que considerar otro posible cambio de entorno
 	private int sigCambioEntorno;
@@ -18,19 +23,26 @@ public class GestorEntornos {
 	private final ICalcEntornoX calcEntornoX;
 	private final ICalcEntornoY calcEntornoY;
 
-	public GestorEntornos(ConfigVNS configVNS, ConversorLíneas conversorLíneas, int numLíneas,
-						  double temperaturaInicial) {
+	/**
+	 * Crea una instancia de la clase
+	 * @param configVNS Configuración de VNS
+	 * @param numLíneas Número total de líneas
+	 * @param temperaturaInicial Temperatura inicial del RS
+	 * @param random Generador de números aleatorios del que se obtendrán los de los cálculos de entorno
+	 */
+	public GestorEntornos(ConfigVNS configVNS, int numLíneas, double temperaturaInicial,
+						  GeneradorAleatorio random) {
 		config = configVNS;
 		sigCambioEntorno = config.itCambioEntorno;
 		entornoActual = new EntornoVNS(OperaciónLínea.CERRAR, config.getMaxEntornoY(numLíneas));
 
 		if (configVNS.cambioEntornoXComplejo) {
-			calcEntornoX = new CalcEntornoXMemoria(configVNS, numLíneas, temperaturaInicial);
+			calcEntornoX = new CalcEntornoXMemoria(configVNS, numLíneas, temperaturaInicial, random.dividir());
 		} else {
-			calcEntornoX = new CalcEntornoXSimple();
+			calcEntornoX = new CalcEntornoXSimple(random.dividir());
 		}
 		if (configVNS.cambioEntornoYComplejo) {
-			calcEntornoY = new CalcEntornoYEstancamiento(configVNS, conversorLíneas, numLíneas, temperaturaInicial);
+			calcEntornoY = new CalcEntornoYEstancamiento(configVNS, numLíneas, temperaturaInicial);
 		} else {
 			calcEntornoY = new CalcEntornoYSimple(configVNS, numLíneas, temperaturaInicial);
 		}
@@ -56,10 +68,10 @@ public class GestorEntornos {
 
 	/**
 	 * Registra una nueva posición al final de una iteración
-	 * @see ICalcEntornoY#registrarNuevaPosición(List) 
+	 * @see ICalcEntornoY#registrarNuevaPosición(Movimiento)
 	 */
-	public void registrarNuevaPosición(List<String> líneasVariadas) {
-		calcEntornoY.registrarNuevaPosición(líneasVariadas);
+	public void registrarNuevaPosición(Movimiento movimiento) {
+		calcEntornoY.registrarNuevaPosición(movimiento);
 	}
 
 	/**
@@ -76,6 +88,38 @@ public class GestorEntornos {
 		}
 	}
 
+	@Override
+	public void escribirEstado(ObjectOutput salida) throws IOException {
+		salida.writeInt(sigCambioEntorno);
+		salida.writeUTF(entornoActual.operación.name());
+		salida.writeInt(entornoActual.numEntornoY);
+		// El tipo de cálculo de entorno depende de la configuración, por lo que se comprueba al leer el estado
+		salida.writeUTF(calcEntornoX.getClass().getSimpleName());
+		salida.writeUTF(calcEntornoY.getClass().getSimpleName());
+		calcEntornoX.escribirEstado(salida);
+		calcEntornoY.escribirEstado(salida);
+	}
+
+	@Override
+	public void leerEstado(ObjectInput entrada) throws IOException {
+		sigCambioEntorno = entrada.readInt();
+		try {
+			entornoActual.operación = OperaciónLínea.valueOf(entrada.readUTF());
+		} catch (IllegalArgumentException e) {
+			throw new IOException("El checkpoint contiene una operación de entorno no válida", e);
+		}
+		entornoActual.numEntornoY = entrada.readInt();
+		String tipoX = entrada.readUTF();
+		String tipoY = entrada.readUTF();
+		if (!tipoX.equals(calcEntornoX.getClass().getSimpleName()) ||
+			!tipoY.equals(calcEntornoY.getClass().getSimpleName())) {
+			throw new IOException("El tipo de cambio de entorno del checkpoint (" + tipoX + ", " + tipoY + ") no " +
+				"coincide con el de la configuración actual");
+		}
+		calcEntornoX.leerEstado(entrada);
+		calcEntornoY.leerEstado(entrada);
+	}
+
 	/**
 	 * Ejecuta el procedimiento de cambio de entorno, que podrá o no pasar a un entorno diferente del actual.
 	 * @param numLíneasAbiertas Número de líneas actualmente abiertas
@@ -85,6 +129,9 @@ public class GestorEntornos {
 		// No fijamos los valores directamente para asegurarnos de que la operación es atómica
 		OperaciónLínea entornoX = calcEntornoX.entornoX(numLíneasAbiertas, temperaturaActual);
 		int numEntornoY = calcEntornoY.numEntornoY(temperaturaActual);
+		if (entornoX != entornoActual.operación || numEntornoY != entornoActual.numEntornoY) {
+			Métricas.contar(Métricas.Contador.CAMBIOS_ENTORNO);
+		}
 		entornoActual.operación = entornoX;
 		entornoActual.numEntornoY = numEntornoY;
 	}
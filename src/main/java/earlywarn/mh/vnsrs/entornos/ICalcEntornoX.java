@@ -1,11 +1,13 @@
 package earlywarn.mh.vnsrs.entornos;
 
+import earlywarn.definiciones.IPersistible;
 import earlywarn.definiciones.OperaciónLínea;
 
 /**
- * Interfaz implementada por las clases que permiten calcular el siguiente entorno horizontal al que cambiar
+ * Interfaz implementada por las clases que permiten calcular el siguiente entorno horizontal al que cambiar. Su
+ * estado interno debe poder almacenarse en los checkpoints de la metaheurística.
  */
-public interface ICalcEntornoX {
+public interface ICalcEntornoX extends IPersistible {
 	/**
 	 * Obtiene cuál será la opreración de variación de líneas (apertura o cierre) que se ejecutará en el siguiente
 	 * entorno.
@@ -1,11 +1,13 @@
 package earlywarn.mh.vnsrs.entornos;
 
-import java.util.List;
+import earlywarn.definiciones.IPersistible;
+import earlywarn.mh.vnsrs.Movimiento;
 
 /**
- * Interfaz implementada por las clases que permiten calcular el siguiente entorno vertical al que cambiar
+ * Interfaz implementada por las clases que permiten calcular el siguiente entorno vertical al que cambiar. Su
+ * estado interno debe poder almacenarse en los checkpoints de la metaheurística.
  */
-public interface ICalcEntornoY {
+public interface ICalcEntornoY extends IPersistible {
 	/**
 	 * @param temperaturaActual Temperatura actual del recocido simulado tras finalizar la iteración actual
 	 * @return Número de entorno vertical (afecta al número de líneas a abrir o cerrar) del próximo entorno
@@ -15,7 +17,8 @@ public interface ICalcEntornoY {
 	/**
 	 * Registra la posición actual en la que se encuentra la búsqueda (la solución actual), especificando qué líneas
 	 * han variado con respecto a la última posición. Debe llamarse al final de cada iteración.
-	 * @param líneasVariadas Líneas que han cambiado de estado con respecto a la posición anterior
+	 * @param movimiento Movimiento con las líneas que han cambiado de estado con respecto a la posición anterior.
+	 *                   Vacío si la posición no ha cambiado. La instancia puede reutilizarse tras la llamada.
 	 */
-	void registrarNuevaPosición(List<String> líneasVariadas);
+	void registrarNuevaPosición(Movimiento movimiento);
 }
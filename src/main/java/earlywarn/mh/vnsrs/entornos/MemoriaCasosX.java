@@ -1,24 +1,27 @@
 package earlywarn.mh.vnsrs.entornos;
 
-import java.util.*;
+import earlywarn.definiciones.IPersistible;
+import earlywarn.definiciones.OperaciónLínea;
+import earlywarn.main.GeneradorAleatorio;
+
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
 
 /**
- * Almacena una serie de casos usados en el cambio de entorno horizontal
+ * Almacena una serie de casos usados en el cambio de entorno horizontal. Cada caso indica el número de líneas
+ * abiertas que había al considerar una solución y la operación que se recomienda realizar en base al resultado.
+ * Dos casos con el mismo número de líneas abiertas que recomiendan la misma operación son indistinguibles, por lo que
+ * la memoria solo almacena cuántos casos hay de cada tipo. Esto permite añadir y eliminar casos sin crear objetos.
  */
-public class MemoriaCasosX {
-	private final Random random;
-	/**
-	 * Mapa que mapea número de líneas abiertas a conjuntos de casos que tienen dicho número de líneas abiertas
-	 */
-	private final NavigableMap<Integer, List<CasoEntornoX>> casos;
+public class MemoriaCasosX implements IPersistible {
+	private final GeneradorAleatorio random;
 	/*
-	 * Almacena el número de elementos que hay en cada uno de las listas dentro del mapa de casos.
-	 * Se usa para poder obtener acceso O(1) al número de casos que tienen X número de líneas abiertas, lo que permite
-	 * determinar el peso asignado a cada elemento de una forma un poco más rápida que no requiere
-	 * recorrer todo el conjunto de casos.
-	 * El elemento en la posición i representa el número de casos que tienen i líneas abiertas.
+	 * Número de casos que recomiendan abrir y cerrar líneas, según su número de líneas abiertas. El elemento en la
+	 * posición i representa los casos que tienen i líneas abiertas.
 	 */
-	private final List<Integer> numCasos;
+	private final int[] casosAbrir;
+	private final int[] casosCerrar;
 	// Número de elementos actualmente en la memoria
 	private int numElementos;
 	// Tamaño máximo de la memoria
@@ -29,14 +32,12 @@ public class MemoriaCasosX {
 	 * @param tamaño Tamaño máximo de la memoria de casos
 	 * @param valorMax Valor máximo posible para el número de líneas abiertas en los casos que se insertarán en la
 	 *                 memoria
+	 * @param random Generador de números aleatorios usado para elegir los casos a eliminar
 	 */
-	public MemoriaCasosX(int tamaño, int valorMax) {
-		random = new Random();
-		casos = new TreeMap<>();
-		numCasos = new ArrayList<>();
-		for (int i = 0; i <= valorMax; i++) {
-			numCasos.add(0);
-		}
+	public MemoriaCasosX(int tamaño, int valorMax, GeneradorAleatorio random) {
+		this.random = random;
+		casosAbrir = new int[valorMax + 1];
+		casosCerrar = new int[valorMax + 1];
 		numElementos = 0;
 		this.tamaño = tamaño;
 	}
@@ -45,47 +46,100 @@ public class MemoriaCasosX {
 	 * Añade un nuevo caso a la memoria de casos. Si está llena, se eliminará un caso antiguo.
 	 * El caso a eliminar será elegido de forma aleatoria. Aquellos casos que tengan un número de líneas con una
 	 * mayor diferencia con respecto al caso añadido tendrán más probabilidades de ser eliminados.
-	 * @param caso Caso a añadir
 	 * @param numLíneasAbiertas Número de líneas abiertas que tiene este caso
+	 * @param operaciónRecomendada Operación que recomienda el caso
 	 */
-	public void añadir(CasoEntornoX caso, int numLíneasAbiertas) {
-		List<CasoEntornoX> listaActual = casos.get(numLíneasAbiertas);
-		if (listaActual == null) {
-			listaActual = new ArrayList<>();
-			listaActual.add(caso);
-			casos.put(numLíneasAbiertas, listaActual);
+	public void añadir(int numLíneasAbiertas, OperaciónLínea operaciónRecomendada) {
+		if (operaciónRecomendada == OperaciónLínea.ABRIR) {
+			casosAbrir[numLíneasAbiertas]++;
 		} else {
-			listaActual.add(caso);
+			casosCerrar[numLíneasAbiertas]++;
 		}
-		numCasos.set(numLíneasAbiertas, numCasos.get(numLíneasAbiertas) + 1);
 		numElementos++;
 
 		if (numElementos > tamaño) {
 			// Hay que borrar un caso de la memoria
 			int numLíneasCasoABorrar = getNumLíneasCasoABorrar(numLíneasAbiertas);
 			// Borramos un caso al azar de entre todos los que tengan el número de líneas elegido
-			List<CasoEntornoX> casosCandidatos = casos.get(numLíneasCasoABorrar);
-			casosCandidatos.remove(random.nextInt(casosCandidatos.size()));
-
-			numCasos.set(numLíneasCasoABorrar, numCasos.get(numLíneasCasoABorrar) - 1);
+			if (random.nextInt(getNumCasos(numLíneasCasoABorrar)) < casosAbrir[numLíneasCasoABorrar]) {
+				casosAbrir[numLíneasCasoABorrar]--;
+			} else {
+				casosCerrar[numLíneasCasoABorrar]--;
+			}
 			numElementos--;
 		}
 	}
 
 	/**
-	 * Devuelve una lista con todos los casos almacenados en la memoria que tiene un número de líneas abiertas entre los
-	 * dos valores indicados
-	 * @param minLíneas Número mínimo de líneas
-	 * @param maxLíneas Número máximo de líneas
-	 * @return Lista de todos los casos en la memoria que tenen un número de líneas abierto entre los dos
-	 * valores indicados
+	 * @param numLíneasAbiertas Número de líneas abiertas
+	 * @param operaciónRecomendada Operación recomendada
+	 * @return Número de casos almacenados con el número de líneas abiertas indicado que recomiendan la operación
+	 * indicada
+	 */
+	public int getNumCasos(int numLíneasAbiertas, OperaciónLínea operaciónRecomendada) {
+		if (operaciónRecomendada == OperaciónLínea.ABRIR) {
+			return casosAbrir[numLíneasAbiertas];
+		} else {
+			return casosCerrar[numLíneasAbiertas];
+		}
+	}
+
+	/**
+	 * @return Valor máximo posible para el número de líneas abiertas de los casos
 	 */
-	public List<CasoEntornoX> getCasosEnRango(int minLíneas, int maxLíneas) {
-		List<CasoEntornoX> ret = new ArrayList<>();
-		for (List<CasoEntornoX> lista : casos.subMap(minLíneas, maxLíneas + 1).values()) {
-			ret.addAll(lista);
+	public int getValorMax() {
+		return casosAbrir.length - 1;
+	}
+
+	/**
+	 * Escribe el número de casos de cada tipo. Solo se escriben los números de líneas abiertas que tienen algún caso.
+	 */
+	@Override
+	public void escribirEstado(ObjectOutput salida) throws IOException {
+		random.escribirEstado(salida);
+		int numGrupos = 0;
+		for (int i = 0; i < casosAbrir.length; i++) {
+			if (getNumCasos(i) > 0) {
+				numGrupos++;
+			}
+		}
+		salida.writeInt(numGrupos);
+		for (int i = 0; i < casosAbrir.length; i++) {
+			if (getNumCasos(i) > 0) {
+				salida.writeInt(i);
+				salida.writeInt(casosAbrir[i]);
+				salida.writeInt(casosCerrar[i]);
+			}
 		}
-		return ret;
+	}
+
+	@Override
+	public void leerEstado(ObjectInput entrada) throws IOException {
+		random.leerEstado(entrada);
+		for (int i = 0; i < casosAbrir.length; i++) {
+			casosAbrir[i] = 0;
+			casosCerrar[i] = 0;
+		}
+		numElementos = 0;
+		int numGrupos = entrada.readInt();
+		for (int i = 0; i < numGrupos; i++) {
+			int numLíneasAbiertas = entrada.readInt();
+			if (numLíneasAbiertas < 0 || numLíneasAbiertas >= casosAbrir.length) {
+				throw new IOException("El checkpoint contiene casos con un número de líneas abiertas no válido (" +
+					numLíneasAbiertas + ")");
+			}
+			casosAbrir[numLíneasAbiertas] = entrada.readInt();
+			casosCerrar[numLíneasAbiertas] = entrada.readInt();
+			numElementos += getNumCasos(numLíneasAbiertas);
+		}
+	}
+
+	/**
+	 * @param numLíneasAbiertas Número de líneas abiertas
+	 * @return Número total de casos con el número de líneas abiertas indicado
+	 */
+	private int getNumCasos(int numLíneasAbiertas) {
+		return casosAbrir[numLíneasAbiertas] + casosCerrar[numLíneasAbiertas];
 	}
 
 	/**
@@ -96,51 +150,55 @@ public class MemoriaCasosX {
 	 * @return Número de líneas abiertas que tendrá el caso a borrar de la memoria
 	 */
 	private int getNumLíneasCasoABorrar(int numLíneasCasoInsertado) {
-		/*
-		 * Cada conjunto tendrá un peso igual a (nº elementos) * ((distancia al nº de líneas del caso insertado) + 1).
-		 * Creamos una lista que almacene pares con el número de líneas y el peso acumulado de cada conjunto.
-		 * Esta lista queda ordenada ascendentemente por peso acumulado, lo que nos permite iterarla directamente
-		 * para elegir un elemento al azar teniendo en cuenta sus pesos.
-		 */
-		List<Map.Entry<Integer, Integer>> pesosAcumulados = new ArrayList<>();
+		// Primero se calcula el peso total y después se recorren otra vez los subconjuntos hasta llegar al elegido
+		int pesoTotal = recorrerSubconjuntos(numLíneasCasoInsertado, -1);
+		return recorrerSubconjuntos(numLíneasCasoInsertado, random.nextInt(pesoTotal));
+	}
+
+	/**
+	 * Recorre los subconjuntos de casos, empezando por el mismo número de líneas que el del caso insertado, luego
+	 * ese número +1, -1, +2, -2... hasta procesar todos los casos. Cada subconjunto tiene un peso igual a
+	 * (nº elementos) * ((distancia al nº de líneas del caso insertado) + 1).
+	 * @param numLíneasCasoInsertado Número de líneas abiertas que tenía el caso recién insertado en la memoria
+	 * @param valorElegido Valor aleatorio entre 0 y el peso total (exclusivo), o -1 para calcular el peso total
+	 * @return Si valorElegido es -1, el peso total de todos los subconjuntos. Si no, el número de líneas abiertas
+	 * del subconjunto en el que cae el valor elegido al acumular los pesos en el orden del recorrido.
+	 */
+	private int recorrerSubconjuntos(int numLíneasCasoInsertado, int valorElegido) {
 		int casosProcesados = 0;
 		int variaciónNumLíneas = 0;
 		int pesoTotal = 0;
-		/*
-		 * Vamos recorriendo la lista numCasos, empezando por el mismo número de líneas que para el caso insertado,
-		 * luego pasamos a ese número +1, -1, +2, -2... hasta procesar todos los casos.
-		 */
 		while (casosProcesados < numElementos) {
 			int numLíneas = numLíneasCasoInsertado + variaciónNumLíneas;
-			if (numLíneas < numCasos.size()) {
-				int numCasosActual = numCasos.get(numLíneas);
+			if (numLíneas < casosAbrir.length) {
+				int numCasosActual = getNumCasos(numLíneas);
 				if (numCasosActual > 0) {
 					pesoTotal += numCasosActual * (variaciónNumLíneas + 1);
-					pesosAcumulados.add(new AbstractMap.SimpleEntry<>(numLíneas, pesoTotal));
 					casosProcesados += numCasosActual;
+					if (valorElegido >= 0 && pesoTotal > valorElegido) {
+						return numLíneas;
+					}
 				}
 			}
 
 			if (variaciónNumLíneas > 0) {
 				numLíneas = numLíneasCasoInsertado - variaciónNumLíneas;
 				if (numLíneas >= 0) {
-					int numCasosActual = numCasos.get(numLíneas);
+					int numCasosActual = getNumCasos(numLíneas);
 					if (numCasosActual > 0) {
 						pesoTotal += numCasosActual * (variaciónNumLíneas + 1);
-						pesosAcumulados.add(new AbstractMap.SimpleEntry<>(numLíneas, pesoTotal));
 						casosProcesados += numCasosActual;
+						if (valorElegido >= 0 && pesoTotal > valorElegido) {
+							return numLíneas;
+						}
 					}
 				}
 			}
 			variaciónNumLíneas++;
 		}
-		// Ahora seleccionamos uno de los valores al azar, teniendo en cuenta el peso de cada subconjunto
-		int valorElegido = random.nextInt(pesoTotal);
-		for (Map.Entry<Integer, Integer> entrada : pesosAcumulados) {
-			if (entrada.getValue() > valorElegido) {
-				return entrada.getKey();
-			}
+		if (valorElegido >= 0) {
+			throw new IllegalStateException();
 		}
-		throw new IllegalStateException();
+		return pesoTotal;
 	}
 }
@@ -1,18 +1,27 @@
 package earlywarn.mh.vnsrs.entornos;
 
-import earlywarn.mh.vnsrs.ConversorLíneas;
+import earlywarn.definiciones.IPersistible;
+import earlywarn.mh.vnsrs.GestorCheckpoints;
+import earlywarn.mh.vnsrs.Movimiento;
 import earlywarn.mh.vnsrs.config.ConfigVNS;
 
-import java.util.*;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
 
 /**
  * Clase que almacena los últimos estados por los que ha pasado el algoritmo. Usada para saber cuánto tiempo hace
  * que no se logra un cierto grado de variedad en las soluciones y así evitar estancamiento.
  */
-public class MemoriaEstadosY {
-	private final List<EstadoEntornoY> estados;
-	// Mapea IDs de líneas a un ID numérico. Usado para direccionar los arrays de booleanos de los estados.
-	private final ConversorLíneas conversorLíneas;
+public class MemoriaEstadosY implements IPersistible {
+	/*
+	 * Buffer circular con los estados almacenados. El estado más reciente se encuentra en la posición (primero) y el
+	 * i-ésimo más reciente en la posición (primero + i) % tamañoMemoria. Los estados se crean según se van necesitando
+	 * y, una vez la memoria se llena, el más antiguo se reutiliza para almacenar el nuevo estado.
+	 */
+	private final EstadoEntornoY[] estados;
+	private int primero;
+	private int numEstados;
 	/*
 	 * Almacena el número de iteraciones que hace que no logramos una distancia de al menos (posición actual) líneas
 	 * de diferencia con respecto a la solución actual.
@@ -21,74 +30,63 @@ public class MemoriaEstadosY {
 	private final int numLíneas;
 	private final int tamañoMemoria;
 
-	public MemoriaEstadosY(ConfigVNS config, ConversorLíneas conversorLíneas, int numLíneas) {
-		estados = new LinkedList<>();
-		this.conversorLíneas = conversorLíneas;
+	public MemoriaEstadosY(ConfigVNS config, int numLíneas) {
 		this.numLíneas = numLíneas;
-		tamañoMemoria = config.getTamañoMemoriaY();
+		tamañoMemoria = Math.max(config.getTamañoMemoriaY(), 1);
+		estados = new EstadoEntornoY[tamañoMemoria];
+		primero = 0;
+		numEstados = 0;
 		tiempoSinDistancia = new int[numLíneas + 1];
 	}
 
 	/**
 	 * Inserta un nuevo estado en la memoria
-	 * @param líneasVariadas Líneas que se han modificado con respecto al estado anterior
+	 * @param movimiento Movimiento que contiene las líneas que se han modificado con respecto al estado anterior
 	 */
-	public void insertar(List<String> líneasVariadas) {
+	public void insertar(Movimiento movimiento) {
 		// Primero necesitamos conocer de qué estado partimos
-		EstadoEntornoY estadoPrevio;
-		if (estados.isEmpty()) {
+		if (numEstados == 0) {
 			// Estado inicial: Todo abierto
-			estadoPrevio = new EstadoEntornoY(numLíneas, 0);
-			estados.add(estadoPrevio);
-		} else {
-			estadoPrevio = estados.get(0);
-		}
-
-		// Traducir la lista de líneas variadas a IDs numéricos
-		List<Integer> idNumLíneasVariadas = new ArrayList<>();
-		for (String línea : líneasVariadas) {
-			idNumLíneasVariadas.add(conversorLíneas.getIDNumérico(línea));
+			EstadoEntornoY estadoInicial = nuevoEstado();
+			for (int i = 0; i < numLíneas; i++) {
+				estadoInicial.líneas[i] = true;
+			}
+			estadoInicial.distancia = 0;
 		}
+		EstadoEntornoY estadoPrevio = getEstado(0);
 
 		// Creamos el estado actual a partir del anterior y variamos los elementos de las líneas que han cambiado
-		EstadoEntornoY estadoActual = new EstadoEntornoY(estadoPrevio);
-		for (Integer idNumLínea : idNumLíneasVariadas) {
-			estadoActual.líneas[idNumLínea] = !estadoActual.líneas[idNumLínea];
+		EstadoEntornoY estadoActual = nuevoEstado();
+		if (estadoActual != estadoPrevio) {
+			estadoActual.copiar(estadoPrevio);
 		}
-		estados.add(0, estadoActual);
-		if (estados.size() > tamañoMemoria) {
-			estados.remove(estados.size() - 1);
+		for (int i = 0; i < movimiento.getNumLíneas(); i++) {
+			int idNumLínea = movimiento.getLínea(i);
+			estadoActual.líneas[idNumLínea] = !estadoActual.líneas[idNumLínea];
 		}
 
-		if (!líneasVariadas.isEmpty()) {
-			/*
-			 * Ahora tenemos que recorrer la memoria y actualizar las distancias al primer elemento de todos los demás.
-			 * Para ello, comprobamos si las líneas modificadas pasan a ser iguales (distancia -= 1) o diferentes
-			 * (distancia += 1) para cada elemento de la memoria.
-			 */
-			// Nos saltamos el primer elemento ya que es el que acabamos de insertar
-			boolean primero = true;
-			for (EstadoEntornoY estado : estados) {
-				if (primero) {
-					primero = false;
+		/*
+		 * Ahora tenemos que recorrer la memoria y actualizar las distancias al primer elemento de todos los demás.
+		 * Para ello, comprobamos si las líneas modificadas pasan a ser iguales (distancia -= 1) o diferentes
+		 * (distancia += 1) para cada elemento de la memoria.
+		 */
+		// Nos saltamos el primer elemento ya que es el que acabamos de insertar
+		for (int i = 1; i < numEstados; i++) {
+			EstadoEntornoY estado = getEstado(i);
+			for (int j = 0; j < movimiento.getNumLíneas(); j++) {
+				int idNumérico = movimiento.getLínea(j);
+				if (estadoActual.líneas[idNumérico] ^ estado.líneas[idNumérico]) {
+					/*
+					 * Esta línea ha pasado a tener un estado diferente con respecto al que tenía en esta
+					 * entrada anterior, por lo que la distancia entre ambas ha aumentado
+					 */
+					estado.distancia++;
 				} else {
-					for (Integer idNumérico : idNumLíneasVariadas) {
-						boolean estadoActualLínea = estadoActual.líneas[idNumérico];
-						boolean estadoPasadoLínea = estado.líneas[idNumérico];
-						if (estadoActualLínea ^ estadoPasadoLínea) {
-							/*
-							 * Esta línea ha pasado a tener un estado diferente con respecto al que tenía en esta
-							 * entrada anterior, por lo que la distancia entre ambas ha aumentado
-							 */
-							estado.distancia++;
-						} else {
-							/*
-							 * Esta línea ha pasado a tener un estado igual que el que tenía en esta
-							 * entrada anterior, por lo que la distancia entre ambas se ha reducido
-							 */
-							estado.distancia--;
-						}
-					}
+					/*
+					 * Esta línea ha pasado a tener un estado igual que el que tenía en esta
+					 * entrada anterior, por lo que la distancia entre ambas se ha reducido
+					 */
+					estado.distancia--;
 				}
 			}
 		}
@@ -111,6 +109,69 @@ public class MemoriaEstadosY {
 		return tiempoSinDistancia[distancia];
 	}
 
+	/**
+	 * Escribe todos los estados de la memoria, del más reciente al más antiguo. El tiempo que hace que no se logra
+	 * cada distancia no se escribe, ya que se puede recalcular a partir de los estados.
+	 */
+	@Override
+	public void escribirEstado(ObjectOutput salida) throws IOException {
+		salida.writeInt(numEstados);
+		for (int i = 0; i < numEstados; i++) {
+			EstadoEntornoY estado = getEstado(i);
+			GestorCheckpoints.escribirBooleanos(salida, estado.líneas);
+			salida.writeInt(estado.distancia);
+		}
+	}
+
+	@Override
+	public void leerEstado(ObjectInput entrada) throws IOException {
+		int numEstadosLeídos = entrada.readInt();
+		if (numEstadosLeídos > tamañoMemoria) {
+			throw new IOException("El número de estados de la memoria del checkpoint (" + numEstadosLeídos +
+				") supera el tamaño de la memoria actual (" + tamañoMemoria + ")");
+		}
+		primero = 0;
+		numEstados = 0;
+		for (int i = 0; i < numEstadosLeídos; i++) {
+			boolean[] líneas = GestorCheckpoints.leerBooleanos(entrada);
+			if (líneas.length != numLíneas) {
+				throw new IOException("El número de líneas de la memoria de estados del checkpoint (" + líneas.length +
+					") no coincide con el actual (" + numLíneas + ")");
+			}
+			if (estados[i] == null) {
+				estados[i] = new EstadoEntornoY(numLíneas, 0);
+			}
+			System.arraycopy(líneas, 0, estados[i].líneas, 0, numLíneas);
+			estados[i].distancia = entrada.readInt();
+			numEstados++;
+		}
+		recalcularTiempoSinDistancia();
+	}
+
+	/**
+	 * @param posición Posición del estado, donde 0 es el más reciente
+	 * @return Estado en la posición indicada
+	 */
+	private EstadoEntornoY getEstado(int posición) {
+		return estados[(primero + posición) % tamañoMemoria];
+	}
+
+	/**
+	 * Añade un nuevo estado al principio de la memoria. Si la memoria está llena, se reutiliza el estado más antiguo,
+	 * por lo que el contenido del estado devuelto no está definido.
+	 * @return Estado añadido
+	 */
+	private EstadoEntornoY nuevoEstado() {
+		primero = (primero - 1 + tamañoMemoria) % tamañoMemoria;
+		if (numEstados < tamañoMemoria) {
+			numEstados++;
+		}
+		if (estados[primero] == null) {
+			estados[primero] = new EstadoEntornoY(numLíneas, 0);
+		}
+		return estados[primero];
+	}
+
 	/*
 	 * Recorre todas las entradas de la memoria, recalculando cuánto tiempo hace que no logramos una distancia
 	 * de X líneas diferentes con respecto al estado actual para X = 0...numLíneas
@@ -123,9 +184,12 @@ public class MemoriaEstadosY {
 		 */
 		int posMásAlta = 0;
 
-		// Número de iteraciones de distancia en el tiempo que representa el elemento actual de la memoria
-		int numIteraciones = 0;
-		for (EstadoEntornoY estado : estados) {
+		/*
+		 * Recorremos los estados de más reciente a más antiguo. La posición de cada estado coincide con el número de
+		 * iteraciones de distancia en el tiempo que representa.
+		 */
+		for (int numIteraciones = 0; numIteraciones < numEstados; numIteraciones++) {
+			EstadoEntornoY estado = getEstado(numIteraciones);
 			/*
 			 * Este estado está a una distancia de Hamming de X líneas con respecto al actual y pasamos por él
 			 * hace (numIteraciones) iteraciones. Por tanto, rellenamos todas las entradas de tiempoSinDistancia
@@ -136,8 +200,6 @@ public class MemoriaEstadosY {
 				tiempoSinDistancia[i] = numIteraciones;
 			}
 			posMásAlta = Math.max(posMásAlta, estado.distancia);
-
-			numIteraciones++;
 		}
 
 		/*
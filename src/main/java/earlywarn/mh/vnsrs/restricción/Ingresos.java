@@ -3,8 +3,7 @@ package earlywarn.mh.vnsrs.restricción;
 import earlywarn.definiciones.IDCriterio;
 import earlywarn.main.modelo.criterio.Criterio;
 import earlywarn.main.modelo.criterio.IngresosTurísticos;
-
-import java.util.List;
+import earlywarn.mh.vnsrs.Movimiento;
 
 /**
  * Restricción que comprueba que los ingresos por turismo están dentro de un umbral mínimo
@@ -21,14 +20,11 @@ public class Ingresos extends Restricción {
 	}
 
 	@Override
-	public boolean cumple(List<Criterio> criterios) {
-		for (Criterio c : criterios) {
-			if (c instanceof IngresosTurísticos) {
-				IngresosTurísticos ingresosTurísticos = (IngresosTurísticos) c;
-				return ingresosTurísticos.getValorActual() >= min;
-			}
-		}
-		return true;
+	public double violación(Criterio criterio, Movimiento movimiento, double porcentaje) {
+		IngresosTurísticos ingresosTurísticos = (IngresosTurísticos) criterio;
+		// Se expresa como fracción de los ingresos iniciales para que sea comparable con la de otras restricciones
+		double déficit = min - ingresosTurísticos.evaluarValor(movimiento);
+		return déficit <= 0 ? déficit : déficit / ingresosTurísticos.getValorInicial();
 	}
 
 	@Override
@@ -1,10 +1,8 @@
 package earlywarn.mh.vnsrs.restricción;
 
 import earlywarn.definiciones.IDCriterio;
-import earlywarn.main.modelo.criterio.Conectividad;
 import earlywarn.main.modelo.criterio.Criterio;
-
-import java.util.List;
+import earlywarn.mh.vnsrs.Movimiento;
 
 /**
  * Restricción que comprueba que la conectividad restante está dentro de un umbral percentual mínimo
@@ -21,14 +19,8 @@ public class PorcentConectividad extends Restricción {
 	}
 
 	@Override
-	public boolean cumple(List<Criterio> criterios) {
-		for (Criterio c : criterios) {
-			if (c instanceof Conectividad) {
-				Conectividad conectividad = (Conectividad) c;
-				return conectividad.getPorcentaje() >= min;
-			}
-		}
-		return true;
+	public double violación(Criterio criterio, Movimiento movimiento, double porcentaje) {
+		return min - obtenerPorcentaje(criterio, movimiento, porcentaje);
 	}
 
 	@Override
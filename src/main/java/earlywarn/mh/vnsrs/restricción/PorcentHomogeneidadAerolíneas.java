@@ -2,9 +2,7 @@ package earlywarn.mh.vnsrs.restricción;
 
 import earlywarn.definiciones.IDCriterio;
 import earlywarn.main.modelo.criterio.Criterio;
-import earlywarn.main.modelo.criterio.HomogeneidadAerolíneas;
-
-import java.util.List;
+import earlywarn.mh.vnsrs.Movimiento;
 
 /**
  * Restricción que comprueba que la homogeneidad sobre aerolíneas está dentro de un umbral percentual mínimo
@@ -21,14 +19,8 @@ public class PorcentHomogeneidadAerolíneas extends Restricción {
 	}
 
 	@Override
-	public boolean cumple(List<Criterio> criterios) {
-		for (Criterio c : criterios) {
-			if (c instanceof HomogeneidadAerolíneas) {
-				HomogeneidadAerolíneas homogeneidadAerolíneas = (HomogeneidadAerolíneas) c;
-				return homogeneidadAerolíneas.getPorcentaje() >= min;
-			}
-		}
-		return true;
+	public double violación(Criterio criterio, Movimiento movimiento, double porcentaje) {
+		return min - obtenerPorcentaje(criterio, movimiento, porcentaje);
 	}
 
 	@Override
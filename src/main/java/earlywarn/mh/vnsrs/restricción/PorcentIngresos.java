@@ -3,8 +3,7 @@ package earlywarn.mh.vnsrs.restricción;
 import earlywarn.definiciones.IDCriterio;
 import earlywarn.main.modelo.criterio.Criterio;
 import earlywarn.main.modelo.criterio.IngresosTurísticos;
-
-import java.util.List;
+import earlywarn.mh.vnsrs.Movimiento;
 
 /**
  * Restricción que comprueba que los ingresos por turismo están dentro de un umbral percentual mínimo
@@ -21,14 +20,9 @@ public class PorcentIngresos extends Restricción {
 	}
 
 	@Override
-	public boolean cumple(List<Criterio> criterios) {
-		for (Criterio c : criterios) {
-			if (c instanceof IngresosTurísticos) {
-				IngresosTurísticos ingresosTurísticos = (IngresosTurísticos) c;
-				return ingresosTurísticos.getValorActual() / ingresosTurísticos.getValorInicial() >= min;
-			}
-		}
-		return true;
+	public double violación(Criterio criterio, Movimiento movimiento, double porcentaje) {
+		IngresosTurísticos ingresosTurísticos = (IngresosTurísticos) criterio;
+		return min - ingresosTurísticos.evaluarValor(movimiento) / ingresosTurísticos.getValorInicial();
 	}
 
 	@Override
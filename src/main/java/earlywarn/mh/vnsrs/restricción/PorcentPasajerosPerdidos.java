@@ -3,8 +3,7 @@ package earlywarn.mh.vnsrs.restricción;
 import earlywarn.definiciones.IDCriterio;
 import earlywarn.main.modelo.criterio.Criterio;
 import earlywarn.main.modelo.criterio.NumPasajeros;
-
-import java.util.List;
+import earlywarn.mh.vnsrs.Movimiento;
 
 /**
  * Restricción que comprueba que el porcentaje de pasajeros perdidos está dentro de un umbral percentual máximo
@@ -21,14 +20,9 @@ public class PorcentPasajerosPerdidos extends Restricción {
 	}
 
 	@Override
-	public boolean cumple(List<Criterio> criterios) {
-		for (Criterio c : criterios) {
-			if (c instanceof NumPasajeros) {
-				NumPasajeros pasajeros = (NumPasajeros) c;
-				return 1 - (pasajeros.getValorActual() / (float) pasajeros.getValorInicial()) <= max;
-			}
-		}
-		return true;
+	public double violación(Criterio criterio, Movimiento movimiento, double porcentaje) {
+		NumPasajeros pasajeros = (NumPasajeros) criterio;
+		return 1 - (pasajeros.evaluarValor(movimiento) / (float) pasajeros.getValorInicial()) - max;
 	}
 
 	@Override
@@ -3,8 +3,7 @@ package earlywarn.mh.vnsrs.restricción;
 import earlywarn.definiciones.IDCriterio;
 import earlywarn.main.modelo.criterio.Criterio;
 import earlywarn.main.modelo.criterio.RiesgoImportado;
-
-import java.util.List;
+import earlywarn.mh.vnsrs.Movimiento;
 
 /**
  * Restricción que comprueba que el riesgo importado está dentro de un umbral percentual máximo
@@ -21,14 +20,9 @@ public class PorcentRiesgo extends Restricción {
 	}
 
 	@Override
-	public boolean cumple(List<Criterio> criterios) {
-		for (Criterio c : criterios) {
-			if (c instanceof RiesgoImportado) {
-				RiesgoImportado riesgoImportado = (RiesgoImportado) c;
-				return riesgoImportado.getValorActual() / riesgoImportado.getValorInicial() <= max;
-			}
-		}
-		return true;
+	public double violación(Criterio criterio, Movimiento movimiento, double porcentaje) {
+		RiesgoImportado riesgoImportado = (RiesgoImportado) criterio;
+		return riesgoImportado.evaluarValor(movimiento) / riesgoImportado.getValorInicial() - max;
 	}
 
 	@Override
@@ -3,8 +3,7 @@ package earlywarn.mh.vnsrs.restricción;
 import earlywarn.definiciones.IDCriterio;
 import earlywarn.main.modelo.criterio.Criterio;
 import earlywarn.main.modelo.criterio.HomogeneidadAerolíneas;
-
-import java.util.List;
+import earlywarn.mh.vnsrs.Movimiento;
 
 /**
  * Restricción que comprueba que ninguna aerolínea pierde más vuelos que un cierto umbral porcentual máximo
@@ -21,14 +20,9 @@ public class PorcentVuelosPerdidosAerolíneas extends Restricción {
 	}
 
 	@Override
-	public boolean cumple(List<Criterio> criterios) {
-		for (Criterio c : criterios) {
-			if (c instanceof HomogeneidadAerolíneas) {
-				HomogeneidadAerolíneas homogeneidadAerolíneas = (HomogeneidadAerolíneas) c;
-				return homogeneidadAerolíneas.getPérdidaMáxima() <= max;
-			}
-		}
-		return true;
+	public double violación(Criterio criterio, Movimiento movimiento, double porcentaje) {
+		HomogeneidadAerolíneas homogeneidadAerolíneas = (HomogeneidadAerolíneas) criterio;
+		return homogeneidadAerolíneas.evaluarPérdidaMáxima(movimiento) - max;
 	}
 
 	@Override
@@ -3,8 +3,7 @@ package earlywarn.mh.vnsrs.restricción;
 import earlywarn.definiciones.IDCriterio;
 import earlywarn.main.modelo.criterio.Criterio;
 import earlywarn.main.modelo.criterio.HomogeneidadAeropuertos;
-
-import java.util.List;
+import earlywarn.mh.vnsrs.Movimiento;
 
 /**
  * Restricción que comprueba que ningún aeropuerto pierde más vuelos que un cierto umbral porcentual máximo
@@ -21,14 +20,9 @@ public class PorcentVuelosPerdidosAeropuertos extends Restricción {
 	}
 
 	@Override
-	public boolean cumple(List<Criterio> criterios) {
-		for (Criterio c : criterios) {
-			if (c instanceof HomogeneidadAeropuertos) {
-				HomogeneidadAeropuertos homogeneidadAeropuertos = (HomogeneidadAeropuertos) c;
-				return homogeneidadAeropuertos.getPérdidaMáxima() <= max;
-			}
-		}
-		return true;
+	public double violación(Criterio criterio, Movimiento movimiento, double porcentaje) {
+		HomogeneidadAeropuertos homogeneidadAeropuertos = (HomogeneidadAeropuertos) criterio;
+		return homogeneidadAeropuertos.evaluarPérdidaMáxima(movimiento) - max;
 	}
 
 	@Override
@@ -0,0 +1,96 @@
+package earlywarn.mh.vnsrs.restricción;
+
+import earlywarn.main.modelo.criterio.Criterio;
+import earlywarn.mh.vnsrs.Movimiento;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Lista de restricciones en la que cada restricción está vinculada de antemano al criterio sobre el que se evalúa,
+ * de forma que comprobarlas no requiera buscar los criterios en cada llamada.
+ * Las restricciones se ordenan de menor a mayor coste de evaluación de su criterio, de forma que al comprobarlas se
+ * evalúan primero las más baratas y se termina en cuanto una no se cumple.
+ */
+public class RestriccionesVinculadas {
+	private final Restricción[] restricciones;
+	private final Criterio[] criterios;
+	// Posición de cada criterio en la lista de criterios usada para vincular las restricciones
+	private final int[] posicionesCriterios;
+
+	/**
+	 * Vincula una serie de restricciones con los criterios sobre los que se evalúan. Las restricciones cuyo criterio no
+	 * esté en la lista se descartan, ya que se cumplen siempre.
+	 * @param restricciones Restricciones a vincular
+	 * @param criterios Lista de criterios disponibles
+	 */
+	public RestriccionesVinculadas(Iterable<Restricción> restricciones, List<Criterio> criterios) {
+		List<Restricción> listaRestricciones = new ArrayList<>();
+		List<Criterio> listaCriterios = new ArrayList<>();
+		for (Restricción restricción : restricciones) {
+			Criterio criterio = restricción.buscarCriterio(criterios);
+			if (criterio != null) {
+				listaRestricciones.add(restricción);
+				listaCriterios.add(criterio);
+			}
+		}
+
+		// Ordenar por coste. La ordenación es estable, así que a igual coste se mantiene el orden de la configuración.
+		Integer[] orden = new Integer[listaRestricciones.size()];
+		for (int i = 0; i < orden.length; i++) {
+			orden[i] = i;
+		}
+		Arrays.sort(orden, Comparator.comparingInt(i -> listaCriterios.get(i).getCosteEvaluación()));
+
+		this.restricciones = new Restricción[orden.length];
+		this.criterios = new Criterio[orden.length];
+		posicionesCriterios = new int[orden.length];
+		for (int i = 0; i < orden.length; i++) {
+			this.restricciones[i] = listaRestricciones.get(orden[i]);
+			this.criterios[i] = listaCriterios.get(orden[i]);
+			posicionesCriterios[i] = criterios.indexOf(this.criterios[i]);
+		}
+	}
+
+	/**
+	 * Comprueba si el estado que tendrían los criterios tras aplicar un movimiento cumple todas las restricciones. No
+	 * modifica el estado de los criterios.
+	 * @param movimiento Movimiento a evaluar
+	 * @param porcentajes Valor porcentual que tendría cada criterio tras aplicar el movimiento, según su posición en la
+	 *                    lista usada para vincular las restricciones. Los valores que no se conozcan deben ser NaN.
+	 *                    Puede ser null si no se conoce ninguno.
+	 * @return True si se cumplirían todas las restricciones tras aplicar el movimiento, false en caso contrario
+	 */
+	public boolean cumple(Movimiento movimiento, double[] porcentajes) {
+		for (int i = 0; i < restricciones.length; i++) {
+			double porcentaje = porcentajes == null ? Double.NaN : porcentajes[posicionesCriterios[i]];
+			if (!restricciones[i].cumple(criterios[i], movimiento, porcentaje)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Calcula la violación total de las restricciones que tendría la solución tras aplicar un movimiento. No modifica
+	 * el estado de los criterios.
+	 * @param movimiento Movimiento a evaluar
+	 * @param porcentajes Valor porcentual que tendría cada criterio tras aplicar el movimiento, igual que en
+	 *                    {@link #cumple(Movimiento, double[])}. Puede ser null.
+	 * @return Suma de la violación de todas las restricciones que no se cumplirían, o 0 si se cumplen todas
+	 * @see Restricción#violación(Criterio, Movimiento, double)
+	 */
+	public double violación(Movimiento movimiento, double[] porcentajes) {
+		double total = 0;
+		for (int i = 0; i < restricciones.length; i++) {
+			double porcentaje = porcentajes == null ? Double.NaN : porcentajes[posicionesCriterios[i]];
+			double violación = restricciones[i].violación(criterios[i], movimiento, porcentaje);
+			if (violación > 0) {
+				total += violación;
+			}
+		}
+		return total;
+	}
+}
@@ -2,7 +2,9 @@ package earlywarn.mh.vnsrs.restricción;
 
 import earlywarn.definiciones.IDCriterio;
 import earlywarn.main.modelo.criterio.Criterio;
+import earlywarn.mh.vnsrs.Movimiento;
 import earlywarn.mh.vnsrs.config.ListaParámetros;
+import earlywarn.mh.vnsrs.config.ListaRestricciones;
 
 import java.util.List;
 
@@ -59,7 +61,69 @@ public abstract class Restricción {
 	 * @param criterios Lista de criterios a comprobar
 	 * @return True si los criterios de la lista cumplen la restricción, false en caso contrario.
 	 */
-	public abstract boolean cumple(List<Criterio> criterios);
+	public boolean cumple(List<Criterio> criterios) {
+		return cumple(criterios, Movimiento.VACÍO);
+	}
+
+	/**
+	 * Comprueba si el estado que tendrían una serie de criterios tras aplicar un movimiento cumple la restricción.
+	 * No modifica el estado de los criterios. Si se va a comprobar la restricción muchas veces sobre los mismos
+	 * criterios, es preferible vincularla antes con {@link ListaRestricciones#vincular(List)}.
+	 * @param criterios Lista de criterios a comprobar
+	 * @param movimiento Movimiento a evaluar
+	 * @return True si los criterios de la lista cumplirían la restricción tras aplicar el movimiento (o si la lista no
+	 * contiene ninguno de los criterios asociados a la restricción), false en caso contrario.
+	 */
+	public boolean cumple(List<Criterio> criterios, Movimiento movimiento) {
+		Criterio criterio = buscarCriterio(criterios);
+		return criterio == null || cumple(criterio, movimiento, Double.NaN);
+	}
+
+	/**
+	 * Comprueba si el estado que tendría el criterio asociado a esta restricción tras aplicar un movimiento cumple la
+	 * restricción. No modifica el estado del criterio.
+	 * @param criterio Criterio asociado a la restricción. Debe ser el devuelto por {@link #buscarCriterio(List)}.
+	 * @param movimiento Movimiento a evaluar
+	 * @param porcentaje Valor porcentual del criterio tras aplicar el movimiento, si ya se ha calculado (por ejemplo,
+	 *                   al calcular el fitness). NaN si no se conoce.
+	 * @return True si el criterio cumpliría la restricción tras aplicar el movimiento, false en caso contrario.
+	 * @see Criterio#evaluarMovimiento(Movimiento)
+	 */
+	public boolean cumple(Criterio criterio, Movimiento movimiento, double porcentaje) {
+		return violación(criterio, movimiento, porcentaje) <= 0;
+	}
+
+	/**
+	 * Calcula en qué medida incumpliría la restricción el criterio asociado tras aplicar un movimiento. El valor se
+	 * expresa en la misma escala para todas las restricciones (como fracción del valor inicial del criterio o como
+	 * diferencia entre porcentajes), de forma que la violación de varias restricciones pueda sumarse.
+	 * No modifica el estado del criterio.
+	 * @param criterio Criterio asociado a la restricción. Debe ser el devuelto por {@link #buscarCriterio(List)}.
+	 * @param movimiento Movimiento a evaluar
+	 * @param porcentaje Valor porcentual del criterio tras aplicar el movimiento, si ya se ha calculado. NaN si no
+	 *                   se conoce.
+	 * @return Valor positivo que indica cuánto se excede el límite de la restricción si ésta no se cumple. Si se
+	 * cumple, valor negativo o 0 que indica el margen restante hasta el límite.
+	 */
+	public abstract double violación(Criterio criterio, Movimiento movimiento, double porcentaje);
+
+	/**
+	 * Busca el criterio sobre el que se debe evaluar esta restricción
+	 * @param criterios Lista de criterios disponibles
+	 * @return Primer criterio de la lista cuyo ID se encuentra entre los devueltos por
+	 * {@link #getCriteriosAsociados()}, o null si no hay ninguno
+	 */
+	public Criterio buscarCriterio(List<Criterio> criterios) {
+		IDCriterio[] criteriosAsociados = getCriteriosAsociados();
+		for (Criterio criterio : criterios) {
+			for (IDCriterio id : criteriosAsociados) {
+				if (criterio.id == id) {
+					return criterio;
+				}
+			}
+		}
+		return null;
+	}
 
 	/**
 	 * Devuelve una lista con los criterios necesarios para el cálculo de esta restricción. La restricción solo
@@ -67,4 +131,16 @@ public abstract class Restricción {
 	 * @return Lista que contiene los criterios necesarios para el cálculo de esta restricción
 	 */
 	public abstract IDCriterio[] getCriteriosAsociados();
+
+	/**
+	 * @return Valor porcentual que tendría un criterio tras aplicar un movimiento. Si ya se conoce, se devuelve
+	 * directamente sin volver a calcularlo.
+	 */
+	protected static double obtenerPorcentaje(Criterio criterio, Movimiento movimiento, double porcentaje) {
+		if (Double.isNaN(porcentaje)) {
+			return criterio.evaluarMovimiento(movimiento);
+		} else {
+			return porcentaje;
+		}
+	}
 }
@@ -1,6 +1,7 @@
 package earlywarn.mh.vnsrs.sensibilidad;
 
 import earlywarn.definiciones.IDCriterio;
+import earlywarn.main.GeneradorAleatorio;
 
 import java.util.*;
 
@@ -8,14 +9,14 @@ import java.util.*;
  * Representa un conjunto de pesos que pueden modificarse de forma aleatoria
  */
 public class ConjuntoPesos {
-	private final Random random;
+	private final GeneradorAleatorio random;
 	// Valor actual del peso de cada criterio
 	public final Map<IDCriterio, Float> pesosActuales;
 	// Lista de criterios ordenados por su peso inicial, del menos al más importante
 	private final List<IDCriterio> criteriosOrdenados;
 
-	public ConjuntoPesos(Map<IDCriterio, Float> pesos) {
-		random = new Random();
+	public ConjuntoPesos(Map<IDCriterio, Float> pesos, GeneradorAleatorio random) {
+		this.random = random;
 
 		// Copiar valores iniciales
 		pesosActuales = new EnumMap<>(pesos);
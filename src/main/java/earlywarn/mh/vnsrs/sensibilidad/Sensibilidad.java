@@ -2,15 +2,13 @@ package earlywarn.mh.vnsrs.sensibilidad;
 
 import earlywarn.definiciones.IDCriterio;
 import earlywarn.definiciones.IllegalOperationException;
-import earlywarn.main.Consultas;
-import earlywarn.main.modelo.datoid.Aeropuerto;
 import earlywarn.main.modelo.ListaSoluciones;
 import earlywarn.main.modelo.datoid.Línea;
-import earlywarn.main.modelo.datoid.AeropuertoFactory;
-import earlywarn.main.modelo.datoid.LíneaFactory;
 import earlywarn.main.modelo.datoid.RegistroDatoID;
 import earlywarn.mh.vnsrs.ConversorLíneas;
 import earlywarn.mh.vnsrs.CriterioFactory;
+import earlywarn.mh.vnsrs.CachéProblemas;
+import earlywarn.mh.vnsrs.DatosProblema;
 import earlywarn.mh.vnsrs.config.Config;
 import org.neo4j.graphdb.GraphDatabaseService;
 import org.neo4j.logging.Log;
@@ -25,9 +23,8 @@ public class Sensibilidad {
 	private final int numIteraciones;
 	private final Log log;
 	private final ListaSoluciones soluciones;
-	private final Consultas consultas;
+	private final DatosProblema datos;
 	private final List<String> líneas;
-	private final RegistroDatoID<Aeropuerto> registroAeropuertos;
 	private final RegistroDatoID<Línea> registroLíneas;
 	/*
 	 * Contiene los diferentes gestores usados para evaluar cada una de las posibles soluciones. Cada gestor tendrá
@@ -52,18 +49,14 @@ public class Sensibilidad {
 		this.log = log;
 		this.config = config;
 
-		consultas = new Consultas(db);
-		líneas = consultas.getLíneas(config.díaInicio, config.díaFin, config.país);
-		conversorLíneas = new ConversorLíneas(líneas);
+		datos = CachéProblemas.get(config, db, log);
+		líneas = datos.líneas;
+		conversorLíneas = datos.conversorLíneas;
+		registroLíneas = datos.registroLíneas;
 		solucionesEv = new ArrayList<>();
 		resultado = null;
-		pesos = new ConjuntoPesos(config.pesos);
+		pesos = new ConjuntoPesos(config.pesos, config.crearGenerador());
 		this.numIteraciones = numIteraciones;
-
-		AeropuertoFactory fAeropuertos = new AeropuertoFactory(config.díaInicio, config.díaFin, db);
-		registroAeropuertos = new RegistroDatoID<>(fAeropuertos);
-		LíneaFactory fLíneas = new LíneaFactory(config.díaInicio, config.díaFin, db);
-		registroLíneas = new RegistroDatoID<>(fLíneas);
 	}
 
 	/**
@@ -71,7 +64,7 @@ public class Sensibilidad {
 	 */
 	public void ejecutar() {
 		resultado = new Resultado(soluciones.size(), log);
-		CriterioFactory fCriterios = new CriterioFactory(consultas, config, registroAeropuertos);
+		CriterioFactory fCriterios = new CriterioFactory(datos);
 		for (List<String> cerradasSolución : soluciones) {
 			SoluciónEvaluable sol = new SoluciónEvaluable(líneas, cerradasSolución, config, fCriterios, registroLíneas,
 				conversorLíneas, log);